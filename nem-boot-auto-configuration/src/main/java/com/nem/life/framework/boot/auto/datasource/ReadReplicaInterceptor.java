@@ -0,0 +1,19 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * {@link ReadReplica} 方法进入读从库的上下文
+ */
+public class ReadReplicaInterceptor implements MethodInterceptor {
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        ReadWriteContext.enterRead();
+        try {
+            return invocation.proceed();
+        } finally {
+            ReadWriteContext.exitRead();
+        }
+    }
+}
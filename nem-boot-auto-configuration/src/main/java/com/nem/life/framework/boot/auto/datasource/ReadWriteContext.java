@@ -0,0 +1,166 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.function.Supplier;
+
+/**
+ * 读写分离的路由上下文
+ * <p>
+ * 最近一次写入时间在web请求内保存在request属性中, 随请求结束丢弃; 请求外保存在当前线程,
+ * 定时任务、消息消费等用 open() 声明一个工作单元, 结束时清除; 没有工作单元时粘滞时间过后的第一次路由清除
+ * <pre>
+ * try (ReadWriteContext.Scope scope = ReadWriteContext.open()) {
+ *     handle(message);
+ * }
+ * </pre>
+ */
+public final class ReadWriteContext {
+    private static final String LAST_WRITE_ATTRIBUTE = ReadWriteContext.class.getName() + ".lastWrite";
+    private static final ThreadLocal<int[]> READ_DEPTH = new ThreadLocal<>();
+    private static final ThreadLocal<int[]> PRIMARY_DEPTH = new ThreadLocal<>();
+    private static final ThreadLocal<int[]> SCOPE_DEPTH = new ThreadLocal<>();
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private ReadWriteContext() {
+    }
+
+    /**
+     * 在从库上执行查询
+     *
+     * @param query 查询
+     * @return 查询结果
+     */
+    public static <T> T replica(Supplier<T> query) {
+        enterRead();
+        try {
+            return query.get();
+        } finally {
+            exitRead();
+        }
+    }
+
+    /**
+     * 强制在主库上执行, 例如对实时性要求高的查询
+     *
+     * @param query 查询
+     * @return 查询结果
+     */
+    public static <T> T primary(Supplier<T> query) {
+        enter(PRIMARY_DEPTH);
+        try {
+            return query.get();
+        } finally {
+            exit(PRIMARY_DEPTH);
+        }
+    }
+
+    /**
+     * 开始一个工作单元, 可以嵌套, 最外层关闭时清除本线程的写入时间
+     *
+     * @return 范围
+     */
+    public static Scope open() {
+        enter(SCOPE_DEPTH);
+        return () -> {
+            if (exit(SCOPE_DEPTH)) LAST_WRITE.remove();
+        };
+    }
+
+    /**
+     * 记录一次写入, 之后 stickyWindow 内本请求的查询走主库
+     */
+    public static void markWrite() {
+        long now = System.currentTimeMillis();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(LAST_WRITE_ATTRIBUTE, now, RequestAttributes.SCOPE_REQUEST);
+        } else {
+            LAST_WRITE.set(now);
+        }
+    }
+
+    static void enterRead() {
+        enter(READ_DEPTH);
+    }
+
+    static void exitRead() {
+        exit(READ_DEPTH);
+    }
+
+    /**
+     * 当前是否应该走从库
+     *
+     * @param stickyWindowMillis 写入后读主库的毫秒数
+     * @return 是否读从库
+     */
+    static boolean isReplicaRead(long stickyWindowMillis) {
+        return isReplicaRead(stickyWindowMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * @param stickyWindowMillis 写入后读主库的毫秒数
+     * @param now                当前时间毫秒
+     * @return 是否读从库
+     */
+    static boolean isReplicaRead(long stickyWindowMillis, long now) {
+        if (depth(PRIMARY_DEPTH) > 0) return false;
+        boolean transactionActive = TransactionSynchronizationManager.isActualTransactionActive();
+        boolean transactionReadOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (transactionActive && !transactionReadOnly) return false;
+        if (!transactionReadOnly && depth(READ_DEPTH) <= 0) return false;
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            Long lastWrite = (Long) requestAttributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            return lastWrite == null || now - lastWrite >= stickyWindowMillis;
+        }
+        Long lastWrite = LAST_WRITE.get();
+        if (lastWrite == null) return true;
+        if (now - lastWrite < stickyWindowMillis) return false;
+        // 粘滞时间已过, 不在工作单元内时没有其他时机清除
+        if (depth(SCOPE_DEPTH) <= 0) LAST_WRITE.remove();
+        return true;
+    }
+
+    /**
+     * @return 当前线程是否没有遗留的路由状态
+     */
+    static boolean isCleared() {
+        return READ_DEPTH.get() == null && PRIMARY_DEPTH.get() == null && SCOPE_DEPTH.get() == null
+                && LAST_WRITE.get() == null;
+    }
+
+    private static void enter(ThreadLocal<int[]> depth) {
+        int[] current = depth.get();
+        if (current == null) {
+            current = new int[1];
+            depth.set(current);
+        }
+        current[0]++;
+    }
+
+    /**
+     * @return 是否退出了最外层
+     */
+    private static boolean exit(ThreadLocal<int[]> depth) {
+        int[] current = depth.get();
+        if (current == null || --current[0] > 0) return false;
+        depth.remove();
+        return true;
+    }
+
+    private static int depth(ThreadLocal<int[]> depth) {
+        int[] current = depth.get();
+        return current == null ? 0 : current[0];
+    }
+
+    /**
+     * 工作单元, try-with-resources 关闭
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
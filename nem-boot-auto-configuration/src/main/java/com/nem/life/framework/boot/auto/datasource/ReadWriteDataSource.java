@@ -0,0 +1,33 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.io.Closeable;
+
+/**
+ * 对外暴露的读写分离数据源, 延迟到第一条语句执行时才按路由规则取真实连接
+ */
+public class ReadWriteDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    private final ReadWriteRoutingDataSource routing;
+
+    public ReadWriteDataSource(ReadWriteRoutingDataSource routing) {
+        super(routing);
+        this.routing = routing;
+    }
+
+    public ReadWriteRoutingDataSource getRouting() {
+        return routing;
+    }
+
+    @Override
+    public void close() {
+        routing.close();
+        if (routing.getPrimary() instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) routing.getPrimary()).close();
+            } catch (Exception e) {
+                throw new IllegalStateException("关闭主库数据源失败", e);
+            }
+        }
+    }
+}
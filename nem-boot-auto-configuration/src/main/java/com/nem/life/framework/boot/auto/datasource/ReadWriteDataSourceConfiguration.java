@@ -0,0 +1,55 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import org.apache.ibatis.plugin.Interceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+
+/**
+ * 读写分离
+ * <pre>
+ * nem.datasource.read-write.enabled=true
+ * nem.datasource.read-write.replicas[0].url=jdbc:mysql://replica1:3306/db
+ * nem.datasource.read-write.replicas[0].username=...
+ * </pre>
+ * 只读事务 {@code @Transactional(readOnly = true)} 和 {@link ReadReplica} 方法走从库
+ */
+@Configuration
+@ConditionalOnProperty(prefix = ReadWriteDataSourceProperties.PREFIX, name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadWriteDataSourceProperties.class)
+public class ReadWriteDataSourceConfiguration {
+    @Bean
+    public static ReadWriteDataSourcePostProcessor readWriteDataSourcePostProcessor() {
+        return new ReadWriteDataSourcePostProcessor();
+    }
+
+    /**
+     * 基础设施角色, 只有 InfrastructureAdvisorAutoProxyCreator 时也能生效
+     *
+     * @return
+     */
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor readReplicaAdvisor() {
+        ComposablePointcut pointcut = new ComposablePointcut(new AnnotationMatchingPointcut(ReadReplica.class, true))
+                .union(AnnotationMatchingPointcut.forMethodAnnotation(ReadReplica.class));
+        return new DefaultPointcutAdvisor(pointcut, new ReadReplicaInterceptor());
+    }
+
+    @Configuration
+    @ConditionalOnClass(Interceptor.class)
+    static class MybatisWriteMarkConfiguration {
+        @Bean
+        public WriteMarkInterceptor writeMarkInterceptor() {
+            return new WriteMarkInterceptor();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * 把主库数据源bean包装成读写分离数据源, 主库仍使用 spring.datasource 的配置
+ */
+@Slf4j
+public class ReadWriteDataSourcePostProcessor implements BeanPostProcessor, EnvironmentAware {
+    private ReadWriteDataSourceProperties properties;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.properties = Binder.get(environment)
+                .bind(ReadWriteDataSourceProperties.PREFIX, ReadWriteDataSourceProperties.class)
+                .orElseGet(ReadWriteDataSourceProperties::new);
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || bean instanceof ReadWriteDataSource
+                || !beanName.equals(properties.getPrimaryBeanName())) {
+            return bean;
+        }
+        if (properties.getReplicas().isEmpty()) {
+            log.warn("read-write datasource enabled without replicas, all queries go to " + beanName);
+            return bean;
+        }
+        log.info("Wrap datasource " + beanName + " with " + properties.getReplicas().size() + " replica(s)");
+        return new ReadWriteDataSource(new ReadWriteRoutingDataSource((DataSource) bean, properties));
+    }
+}
@@ -0,0 +1,84 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = ReadWriteDataSourceProperties.PREFIX)
+public class ReadWriteDataSourceProperties {
+    public static final String PREFIX = "nem.datasource.read-write";
+
+    /**
+     * 是否开启读写分离
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 被包装的主库数据源bean名称
+     */
+    private String primaryBeanName = "dataSource";
+
+    /**
+     * 从库
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 从库负载均衡方式
+     */
+    private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+
+    /**
+     * 写入后同一请求内读主库的时间, 保证读到自己的写入
+     */
+    private Duration stickyWindow = Duration.ofSeconds(5);
+
+    /**
+     * 从库健康检查间隔
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+    /**
+     * 健康检查 Connection.isValid 超时秒数
+     */
+    private Integer healthCheckTimeout = 2;
+
+    /**
+     * 连续失败多少次摘除从库, 恢复后自动加回
+     */
+    private Integer failureThreshold = 3;
+
+    public enum LoadBalance {
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN,
+        /**
+         * 随机
+         */
+        RANDOM,
+        /**
+         * 按权重随机
+         */
+        WEIGHTED
+    }
+
+    @Data
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        /**
+         * 权重, 只在 WEIGHTED 模式下生效
+         */
+        private Integer weight = 1;
+        private Integer maximumPoolSize = 10;
+        private Integer minimumIdle = 2;
+    }
+}
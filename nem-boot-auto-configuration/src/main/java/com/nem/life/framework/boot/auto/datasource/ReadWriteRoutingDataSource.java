@@ -0,0 +1,219 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离数据源
+ * <p>
+ * 只读事务和 {@link ReadReplica} 方法内的查询按负载均衡取一个健康的从库, 从库取连接失败时换下一个,
+ * 都不可用时回退主库; 其余情况都走主库。
+ * 外层需要套 LazyConnectionDataSourceProxy, 保证事务的只读标记设置之后才取连接
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements Closeable {
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadWriteDataSourceProperties properties;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * 按 replicas 配置创建从库连接池
+     *
+     * @param primary    主库
+     * @param properties 配置
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, ReadWriteDataSourceProperties properties) {
+        this(primary, createPools(properties), properties);
+    }
+
+    /**
+     * 使用已有的从库数据源, 例如本地的两个库或嵌入式数据库; 名称和权重取 replicas 中同一位置的配置
+     *
+     * @param primary            主库
+     * @param replicaDataSources 从库, 实现 AutoCloseable 的在关闭时一起关闭
+     * @param properties         配置
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources,
+                                      ReadWriteDataSourceProperties properties) {
+        this.primary = primary;
+        this.properties = properties;
+        this.replicas = new ArrayList<>(replicaDataSources.size());
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            ReadWriteDataSourceProperties.Replica config = i < properties.getReplicas().size()
+                    ? properties.getReplicas().get(i) : new ReadWriteDataSourceProperties.Replica();
+            replicas.add(new Replica(config.getName() == null ? "replica-" + i : config.getName(),
+                    replicaDataSources.get(i), config.getWeight()));
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("datasource-replica-check-");
+        threadFactory.setDaemon(true);
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long interval = properties.getHealthCheckInterval().toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadWriteContext.isReplicaRead(properties.getStickyWindow().toMillis())) {
+            for (Replica replica : candidates()) {
+                try {
+                    return replica.dataSource.getConnection();
+                } catch (SQLException e) {
+                    replica.failed(e);
+                }
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * 健康的从库名称
+     *
+     * @return 从库名称
+     */
+    public List<String> getHealthyReplicas() {
+        List<String> names = new ArrayList<>();
+        for (Replica replica : replicas) {
+            if (replica.healthy) names.add(replica.name);
+        }
+        return names;
+    }
+
+    /**
+     * 健康的从库, 按负载均衡方式排好尝试顺序
+     */
+    private List<Replica> candidates() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        int totalWeight = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy.add(replica);
+                totalWeight += replica.weight;
+            }
+        }
+        if (healthy.size() <= 1) return healthy;
+        int first;
+        switch (properties.getLoadBalance()) {
+            case RANDOM:
+                first = ThreadLocalRandom.current().nextInt(healthy.size());
+                break;
+            case WEIGHTED:
+                int point = ThreadLocalRandom.current().nextInt(totalWeight);
+                first = 0;
+                while (point >= healthy.get(first).weight) {
+                    point -= healthy.get(first).weight;
+                    first++;
+                }
+                break;
+            default:
+                first = Math.floorMod(roundRobin.getAndIncrement(), healthy.size());
+        }
+        List<Replica> ordered = new ArrayList<>(healthy.size());
+        for (int i = 0; i < healthy.size(); i++) {
+            ordered.add(healthy.get((first + i) % healthy.size()));
+        }
+        return ordered;
+    }
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(properties.getHealthCheckTimeout())) {
+                    replica.succeeded();
+                } else {
+                    replica.failed(null);
+                }
+            } catch (SQLException e) {
+                replica.failed(e);
+            } catch (Exception e) {
+                log.warn("check replica failed:" + replica.name, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (!(replica.dataSource instanceof AutoCloseable)) continue;
+            try {
+                ((AutoCloseable) replica.dataSource).close();
+            } catch (Exception e) {
+                log.warn("close replica failed:" + replica.name, e);
+            }
+        }
+    }
+
+    private static List<DataSource> createPools(ReadWriteDataSourceProperties properties) {
+        List<DataSource> pools = new ArrayList<>(properties.getReplicas().size());
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            ReadWriteDataSourceProperties.Replica config = properties.getReplicas().get(i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(config.getName() == null ? "replica-" + i : config.getName());
+            dataSource.setJdbcUrl(config.getUrl());
+            dataSource.setUsername(config.getUsername());
+            dataSource.setPassword(config.getPassword());
+            if (config.getDriverClassName() != null) dataSource.setDriverClassName(config.getDriverClassName());
+            dataSource.setMaximumPoolSize(config.getMaximumPoolSize());
+            dataSource.setMinimumIdle(config.getMinimumIdle());
+            dataSource.setReadOnly(true);
+            // 从库启动时不可用不影响应用启动, 由健康检查摘除
+            dataSource.setInitializationFailTimeout(-1);
+            pools.add(dataSource);
+        }
+        return pools;
+    }
+
+    private class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final int weight;
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile boolean healthy = true;
+
+        private Replica(String name, DataSource dataSource, Integer weight) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.weight = weight == null ? 1 : Math.max(1, weight);
+        }
+
+        private void failed(Exception e) {
+            if (failures.incrementAndGet() >= properties.getFailureThreshold() && healthy) {
+                healthy = false;
+                log.warn("replica " + name + " ejected after " + failures.get() + " failure(s)", e);
+            }
+        }
+
+        private void succeeded() {
+            failures.set(0);
+            if (!healthy) {
+                healthy = true;
+                log.info("replica " + name + " recovered");
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "nem.mybatis.batch")
+public class BatchProperties {
+    /**
+     * BATCH会话每累计多少条语句flush一次
+     */
+    private Integer flushSize = 1000;
+
+    /**
+     * 超过该数量的列表拆分成多段, 每段一个事务
+     */
+    private Integer chunkSize = 10000;
+
+    /**
+     * 并行写入的分段数, 即同时占用的连接数, 不要超过连接池大小
+     */
+    private Integer parallelism = 4;
+
+    /**
+     * 多行insert每条语句的行数, 同时受65535个占位符的限制
+     */
+    private Integer rowsPerStatement = 500;
+}
@@ -0,0 +1,35 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 批量写入结果
+ */
+@Data
+@AllArgsConstructor
+public class BatchResult {
+    /**
+     * 写入的行数
+     */
+    private long rows;
+
+    /**
+     * 分段数
+     */
+    private int chunks;
+
+    /**
+     * 耗时毫秒
+     */
+    private long millis;
+
+    /**
+     * 每秒写入行数
+     *
+     * @return rows/s
+     */
+    public long getRowsPerSecond() {
+        return millis <= 0 ? rows * 1000 : rows * 1000 / millis;
+    }
+}
@@ -0,0 +1,84 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
+import com.nem.life.framework.boot.entity.MpPage;
+import lombok.AllArgsConstructor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 可缓存总数的分页插件
+ * <p>
+ * count语句加上绑定参数作为key, 在本地缓存总数; 同样的条件翻页时不再重复执行 SELECT COUNT(*)。
+ * 缓存秒数取 MpPage.countCacheSeconds, 未设置时取全局配置
+ */
+public class CountCachingPaginationInterceptor extends PaginationInterceptor {
+    private final PaginationProperties paginationProperties;
+    private final Map<String, CachedCount> countCache;
+
+    public CountCachingPaginationInterceptor(PaginationProperties paginationProperties) {
+        this.paginationProperties = paginationProperties;
+        int maxSize = paginationProperties.getCountCacheSize();
+        this.countCache = new LinkedHashMap<String, CachedCount>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    protected void queryTotal(String sql, MappedStatement mappedStatement, BoundSql boundSql, IPage<?> page, Connection connection) {
+        int seconds = page instanceof MpPage ? ((MpPage<?>) page).getCountCacheSeconds() : 0;
+        if (seconds <= 0) seconds = paginationProperties.getCountCacheSeconds();
+        if (seconds <= 0) {
+            super.queryTotal(sql, mappedStatement, boundSql, page, connection);
+            return;
+        }
+        String key = cacheKey(sql, mappedStatement, boundSql);
+        long now = System.currentTimeMillis();
+        CachedCount cached;
+        synchronized (countCache) {
+            cached = countCache.get(key);
+        }
+        if (cached != null && cached.expireAt > now) {
+            page.setTotal(cached.total);
+            if (overflow && page.getCurrent() > page.getPages()) {
+                handlerOverflow(page);
+            }
+            return;
+        }
+        super.queryTotal(sql, mappedStatement, boundSql, page, connection);
+        synchronized (countCache) {
+            countCache.put(key, new CachedCount(page.getTotal(), now + seconds * 1000L));
+        }
+    }
+
+    /**
+     * 清空总数缓存
+     */
+    public void clearCountCache() {
+        synchronized (countCache) {
+            countCache.clear();
+        }
+    }
+
+    private static String cacheKey(String sql, MappedStatement mappedStatement, BoundSql boundSql) {
+        StringBuilder key = new StringBuilder(mappedStatement.getId()).append('|').append(sql);
+        for (Object value : MybatisSqlUtil.parameterValues(mappedStatement, boundSql)) {
+            key.append('|').append(value);
+        }
+        return key.toString();
+    }
+
+    @AllArgsConstructor
+    private static class CachedCount {
+        private final long total;
+        private final long expireAt;
+    }
+}
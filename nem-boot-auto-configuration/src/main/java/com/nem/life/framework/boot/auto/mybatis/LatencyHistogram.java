@@ -0,0 +1,92 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定分桶的耗时直方图, 无锁累加
+ * <p>
+ * 分位数取所在桶的上界, 精度取决于分桶
+ */
+public class LatencyHistogram {
+    /**
+     * 桶上界, 毫秒; 最后一个桶收集所有更大的值
+     */
+    static final long[] BOUNDS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long millis = nanos / 1_000_000;
+        int index = 0;
+        while (index < BOUNDS.length && millis > BOUNDS[index]) index++;
+        buckets[index].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param percentile 0 ~ 1
+     * @return 毫秒
+     */
+    public long percentile(double percentile) {
+        long total = getCount();
+        if (total == 0) return 0L;
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) return BOUNDS[i];
+        }
+        return getMaxNanos() / 1_000_000;
+    }
+
+    /**
+     * 各个桶的计数
+     *
+     * @return 桶上界(le) -> 数量, 最后一个key为 +Inf
+     */
+    public Map<String, Long> buckets() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS.length; i++) {
+            result.put(String.valueOf(BOUNDS[i]), buckets[i].sum());
+        }
+        result.put("+Inf", buckets[BOUNDS.length].sum());
+        return result;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
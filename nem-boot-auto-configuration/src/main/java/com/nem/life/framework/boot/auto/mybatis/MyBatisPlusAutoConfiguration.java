@@ -2,19 +2,121 @@ package com.nem.life.framework.boot.auto.mybatis;
 
 import com.baomidou.mybatisplus.extension.plugins.OptimisticLockerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.pagination.optimize.JsqlParserCountOptimize;
+import com.nem.life.framework.boot.nplusone.NPlusOneConfiguration;
+import com.nem.life.framework.boot.nplusone.NPlusOneDetector;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnSingleCandidate;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
 
+/**
+ * mybatis-plus 插件和模板
+ * <p>
+ * 通过 spring.factories 作为自动配置加载, 排在mybatis-plus的自动配置之后;
+ * 需要 SqlSessionFactory 的bean只在有唯一 SqlSessionFactory 时注册, 只使用mongo、redis插件没有数据源的应用可以正常启动
+ */
 @Configuration
+@AutoConfigureAfter(name = "com.baomidou.mybatisplus.autoconfigure.MybatisPlusAutoConfiguration")
+@EnableConfigurationProperties({PaginationProperties.class, BatchProperties.class, SqlStatsProperties.class,
+        StreamProperties.class})
+@Import({NPlusOneConfiguration.class})
 public class MyBatisPlusAutoConfiguration {
     /**
-     * 分页插件
+     * 分页插件, count语句去掉order by和多余的left join, 支持总数缓存
      *
      * @return
      */
     @Bean
-    public PaginationInterceptor paginationInterceptor() {
-        return new PaginationInterceptor();
+    public PaginationInterceptor paginationInterceptor(PaginationProperties paginationProperties) {
+        CountCachingPaginationInterceptor paginationInterceptor = new CountCachingPaginationInterceptor(paginationProperties);
+        paginationInterceptor.setCountSqlParser(new JsqlParserCountOptimize(paginationProperties.getOptimizeJoin()));
+        return paginationInterceptor;
+    }
+
+    /**
+     * sql耗时统计和慢sql日志
+     *
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "nem.mybatis.sql-stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public SqlStatsInterceptor sqlStatsInterceptor(SqlStatsProperties sqlStatsProperties) {
+        return new SqlStatsInterceptor(sqlStatsProperties);
+    }
+
+    /**
+     * sql统计注册到micrometer, 没有micrometer时不注册
+     */
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "nem.mybatis.sql-stats", name = "enabled", havingValue = "true", matchIfMissing = true)
+    @Configuration
+    static class SqlStatsMetersConfiguration {
+
+        @Bean
+        public SqlStatsMeterBinder sqlStatsMeterBinder(SqlStatsInterceptor sqlStatsInterceptor) {
+            return new SqlStatsMeterBinder(sqlStatsInterceptor);
+        }
+    }
+
+    /**
+     * 依赖 SqlSessionFactory 的bean, 没有mybatis数据源时不注册
+     */
+    @ConditionalOnSingleCandidate(SqlSessionFactory.class)
+    @Configuration
+    static class SqlSessionConfiguration {
+
+        /**
+         * 请求内 N+1 查询检测
+         *
+         * @return
+         */
+        @Bean
+        @ConditionalOnProperty(prefix = "nem.n-plus-one", name = "enabled", havingValue = "true", matchIfMissing = true)
+        public NPlusOneInterceptor nPlusOneInterceptor(NPlusOneDetector nPlusOneDetector) {
+            return new NPlusOneInterceptor(nPlusOneDetector);
+        }
+
+        /**
+         * 批量写入, BATCH会话 + 分段并行 + 多行insert
+         *
+         * @return
+         */
+        @Bean
+        public MybatisBatchTemplates mybatisBatchTemplates(SqlSessionFactory sqlSessionFactory,
+                                                           ObjectProvider<PlatformTransactionManager> transactionManager,
+                                                           BatchProperties batchProperties) {
+            return new MybatisBatchTemplates(sqlSessionFactory, transactionManager.getIfUnique(), batchProperties);
+        }
+
+        /**
+         * 游标读取, 替代 PageParameter.fullPage()
+         *
+         * @return
+         */
+        @Bean
+        public MybatisStreamTemplates mybatisStreamTemplates(SqlSessionFactory sqlSessionFactory,
+                                                             ObjectProvider<PlatformTransactionManager> transactionManager,
+                                                             StreamProperties streamProperties) {
+            return new MybatisStreamTemplates(sqlSessionFactory, transactionManager.getIfUnique(), streamProperties);
+        }
+    }
+
+    /**
+     * 游标读取时覆盖fetchSize
+     *
+     * @return
+     */
+    @Bean
+    public StreamFetchSizeInterceptor streamFetchSizeInterceptor() {
+        return new StreamFetchSizeInterceptor();
     }
 
     /**
@@ -0,0 +1,341 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.core.config.GlobalConfig;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * mybatis-plus 批量写入
+ * <p>
+ * mapper方法在 ExecutorType.BATCH 会话中执行, 每 flushSize 条flush一次;
+ * 超过 chunkSize 的列表拆成多段, 每段一个事务、一个连接, 并行提交, 整体不保证原子性。
+ * 调用方已在spring事务中时所有分段在当前线程顺序执行并加入该事务。
+ * mysql需要在连接串加 rewriteBatchedStatements=true 才会真正合并批量语句
+ */
+@Slf4j
+public class MybatisBatchTemplates implements DisposableBean {
+    /**
+     * mysql/postgresql 单条语句的占位符上限
+     */
+    private static final int MAX_PARAMETERS = 65535;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchProperties batchProperties;
+    private final ExecutorService executor;
+
+    public MybatisBatchTemplates(SqlSessionFactory sqlSessionFactory, PlatformTransactionManager transactionManager,
+                                 BatchProperties batchProperties) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.dataSource = sqlSessionFactory.getConfiguration().getEnvironment().getDataSource();
+        this.transactionTemplate = new TransactionTemplate(transactionManager == null
+                ? new DataSourceTransactionManager(dataSource) : transactionManager);
+        this.batchProperties = batchProperties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mybatis-batch-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, batchProperties.getParallelism()), threadFactory);
+    }
+
+    /**
+     * 批量insert, 走mapper的insert, 支持主键回填和自动填充
+     *
+     * @param mapperClass mapper类型
+     * @param entities    实体
+     * @return 写入结果
+     */
+    public <T, M extends BaseMapper<T>> BatchResult insertBatch(Class<M> mapperClass, Collection<T> entities) {
+        return execute(mapperClass, entities, BaseMapper::insert);
+    }
+
+    /**
+     * 批量按id更新
+     *
+     * @param mapperClass mapper类型
+     * @param entities    实体
+     * @return 写入结果
+     */
+    public <T, M extends BaseMapper<T>> BatchResult updateBatchById(Class<M> mapperClass, Collection<T> entities) {
+        return execute(mapperClass, entities, BaseMapper::updateById);
+    }
+
+    /**
+     * 在BATCH会话中对每个元素执行mapper方法
+     *
+     * @param mapperClass mapper类型
+     * @param items       元素
+     * @param statement   对单个元素执行的mapper方法
+     * @return 写入结果
+     */
+    public <T, M> BatchResult execute(Class<M> mapperClass, Collection<T> items, BiConsumer<M, T> statement) {
+        return run(mapperClass.getSimpleName(), items, chunk -> {
+            SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
+            try {
+                M mapper = sqlSession.getMapper(mapperClass);
+                int pending = 0;
+                for (T item : chunk) {
+                    statement.accept(mapper, item);
+                    if (++pending >= batchProperties.getFlushSize()) {
+                        sqlSession.flushStatements();
+                        pending = 0;
+                    }
+                }
+                sqlSession.flushStatements();
+                return (long) chunk.size();
+            } finally {
+                sqlSession.close();
+            }
+        });
+    }
+
+    /**
+     * 生成多行 insert into ... values (...),(...) 写入, 比逐条insert少很多网络往返
+     * <p>
+     * 所有行使用相同的列, 值为null的列写入null而不是跳过, 数据库默认值不会生效;
+     * ASSIGN_ID/ASSIGN_UUID 主键在写入前生成并回填, AUTO 主键不回填
+     *
+     * @param entities 实体
+     * @return 写入结果
+     */
+    public <T> BatchResult insertMultiRow(Collection<T> entities) {
+        if (entities.isEmpty()) return new BatchResult(0, 0, 0);
+        Class<?> entityClass = entities.iterator().next().getClass();
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        if (tableInfo == null) {
+            throw new MybatisPlusException("未找到实体对应的表信息:" + entityClass.getName());
+        }
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        List<Column> columns = columns(tableInfo, configuration);
+        int rows = Math.max(1, Math.min(batchProperties.getRowsPerStatement(), MAX_PARAMETERS / columns.size()));
+        return run(entityClass.getSimpleName(), entities, chunk -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                insertRows(connection, tableInfo, columns, chunk, rows, configuration);
+                return (long) chunk.size();
+            } catch (SQLException e) {
+                throw new MybatisPlusException(e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        });
+    }
+
+    /**
+     * 分段执行, 每段一个事务
+     */
+    private <T> BatchResult run(String name, Collection<T> items, Function<List<T>, Long> writer) {
+        long start = System.currentTimeMillis();
+        List<List<T>> chunks = split(items, batchProperties.getChunkSize());
+        long rows = 0;
+        if (chunks.size() <= 1 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (List<T> chunk : chunks) {
+                rows += transactionTemplate.execute(status -> writer.apply(chunk));
+            }
+        } else {
+            List<CompletableFuture<Long>> futures = new ArrayList<>(chunks.size());
+            for (List<T> chunk : chunks) {
+                futures.add(CompletableFuture.supplyAsync(
+                        () -> transactionTemplate.execute(status -> writer.apply(chunk)), executor));
+            }
+            try {
+                for (CompletableFuture<Long> future : futures) {
+                    rows += future.join();
+                }
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        BatchResult result = new BatchResult(rows, chunks.size(), System.currentTimeMillis() - start);
+        log.info("mybatis batch " + name + ": " + result.getRows() + " rows, " + result.getChunks() + " chunk(s), "
+                + result.getMillis() + "ms, " + result.getRowsPerSecond() + " rows/s");
+        return result;
+    }
+
+    private <T> void insertRows(Connection connection, TableInfo tableInfo, List<Column> columns, List<T> chunk,
+                                int rowsPerStatement, Configuration configuration) throws SQLException {
+        GlobalConfig globalConfig = GlobalConfigUtils.getGlobalConfig(configuration);
+        MetaObjectHandler metaObjectHandler = tableInfo.isWithInsertFill() ? globalConfig.getMetaObjectHandler() : null;
+        JdbcType jdbcTypeForNull = configuration.getJdbcTypeForNull();
+        int fullStatements = chunk.size() / rowsPerStatement;
+        int statementsPerFlush = Math.max(1, batchProperties.getFlushSize() / rowsPerStatement);
+        int index = 0;
+        if (fullStatements > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(tableInfo, columns, rowsPerStatement))) {
+                for (int i = 0; i < fullStatements; i++) {
+                    int parameter = 1;
+                    for (int row = 0; row < rowsPerStatement; row++) {
+                        parameter = bindRow(statement, parameter, chunk.get(index++), tableInfo, columns,
+                                globalConfig, metaObjectHandler, configuration, jdbcTypeForNull);
+                    }
+                    statement.addBatch();
+                    if ((i + 1) % statementsPerFlush == 0) {
+                        statement.executeBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+        }
+        int remaining = chunk.size() - index;
+        if (remaining > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(tableInfo, columns, remaining))) {
+                int parameter = 1;
+                while (index < chunk.size()) {
+                    parameter = bindRow(statement, parameter, chunk.get(index++), tableInfo, columns,
+                            globalConfig, metaObjectHandler, configuration, jdbcTypeForNull);
+                }
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int bindRow(PreparedStatement statement, int parameter, Object entity, TableInfo tableInfo,
+                               List<Column> columns, GlobalConfig globalConfig, MetaObjectHandler metaObjectHandler,
+                               Configuration configuration, JdbcType jdbcTypeForNull) throws SQLException {
+        MetaObject metaObject = configuration.newMetaObject(entity);
+        assignId(metaObject, tableInfo, globalConfig);
+        if (metaObjectHandler != null && metaObjectHandler.openInsertFill()) {
+            metaObjectHandler.insertFill(metaObject);
+        }
+        for (Column column : columns) {
+            Object value = metaObject.getValue(column.property);
+            JdbcType jdbcType = column.jdbcType == null && value == null ? jdbcTypeForNull : column.jdbcType;
+            ((TypeHandler<Object>) column.typeHandler).setParameter(statement, parameter++, value, jdbcType);
+        }
+        return parameter;
+    }
+
+    /**
+     * 与mybatis-plus insert一致的主键生成规则
+     */
+    private static void assignId(MetaObject metaObject, TableInfo tableInfo, GlobalConfig globalConfig) {
+        String keyProperty = tableInfo.getKeyProperty();
+        if (keyProperty == null || metaObject.getValue(keyProperty) != null) return;
+        // 已废弃的 ID_WORKER、ID_WORKER_STR、UUID 与 ASSIGN_ID、ASSIGN_UUID 的key相同, 按key比较一并处理
+        int idType = tableInfo.getIdType().getKey();
+        Object entity = metaObject.getOriginalObject();
+        if (idType == IdType.ASSIGN_ID.getKey()) {
+            Number id = globalConfig.getIdentifierGenerator().nextId(entity);
+            Class<?> keyType = tableInfo.getKeyType();
+            if (String.class.equals(keyType)) {
+                metaObject.setValue(keyProperty, id.toString());
+            } else if (Integer.class.equals(keyType) || int.class.equals(keyType)) {
+                metaObject.setValue(keyProperty, id.intValue());
+            } else {
+                metaObject.setValue(keyProperty, id.longValue());
+            }
+        } else if (idType == IdType.ASSIGN_UUID.getKey()) {
+            metaObject.setValue(keyProperty, globalConfig.getIdentifierGenerator().nextUUID(entity));
+        }
+    }
+
+    private static List<Column> columns(TableInfo tableInfo, Configuration configuration) {
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        List<Column> columns = new ArrayList<>();
+        if (tableInfo.getKeyColumn() != null && tableInfo.getIdType() != IdType.AUTO) {
+            columns.add(new Column(tableInfo.getKeyColumn(), tableInfo.getKeyProperty(), null,
+                    typeHandler(registry, tableInfo.getKeyType(), null)));
+        }
+        for (TableFieldInfo field : tableInfo.getFieldList()) {
+            TypeHandler<?> typeHandler = field.getTypeHandler() == null
+                    ? typeHandler(registry, field.getPropertyType(), field.getJdbcType())
+                    : registry.getInstance(field.getPropertyType(), field.getTypeHandler());
+            columns.add(new Column(field.getColumn(), field.getProperty(), field.getJdbcType(), typeHandler));
+        }
+        return columns;
+    }
+
+    private static TypeHandler<?> typeHandler(TypeHandlerRegistry registry, Class<?> type, JdbcType jdbcType) {
+        TypeHandler<?> typeHandler = registry.getTypeHandler(type, jdbcType);
+        return typeHandler == null ? registry.getUnknownTypeHandler() : typeHandler;
+    }
+
+    private static String insertSql(TableInfo tableInfo, List<Column> columns, int rows) {
+        StringBuilder row = new StringBuilder("(");
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableInfo.getTableName()).append(" (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+                row.append(',');
+            }
+            sql.append(columns.get(i).column);
+            row.append('?');
+        }
+        row.append(')');
+        sql.append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sql.append(',');
+            sql.append(row);
+        }
+        return sql.toString();
+    }
+
+    private static <T> List<List<T>> split(Collection<T> items, int chunkSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(Math.min(items.size(), chunkSize));
+        for (T item : items) {
+            chunk.add(item);
+            if (chunk.size() >= chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private static final class Column {
+        private final String column;
+        private final String property;
+        private final JdbcType jdbcType;
+        private final TypeHandler<?> typeHandler;
+
+        private Column(String column, String property, JdbcType jdbcType, TypeHandler<?> typeHandler) {
+            this.column = column;
+            this.property = property;
+            this.jdbcType = jdbcType;
+            this.typeHandler = typeHandler;
+        }
+    }
+}
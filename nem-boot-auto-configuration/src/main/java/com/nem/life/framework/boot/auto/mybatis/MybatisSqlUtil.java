@@ -0,0 +1,62 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * mybatis语句相关的工具方法
+ */
+final class MybatisSqlUtil {
+    private MybatisSqlUtil() {
+    }
+
+    /**
+     * 与 DefaultParameterHandler 相同的取值方式取出绑定参数
+     *
+     * @param mappedStatement 语句
+     * @param boundSql        sql
+     * @return 按占位符顺序的参数值
+     */
+    static List<Object> parameterValues(MappedStatement mappedStatement, BoundSql boundSql) {
+        Configuration configuration = mappedStatement.getConfiguration();
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        Object parameterObject = boundSql.getParameterObject();
+        MetaObject metaObject = null;
+        List<Object> values = new ArrayList<>(boundSql.getParameterMappings().size());
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            if (parameterMapping.getMode() == ParameterMode.OUT) continue;
+            String property = parameterMapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                if (metaObject == null) metaObject = configuration.newMetaObject(parameterObject);
+                value = metaObject.getValue(property);
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * 合并sql中的换行和连续空白, 便于打印
+     *
+     * @param sql sql
+     * @return 单行sql
+     */
+    static String compact(String sql) {
+        return sql.replaceAll("\\s+", " ").trim();
+    }
+}
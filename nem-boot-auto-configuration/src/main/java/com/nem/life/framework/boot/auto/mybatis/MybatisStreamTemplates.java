@@ -0,0 +1,287 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.toolkit.Constants;
+import com.nem.life.framework.boot.entity.PageParameter;
+import com.nem.life.framework.boot.entity.StreamingPageResult;
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * mybatis-plus 游标读取, 用于导出、对账等全表处理, 替代 PageParameter.fullPage()
+ * <p>
+ * 查询结果逐行交给消费者, 不在内存中生成完整的List; 可以按批消费, 也可以多线程并行消费,
+ * 并行时最多有 2 * parallelism 批在内存中, 读取速度受消费速度反压。
+ * 没有外层事务时在只读事务中读取, postgresql 只有在事务中 fetchSize 才生效, 开启读写分离时走从库。
+ * mysql使用 fetchSize = Integer.MIN_VALUE 逐行流式读取时, 读取完成前同一连接不能执行其他语句,
+ * 消费者中需要查库时请使用并行消费
+ * <pre>
+ * mybatisStreamTemplates.forEachChunk(OrderMapper.class, wrapper, orders -> exporter.write(orders));
+ * </pre>
+ */
+public class MybatisStreamTemplates implements DisposableBean {
+    private final SqlSessionFactory sqlSessionFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final StreamProperties streamProperties;
+    private final ExecutorService executor;
+
+    public MybatisStreamTemplates(SqlSessionFactory sqlSessionFactory, PlatformTransactionManager transactionManager,
+                                  StreamProperties streamProperties) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager == null
+                ? new DataSourceTransactionManager(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource())
+                : transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.streamProperties = streamProperties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mybatis-stream-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * 逐行读取 BaseMapper.selectList 的结果
+     *
+     * @param mapperClass mapper类型
+     * @param wrapper     查询条件, 可以为null
+     * @param consumer    每一行的处理
+     * @return 读取的行数
+     */
+    public <T> long forEach(Class<? extends BaseMapper<T>> mapperClass, Wrapper<T> wrapper, Consumer<T> consumer) {
+        return forEach(mapperClass.getName() + ".selectList", wrapperParameter(wrapper), consumer);
+    }
+
+    /**
+     * 逐行读取任意mapper语句的结果
+     *
+     * @param statement 语句id, mapper全类名.方法名
+     * @param parameter 参数
+     * @param consumer  每一行的处理
+     * @return 读取的行数
+     */
+    @SuppressWarnings("unchecked")
+    public <T> long forEach(String statement, Object parameter, Consumer<T> consumer) {
+        return read(sqlSession -> {
+            long[] count = {0};
+            sqlSession.select(statement, parameter, context -> {
+                consumer.accept((T) context.getResultObject());
+                count[0]++;
+            });
+            return count[0];
+        });
+    }
+
+    /**
+     * 逐行读取返回 Cursor 的mapper方法
+     *
+     * @param mapperClass mapper类型
+     * @param query       调用返回 Cursor 的mapper方法
+     * @param consumer    每一行的处理
+     * @return 读取的行数
+     */
+    public <M, T> long forEachCursor(Class<M> mapperClass, Function<M, Cursor<T>> query, Consumer<T> consumer) {
+        return read(sqlSession -> {
+            long count = 0;
+            try (Cursor<T> cursor = query.apply(sqlSession.getMapper(mapperClass))) {
+                for (T record : cursor) {
+                    consumer.accept(record);
+                    count++;
+                }
+            } catch (IOException e) {
+                throw new MybatisPlusException(e);
+            }
+            return count;
+        });
+    }
+
+    /**
+     * 按默认批大小分批消费
+     *
+     * @param mapperClass   mapper类型
+     * @param wrapper       查询条件, 可以为null
+     * @param chunkConsumer 每一批的处理
+     * @return 读取的行数
+     */
+    public <T> long forEachChunk(Class<? extends BaseMapper<T>> mapperClass, Wrapper<T> wrapper, Consumer<List<T>> chunkConsumer) {
+        return forEachChunk(mapperClass, wrapper, streamProperties.getChunkSize(), chunkConsumer);
+    }
+
+    /**
+     * 分批消费
+     *
+     * @param mapperClass   mapper类型
+     * @param wrapper       查询条件, 可以为null
+     * @param chunkSize     每批条数
+     * @param chunkConsumer 每一批的处理
+     * @return 读取的行数
+     */
+    public <T> long forEachChunk(Class<? extends BaseMapper<T>> mapperClass, Wrapper<T> wrapper, int chunkSize,
+                                 Consumer<List<T>> chunkConsumer) {
+        Chunker<T> chunker = new Chunker<>(chunkSize, chunkConsumer);
+        long count = forEach(mapperClass, wrapper, chunker);
+        chunker.flush();
+        return count;
+    }
+
+    /**
+     * 按默认批大小和并行度并行消费
+     *
+     * @param mapperClass   mapper类型
+     * @param wrapper       查询条件, 可以为null
+     * @param chunkConsumer 每一批的处理, 需要线程安全
+     * @return 读取的行数
+     */
+    public <T> long parallelForEachChunk(Class<? extends BaseMapper<T>> mapperClass, Wrapper<T> wrapper,
+                                         Consumer<List<T>> chunkConsumer) {
+        return parallelForEachChunk(mapperClass, wrapper, streamProperties.getChunkSize(),
+                streamProperties.getParallelism(), chunkConsumer);
+    }
+
+    /**
+     * 单线程读取, 多线程并行消费, 某一批处理失败时停止读取并抛出该异常
+     *
+     * @param mapperClass   mapper类型
+     * @param wrapper       查询条件, 可以为null
+     * @param chunkSize     每批条数
+     * @param parallelism   消费线程数
+     * @param chunkConsumer 每一批的处理, 需要线程安全
+     * @return 读取的行数
+     */
+    public <T> long parallelForEachChunk(Class<? extends BaseMapper<T>> mapperClass, Wrapper<T> wrapper, int chunkSize,
+                                         int parallelism, Consumer<List<T>> chunkConsumer) {
+        ParallelDispatcher<T> dispatcher = new ParallelDispatcher<>(Math.max(1, parallelism), chunkConsumer);
+        Chunker<T> chunker = new Chunker<>(chunkSize, dispatcher::submit);
+        long count;
+        try {
+            count = forEach(mapperClass, wrapper, chunker);
+            chunker.flush();
+        } finally {
+            dispatcher.await();
+        }
+        dispatcher.rethrow();
+        return count;
+    }
+
+    /**
+     * 流式输出的查询结果, 写响应时才执行查询, 所有记录作为第一页输出, 不统计总数
+     *
+     * @param mapperClass mapper类型
+     * @param wrapper     查询条件, 可以为null
+     * @param mapper      实体转换
+     * @return 流式分页结果
+     */
+    public <T, R> StreamingPageResult<R> streamingResult(Class<? extends BaseMapper<T>> mapperClass, Wrapper<T> wrapper,
+                                                         Function<T, R> mapper) {
+        return StreamingPageResult.of(PageParameter.fullPage(), (Integer) null,
+                consumer -> forEach(mapperClass, wrapper, (T record) -> consumer.accept(mapper.apply(record))));
+    }
+
+    private <R> R read(Function<SqlSession, R> action) {
+        return transactionTemplate.execute(status -> {
+            StreamFetchSizeInterceptor.setFetchSize(streamProperties.getFetchSize());
+            try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+                return action.apply(sqlSession);
+            } finally {
+                StreamFetchSizeInterceptor.setFetchSize(null);
+            }
+        });
+    }
+
+    /**
+     * 与 BaseMapper.selectList(@Param("ew") Wrapper) 相同的参数结构
+     */
+    private static Object wrapperParameter(Wrapper<?> wrapper) {
+        MapperMethod.ParamMap<Object> parameter = new MapperMethod.ParamMap<>();
+        parameter.put(Constants.WRAPPER, wrapper);
+        parameter.put("param1", wrapper);
+        return parameter;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private static final class Chunker<T> implements Consumer<T> {
+        private final int chunkSize;
+        private final Consumer<List<T>> chunkConsumer;
+        private List<T> chunk;
+
+        private Chunker(int chunkSize, Consumer<List<T>> chunkConsumer) {
+            this.chunkSize = Math.max(1, chunkSize);
+            this.chunkConsumer = chunkConsumer;
+            this.chunk = new ArrayList<>(this.chunkSize);
+        }
+
+        @Override
+        public void accept(T record) {
+            chunk.add(record);
+            if (chunk.size() >= chunkSize) flush();
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) return;
+            List<T> full = chunk;
+            chunk = new ArrayList<>(chunkSize);
+            chunkConsumer.accept(full);
+        }
+    }
+
+    private final class ParallelDispatcher<T> {
+        private final int permits;
+        private final Semaphore semaphore;
+        private final Consumer<List<T>> chunkConsumer;
+        private volatile RuntimeException error;
+
+        private ParallelDispatcher(int parallelism, Consumer<List<T>> chunkConsumer) {
+            this.permits = parallelism * 2;
+            this.semaphore = new Semaphore(permits);
+            this.chunkConsumer = chunkConsumer;
+        }
+
+        private void submit(List<T> chunk) {
+            rethrow();
+            semaphore.acquireUninterruptibly();
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (error == null) chunkConsumer.accept(chunk);
+                    } catch (RuntimeException e) {
+                        error = e;
+                    } finally {
+                        semaphore.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                semaphore.release();
+                throw e;
+            }
+        }
+
+        private void await() {
+            semaphore.acquireUninterruptibly(permits);
+            semaphore.release(permits);
+        }
+
+        private void rethrow() {
+            if (error != null) throw error;
+        }
+    }
+}
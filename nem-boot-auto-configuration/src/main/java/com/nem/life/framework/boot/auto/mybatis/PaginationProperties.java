@@ -0,0 +1,23 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "nem.mybatis.pagination")
+public class PaginationProperties {
+    /**
+     * 默认总数缓存秒数, 小于等于0不缓存; PageParameter.countCacheSeconds 优先
+     */
+    private Integer countCacheSeconds = 0;
+
+    /**
+     * 本地缓存的总数条数上限
+     */
+    private Integer countCacheSize = 10000;
+
+    /**
+     * count语句是否去掉不影响总数的left join
+     */
+    private Boolean optimizeJoin = true;
+}
@@ -0,0 +1,133 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.Data;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * 单个mapper语句的统计
+ * <p>
+ * 计数 getter 从启动开始单调递增, 用于导出指标; snapshot 是上次 reset 之后的统计, reset 不影响已导出的计数
+ */
+public class SqlStatistics {
+    private final String id;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder repeated = new LongAdder();
+    private volatile long rowsBase;
+    private volatile long slowBase;
+    private volatile long errorsBase;
+    private volatile long repeatedBase;
+    private volatile LongConsumer latencyRecorder;
+
+    SqlStatistics(String id) {
+        this.id = id;
+    }
+
+    void record(long nanos, long rowCount, boolean isSlow, boolean failed) {
+        latency.record(nanos);
+        LongConsumer recorder = latencyRecorder;
+        if (recorder != null) recorder.accept(nanos);
+        rows.add(rowCount);
+        if (isSlow) slow.increment();
+        if (failed) errors.increment();
+    }
+
+    void recordRepeated() {
+        repeated.increment();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 每次执行的耗时回调, 用于导出直方图
+     *
+     * @param latencyRecorder 纳秒耗时回调
+     */
+    void setLatencyRecorder(LongConsumer latencyRecorder) {
+        this.latencyRecorder = latencyRecorder;
+    }
+
+    /**
+     * @return 上次 reset 之后的耗时分布
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getSlow() {
+        return slow.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRepeated() {
+        return repeated.sum();
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        long count = latency.getCount();
+        snapshot.setId(id);
+        snapshot.setCount(count);
+        snapshot.setRows(rows.sum() - rowsBase);
+        snapshot.setSlow(slow.sum() - slowBase);
+        snapshot.setErrors(errors.sum() - errorsBase);
+        snapshot.setRepeated(repeated.sum() - repeatedBase);
+        snapshot.setAvgMillis(count == 0 ? 0D : latency.getTotalNanos() / 1_000_000D / count);
+        snapshot.setMaxMillis(latency.getMaxNanos() / 1_000_000D);
+        snapshot.setP50(latency.percentile(0.5));
+        snapshot.setP95(latency.percentile(0.95));
+        snapshot.setP99(latency.percentile(0.99));
+        snapshot.setBuckets(latency.buckets());
+        return snapshot;
+    }
+
+    /**
+     * 只重置 snapshot 的起点, 计数本身不清零
+     */
+    void reset() {
+        latency.reset();
+        rowsBase = rows.sum();
+        slowBase = slow.sum();
+        errorsBase = errors.sum();
+        repeatedBase = repeated.sum();
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * mapper语句id
+         */
+        private String id;
+        private long count;
+        /**
+         * 查询返回的行数或更新影响的行数
+         */
+        private long rows;
+        private long slow;
+        private long errors;
+        /**
+         * 同一请求内重复执行被告警的次数
+         */
+        private long repeated;
+        private double avgMillis;
+        private double maxMillis;
+        private long p50;
+        private long p95;
+        private long p99;
+        private Map<String, Long> buckets;
+    }
+}
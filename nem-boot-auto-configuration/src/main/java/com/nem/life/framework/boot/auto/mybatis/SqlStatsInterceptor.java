@@ -0,0 +1,197 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * sql耗时统计插件
+ * <p>
+ * 按mapper语句id记录耗时直方图、返回行数、慢sql和异常次数; 超过阈值的语句打印慢sql日志;
+ * 按 repeatSampleRate 抽样web请求, 被抽中的请求内记录每条语句和参数的执行次数, 同样的查询重复执行时告警, 通常是循环里查库;
+ * 未抽中的请求不生成参数key
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})
+})
+public class SqlStatsInterceptor implements Interceptor {
+    private static final String REQUEST_ATTRIBUTE = SqlStatsInterceptor.class.getName() + ".statements";
+    private static final Object NOT_SAMPLED = new Object();
+
+    private final SqlStatsProperties properties;
+    private final ConcurrentMap<String, SqlStatistics> statistics = new ConcurrentHashMap<>();
+    private volatile Consumer<SqlStatistics> statisticsListener;
+
+    public SqlStatsInterceptor(SqlStatsProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        long start = System.nanoTime();
+        Object result = null;
+        boolean failed = true;
+        try {
+            result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            record(mappedStatement, args, result, nanos, failed);
+        }
+    }
+
+    /**
+     * 所有语句的统计
+     *
+     * @return 语句id -> 统计
+     */
+    public Map<String, SqlStatistics.Snapshot> getStatistics() {
+        Map<String, SqlStatistics.Snapshot> result = new LinkedHashMap<>();
+        statistics.forEach((id, stats) -> result.put(id, stats.snapshot()));
+        return result;
+    }
+
+    /**
+     * 单个语句的统计
+     *
+     * @param id mapper语句id
+     * @return 未执行过时为null
+     */
+    public SqlStatistics getStatistics(String id) {
+        return statistics.get(id);
+    }
+
+    /**
+     * 第一次执行某个语句时回调, 已有的语句立即回调, 用于注册指标
+     *
+     * @param statisticsListener 回调
+     */
+    public void setStatisticsListener(Consumer<SqlStatistics> statisticsListener) {
+        this.statisticsListener = statisticsListener;
+        statistics.values().forEach(statisticsListener);
+    }
+
+    public void reset() {
+        statistics.values().forEach(SqlStatistics::reset);
+    }
+
+    private void record(MappedStatement mappedStatement, Object[] args, Object result, long nanos, boolean failed) {
+        try {
+            String id = mappedStatement.getId();
+            boolean slow = nanos >= properties.getSlowThreshold().toNanos();
+            long rows = rows(result);
+            SqlStatistics stats = statistics(id);
+            stats.record(nanos, rows, slow, failed);
+            BoundSql boundSql = null;
+            if (slow) {
+                boundSql = boundSql(mappedStatement, args);
+                log.warn("slow sql " + id + " " + nanos / 1_000_000 + "ms rows=" + rows + ": "
+                        + MybatisSqlUtil.compact(boundSql.getSql()) + parameters(mappedStatement, boundSql));
+            }
+            int repeatThreshold = properties.getRepeatThreshold();
+            if (repeatThreshold <= 0 || properties.getRepeatSampleRate() <= 0) return;
+            Map<String, Integer> executed = executed();
+            if (executed == null) return;
+            if (boundSql == null) boundSql = boundSql(mappedStatement, args);
+            checkRepeated(executed, stats, mappedStatement, boundSql, repeatThreshold);
+        } catch (Exception e) {
+            log.debug("record sql statistics failed", e);
+        }
+    }
+
+    private SqlStatistics statistics(String id) {
+        SqlStatistics stats = statistics.get(id);
+        if (stats != null) return stats;
+        SqlStatistics created = new SqlStatistics(id);
+        stats = statistics.putIfAbsent(id, created);
+        if (stats != null) return stats;
+        Consumer<SqlStatistics> listener = statisticsListener;
+        if (listener != null) listener.accept(created);
+        return created;
+    }
+
+    /**
+     * 请求内第一条语句决定是否抽中
+     *
+     * @return 未抽中或不在web请求内时为null
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Integer> executed() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) return null;
+        Object executed = requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (executed == null) {
+            double sampleRate = properties.getRepeatSampleRate();
+            executed = sampleRate >= 1D || ThreadLocalRandom.current().nextDouble() < sampleRate
+                    ? new HashMap<String, Integer>() : NOT_SAMPLED;
+            requestAttributes.setAttribute(REQUEST_ATTRIBUTE, executed, RequestAttributes.SCOPE_REQUEST);
+        }
+        return executed == NOT_SAMPLED ? null : (Map<String, Integer>) executed;
+    }
+
+    private void checkRepeated(Map<String, Integer> executed, SqlStatistics stats, MappedStatement mappedStatement,
+                               BoundSql boundSql, int repeatThreshold) {
+        List<Object> values = MybatisSqlUtil.parameterValues(mappedStatement, boundSql);
+        String key = mappedStatement.getId() + "|" + boundSql.getSql() + "|" + values;
+        int times = executed.merge(key, 1, Integer::sum);
+        if (times == repeatThreshold) {
+            stats.recordRepeated();
+            log.warn("repeated sql " + mappedStatement.getId() + " executed " + times + " times in one request: "
+                    + MybatisSqlUtil.compact(boundSql.getSql()) + parameters(mappedStatement, boundSql));
+        }
+    }
+
+    private String parameters(MappedStatement mappedStatement, BoundSql boundSql) {
+        if (!Boolean.TRUE.equals(properties.getLogParameters())) return "";
+        List<Object> values = MybatisSqlUtil.parameterValues(mappedStatement, boundSql);
+        if (!Boolean.TRUE.equals(properties.getRedactParameters())) return " params=" + values;
+        StringBuilder redacted = new StringBuilder(" params=[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) redacted.append(", ");
+            Object value = values.get(i);
+            if (value == null) {
+                redacted.append("null");
+            } else {
+                redacted.append(value.getClass().getSimpleName());
+                if (value instanceof CharSequence) redacted.append('(').append(((CharSequence) value).length()).append(')');
+            }
+        }
+        return redacted.append(']').toString();
+    }
+
+    private static BoundSql boundSql(MappedStatement mappedStatement, Object[] args) {
+        return args.length == 6 ? (BoundSql) args[5] : mappedStatement.getBoundSql(args[1]);
+    }
+
+    private static long rows(Object result) {
+        if (result instanceof Collection) return ((Collection<?>) result).size();
+        if (result instanceof Number) return ((Number) result).longValue();
+        return 0L;
+    }
+}
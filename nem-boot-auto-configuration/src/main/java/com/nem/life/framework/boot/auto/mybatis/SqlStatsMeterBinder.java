@@ -0,0 +1,57 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sql统计指标, 按mapper语句id打 statement 标签, 语句第一次执行时注册
+ * <ul>
+ * <li>nem.mybatis.sql 耗时Timer, 次数、总耗时、最大耗时, 按 LatencyHistogram 的分桶发布直方图;
+ * 需要更细的分桶时用 management.metrics.distribution.percentiles-histogram.nem.mybatis.sql 开启</li>
+ * <li>nem.mybatis.sql.rows 返回或影响的行数</li>
+ * <li>nem.mybatis.sql.slow 慢sql次数</li>
+ * <li>nem.mybatis.sql.errors 异常次数</li>
+ * <li>nem.mybatis.sql.repeated 请求内重复执行告警次数</li>
+ * </ul>
+ */
+public class SqlStatsMeterBinder implements MeterBinder {
+    private static final Duration[] SLA = new Duration[LatencyHistogram.BOUNDS.length];
+
+    static {
+        for (int i = 0; i < SLA.length; i++) {
+            SLA[i] = Duration.ofMillis(LatencyHistogram.BOUNDS[i]);
+        }
+    }
+
+    private final SqlStatsInterceptor interceptor;
+
+    public SqlStatsMeterBinder(SqlStatsInterceptor interceptor) {
+        this.interceptor = interceptor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        interceptor.setStatisticsListener(stats -> register(registry, stats));
+    }
+
+    private static void register(MeterRegistry registry, SqlStatistics stats) {
+        Tags tags = Tags.of("statement", stats.getId());
+        Timer timer = Timer.builder("nem.mybatis.sql")
+                .tags(tags).description("sql执行耗时").sla(SLA).register(registry);
+        stats.setLatencyRecorder(nanos -> timer.record(nanos, TimeUnit.NANOSECONDS));
+        FunctionCounter.builder("nem.mybatis.sql.rows", stats, SqlStatistics::getRows)
+                .tags(tags).description("sql返回或影响的行数").register(registry);
+        FunctionCounter.builder("nem.mybatis.sql.slow", stats, SqlStatistics::getSlow)
+                .tags(tags).description("慢sql次数").register(registry);
+        FunctionCounter.builder("nem.mybatis.sql.errors", stats, SqlStatistics::getErrors)
+                .tags(tags).description("sql异常次数").register(registry);
+        FunctionCounter.builder("nem.mybatis.sql.repeated", stats, SqlStatistics::getRepeated)
+                .tags(tags).description("请求内重复执行sql的告警次数").register(registry);
+    }
+}
@@ -0,0 +1,40 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.mybatis.sql-stats")
+public class SqlStatsProperties {
+    /**
+     * 是否统计sql耗时
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 超过该耗时的语句打印慢sql日志
+     */
+    private Duration slowThreshold = Duration.ofSeconds(1);
+
+    /**
+     * 慢sql日志是否打印绑定参数
+     */
+    private Boolean logParameters = true;
+
+    /**
+     * 打印参数时是否脱敏, 只打印类型和长度
+     */
+    private Boolean redactParameters = false;
+
+    /**
+     * 同一个请求内同样的语句和参数执行达到该次数时告警, 小于等于0不检测
+     */
+    private Integer repeatThreshold = 3;
+
+    /**
+     * 检测重复执行的请求比例 0 ~ 1, 被抽中的请求内每条语句都要生成参数key; 默认0不检测
+     */
+    private Double repeatSampleRate = 0D;
+}
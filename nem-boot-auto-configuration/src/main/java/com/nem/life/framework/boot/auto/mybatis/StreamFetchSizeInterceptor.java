@@ -0,0 +1,36 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * 游标读取时覆盖语句的fetchSize, 其他查询不受影响
+ */
+@Intercepts({@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})})
+public class StreamFetchSizeInterceptor implements Interceptor {
+    private static final ThreadLocal<Integer> FETCH_SIZE = new ThreadLocal<>();
+
+    static void setFetchSize(Integer fetchSize) {
+        if (fetchSize == null) {
+            FETCH_SIZE.remove();
+        } else {
+            FETCH_SIZE.set(fetchSize);
+        }
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        Integer fetchSize = FETCH_SIZE.get();
+        if (fetchSize != null && result instanceof Statement) {
+            ((Statement) result).setFetchSize(fetchSize);
+        }
+        return result;
+    }
+}
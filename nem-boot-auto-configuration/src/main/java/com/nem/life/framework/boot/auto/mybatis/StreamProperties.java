@@ -0,0 +1,24 @@
+package com.nem.life.framework.boot.auto.mybatis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "nem.mybatis.stream")
+public class StreamProperties {
+    /**
+     * 游标读取时每次从数据库拉取的行数;
+     * mysql需要在连接串加 useCursorFetch=true 才按该值分批拉取, 也可以配置为 -2147483648 使用逐行流式读取
+     */
+    private Integer fetchSize = 1000;
+
+    /**
+     * 分批消费时每批的条数
+     */
+    private Integer chunkSize = 500;
+
+    /**
+     * 并行消费时的线程数
+     */
+    private Integer parallelism = 4;
+}
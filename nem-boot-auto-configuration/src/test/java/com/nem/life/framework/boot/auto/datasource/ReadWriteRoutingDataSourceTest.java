@@ -0,0 +1,119 @@
+package com.nem.life.framework.boot.auto.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReadWriteRoutingDataSourceTest {
+    private static final long STICKY_WINDOW_MILLIS = 200;
+
+    private final DataSource primary = mock(DataSource.class);
+    private final DataSource replica0 = mock(DataSource.class);
+    private final DataSource replica1 = mock(DataSource.class);
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection replica0Connection = mock(Connection.class);
+    private final Connection replica1Connection = mock(Connection.class);
+    private ReadWriteRoutingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica0.getConnection()).thenReturn(replica0Connection);
+        when(replica1.getConnection()).thenReturn(replica1Connection);
+        ReadWriteDataSourceProperties properties = new ReadWriteDataSourceProperties();
+        properties.setStickyWindow(Duration.ofMillis(STICKY_WINDOW_MILLIS));
+        properties.setFailureThreshold(1);
+        dataSource = new ReadWriteRoutingDataSource(primary, Arrays.asList(replica0, replica1), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        assertThat(ReadWriteContext.isCleared()).isTrue();
+    }
+
+    @Test
+    void primaryByDefault() {
+        assertThat(route()).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void replicaReadRoundRobin() {
+        Set<Connection> routed = new HashSet<>();
+        for (int i = 0; i < 4; i++) routed.add(ReadWriteContext.replica(this::route));
+
+        assertThat(routed).containsExactlyInAnyOrder(replica0Connection, replica1Connection);
+    }
+
+    @Test
+    void primaryInsideReplica() {
+        assertThat(ReadWriteContext.replica(() -> ReadWriteContext.primary(this::route))).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void transactions() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(route()).isIn(replica0Connection, replica1Connection);
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        assertThat(ReadWriteContext.replica(this::route)).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void stickyWindowAfterWrite() {
+        try (ReadWriteContext.Scope scope = ReadWriteContext.open()) {
+            ReadWriteContext.markWrite();
+            assertThat(ReadWriteContext.replica(this::route)).isSameAs(primaryConnection);
+
+            long later = System.currentTimeMillis() + STICKY_WINDOW_MILLIS;
+            assertThat(ReadWriteContext.replica(() -> ReadWriteContext.isReplicaRead(STICKY_WINDOW_MILLIS, later)))
+                    .isTrue();
+            ReadWriteContext.markWrite();
+        }
+        assertThat(ReadWriteContext.isCleared()).isTrue();
+        assertThat(ReadWriteContext.replica(this::route)).isIn(replica0Connection, replica1Connection);
+    }
+
+    @Test
+    void lastWriteClearedAfterWindowWithoutScope() {
+        ReadWriteContext.markWrite();
+        assertThat(ReadWriteContext.isCleared()).isFalse();
+
+        long later = System.currentTimeMillis() + STICKY_WINDOW_MILLIS;
+        assertThat(ReadWriteContext.replica(() -> ReadWriteContext.isReplicaRead(STICKY_WINDOW_MILLIS, later))).isTrue();
+        assertThat(ReadWriteContext.isCleared()).isTrue();
+    }
+
+    @Test
+    void failingReplicasFallBackToPrimary() throws SQLException {
+        when(replica0.getConnection()).thenThrow(new SQLException("replica-0 is down"));
+        when(replica1.getConnection()).thenThrow(new SQLException("replica-1 is down"));
+
+        assertThat(ReadWriteContext.replica(this::route)).isSameAs(primaryConnection);
+        assertThat(dataSource.getHealthyReplicas()).isEmpty();
+    }
+
+    private Connection route() {
+        try {
+            return dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
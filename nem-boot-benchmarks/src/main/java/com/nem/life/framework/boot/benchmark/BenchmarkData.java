@@ -0,0 +1,89 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.plugin.mongodb.MongoChild;
+import com.nem.life.framework.boot.plugin.mongodb.MongoEntity;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 基准使用的样例数据
+ */
+public final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    public static Order order(int index, int itemCount) {
+        Order order = new Order();
+        order.setId(String.format("%024x", index));
+        order.setOrderNo("NO" + (1000000 + index));
+        order.setUserId(10000L + index);
+        order.setAmount(new BigDecimal("99.90").add(BigDecimal.valueOf(index)));
+        order.setStatus(index % 4);
+        order.setRemark("benchmark order " + index);
+        order.setCreateTime(new Date(1577836800000L + index * 1000L));
+        List<OrderItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrderId(order.getId());
+            item.setSku("SKU" + i);
+            item.setQuantity(i + 1);
+            item.setPrice(new BigDecimal("19.90"));
+            items.add(item);
+        }
+        order.setItems(items);
+        return order;
+    }
+
+    public static List<Order> orders(int size, int itemCount) {
+        List<Order> orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            orders.add(order(i, itemCount));
+        }
+        return orders;
+    }
+
+    @Data
+    @MongoEntity
+    public static class Order {
+        @Id
+        private String id;
+        private String orderNo;
+        private Long userId;
+        private BigDecimal amount;
+        private Integer status;
+        private String remark;
+        private Date createTime;
+        @MongoChild
+        private List<OrderItem> items;
+    }
+
+    @Data
+    @MongoEntity
+    public static class OrderItem {
+        @Id
+        private String orderId;
+        private String sku;
+        private Integer quantity;
+        private BigDecimal price;
+    }
+
+    @Data
+    public static class OrderVo {
+        private String id;
+        private String orderNo;
+        private BigDecimal amount;
+
+        public static OrderVo of(Order order) {
+            OrderVo vo = new OrderVo();
+            vo.setId(order.getId());
+            vo.setOrderNo(order.getOrderNo());
+            vo.setAmount(order.getAmount());
+            return vo;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nem.life.framework.boot.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基准入口, 默认输出json结果, 便于不同版本之间对比
+ * <pre>
+ * mvn -pl nem-boot-benchmarks -am package
+ * java -jar nem-boot-benchmarks/target/benchmarks.jar                     # 全部, 结果写入 jmh-result.json
+ * java -jar nem-boot-benchmarks/target/benchmarks.jar JsonUtil -rff 0.0.3.json
+ * </pre>
+ * 其余参数与 JMH 命令行相同, 显式传入 -rf 时不再追加默认值
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.add("-rf");
+            arguments.add("json");
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.add("-rff");
+            arguments.add("jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
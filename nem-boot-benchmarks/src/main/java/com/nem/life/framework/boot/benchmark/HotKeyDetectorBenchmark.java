@@ -0,0 +1,53 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.plugin.redis.hotkey.HotKeyDetector;
+import com.nem.life.framework.boot.plugin.redis.hotkey.HotKeyProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点key探测每个命令的额外开销, 10%的访问集中在一个key上, 其余分散在10万个key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotKeyDetectorBenchmark {
+    @Param({"0.1", "1"})
+    private double sampleRate;
+
+    private HotKeyDetector detector;
+    private byte[][] keys;
+
+    @Setup
+    public void setup() {
+        HotKeyProperties properties = new HotKeyProperties();
+        properties.setSampleRate(sampleRate);
+        detector = new HotKeyDetector(properties);
+        keys = new byte[100_000][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ("benchmark:order:" + i).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        int index = ThreadLocalRandom.current().nextInt(keys.length * 10 / 9);
+        detector.record(keys[index < keys.length ? index : 0], false);
+    }
+}
@@ -0,0 +1,22 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.plugin.mongodb.MongoChild;
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 联表查询基准的主表, MongoTemplates 以类名作为集合名, 内部类的集合名含$不能使用
+ */
+@Data
+public class JoinOrder {
+    @Id
+    private String id;
+    private String orderNo;
+    private Integer status;
+    private BigDecimal amount;
+    @MongoChild
+    private List<JoinOrderItem> items;
+}
@@ -0,0 +1,18 @@
+package com.nem.life.framework.boot.benchmark;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+
+import java.math.BigDecimal;
+
+/**
+ * 联表查询基准的从表, 关联字段为 &#64;Id
+ */
+@Data
+public class JoinOrderItem {
+    @Id
+    private String orderId;
+    private String sku;
+    private Integer quantity;
+    private BigDecimal price;
+}
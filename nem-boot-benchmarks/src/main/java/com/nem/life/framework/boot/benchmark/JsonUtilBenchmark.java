@@ -0,0 +1,65 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JsonUtil 各种转换
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilBenchmark {
+    @Param({"1", "100"})
+    private int size;
+
+    private BenchmarkData.Order order;
+    private List<BenchmarkData.Order> orders;
+    private String orderJson;
+    private String ordersJson;
+
+    @Setup
+    public void setup() {
+        order = BenchmarkData.order(1, 3);
+        orders = BenchmarkData.orders(size, 3);
+        orderJson = JsonUtil.objectToJson(order);
+        ordersJson = JsonUtil.objectToJson(orders);
+    }
+
+    @Benchmark
+    public String objectToJson() {
+        return JsonUtil.objectToJson(orders);
+    }
+
+    @Benchmark
+    public BenchmarkData.Order jsonToPojo() {
+        return JsonUtil.jsonToPojo(orderJson, BenchmarkData.Order.class);
+    }
+
+    @Benchmark
+    public List<BenchmarkData.Order> jsonToList() {
+        return JsonUtil.jsonToList(ordersJson, BenchmarkData.Order.class);
+    }
+
+    @Benchmark
+    public Map<String, Object> objectToMap() {
+        return JsonUtil.objectToMap(order);
+    }
+}
@@ -0,0 +1,106 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.mongodb.MongoClientSettings;
+import com.nem.life.framework.boot.plugin.mongodb.MongoEntities;
+import com.nem.life.framework.boot.plugin.mongodb.MongoEntityMetadata;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成的编解码器 与 DocumentCodec + MappingMongoConverter 解码同一份BSON的对比, 以及实体元数据的初始化开销;
+ * BSON由 MappingMongoConverter 写出, 与 MongoTemplate 存储的格式相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoCodecBenchmark {
+    @Param({"3", "50"})
+    private int itemCount;
+
+    private byte[] bson;
+    private MappingMongoConverter converter;
+    private DocumentCodec documentCodec;
+    private Codec<BenchmarkData.Order> generatedCodec;
+
+    @Setup
+    public void setup() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        documentCodec = new DocumentCodec();
+        generatedCodec = CodecRegistries.fromRegistries(CodecRegistries.fromProviders(new MongoEntities()),
+                MongoClientSettings.getDefaultCodecRegistry()).get(BenchmarkData.Order.class);
+
+        BenchmarkData.Order order = BenchmarkData.order(1, itemCount);
+        Document document = new Document();
+        converter.write(order, document);
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        documentCodec.encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+        bson = buffer.toByteArray();
+        if (!order.equals(springConverter()) || !order.equals(generatedCodec())) {
+            throw new IllegalStateException("generated codec decoded a different order");
+        }
+    }
+
+    @Benchmark
+    public BenchmarkData.Order springConverter() {
+        Document document = documentCodec.decode(reader(), DecoderContext.builder().build());
+        return converter.read(BenchmarkData.Order.class, document);
+    }
+
+    @Benchmark
+    public BenchmarkData.Order generatedCodec() {
+        return generatedCodec.decode(reader(), DecoderContext.builder().build());
+    }
+
+    /**
+     * 新的 MongoMappingContext 解析实体, 相当于启动时每个实体的反射开销
+     */
+    @Benchmark
+    public MongoPersistentEntity<?> mappingContextMetadata() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.getPersistentEntity(BenchmarkData.OrderItem.class);
+        return mappingContext.getPersistentEntity(BenchmarkData.Order.class);
+    }
+
+    /**
+     * 生成的元数据, 不需要反射
+     */
+    @Benchmark
+    public String generatedMetadata() {
+        MongoEntityMetadata<BenchmarkData.Order> metadata = new BenchmarkData_Order_MongoMeta();
+        return metadata.getObjectName() + metadata.getIdName() + metadata.getChildName();
+    }
+
+    private BsonBinaryReader reader() {
+        return new BsonBinaryReader(ByteBuffer.wrap(bson));
+    }
+}
@@ -0,0 +1,110 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.nem.life.framework.boot.plugin.mongodb.MongoJoinEngine;
+import com.nem.life.framework.boot.plugin.mongodb.MongoJoinProperties;
+import com.nem.life.framework.boot.plugin.mongodb.MongoPageHelper;
+import com.nem.life.framework.boot.plugin.mongodb.MongoTemplates;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDbFactory;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MongoTemplates.selectJoin 两种执行方式: 服务端 $lookup 与应用端分批 $in, 需要mongo服务,
+ * 地址由 -Dmongo.uri 指定, 默认 mongodb://localhost:27017; 数据写入 benchmark_join 库, 结束后删除
+ * <pre>
+ * java -Dmongo.uri=mongodb://127.0.0.1:27017 -jar nem-boot-benchmarks/target/benchmarks.jar MongoJoin
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MongoJoinBenchmark {
+    @Param({"1000", "20000"})
+    private int orderCount;
+
+    @Param({"500"})
+    private int batchSize;
+
+    @Param({"1", "4"})
+    private int parallelism;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private MongoTemplates mongoTemplates;
+
+    @Setup
+    public void setup() {
+        mongoClient = MongoClients.create(System.getProperty("mongo.uri", "mongodb://localhost:27017"));
+        mongoTemplate = new MongoTemplate(new SimpleMongoClientDbFactory(mongoClient, "benchmark_join"));
+        mongoTemplate.getDb().drop();
+        List<JoinOrder> orders = new ArrayList<>(orderCount);
+        List<JoinOrderItem> items = new ArrayList<>(orderCount);
+        for (BenchmarkData.Order source : BenchmarkData.orders(orderCount, 1)) {
+            JoinOrder order = new JoinOrder();
+            order.setId(source.getId());
+            order.setOrderNo(source.getOrderNo());
+            order.setStatus(source.getStatus());
+            order.setAmount(source.getAmount());
+            orders.add(order);
+            BenchmarkData.OrderItem sourceItem = source.getItems().get(0);
+            JoinOrderItem item = new JoinOrderItem();
+            item.setOrderId(sourceItem.getOrderId());
+            item.setSku(sourceItem.getSku());
+            item.setQuantity(sourceItem.getQuantity());
+            item.setPrice(sourceItem.getPrice());
+            items.add(item);
+        }
+        mongoTemplate.insert(orders, "joinOrder");
+        mongoTemplate.insert(items, "joinOrderItem");
+
+        MongoJoinProperties properties = new MongoJoinProperties();
+        properties.setBatchSize(batchSize);
+        properties.setParallelism(parallelism);
+        mongoTemplates = new MongoTemplates(new MongoPageHelper(mongoTemplate), mongoTemplate);
+        mongoTemplates.setMongoJoinProperties(properties);
+        int lookup = lookup().size();
+        int batched = batched().size();
+        if (lookup != batched) {
+            throw new IllegalStateException("lookup returned " + lookup + " orders, batched returned " + batched);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.getDb().drop();
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public List<JoinOrder> lookup() {
+        return mongoTemplates.selectJoin(JoinOrder.class, JoinOrderItem.class,
+                Criteria.where("status").in(1, 2), null, JoinOrder.class, MongoJoinEngine.LOOKUP);
+    }
+
+    @Benchmark
+    public List<JoinOrder> batched() {
+        return mongoTemplates.selectJoin(JoinOrder.class, JoinOrderItem.class,
+                Criteria.where("status").in(1, 2), null, JoinOrder.class, MongoJoinEngine.BATCHED);
+    }
+}
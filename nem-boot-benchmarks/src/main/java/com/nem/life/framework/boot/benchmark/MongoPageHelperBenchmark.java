@@ -0,0 +1,65 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.entity.PageParameter;
+import com.nem.life.framework.boot.entity.PageResult;
+import com.nem.life.framework.boot.plugin.mongodb.MongoPageHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MongoPageHelper 分页: 查询条件构建、页码计算和结果转换, 不访问数据库
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoPageHelperBenchmark {
+    @Param({"20", "500"})
+    private int pageSize;
+
+    private StubMongoTemplate mongoTemplate;
+    private MongoPageHelper mongoPageHelper;
+
+    @Setup
+    public void setup() {
+        mongoTemplate = StubMongoTemplate.create(BenchmarkData.orders(pageSize, 3), 100000);
+        mongoPageHelper = new MongoPageHelper(mongoTemplate);
+        // StubMongoTemplate 只覆盖了find, 不走生成的编解码器
+        mongoPageHelper.setCodecEnabled(false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.close();
+    }
+
+    @Benchmark
+    public PageResult<BenchmarkData.OrderVo> offsetPage() {
+        Query query = new Query(Criteria.where("status").is(1).and("userId").gte(10000L));
+        return mongoPageHelper.pageQuery(query, BenchmarkData.Order.class, new PageParameter<>(3, pageSize, null),
+                BenchmarkData.OrderVo::of);
+    }
+
+    @Benchmark
+    public PageResult<BenchmarkData.OrderVo> lastIdPage() {
+        Query query = new Query(Criteria.where("status").is(1).and("userId").gte(10000L));
+        return mongoPageHelper.pageQuery(query, BenchmarkData.Order.class, new PageParameter<>(3, pageSize, null),
+                BenchmarkData.OrderVo::of, "5e0bd2f0a1b2c3d4e5f60718");
+    }
+}
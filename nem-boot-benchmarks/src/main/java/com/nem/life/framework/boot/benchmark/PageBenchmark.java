@@ -0,0 +1,65 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.nem.life.framework.boot.entity.PageParameter;
+import com.nem.life.framework.boot.entity.PageResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * PageParameter 转 mybatis-plus 分页、keyset条件, 以及 PageResult 的记录转换
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageBenchmark {
+    @Param({"20", "500"})
+    private int pageSize;
+
+    private List<BenchmarkData.Order> orders;
+
+    @Setup
+    public void setup() {
+        orders = BenchmarkData.orders(pageSize, 3);
+    }
+
+    @Benchmark
+    public Page<BenchmarkData.Order> convertMpPage() {
+        return new PageParameter<BenchmarkData.Order>(3, pageSize, null).convertMpPage();
+    }
+
+    @Benchmark
+    public String keysetWrapper() {
+        PageParameter<BenchmarkData.Order> pageParameter = new PageParameter<>(1, pageSize, 1000L);
+        QueryWrapper<BenchmarkData.Order> wrapper = pageParameter.keyset(new QueryWrapper<BenchmarkData.Order>().eq("status", 1));
+        return wrapper.getCustomSqlSegment();
+    }
+
+    @Benchmark
+    public PageResult<BenchmarkData.OrderVo> mapPageResult() {
+        PageResult<BenchmarkData.OrderVo> pageResult = new PageResult<>();
+        pageResult.setPage(3);
+        pageResult.setPageSize(pageSize);
+        pageResult.setTotal(100000);
+        pageResult.setPageNumber((int) Math.ceil(100000 / (double) pageSize));
+        pageResult.setRecords(orders.stream().map(BenchmarkData.OrderVo::of).collect(Collectors.toList()));
+        return pageResult;
+    }
+}
@@ -0,0 +1,102 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.plugin.redis.bucket.RedisBuckets;
+import com.nem.life.framework.boot.plugin.redis.configuration.RedisConfiguration;
+import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 普通key与分桶存储的内存对比, 不是JMH基准: 分别写入同样的数据, 比较 INFO memory 中 used_memory 的增量, 写完删除
+ * <pre>
+ * mvn -pl nem-boot-benchmarks -am package
+ * java -Dredis.host=127.0.0.1 -Dredis.port=6379 -Dredis.database=15 -Dkeys=1000000 \
+ *      -cp nem-boot-benchmarks/target/benchmarks.jar com.nem.life.framework.boot.benchmark.RedisBucketMemoryBenchmark
+ * </pre>
+ * 桶数为 keys / 100, 每个桶约100个字段, 低于默认的 hash-max-listpack-entries(hash-max-ziplist-entries) 128;
+ * 结果与redis版本、分配器和值的大小有关, 请在目标版本上运行
+ */
+public class RedisBucketMemoryBenchmark {
+    private static final String PLAIN_PREFIX = "benchmark:plain:";
+    private static final String BUCKET_PREFIX = "benchmark:bucket:";
+    private static final int BATCH = 1000;
+
+    public static void main(String[] args) {
+        int keys = Integer.getInteger("keys", 1_000_000);
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "127.0.0.1"), Integer.getInteger("redis.port", 6379));
+        configuration.setDatabase(Integer.getInteger("redis.database", 15));
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        try {
+            RedisTemplates<Object, Object> redisTemplates = new RedisTemplates<>();
+            redisTemplates.setKeySerializer(new StringRedisSerializer());
+            redisTemplates.setValueSerializer(RedisConfiguration.jackson2JsonRedisSerializer());
+            redisTemplates.setHashKeySerializer(new StringRedisSerializer());
+            redisTemplates.setHashValueSerializer(RedisConfiguration.jackson2JsonRedisSerializer());
+            redisTemplates.setConnectionFactory(connectionFactory);
+            redisTemplates.afterPropertiesSet();
+            redisTemplates.setRedisBuckets(new RedisBuckets(
+                    Collections.singletonMap(BUCKET_PREFIX, Math.max(1, keys / 100))));
+
+            long plain = measure(redisTemplates, PLAIN_PREFIX, keys);
+            long bucketed = measure(redisTemplates, BUCKET_PREFIX, keys);
+            System.out.println("keys=" + keys + " value=" + value(0).length() + " chars");
+            System.out.println("plain    used_memory +" + plain + " bytes, " + plain / keys + " bytes/key");
+            System.out.println("bucketed used_memory +" + bucketed + " bytes, " + bucketed / keys + " bytes/key, encoding="
+                    + encoding(redisTemplates, BUCKET_PREFIX + RedisBuckets.BUCKET_SEPARATOR + "0"));
+            System.out.printf("saved %.1f%%%n", 100.0 * (plain - bucketed) / plain);
+        } finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static long measure(RedisTemplates<Object, Object> redisTemplates, String prefix, int keys) {
+        long before = usedMemory(redisTemplates);
+        List<Object> written = new ArrayList<>(BATCH);
+        Map<Object, Object> batch = new LinkedHashMap<>(BATCH * 2);
+        for (int i = 0; i < keys; i++) {
+            batch.put(prefix + i, value(i));
+            if (batch.size() >= BATCH || i == keys - 1) {
+                redisTemplates.multiSet(batch);
+                batch.clear();
+            }
+        }
+        long used = usedMemory(redisTemplates) - before;
+        for (int i = 0; i < keys; i++) {
+            written.add(prefix + i);
+            if (written.size() >= BATCH || i == keys - 1) {
+                redisTemplates.multiDel(written);
+                written.clear();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * 小的用户数据, 序列化后约40字节, 不超过 hash-max-listpack-value 64
+     */
+    private static String value(int index) {
+        return "u" + index + ":lv" + (index % 60) + ":" + (1577836800 + index);
+    }
+
+    private static long usedMemory(RedisTemplates<Object, Object> redisTemplates) {
+        Properties info = redisTemplates.execute((RedisCallback<Properties>) connection -> connection.info("memory"));
+        return Long.parseLong(info.getProperty("used_memory"));
+    }
+
+    private static String encoding(RedisTemplates<Object, Object> redisTemplates, String key) {
+        return String.valueOf(redisTemplates.execute((RedisCallback<Object>) connection ->
+                connection.encodingOf(key.getBytes(StandardCharsets.UTF_8))));
+    }
+}
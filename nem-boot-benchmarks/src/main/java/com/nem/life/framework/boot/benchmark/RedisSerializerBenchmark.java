@@ -0,0 +1,76 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.nem.life.framework.boot.plugin.redis.configuration.RedisConfiguration;
+import com.nem.life.framework.boot.plugin.redis.mybatis.CompactCacheSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RedisConfiguration 中的value序列化, 以及mybatis二级缓存的紧凑序列化
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisSerializerBenchmark {
+    @Param({"1", "100"})
+    private int size;
+
+    private final StringRedisSerializer keySerializer = new StringRedisSerializer();
+    private Jackson2JsonRedisSerializer<Object> valueSerializer;
+    private CompactCacheSerializer compactSerializer;
+    private List<BenchmarkData.Order> orders;
+    private byte[] jsonBytes;
+    private byte[] compactBytes;
+
+    @Setup
+    public void setup() {
+        valueSerializer = RedisConfiguration.jackson2JsonRedisSerializer();
+        compactSerializer = new CompactCacheSerializer(1024);
+        orders = new ArrayList<>(BenchmarkData.orders(size, 3));
+        jsonBytes = valueSerializer.serialize(orders);
+        compactBytes = compactSerializer.serialize(orders);
+    }
+
+    @Benchmark
+    public byte[] serializeKey() {
+        return keySerializer.serialize("order:detail:" + size);
+    }
+
+    @Benchmark
+    public byte[] jacksonSerialize() {
+        return valueSerializer.serialize(orders);
+    }
+
+    @Benchmark
+    public Object jacksonDeserialize() {
+        return valueSerializer.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public byte[] compactSerialize() {
+        return compactSerializer.serialize(orders);
+    }
+
+    @Benchmark
+    public Object compactDeserialize() {
+        return compactSerializer.deserialize(compactBytes);
+    }
+}
@@ -0,0 +1,58 @@
+package com.nem.life.framework.boot.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDbFactory;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+
+/**
+ * 不访问数据库的MongoTemplate, 只生成查询和聚合文档并返回固定结果,
+ * 用于测量条件构建、分页计算和结果转换的开销; mongo客户端是惰性连接的, 不需要mongo服务
+ */
+public class StubMongoTemplate extends MongoTemplate {
+    private final MongoClient mongoClient;
+    private final List<?> documents;
+    private final long total;
+
+    public StubMongoTemplate(MongoClient mongoClient, List<?> documents, long total) {
+        super(new SimpleMongoClientDbFactory(mongoClient, "benchmark"));
+        this.mongoClient = mongoClient;
+        this.documents = documents;
+        this.total = total;
+    }
+
+    public static StubMongoTemplate create(List<?> documents, long total) {
+        return new StubMongoTemplate(MongoClients.create("mongodb://localhost:27017"), documents, total);
+    }
+
+    @Override
+    public long count(Query query, Class<?> entityClass) {
+        query.getQueryObject();
+        return total;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> find(Query query, Class<T> entityClass) {
+        query.getQueryObject();
+        query.getSortObject();
+        return (List<T>) documents;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <O> AggregationResults<O> aggregate(Aggregation aggregation, String collectionName, Class<O> outputType) {
+        aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT);
+        return new AggregationResults<>((List<O>) documents, new Document());
+    }
+
+    public void close() {
+        mongoClient.close();
+    }
+}
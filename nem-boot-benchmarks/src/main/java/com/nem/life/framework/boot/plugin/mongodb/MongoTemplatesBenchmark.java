@@ -0,0 +1,68 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import com.nem.life.framework.boot.benchmark.BenchmarkData;
+import com.nem.life.framework.boot.benchmark.StubMongoTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * MongoTemplates 的反射工具方法和联表聚合构建; 与插件同包以访问包内方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoTemplatesBenchmark {
+    private StubMongoTemplate mongoTemplate;
+    private MongoTemplates mongoTemplates;
+
+    @Setup
+    public void setup() {
+        mongoTemplate = StubMongoTemplate.create(BenchmarkData.orders(20, 3), 20);
+        mongoTemplates = new MongoTemplates(new MongoPageHelper(mongoTemplate), mongoTemplate);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoTemplate.close();
+    }
+
+    @Benchmark
+    public String getObjectName() {
+        return MongoTemplates.getObjectName(BenchmarkData.Order.class);
+    }
+
+    @Benchmark
+    public String getMongoIdName() {
+        return MongoTemplates.getMongoIdName(BenchmarkData.Order.class);
+    }
+
+    @Benchmark
+    public String mongoChildName() {
+        return MongoTemplates.mongoChildName(BenchmarkData.Order.class);
+    }
+
+    @Benchmark
+    public List<BenchmarkData.Order> select() {
+        return mongoTemplates.select(BenchmarkData.Order.class, BenchmarkData.OrderItem.class,
+                Aggregation.match(where("status").is(1)), Aggregation.match(where("items.quantity").gt(1)),
+                BenchmarkData.Order.class);
+    }
+}
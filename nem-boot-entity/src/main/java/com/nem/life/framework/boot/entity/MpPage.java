@@ -0,0 +1,22 @@
+package com.nem.life.framework.boot.entity;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+
+/**
+ * 带总数缓存设置的mybatis-plus分页, 由 PageParameter.convertMpPage 创建
+ */
+public class MpPage<T> extends Page<T> {
+    /**
+     * 总数缓存秒数, 小于等于0不缓存
+     */
+    private int countCacheSeconds;
+
+    public int getCountCacheSeconds() {
+        return countCacheSeconds;
+    }
+
+    public MpPage<T> setCountCacheSeconds(int countCacheSeconds) {
+        this.countCacheSeconds = countCacheSeconds;
+        return this;
+    }
+}
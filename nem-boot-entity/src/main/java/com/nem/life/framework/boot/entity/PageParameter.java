@@ -1,6 +1,10 @@
 package com.nem.life.framework.boot.entity;
 
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.ISqlSegment;
+import com.baomidou.mybatisplus.core.conditions.segments.NormalSegmentList;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -12,6 +16,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Builder
 public class PageParameter<T> {
+    private static final String ID = "id";
+
     @ApiModelProperty(name = "page", value = "第几页[默认1]", required = false, example = "1")
     private Integer page;
 
@@ -21,6 +27,24 @@ public class PageParameter<T> {
     @ApiModelProperty(name = "lastId", value = "最后一个id", required = false, example = "10")
     private Long lastId;
 
+    /**
+     * 是否查询总数, 只能由服务端设置, 不从请求中绑定
+     */
+    @JsonIgnore
+    @ApiModelProperty(value = "是否查询总数[默认是]", hidden = true)
+    private Boolean searchCount;
+
+    /**
+     * 总数缓存秒数, 只能由服务端设置, 不从请求中绑定
+     */
+    @JsonIgnore
+    @ApiModelProperty(value = "总数缓存秒数[默认不缓存]", hidden = true)
+    private Integer countCacheSeconds;
+
+    public PageParameter(Integer page, Integer pageSize, Long lastId) {
+        this(page, pageSize, lastId, null, null);
+    }
+
     public Integer getPage() {
         return page == null ? 1 : page;
     }
@@ -29,14 +53,99 @@ public class PageParameter<T> {
         return pageSize == null ? 20 : pageSize;
     }
 
+    public Boolean getSearchCount() {
+        return searchCount == null ? Boolean.TRUE : searchCount;
+    }
+
+    public Integer getCountCacheSeconds() {
+        return countCacheSeconds == null ? 0 : countCacheSeconds;
+    }
+
+    /**
+     * 是否按lastId做游标分页: WHERE id > lastId ORDER BY id, 不再使用offset
+     *
+     * @return 是否游标分页
+     */
+    public boolean isKeyset() {
+        return lastId != null && lastId > 0;
+    }
+
+    /**
+     * 不分页, 全部结果一次性加载到内存; 导出、对账等大数据量场景请使用 MybatisStreamTemplates 游标读取
+     *
+     * @return 页大小为999999999的分页参数
+     */
     public static PageParameter fullPage() {
         return new PageParameter(1, 999999999, 0L);
     }
 
     public Page<T> convertMpPage() {
-        Page<T> page = new Page<>();
+        MpPage<T> page = new MpPage<>();
         page.setCurrent(this.getPage());
         page.setSize(this.getPageSize());
+        page.setSearchCount(this.getSearchCount());
+        page.setCountCacheSeconds(this.getCountCacheSeconds());
+        return page;
+    }
+
+    /**
+     * 游标分页: lastId &gt; 0 时给查询条件加上 id &gt; lastId 并按id升序, 返回第1页且不查询总数; 否则与 convertMpPage 相同
+     *
+     * @param wrapper 查询条件
+     * @return mybatis-plus分页
+     */
+    public <W extends AbstractWrapper<T, String, W>> Page<T> convertKeysetMpPage(W wrapper) {
+        return convertKeysetMpPage(wrapper, ID);
+    }
+
+    /**
+     * 游标分页: lastId &gt; 0 时给查询条件加上 idColumn &gt; lastId 并按idColumn升序, 返回第1页; 否则与 convertMpPage 相同;
+     * 带游标的count只统计lastId之后的记录, 不是总数, 所以游标分页不查询总数, 需要总数时在第一页(lastId为空)查询
+     *
+     * @param wrapper  查询条件
+     * @param idColumn 自增主键列
+     * @return mybatis-plus分页
+     */
+    public <R, W extends AbstractWrapper<T, R, W>> Page<T> convertKeysetMpPage(W wrapper, R idColumn) {
+        Page<T> page = convertMpPage();
+        if (isKeyset()) {
+            keyset(wrapper, idColumn);
+            page.setCurrent(1);
+            page.setSearchCount(false);
+        }
         return page;
     }
+
+    /**
+     * 游标分页时给查询条件加上 id > lastId 并按id升序, 分页请使用 convertKeysetMpPage
+     *
+     * @param wrapper 查询条件
+     * @return 查询条件
+     */
+    public <W extends AbstractWrapper<T, String, W>> W keyset(W wrapper) {
+        return keyset(wrapper, ID);
+    }
+
+    /**
+     * 游标分页时给查询条件加上 idColumn > lastId 并按idColumn升序;
+     * 已有的条件先整体加括号, eq(a).or().eq(b) 变成 (a OR b) AND id > lastId, 不会因为优先级变成 a OR (b AND id > lastId)
+     *
+     * @param wrapper  查询条件
+     * @param idColumn 自增主键列
+     * @return 查询条件
+     */
+    public <R, W extends AbstractWrapper<T, R, W>> W keyset(W wrapper, R idColumn) {
+        if (isKeyset()) {
+            NormalSegmentList normal = wrapper.getExpression().getNormal();
+            if (!normal.isEmpty()) {
+                // 已有条件渲染为 (...), 替换成一个整体片段; 参数已经在 paramNameValuePairs 中, 不受影响;
+                // 直接放入列表, 不经过 addAll 的关键字处理, 之后的 and 会重新渲染
+                String conditions = normal.getSqlSegment();
+                normal.clear();
+                normal.add((ISqlSegment) () -> conditions);
+            }
+            wrapper.and(w -> w.gt(idColumn, lastId)).orderByAsc(idColumn);
+        }
+        return wrapper;
+    }
 }
@@ -0,0 +1,243 @@
+package com.nem.life.framework.boot.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.nem.life.framework.boot.util.JsonUtil;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 流式输出的分页结果, 与 {@link PageResult} 结构相同, records 边读边写, 不在内存中保存完整列表
+ * <p>
+ * JSON格式: {"page":1,"pageSize":20,"total":100,"pageNumber":5,"records":[...]};
+ * NDJSON格式: 第一行是分页信息, 之后每行一条记录。
+ * 每写满 flushRecords 条或 flushBytes 字节刷新一次响应。
+ * 总数可以传入 {@link Supplier}, 在写响应时才统计, 控制器返回前不会执行count查询
+ * <pre>
+ * &#64;GetMapping("/export")
+ * public ResponseEntity&lt;StreamingResponseBody&gt; export(PageParameter&lt;OrderVo&gt; pageParameter) {
+ *     return mongoPageHelper.streamQuery(query, Order.class, pageParameter, OrderVo::of).toResponseEntity();
+ * }
+ * </pre>
+ */
+public class StreamingPageResult<T> implements StreamingResponseBody {
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final Integer page;
+    private final Integer pageSize;
+    private final Supplier<Integer> totalSupplier;
+    private Integer total;
+    private Integer pageNumber;
+    private boolean totalResolved;
+    private final RecordSource<T> source;
+    private Format format = Format.JSON;
+    private int flushRecords = 500;
+    private int flushBytes = 64 * 1024;
+    private ObjectMapper objectMapper = JsonUtil.getMapper();
+    private volatile long written;
+
+    public StreamingPageResult(Integer page, Integer pageSize, Integer total, Integer pageNumber, RecordSource<T> source) {
+        this.page = page;
+        this.pageSize = pageSize;
+        this.totalSupplier = null;
+        this.total = total;
+        this.pageNumber = pageNumber;
+        this.totalResolved = true;
+        this.source = source;
+    }
+
+    private StreamingPageResult(Integer page, Integer pageSize, Supplier<Integer> totalSupplier, RecordSource<T> source) {
+        this.page = page;
+        this.pageSize = pageSize;
+        this.totalSupplier = totalSupplier;
+        this.source = source;
+    }
+
+    /**
+     * 按分页参数创建
+     *
+     * @param pageParameter 分页参数
+     * @param total         总数, 未统计时为null
+     * @param source        记录来源, 例如mongo stream或mybatis游标
+     * @return 流式分页结果
+     */
+    public static <T> StreamingPageResult<T> of(PageParameter<?> pageParameter, Integer total, RecordSource<T> source) {
+        Integer pageNumber = total == null ? null : (int) Math.ceil(total / (double) pageParameter.getPageSize());
+        return new StreamingPageResult<>(pageParameter.getPage(), pageParameter.getPageSize(), total, pageNumber, source);
+    }
+
+    /**
+     * 按分页参数创建, 总数在写响应时才统计
+     *
+     * @param pageParameter 分页参数
+     * @param total         总数统计, 为null或返回null时不输出总数
+     * @param source        记录来源, 例如mongo stream或mybatis游标
+     * @return 流式分页结果
+     */
+    public static <T> StreamingPageResult<T> of(PageParameter<?> pageParameter, Supplier<Integer> total, RecordSource<T> source) {
+        return new StreamingPageResult<>(pageParameter.getPage(), pageParameter.getPageSize(), total, source);
+    }
+
+    public StreamingPageResult<T> format(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    public StreamingPageResult<T> flushRecords(int flushRecords) {
+        this.flushRecords = Math.max(1, flushRecords);
+        return this;
+    }
+
+    public StreamingPageResult<T> flushBytes(int flushBytes) {
+        this.flushBytes = Math.max(1, flushBytes);
+        return this;
+    }
+
+    public StreamingPageResult<T> objectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        return this;
+    }
+
+    /**
+     * 已写出的记录数
+     *
+     * @return 记录数
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    /**
+     * 总数, 延迟统计时首次调用才执行查询
+     *
+     * @return 总数, 未统计时为null
+     */
+    public synchronized Integer getTotal() {
+        if (!totalResolved) {
+            total = totalSupplier == null ? null : totalSupplier.get();
+            pageNumber = total == null || pageSize == null ? null : (int) Math.ceil(total / (double) pageSize);
+            totalResolved = true;
+        }
+        return total;
+    }
+
+    /**
+     * 带Content-Type的响应
+     *
+     * @return ResponseEntity
+     */
+    public ResponseEntity<StreamingResponseBody> toResponseEntity() {
+        return ResponseEntity.ok()
+                .contentType(format == Format.NDJSON ? APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(this);
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        CountingOutputStream counting = new CountingOutputStream(outputStream);
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(counting);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        boolean ndjson = format == Format.NDJSON;
+        generator.writeStartObject();
+        writeMeta(generator);
+        if (ndjson) {
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } else {
+            generator.writeArrayFieldStart("records");
+        }
+        generator.flush();
+        long[] flushed = {counting.count, 0};
+        try {
+            source.forEach(record -> {
+                try {
+                    writer.writeValue(generator, record);
+                    if (ndjson) generator.writeRaw('\n');
+                    written++;
+                    long buffered = counting.count + Math.max(0, generator.getOutputBuffered()) - flushed[0];
+                    if (++flushed[1] >= flushRecords || buffered >= flushBytes) {
+                        generator.flush();
+                        flushed[0] = counting.count;
+                        flushed[1] = 0;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!ndjson) {
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+        generator.close();
+        outputStream.flush();
+    }
+
+    private void writeMeta(JsonGenerator generator) throws IOException {
+        writeNumber(generator, "page", page);
+        writeNumber(generator, "pageSize", pageSize);
+        writeNumber(generator, "total", getTotal());
+        writeNumber(generator, "pageNumber", pageNumber);
+    }
+
+    private static void writeNumber(JsonGenerator generator, String name, Integer value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeNumberField(name, value);
+        }
+    }
+
+    public enum Format {
+        /**
+         * 与PageResult相同的json对象
+         */
+        JSON,
+        /**
+         * 每行一个json
+         */
+        NDJSON
+    }
+
+    /**
+     * 记录来源, 在写响应时才执行查询, 逐条交给consumer
+     */
+    @FunctionalInterface
+    public interface RecordSource<T> {
+        void forEach(Consumer<? super T> consumer);
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
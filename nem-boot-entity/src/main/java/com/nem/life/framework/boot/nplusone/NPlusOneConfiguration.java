@@ -0,0 +1,31 @@
+package com.nem.life.framework.boot.nplusone;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * N+1 查询检测, nem.n-plus-one.enabled=false 关闭; 有actuator时注册 nplusone 端点
+ */
+@ConditionalOnProperty(prefix = "nem.n-plus-one", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(NPlusOneProperties.class)
+@Configuration
+public class NPlusOneConfiguration {
+
+    @Bean
+    public NPlusOneDetector nPlusOneDetector(NPlusOneProperties nPlusOneProperties) {
+        return new NPlusOneDetector(nPlusOneProperties);
+    }
+
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    @Configuration
+    static class NPlusOneEndpointConfiguration {
+
+        @Bean
+        public NPlusOneEndpoint nPlusOneEndpoint(NPlusOneDetector nPlusOneDetector) {
+            return new NPlusOneEndpoint(nPlusOneDetector);
+        }
+    }
+}
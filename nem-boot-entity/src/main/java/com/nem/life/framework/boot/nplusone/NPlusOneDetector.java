@@ -0,0 +1,169 @@
+package com.nem.life.framework.boot.nplusone;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 请求内 N+1 查询检测
+ * <p>
+ * 按 sampleRate 抽取web请求, 抽中的请求在请求属性中记录每种查询形状的执行次数, 达到阈值时记录一次调用栈并告警;
+ * 没有web请求的线程不检测。形状只在抽中的请求内计算
+ */
+@Slf4j
+public class NPlusOneDetector {
+    private static final String REQUEST_ATTRIBUTE = NPlusOneDetector.class.getName() + ".queries";
+    private static final Object NOT_SAMPLED = new Object();
+
+    private final NPlusOneProperties properties;
+    private final ConcurrentMap<String, Offender> offenders = new ConcurrentHashMap<>();
+
+    public NPlusOneDetector(NPlusOneProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 记录一次查询
+     *
+     * @param source 来源, mongo / mybatis
+     * @param shape  查询形状, 只在请求被抽中时计算
+     */
+    public void record(String source, Supplier<String> shape) {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) return;
+        RequestQueries queries = queries(requestAttributes);
+        if (queries == null) return;
+        try {
+            String key = source + " " + shape.get();
+            int times = queries.increment(key, properties.getMaxShapes());
+            int threshold = properties.getThreshold();
+            if (threshold <= 0 || times < threshold) return;
+            Offender offender = offenders.get(key);
+            if (offender == null) {
+                if (offenders.size() >= properties.getMaxReports()) return;
+                offender = offenders.computeIfAbsent(key, k -> new Offender(source, k.substring(source.length() + 1)));
+            }
+            offender.maxCalls.accumulateAndGet(times, Math::max);
+            if (times == threshold) crossed(offender, requestAttributes, times);
+        } catch (Exception e) {
+            log.debug("record n+1 query failed", e);
+        }
+    }
+
+    /**
+     * @return 问题查询, 按达到阈值的请求数倒序
+     */
+    public List<NPlusOneReport> getReports() {
+        List<NPlusOneReport> reports = new ArrayList<>(offenders.size());
+        for (Offender offender : offenders.values()) reports.add(offender.report());
+        reports.sort(Comparator.comparing(NPlusOneReport::getRequests).reversed());
+        return reports;
+    }
+
+    public void reset() {
+        offenders.clear();
+    }
+
+    private void crossed(Offender offender, RequestAttributes requestAttributes, int times) {
+        offender.requests.incrementAndGet();
+        String uri = requestAttributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) requestAttributes).getRequest().getRequestURI() : null;
+        offender.lastUri = uri;
+        List<String> callSite = callSite();
+        synchronized (offender.callSites) {
+            if (offender.callSites.size() < properties.getMaxSamples() && !offender.callSites.contains(callSite)) {
+                offender.callSites.add(callSite);
+            }
+        }
+        log.warn("n+1 query " + offender.source + " " + offender.shape + " executed " + times + " times in one request, uri="
+                + uri + " at " + callSite);
+    }
+
+    private List<String> callSite() {
+        StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        List<String> frames = new ArrayList<>(properties.getStackDepth());
+        for (StackTraceElement element : stackTrace) {
+            if (frames.size() >= properties.getStackDepth()) break;
+            String className = element.getClassName();
+            if (className.contains("$$") || className.startsWith("com.sun.proxy.") || skipped(className)) continue;
+            frames.add(element.toString());
+        }
+        return frames;
+    }
+
+    private boolean skipped(String className) {
+        for (String prefix : properties.getSkipPackages()) {
+            if (className.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 第一次查询时决定是否抽中, 没抽中的请求保存占位对象
+     */
+    private RequestQueries queries(RequestAttributes requestAttributes) {
+        Object queries = requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (queries == null) {
+            queries = ThreadLocalRandom.current().nextDouble() < properties.getSampleRate() ? new RequestQueries() : NOT_SAMPLED;
+            requestAttributes.setAttribute(REQUEST_ATTRIBUTE, queries, RequestAttributes.SCOPE_REQUEST);
+        }
+        return queries == NOT_SAMPLED ? null : (RequestQueries) queries;
+    }
+
+    /**
+     * 一个请求内每种形状的执行次数, 请求内的异步调用也可能访问, 加锁
+     */
+    private static final class RequestQueries {
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        synchronized int increment(String key, int maxShapes) {
+            Integer times = counts.get(key);
+            if (times == null) {
+                if (counts.size() >= maxShapes) return 0;
+                times = 0;
+            }
+            counts.put(key, ++times);
+            return times;
+        }
+    }
+
+    private static final class Offender {
+        private final String source;
+        private final String shape;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong maxCalls = new AtomicLong();
+        private final List<List<String>> callSites = new ArrayList<>();
+        private volatile String lastUri;
+
+        Offender(String source, String shape) {
+            this.source = source;
+            this.shape = shape;
+        }
+
+        NPlusOneReport report() {
+            NPlusOneReport report = new NPlusOneReport();
+            report.setSource(source);
+            report.setShape(shape);
+            report.setRequests(requests.get());
+            report.setMaxCalls(maxCalls.get());
+            report.setLastUri(lastUri);
+            synchronized (callSites) {
+                report.setCallSites(Collections.unmodifiableList(new ArrayList<>(callSites)));
+            }
+            return report;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nem.life.framework.boot.nplusone;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * 抽样请求中发现的 N+1 查询, 需要 management.endpoints.web.exposure.include 包含 nplusone
+ */
+@Endpoint(id = "nplusone")
+public class NPlusOneEndpoint {
+    private final NPlusOneDetector nPlusOneDetector;
+
+    public NPlusOneEndpoint(NPlusOneDetector nPlusOneDetector) {
+        this.nPlusOneDetector = nPlusOneDetector;
+    }
+
+    @ReadOperation
+    public List<NPlusOneReport> reports() {
+        return nPlusOneDetector.getReports();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        nPlusOneDetector.reset();
+    }
+}
@@ -0,0 +1,55 @@
+package com.nem.life.framework.boot.nplusone;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "nem.n-plus-one")
+public class NPlusOneProperties {
+    /**
+     * 是否检测web请求内的 N+1 查询, MongoTemplates 和 mybatis 查询语句
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 检测的请求比例, 0到1; 没有抽中的请求只多一次请求属性读取
+     */
+    private Double sampleRate = 0.01;
+
+    /**
+     * 同一个请求内同样形状的查询执行达到该次数时记为 N+1, 参数不同也算同一形状
+     */
+    private Integer threshold = 10;
+
+    /**
+     * 每个请求最多跟踪的查询形状数, 超过后新的形状不再统计
+     */
+    private Integer maxShapes = 64;
+
+    /**
+     * 最多保留的问题查询数
+     */
+    private Integer maxReports = 200;
+
+    /**
+     * 每个问题查询保留的不同调用位置数
+     */
+    private Integer maxSamples = 3;
+
+    /**
+     * 调用位置保留的栈帧数
+     */
+    private Integer stackDepth = 6;
+
+    /**
+     * 调用位置中跳过的包前缀, 剩下的通常是业务代码
+     */
+    private List<String> skipPackages = new ArrayList<>(Arrays.asList(
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "org.springframework.", "org.apache.ibatis.",
+            "com.baomidou.", "com.mongodb.", "org.mongodb.", "org.bson.", "io.undertow.", "org.xnio.",
+            "com.nem.life.framework.boot."));
+}
@@ -0,0 +1,36 @@
+package com.nem.life.framework.boot.nplusone;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 一种 N+1 查询, 次数为抽样请求内的统计
+ */
+@Data
+public class NPlusOneReport {
+    /**
+     * mongo / mybatis
+     */
+    private String source;
+    /**
+     * 查询形状, mongo为方法、实体和去掉值的查询条件, mybatis为语句id
+     */
+    private String shape;
+    /**
+     * 达到阈值的请求数
+     */
+    private Long requests;
+    /**
+     * 单个请求内的最多执行次数
+     */
+    private Long maxCalls;
+    /**
+     * 最近一次的请求地址
+     */
+    private String lastUri;
+    /**
+     * 调用位置, 每个是一段栈
+     */
+    private List<List<String>> callSites;
+}
@@ -0,0 +1,226 @@
+package com.nem.life.framework.boot.requestcache;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 请求内读取去重
+ * <p>
+ * 范围是当前web请求, 没有web请求的线程(定时任务、消息消费)用 open() 声明一个工作单元, 都没有时直接读取;
+ * 同一范围内同样的读取只访问一次数据源, 并发的同样读取等待同一次访问; 同一来源的写入使该范围内的缓存失效;
+ * 范围结束即丢弃, 不会跨请求读到旧数据
+ * <pre>
+ * try (RequestCache.Scope scope = requestCache.open()) {
+ *     handle(message);
+ * }
+ * </pre>
+ */
+public class RequestCache {
+    private static final String REQUEST_ATTRIBUTE = RequestCache.class.getName() + ".entries";
+    private static final ThreadLocal<Entries> SCOPE = new ThreadLocal<>();
+    private static final Scope NOOP = () -> {
+    };
+
+    private final RequestCacheProperties properties;
+    private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<>();
+
+    public RequestCache(RequestCacheProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 开始一个工作单元, 已在web请求或工作单元内时不创建新的范围
+     *
+     * @return 范围, 关闭时丢弃缓存
+     */
+    public Scope open() {
+        if (SCOPE.get() != null || RequestContextHolder.getRequestAttributes() != null) return NOOP;
+        SCOPE.set(new Entries());
+        return SCOPE::remove;
+    }
+
+    /**
+     * 读取, 同一范围内同样的 source 和 key 只调用一次 loader, null 也缓存; loader 异常时不缓存
+     *
+     * @param source 来源, 失效以来源为单位
+     * @param key    读取条件, 需要实现 equals 和 hashCode
+     * @param loader 实际读取
+     * @param <T>    结果类型
+     * @return 结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String source, Object key, Supplier<T> loader) {
+        Entries entries = entries();
+        if (entries == null) return loader.get();
+        Statistics stats = statistics(source);
+        Key cacheKey = new Key(source, key);
+        CompletableFuture<Object> existing = entries.values.get(cacheKey);
+        if (existing == null) {
+            if (entries.values.size() >= properties.getMaxEntries()) {
+                stats.misses.increment();
+                return loader.get();
+            }
+            CompletableFuture<Object> loading = new CompletableFuture<>();
+            existing = entries.values.putIfAbsent(cacheKey, loading);
+            if (existing == null) {
+                stats.misses.increment();
+                return (T) load(entries, cacheKey, loading, loader);
+            }
+        }
+        if (existing.isDone()) {
+            stats.hits.increment();
+        } else {
+            stats.coalesced.increment();
+        }
+        try {
+            return (T) existing.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * 失效当前范围内一个读取
+     *
+     * @param source 来源
+     * @param key    读取条件
+     */
+    public void invalidate(String source, Object key) {
+        Entries entries = entries();
+        if (entries == null) return;
+        if (entries.values.remove(new Key(source, key)) != null) statistics(source).invalidations.increment();
+    }
+
+    /**
+     * 失效当前范围内一个来源的所有读取, 写入条件无法对应到读取条件时使用
+     *
+     * @param source 来源
+     */
+    public void invalidateAll(String source) {
+        Entries entries = entries();
+        if (entries == null) return;
+        if (entries.values.keySet().removeIf(key -> key.source.equals(source))) statistics(source).invalidations.increment();
+    }
+
+    /**
+     * @return 每种来源的统计, 按命中数倒序
+     */
+    public List<RequestCacheReport> getReports() {
+        List<RequestCacheReport> reports = new ArrayList<>(statistics.size());
+        for (Map.Entry<String, Statistics> entry : statistics.entrySet()) {
+            Statistics stats = entry.getValue();
+            RequestCacheReport report = new RequestCacheReport();
+            report.setSource(entry.getKey());
+            report.setHits(stats.hits.sum());
+            report.setCoalesced(stats.coalesced.sum());
+            report.setMisses(stats.misses.sum());
+            report.setInvalidations(stats.invalidations.sum());
+            reports.add(report);
+        }
+        reports.sort(Comparator.comparing(RequestCacheReport::getHits).reversed());
+        return reports;
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    private Object load(Entries entries, Key cacheKey, CompletableFuture<Object> loading, Supplier<?> loader) {
+        Object value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            entries.values.remove(cacheKey, loading);
+            loading.completeExceptionally(e);
+            throw e;
+        }
+        loading.complete(value);
+        return value;
+    }
+
+    private Statistics statistics(String source) {
+        Statistics stats = statistics.get(source);
+        return stats != null ? stats : statistics.computeIfAbsent(source, s -> new Statistics());
+    }
+
+    /**
+     * 工作单元优先, 其次是web请求; 请求属性在第一次读取时创建
+     */
+    private Entries entries() {
+        Entries entries = SCOPE.get();
+        if (entries != null) return entries;
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) return null;
+        Object attribute = requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (attribute == null) {
+            synchronized (requestAttributes) {
+                attribute = requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (attribute == null) {
+                    attribute = new Entries();
+                    requestAttributes.setAttribute(REQUEST_ATTRIBUTE, attribute, RequestAttributes.SCOPE_REQUEST);
+                }
+            }
+        }
+        return (Entries) attribute;
+    }
+
+    /**
+     * 请求或工作单元的范围, try-with-resources 关闭
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * 一个范围内的读取, 请求内的异步调用也可能访问
+     */
+    private static final class Entries {
+        private final ConcurrentMap<Key, CompletableFuture<Object>> values = new ConcurrentHashMap<>();
+    }
+
+    private static final class Key {
+        private final String source;
+        private final Object key;
+
+        Key(String source, Object key) {
+            this.source = source;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return source.equals(other.source) && Objects.equals(key, other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * source.hashCode() + Objects.hashCode(key);
+        }
+    }
+
+    private static final class Statistics {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder invalidations = new LongAdder();
+    }
+}
@@ -0,0 +1,31 @@
+package com.nem.life.framework.boot.requestcache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 请求内读取去重, nem.request-cache.enabled=true 开启; 有actuator时注册 requestcache 端点
+ */
+@ConditionalOnProperty(prefix = "nem.request-cache", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(RequestCacheProperties.class)
+@Configuration
+public class RequestCacheConfiguration {
+
+    @Bean
+    public RequestCache requestCache(RequestCacheProperties requestCacheProperties) {
+        return new RequestCache(requestCacheProperties);
+    }
+
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    @Configuration
+    static class RequestCacheEndpointConfiguration {
+
+        @Bean
+        public RequestCacheEndpoint requestCacheEndpoint(RequestCache requestCache) {
+            return new RequestCacheEndpoint(requestCache);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.nem.life.framework.boot.requestcache;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * 请求内缓存的命中统计, 需要 management.endpoints.web.exposure.include 包含 requestcache
+ */
+@Endpoint(id = "requestcache")
+public class RequestCacheEndpoint {
+    private final RequestCache requestCache;
+
+    public RequestCacheEndpoint(RequestCache requestCache) {
+        this.requestCache = requestCache;
+    }
+
+    @ReadOperation
+    public List<RequestCacheReport> reports() {
+        return requestCache.getReports();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        requestCache.reset();
+    }
+}
@@ -0,0 +1,19 @@
+package com.nem.life.framework.boot.requestcache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "nem.request-cache")
+public class RequestCacheProperties {
+    /**
+     * 是否在一个web请求或 RequestCache.open() 的工作单元内去重 MongoTemplates.selectOne 和 RedisTemplates.get,
+     * 同一范围内的结果是同一个对象, 调用方不要修改
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 每个请求最多缓存的读取数, 超过后新的读取不再缓存
+     */
+    private Integer maxEntries = 256;
+}
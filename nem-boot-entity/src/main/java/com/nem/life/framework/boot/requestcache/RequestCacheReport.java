@@ -0,0 +1,30 @@
+package com.nem.life.framework.boot.requestcache;
+
+import lombok.Data;
+
+/**
+ * 一种来源的请求内缓存统计, 从启动或上次重置开始累计
+ */
+@Data
+public class RequestCacheReport {
+    /**
+     * redis / mongo:实体类名
+     */
+    private String source;
+    /**
+     * 命中请求内已完成的读取
+     */
+    private Long hits;
+    /**
+     * 等待请求内同样的并发读取, 没有重复访问
+     */
+    private Long coalesced;
+    /**
+     * 实际访问数据源的读取
+     */
+    private Long misses;
+    /**
+     * 写入导致的失效次数
+     */
+    private Long invalidations;
+}
@@ -11,6 +11,15 @@ import java.util.Map;
 public class JsonUtil {
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    /**
+     * 共享的ObjectMapper, 用于流式写json等需要直接使用jackson的场景
+     *
+     * @return ObjectMapper
+     */
+    public static ObjectMapper getMapper() {
+        return MAPPER;
+    }
+
     /**
      * 将对象转成json字符串
      *
@@ -0,0 +1,34 @@
+package com.nem.life.framework.boot.warmup;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.stream.Collectors;
+
+/**
+ * 启动预热, nem.warm-up.enabled=false 关闭; 各插件注册自己的 WarmUpTask, 应用也可以注册
+ */
+@ConditionalOnProperty(prefix = "nem.warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(WarmUpProperties.class)
+@Configuration
+public class WarmUpConfiguration {
+
+    @Bean
+    public WarmUpRunner warmUpRunner(ObjectProvider<WarmUpTask> warmUpTasks, WarmUpProperties warmUpProperties) {
+        return new WarmUpRunner(warmUpTasks.orderedStream().collect(Collectors.toList()), warmUpProperties);
+    }
+
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.health.HealthIndicator")
+    @Configuration
+    static class WarmUpHealthConfiguration {
+
+        @Bean
+        public WarmUpHealthIndicator warmUpHealthIndicator(WarmUpRunner warmUpRunner) {
+            return new WarmUpHealthIndicator(warmUpRunner);
+        }
+    }
+}
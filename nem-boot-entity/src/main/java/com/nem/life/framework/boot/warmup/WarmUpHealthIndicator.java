@@ -0,0 +1,26 @@
+package com.nem.life.framework.boot.warmup;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * 预热完成前为 OUT_OF_SERVICE, 异步预热时用作就绪检查
+ */
+public class WarmUpHealthIndicator extends AbstractHealthIndicator {
+    private final WarmUpRunner warmUpRunner;
+
+    public WarmUpHealthIndicator(WarmUpRunner warmUpRunner) {
+        this.warmUpRunner = warmUpRunner;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        if (warmUpRunner.isWarm()) {
+            builder.up().withDetail("elapsedMillis", warmUpRunner.getElapsedMillis());
+        } else {
+            builder.outOfService();
+        }
+        builder.withDetail("tasks", warmUpRunner.getTaskNames());
+        if (!warmUpRunner.getFailures().isEmpty()) builder.withDetail("failures", warmUpRunner.getFailures());
+    }
+}
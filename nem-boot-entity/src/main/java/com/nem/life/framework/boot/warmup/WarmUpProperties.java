@@ -0,0 +1,36 @@
+package com.nem.life.framework.boot.warmup;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.warm-up")
+public class WarmUpProperties {
+    /**
+     * 是否在启动时预热
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 所有任务的总超时时间, 超时的任务取消并记为失败
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+
+    /**
+     * 同时执行的任务数
+     */
+    private Integer parallelism = 4;
+
+    /**
+     * false: 预热完成后web服务器才启动, 端口打开即就绪;
+     * true: 后台预热, 不阻塞启动, 预热完成前健康检查 warmUp 为 OUT_OF_SERVICE
+     */
+    private Boolean async = false;
+
+    /**
+     * 有任务失败或超时时是否启动失败, 只在同步预热时生效
+     */
+    private Boolean failOnError = false;
+}
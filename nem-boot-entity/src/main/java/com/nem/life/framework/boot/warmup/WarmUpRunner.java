@@ -0,0 +1,141 @@
+package com.nem.life.framework.boot.warmup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 启动时并行执行所有 WarmUpTask
+ * <p>
+ * 在所有单例创建完成后、web服务器启动前执行; 同步模式下预热完成后端口才打开,
+ * 异步模式下后台执行, 通过 isWarm() 和健康检查 warmUp 判断是否完成
+ */
+@Slf4j
+public class WarmUpRunner implements SmartLifecycle {
+    /**
+     * 在消息监听等容器之前启动, web服务器在所有Lifecycle启动后才启动
+     */
+    public static final int PHASE = Integer.MAX_VALUE - 1000;
+
+    private final List<WarmUpTask> tasks;
+    private final WarmUpProperties properties;
+    private final Map<String, String> failures = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private volatile boolean warm;
+    private volatile long elapsedMillis;
+
+    public WarmUpRunner(List<WarmUpTask> tasks, WarmUpProperties properties) {
+        this.tasks = new ArrayList<>(tasks);
+        this.properties = properties;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (tasks.isEmpty()) {
+            warm = true;
+            return;
+        }
+        if (Boolean.TRUE.equals(properties.getAsync())) {
+            Thread thread = new Thread(this::runTasks, "warm-up");
+            thread.setDaemon(true);
+            thread.start();
+            return;
+        }
+        runTasks();
+        if (Boolean.TRUE.equals(properties.getFailOnError()) && !failures.isEmpty()) {
+            throw new IllegalStateException("warm-up failed: " + failures);
+        }
+    }
+
+    private void runTasks() {
+        long start = System.nanoTime();
+        int parallelism = Math.max(1, Math.min(tasks.size(), properties.getParallelism()));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new CustomizableThreadFactory("warm-up-"));
+        Map<WarmUpTask, Future<?>> futures = new LinkedHashMap<>();
+        for (WarmUpTask task : tasks) {
+            futures.put(task, executor.submit(() -> {
+                long taskStart = System.nanoTime();
+                task.warmUp();
+                log.info("warm-up " + task.getName() + " finished in " + (System.nanoTime() - taskStart) / 1_000_000 + "ms");
+                return null;
+            }));
+        }
+        long deadline = start + properties.getTimeout().toNanos();
+        try {
+            for (Map.Entry<WarmUpTask, Future<?>> entry : futures.entrySet()) {
+                String name = entry.getKey().getName();
+                try {
+                    entry.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (ExecutionException e) {
+                    failures.put(name, String.valueOf(e.getCause()));
+                    log.warn("warm-up " + name + " failed", e.getCause());
+                } catch (TimeoutException e) {
+                    entry.getValue().cancel(true);
+                    failures.put(name, "timeout");
+                    log.warn("warm-up " + name + " not finished in " + properties.getTimeout().toMillis() + "ms");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.put("warm-up", "interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+        elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        warm = true;
+        log.info("warm-up finished in " + elapsedMillis + "ms, tasks=" + tasks.size() + " failed=" + failures.size());
+    }
+
+    /**
+     * @return 所有任务是否执行完成, 包括失败和超时的任务
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    /**
+     * @return 失败或超时的任务名 -> 原因
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public List<String> getTaskNames() {
+        List<String> names = new ArrayList<>(tasks.size());
+        for (WarmUpTask task : tasks) names.add(task.getName());
+        return names;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
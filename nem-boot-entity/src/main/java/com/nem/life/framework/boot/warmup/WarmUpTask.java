@@ -0,0 +1,44 @@
+package com.nem.life.framework.boot.warmup;
+
+/**
+ * 启动预热任务, 注册成bean即可; 所有任务在web服务器启动前并行执行
+ * <pre>
+ * &#64;Bean
+ * public WarmUpTask orderWarmUp(OrderMapper orderMapper) {
+ *     return WarmUpTask.of("order", () -> orderMapper.selectById(1L));
+ * }
+ * </pre>
+ */
+public interface WarmUpTask {
+
+    /**
+     * @return 任务名, 用于日志和健康检查
+     */
+    String getName();
+
+    /**
+     * 执行预热, 抛出异常只记录, nem.warm-up.fail-on-error=true 时启动失败
+     *
+     * @throws Exception 预热失败
+     */
+    void warmUp() throws Exception;
+
+    static WarmUpTask of(String name, Action action) {
+        return new WarmUpTask() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public void warmUp() throws Exception {
+                action.run();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+}
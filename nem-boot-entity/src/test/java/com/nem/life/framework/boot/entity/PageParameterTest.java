@@ -0,0 +1,51 @@
+package com.nem.life.framework.boot.entity;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageParameterTest {
+
+    @Test
+    void keysetPageSkipsCount() {
+        PageParameter<Object> pageParameter = new PageParameter<>(3, 10, 100L);
+        Page<Object> page = pageParameter.convertKeysetMpPage(new QueryWrapper<>());
+
+        assertThat(page.getCurrent()).isEqualTo(1);
+        assertThat(page.isSearchCount()).isFalse();
+    }
+
+    @Test
+    void offsetPageKeepsCount() {
+        PageParameter<Object> pageParameter = new PageParameter<>(3, 10, null);
+        Page<Object> page = pageParameter.convertKeysetMpPage(new QueryWrapper<>());
+
+        assertThat(page.getCurrent()).isEqualTo(3);
+        assertThat(page.isSearchCount()).isTrue();
+    }
+
+    @Test
+    void keysetGroupsExistingOrConditions() {
+        QueryWrapper<Object> wrapper = new QueryWrapper<>();
+        wrapper.eq("a", 1).or().eq("b", 2);
+
+        new PageParameter<>(1, 10, 100L).keyset(wrapper);
+
+        assertThat(wrapper.getCustomSqlSegment()).isEqualTo("WHERE (a = #{ew.paramNameValuePairs.MPGENVAL1} "
+                + "OR b = #{ew.paramNameValuePairs.MPGENVAL2}) AND ( (id > #{ew.paramNameValuePairs.MPGENVAL3}) ) "
+                + "ORDER BY id ASC");
+        assertThat(wrapper.getParamNameValuePairs()).containsEntry("MPGENVAL3", 100L);
+    }
+
+    @Test
+    void keysetWithoutConditions() {
+        QueryWrapper<Object> wrapper = new QueryWrapper<>();
+
+        new PageParameter<>(1, 10, 100L).keyset(wrapper);
+
+        assertThat(wrapper.getCustomSqlSegment())
+                .isEqualTo("WHERE ( (id > #{ew.paramNameValuePairs.MPGENVAL1}) ) ORDER BY id ASC");
+    }
+}
@@ -0,0 +1,86 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import com.nem.life.framework.boot.entity.PageResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * micrometer实现
+ * <p>
+ * 指标:
+ * <ul>
+ * <li>nem.mongo.operations 方法耗时, tag: method, collection</li>
+ * <li>nem.mongo.errors 异常次数, tag: method, collection, exception</li>
+ * <li>nem.mongo.documents 返回或写入的文档数, tag: method, collection</li>
+ * </ul>
+ * 分页查询的method为 pageQuery.count / pageQuery.find, 可以区分慢在统计总数还是查询数据
+ */
+public class MicrometerMongoMetrics implements MongoMetrics {
+    private final MeterRegistry registry;
+    private final ClassValue<ConcurrentMap<String, Meters>> meters = new ClassValue<ConcurrentMap<String, Meters>>() {
+        @Override
+        protected ConcurrentMap<String, Meters> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    public MicrometerMongoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <T> T record(String method, Class<?> entityClass, Supplier<T> action) {
+        Meters operationMeters = meters(method, entityClass);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException | Error e) {
+            operationMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            registry.counter("nem.mongo.errors", "method", method, "collection", operationMeters.collection,
+                    "exception", e.getClass().getSimpleName()).increment();
+            throw e;
+        }
+        operationMeters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (result instanceof Collection) {
+            operationMeters.documents.record(((Collection<?>) result).size());
+        } else if (result instanceof PageResult && ((PageResult<?>) result).getRecords() != null) {
+            operationMeters.documents.record(((PageResult<?>) result).getRecords().size());
+        }
+        return result;
+    }
+
+    @Override
+    public void documents(String method, Class<?> entityClass, long count) {
+        meters(method, entityClass).documents.record(count);
+    }
+
+    private Meters meters(String method, Class<?> entityClass) {
+        ConcurrentMap<String, Meters> methodMeters = meters.get(entityClass == null ? Object.class : entityClass);
+        Meters operationMeters = methodMeters.get(method);
+        if (operationMeters != null) return operationMeters;
+        return methodMeters.computeIfAbsent(method, key -> new Meters(key,
+                entityClass == null ? "unknown" : MongoTemplates.getObjectName(entityClass)));
+    }
+
+    private final class Meters {
+        private final String collection;
+        private final Timer timer;
+        private final DistributionSummary documents;
+
+        private Meters(String method, String collection) {
+            this.collection = collection;
+            this.timer = Timer.builder("nem.mongo.operations").tags("method", method, "collection", collection)
+                    .description("mongo方法耗时").register(registry);
+            this.documents = DistributionSummary.builder("nem.mongo.documents")
+                    .tags("method", method, "collection", collection).register(registry);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 使用编译时生成的编解码器查询, 结果直接从BSON解码成实体, 不经过Document和 MappingMongoConverter
+ * <p>
+ * 查询条件、排序和字段仍然由 QueryMapper 转换, 与 MongoTemplate 一致; 通过 MongoTemplate.execute 执行,
+ * 读偏好和异常转换不变。带hint、meta或collation的查询不走这里
+ */
+final class MongoCodecReader {
+    private static final MongoEntities PROVIDER = new MongoEntities();
+
+    private final MongoTemplate mongoTemplate;
+    private final QueryMapper queryMapper;
+    private volatile CodecRegistry codecRegistry;
+
+    MongoCodecReader(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+    }
+
+    /**
+     * 实体有生成的编解码器, 且查询没有使用不支持的选项
+     */
+    static boolean supports(Query query, Class<?> entityClass) {
+        return MongoEntities.hasCodec(entityClass) && query.getHint() == null && !query.getMeta().hasValues()
+                && !query.getCollation().isPresent();
+    }
+
+    <T> List<T> find(Query query, Class<T> entityClass) {
+        return mongoTemplate.execute(entityClass, collection -> prepare(collection, query, entityClass)
+                .into(new ArrayList<>()));
+    }
+
+    <T> T findOne(Query query, Class<T> entityClass) {
+        return mongoTemplate.execute(entityClass, collection -> prepare(collection, query, entityClass)
+                .limit(1).first());
+    }
+
+    /**
+     * 提前创建registry和实体的编解码器
+     */
+    void warmUp(Class<?> entityClass) {
+        mongoTemplate.execute(entityClass, collection -> codecRegistry(collection.getCodecRegistry()).get(entityClass));
+    }
+
+    private <T> FindIterable<T> prepare(MongoCollection<Document> collection, Query query, Class<T> entityClass) {
+        MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getPersistentEntity(entityClass);
+        FindIterable<T> iterable = collection.withCodecRegistry(codecRegistry(collection.getCodecRegistry()))
+                .withDocumentClass(entityClass)
+                .find(queryMapper.getMappedObject(query.getQueryObject(), entity));
+        Document fields = query.getFieldsObject();
+        if (!fields.isEmpty()) iterable.projection(queryMapper.getMappedFields(fields, entity));
+        Document sort = query.getSortObject();
+        if (!sort.isEmpty()) iterable.sort(queryMapper.getMappedSort(sort, entity));
+        if (query.getSkip() > 0) iterable.skip((int) query.getSkip());
+        if (query.getLimit() > 0) iterable.limit(query.getLimit());
+        return iterable;
+    }
+
+    /**
+     * 生成的编解码器优先, 其他类型使用客户端原有的registry; 同一个客户端的registry不变, 只创建一次
+     */
+    private CodecRegistry codecRegistry(CodecRegistry collectionRegistry) {
+        CodecRegistry registry = codecRegistry;
+        if (registry == null) {
+            registry = CodecRegistries.fromRegistries(CodecRegistries.fromProviders(PROVIDER), collectionRegistry);
+            codecRegistry = registry;
+        }
+        return registry;
+    }
+}
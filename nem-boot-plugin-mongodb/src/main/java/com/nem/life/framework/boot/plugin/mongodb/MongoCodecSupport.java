@@ -0,0 +1,292 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import org.bson.BsonBinary;
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 生成的编解码器使用的读写方法, 存储格式与 MappingMongoConverter 默认转换相同:
+ * String类型的id是合法ObjectId时存为ObjectId, BigDecimal和BigInteger存为字符串, 枚举存为name,
+ * LocalDateTime和LocalDate按系统时区存为日期, float存为double
+ * <p>
+ * 读取时调用方已经跳过了null值; 不写 _class 字段, 值为null的字段不写
+ */
+public final class MongoCodecSupport {
+    private MongoCodecSupport() {
+    }
+
+    public static <V> void writeField(BsonWriter writer, String name, V value, BiConsumer<BsonWriter, V> valueWriter) {
+        if (value == null) return;
+        writer.writeName(name);
+        valueWriter.accept(writer, value);
+    }
+
+    public static void writeId(BsonWriter writer, String value) {
+        if (ObjectId.isValid(value)) {
+            writer.writeObjectId(new ObjectId(value));
+        } else {
+            writer.writeString(value);
+        }
+    }
+
+    public static void writeString(BsonWriter writer, String value) {
+        writer.writeString(value);
+    }
+
+    public static void writeInteger(BsonWriter writer, Integer value) {
+        writer.writeInt32(value);
+    }
+
+    public static void writeShort(BsonWriter writer, Short value) {
+        writer.writeInt32(value);
+    }
+
+    public static void writeByte(BsonWriter writer, Byte value) {
+        writer.writeInt32(value);
+    }
+
+    public static void writeLong(BsonWriter writer, Long value) {
+        writer.writeInt64(value);
+    }
+
+    public static void writeDouble(BsonWriter writer, Double value) {
+        writer.writeDouble(value);
+    }
+
+    public static void writeFloat(BsonWriter writer, Float value) {
+        writer.writeDouble(value);
+    }
+
+    public static void writeBoolean(BsonWriter writer, Boolean value) {
+        writer.writeBoolean(value);
+    }
+
+    public static void writeDate(BsonWriter writer, Date value) {
+        writer.writeDateTime(value.getTime());
+    }
+
+    public static void writeInstant(BsonWriter writer, Instant value) {
+        writer.writeDateTime(value.toEpochMilli());
+    }
+
+    public static void writeLocalDateTime(BsonWriter writer, LocalDateTime value) {
+        writer.writeDateTime(value.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    public static void writeLocalDate(BsonWriter writer, LocalDate value) {
+        writer.writeDateTime(value.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    public static void writeBigDecimal(BsonWriter writer, BigDecimal value) {
+        writer.writeString(value.toString());
+    }
+
+    public static void writeBigInteger(BsonWriter writer, BigInteger value) {
+        writer.writeString(value.toString());
+    }
+
+    public static void writeObjectId(BsonWriter writer, ObjectId value) {
+        writer.writeObjectId(value);
+    }
+
+    public static void writeBinary(BsonWriter writer, byte[] value) {
+        writer.writeBinaryData(new BsonBinary(value));
+    }
+
+    public static void writeEnum(BsonWriter writer, Enum<?> value) {
+        writer.writeString(value.name());
+    }
+
+    public static <T> void writeEntity(BsonWriter writer, EncoderContext context, Codec<T> codec, T value) {
+        context.encodeWithChildContext(codec, writer, value);
+    }
+
+    public static <E> void writeCollection(BsonWriter writer, Collection<E> values, BiConsumer<BsonWriter, E> elementWriter) {
+        writer.writeStartArray();
+        for (E value : values) {
+            if (value == null) {
+                writer.writeNull();
+            } else {
+                elementWriter.accept(writer, value);
+            }
+        }
+        writer.writeEndArray();
+    }
+
+    public static String readId(BsonReader reader) {
+        return readString(reader);
+    }
+
+    public static String readString(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case STRING:
+                return reader.readString();
+            case OBJECT_ID:
+                return reader.readObjectId().toHexString();
+            case SYMBOL:
+                return reader.readSymbol();
+            default:
+                throw unexpected(reader, "String");
+        }
+    }
+
+    public static Integer readInteger(BsonReader reader) {
+        return readNumber(reader, "Integer").intValue();
+    }
+
+    public static Short readShort(BsonReader reader) {
+        return readNumber(reader, "Short").shortValue();
+    }
+
+    public static Byte readByte(BsonReader reader) {
+        return readNumber(reader, "Byte").byteValue();
+    }
+
+    public static Long readLong(BsonReader reader) {
+        return readNumber(reader, "Long").longValue();
+    }
+
+    public static Double readDouble(BsonReader reader) {
+        return readNumber(reader, "Double").doubleValue();
+    }
+
+    public static Float readFloat(BsonReader reader) {
+        return readNumber(reader, "Float").floatValue();
+    }
+
+    public static Boolean readBoolean(BsonReader reader) {
+        if (reader.getCurrentBsonType() != BsonType.BOOLEAN) throw unexpected(reader, "Boolean");
+        return reader.readBoolean();
+    }
+
+    public static Date readDate(BsonReader reader) {
+        return new Date(readDateTime(reader, "Date"));
+    }
+
+    public static Instant readInstant(BsonReader reader) {
+        return Instant.ofEpochMilli(readDateTime(reader, "Instant"));
+    }
+
+    public static LocalDateTime readLocalDateTime(BsonReader reader) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(readDateTime(reader, "LocalDateTime")), ZoneId.systemDefault());
+    }
+
+    public static LocalDate readLocalDate(BsonReader reader) {
+        return readLocalDateTime(reader).toLocalDate();
+    }
+
+    public static BigDecimal readBigDecimal(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case STRING:
+                return new BigDecimal(reader.readString());
+            case DECIMAL128:
+                return reader.readDecimal128().bigDecimalValue();
+            case DOUBLE:
+                return BigDecimal.valueOf(reader.readDouble());
+            case INT32:
+                return BigDecimal.valueOf(reader.readInt32());
+            case INT64:
+                return BigDecimal.valueOf(reader.readInt64());
+            default:
+                throw unexpected(reader, "BigDecimal");
+        }
+    }
+
+    public static BigInteger readBigInteger(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        if (type == BsonType.STRING) return new BigInteger(reader.readString());
+        return readBigDecimal(reader).toBigInteger();
+    }
+
+    public static ObjectId readObjectId(BsonReader reader) {
+        BsonType type = reader.getCurrentBsonType();
+        if (type == BsonType.OBJECT_ID) return reader.readObjectId();
+        if (type == BsonType.STRING) return new ObjectId(reader.readString());
+        throw unexpected(reader, "ObjectId");
+    }
+
+    public static byte[] readBinary(BsonReader reader) {
+        if (reader.getCurrentBsonType() != BsonType.BINARY) throw unexpected(reader, "byte[]");
+        return reader.readBinaryData().getData();
+    }
+
+    public static <E extends Enum<E>> E readEnum(BsonReader reader, Class<E> type) {
+        return Enum.valueOf(type, readString(reader));
+    }
+
+    public static <T> T readEntity(BsonReader reader, DecoderContext context, Codec<T> codec) {
+        return context.decodeWithChildContext(codec, reader);
+    }
+
+    public static <E> List<E> readList(BsonReader reader, Function<BsonReader, E> elementReader) {
+        return readElements(reader, new ArrayList<>(), elementReader);
+    }
+
+    public static <E> Set<E> readSet(BsonReader reader, Function<BsonReader, E> elementReader) {
+        return readElements(reader, new LinkedHashSet<>(), elementReader);
+    }
+
+    private static <E, C extends Collection<E>> C readElements(BsonReader reader, C values,
+                                                               Function<BsonReader, E> elementReader) {
+        if (reader.getCurrentBsonType() != BsonType.ARRAY) throw unexpected(reader, "Collection");
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                values.add(null);
+            } else {
+                values.add(elementReader.apply(reader));
+            }
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    private static Number readNumber(BsonReader reader, String target) {
+        BsonType type = reader.getCurrentBsonType();
+        switch (type) {
+            case INT32:
+                return reader.readInt32();
+            case INT64:
+                return reader.readInt64();
+            case DOUBLE:
+                return reader.readDouble();
+            case DECIMAL128:
+                return reader.readDecimal128().bigDecimalValue();
+            default:
+                throw unexpected(reader, target);
+        }
+    }
+
+    private static long readDateTime(BsonReader reader, String target) {
+        if (reader.getCurrentBsonType() != BsonType.DATE_TIME) throw unexpected(reader, target);
+        return reader.readDateTime();
+    }
+
+    private static BsonInvalidOperationException unexpected(BsonReader reader, String target) {
+        return new BsonInvalidOperationException("can not read " + reader.getCurrentBsonType() + " as " + target);
+    }
+}
@@ -0,0 +1,81 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.Optional;
+
+/**
+ * 按命名规则加载编译时生成的实体元数据, 同时作为编解码器的 CodecProvider
+ * <p>
+ * 只有标注了 &#64;MongoEntity 的类会查找生成类, 每个类只加载一次
+ */
+@Slf4j
+public final class MongoEntities implements CodecProvider {
+    public static final String METADATA_SUFFIX = "_MongoMeta";
+    public static final String CODEC_SUFFIX = "_MongoCodec";
+
+    private static final ClassValue<Optional<MongoEntityMetadata<?>>> METADATA = new ClassValue<Optional<MongoEntityMetadata<?>>>() {
+        @Override
+        protected Optional<MongoEntityMetadata<?>> computeValue(Class<?> type) {
+            return Optional.ofNullable(load(type));
+        }
+    };
+
+    /**
+     * 实体元数据
+     *
+     * @param entityClass 实体类
+     * @return 没有标注 &#64;MongoEntity 或没有生成时为null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> MongoEntityMetadata<T> metadata(Class<T> entityClass) {
+        if (entityClass == null) return null;
+        return (MongoEntityMetadata<T>) METADATA.get(entityClass).orElse(null);
+    }
+
+    /**
+     * 是否有生成的编解码器
+     *
+     * @param entityClass 实体类
+     * @return 是否有
+     */
+    public static boolean hasCodec(Class<?> entityClass) {
+        MongoEntityMetadata<?> metadata = metadata(entityClass);
+        return metadata != null && metadata.hasCodec();
+    }
+
+    /**
+     * 生成类的类名: 包名.去掉包名的类名(内部类的$换成_) + 后缀
+     *
+     * @param entityClass 实体类
+     * @param suffix      后缀
+     * @return 全类名
+     */
+    public static String generatedClassName(Class<?> entityClass, String suffix) {
+        String name = entityClass.getName();
+        int index = name.lastIndexOf('.');
+        String packagePrefix = index < 0 ? "" : name.substring(0, index + 1);
+        return packagePrefix + name.substring(index + 1).replace('$', '_') + suffix;
+    }
+
+    @Override
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        MongoEntityMetadata<T> metadata = metadata(clazz);
+        return metadata == null ? null : metadata.createCodec(registry);
+    }
+
+    private static MongoEntityMetadata<?> load(Class<?> type) {
+        if (!type.isAnnotationPresent(MongoEntity.class)) return null;
+        String className = generatedClassName(type, METADATA_SUFFIX);
+        try {
+            Class<?> metadataClass = Class.forName(className, true, type.getClassLoader());
+            return (MongoEntityMetadata<?>) metadataClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("mongo entity metadata not generated, is nem-boot-processor on the compile classpath:" + className);
+            return null;
+        }
+    }
+}
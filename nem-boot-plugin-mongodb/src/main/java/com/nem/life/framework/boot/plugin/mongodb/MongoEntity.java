@@ -0,0 +1,16 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import java.lang.annotation.*;
+
+/**
+ * 编译时生成元数据和BSON编解码器的实体
+ * <p>
+ * 引入 nem-boot-processor 后, 编译时为标注的实体生成 实体名_MongoMeta 和 实体名_MongoCodec,
+ * 内部类为 外部类名_实体名_MongoMeta。运行时 MongoTemplates 从元数据读取集合名、id、排序和子表字段,
+ * 查询时直接用生成的编解码器把BSON解码成实体, 不经过Document和反射映射
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MongoEntity {
+}
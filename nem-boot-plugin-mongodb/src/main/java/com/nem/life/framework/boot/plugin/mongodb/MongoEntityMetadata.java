@@ -0,0 +1,66 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.List;
+
+/**
+ * 编译时生成的实体元数据, 与 MongoTemplates 中反射解析的结果相同
+ *
+ * @param <T> 实体类型
+ */
+public interface MongoEntityMetadata<T> {
+
+    Class<T> getEntityClass();
+
+    /**
+     * 对象名称, 类名首字母小写
+     *
+     * @return 对象名称
+     */
+    String getObjectName();
+
+    /**
+     * 第一个标注了 &#64;Id 的字段, 包括父类
+     *
+     * @return 字段名, 没有时为null
+     */
+    String getIdName();
+
+    /**
+     * 所有标注了 &#64;Id 的字段, 包括父类
+     *
+     * @return 字段名
+     */
+    List<String> getIdNames();
+
+    /**
+     * 标注了 &#64;MongoOrder 的字段, 包括父类
+     *
+     * @return 字段名, 没有时为null
+     */
+    String getOrderName();
+
+    /**
+     * 标注了 &#64;MongoChild 的List或Set字段
+     *
+     * @return 字段名, 没有时为null
+     */
+    String getChildName();
+
+    /**
+     * 是否生成了编解码器, 有不支持的字段类型或没有无参构造时不生成
+     *
+     * @return 是否生成
+     */
+    boolean hasCodec();
+
+    /**
+     * 创建编解码器
+     *
+     * @param registry 嵌套实体和其他类型使用的registry
+     * @return 编解码器, 没有生成时为null
+     */
+    Codec<T> createCodec(CodecRegistry registry);
+}
@@ -0,0 +1,199 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按条件的一对多联表查询, 两种执行方式结果相同:
+ * 主表按条件过滤, 按主键倒序; 子表关联字段等于主表主键的文档全部放入 &#64;MongoChild 字段;
+ * 没有子表文档的主表文档不返回; 有子表条件时至少一个子表文档满足条件的主表文档才返回。
+ * <p>
+ * 条件按实体映射成存储的字段名, 关联字段同样使用映射后的字段名
+ */
+final class MongoJoin {
+    private final MongoTemplate mongoTemplate;
+    private final MongoJoinProperties properties;
+    private final QueryMapper queryMapper;
+    private final ThreadPoolExecutor executor;
+
+    MongoJoin(MongoTemplate mongoTemplate, MongoJoinProperties properties) {
+        this.mongoTemplate = mongoTemplate;
+        this.properties = properties;
+        this.queryMapper = new QueryMapper(mongoTemplate.getConverter());
+        int parallelism = Math.max(1, properties.getParallelism());
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("mongo-join-");
+        threadFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threadFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    <M, S, R> List<R> select(Class<M> mainTable, Class<S> slaveTable, Criteria mainCriteria, Criteria slaveCriteria,
+                             Class<R> outputType, MongoJoinEngine engine) {
+        Join join = new Join(mainTable, slaveTable, mainCriteria, slaveCriteria);
+        return engine == MongoJoinEngine.BATCHED ? batched(join, outputType) : lookup(join, outputType);
+    }
+
+    private <R> List<R> lookup(Join join, Class<R> outputType) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        if (!join.mainFilter.isEmpty()) operations.add(Aggregation.match(raw(join.mainFilter)));
+        operations.add(Aggregation.sort(Sort.by(Sort.Order.desc(join.mainKey))));
+        operations.add(Aggregation.lookup(join.slaveCollection, join.mainKey, join.slaveKey, join.childField));
+        Document childFilter = new Document("$not", new Document("$size", 0));
+        if (!join.slaveFilter.isEmpty()) childFilter.append("$elemMatch", join.slaveFilter);
+        operations.add(Aggregation.match(raw(new Document(join.childField, childFilter))));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(operations), join.mainCollection, outputType)
+                .getMappedResults();
+    }
+
+    /**
+     * 主表按主键倒序分批读取, 下一批从上一批最后一个主键之后开始; 子表查询交给线程池, 同时进行的批数不超过 parallelism
+     */
+    private <R> List<R> batched(Join join, Class<R> outputType) {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        int parallelism = Math.max(1, properties.getParallelism());
+        List<R> results = new ArrayList<>();
+        Deque<Future<List<Document>>> pending = new ArrayDeque<>();
+        Object last = null;
+        try {
+            while (true) {
+                Document filter = last == null ? join.mainFilter : new Document("$and", Arrays.asList(join.mainFilter,
+                        new Document(join.mainKey, new Document("$lt", last))));
+                List<Document> mains = mongoTemplate.execute(join.mainCollection, collection -> collection.find(filter)
+                        .sort(new Document(join.mainKey, -1)).limit(batchSize).into(new ArrayList<>()));
+                if (mains.isEmpty()) break;
+                last = mains.get(mains.size() - 1).get(join.mainKey);
+                if (parallelism == 1) {
+                    read(stitch(join, mains), outputType, results);
+                } else {
+                    if (pending.size() >= parallelism) read(pending.poll().get(), outputType, results);
+                    pending.add(executor.submit(() -> stitch(join, mains)));
+                }
+                if (mains.size() < batchSize || last == null) break;
+            }
+            while (!pending.isEmpty()) read(pending.poll().get(), outputType, results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("mongo batched join interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException("mongo batched join failed", cause);
+        } finally {
+            for (Future<?> future : pending) future.cancel(true);
+        }
+        return results;
+    }
+
+    private List<Document> stitch(Join join, List<Document> mains) {
+        List<Object> keys = new ArrayList<>(mains.size());
+        for (Document main : mains) keys.add(main.get(join.mainKey));
+        Document keyFilter = new Document(join.slaveKey, new Document("$in", keys));
+        List<Document> children = mongoTemplate.execute(join.slaveCollection,
+                collection -> collection.find(keyFilter).into(new ArrayList<>()));
+        Map<Object, List<Document>> childrenByKey = new HashMap<>();
+        for (Document child : children) {
+            childrenByKey.computeIfAbsent(child.get(join.slaveKey), key -> new ArrayList<>()).add(child);
+        }
+        Set<Object> matched = null;
+        if (!join.slaveFilter.isEmpty()) {
+            Document filter = new Document("$and", Arrays.asList(keyFilter, join.slaveFilter));
+            matched = mongoTemplate.execute(join.slaveCollection, collection -> {
+                Set<Object> values = new HashSet<>();
+                for (Document document : collection.find(filter).projection(new Document(join.slaveKey, 1))) {
+                    values.add(document.get(join.slaveKey));
+                }
+                return values;
+            });
+        }
+        List<Document> joined = new ArrayList<>(mains.size());
+        for (Document main : mains) {
+            Object key = main.get(join.mainKey);
+            List<Document> list = childrenByKey.get(key);
+            if (list == null || (matched != null && !matched.contains(key))) continue;
+            main.put(join.childField, list);
+            joined.add(main);
+        }
+        return joined;
+    }
+
+    private <R> void read(List<Document> documents, Class<R> outputType, List<R> results) {
+        for (Document document : documents) {
+            results.add(mongoTemplate.getConverter().read(outputType, document));
+        }
+    }
+
+    private static CriteriaDefinition raw(Document document) {
+        return new CriteriaDefinition() {
+            @Override
+            public Document getCriteriaObject() {
+                return document;
+            }
+
+            @Override
+            public String getKey() {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * 集合名、映射后的关联字段和条件
+     */
+    private final class Join {
+        private final String mainCollection;
+        private final String slaveCollection;
+        private final String mainKey;
+        private final String slaveKey;
+        private final String childField;
+        private final Document mainFilter;
+        private final Document slaveFilter;
+
+        Join(Class<?> mainTable, Class<?> slaveTable, Criteria mainCriteria, Criteria slaveCriteria) {
+            MongoPersistentEntity<?> mainEntity = persistentEntity(mainTable);
+            MongoPersistentEntity<?> slaveEntity = persistentEntity(slaveTable);
+            this.mainCollection = MongoTemplates.getObjectName(mainTable);
+            this.slaveCollection = MongoTemplates.getObjectName(slaveTable);
+            this.mainKey = fieldName(mainEntity, MongoTemplates.getMongoIdName(mainTable));
+            this.slaveKey = fieldName(slaveEntity, MongoTemplates.getMongoIdName(slaveTable));
+            this.childField = fieldName(mainEntity, MongoTemplates.mongoChildName(mainTable));
+            this.mainFilter = mainCriteria == null ? new Document()
+                    : queryMapper.getMappedObject(mainCriteria.getCriteriaObject(), mainEntity);
+            this.slaveFilter = slaveCriteria == null ? new Document()
+                    : queryMapper.getMappedObject(slaveCriteria.getCriteriaObject(), slaveEntity);
+        }
+
+        private MongoPersistentEntity<?> persistentEntity(Class<?> type) {
+            return mongoTemplate.getConverter().getMappingContext().getPersistentEntity(type);
+        }
+
+        private String fieldName(MongoPersistentEntity<?> entity, String propertyName) {
+            MongoPersistentProperty property = entity == null ? null : entity.getPersistentProperty(propertyName);
+            return property == null ? propertyName : property.getFieldName();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+/**
+ * 联表查询的执行方式
+ */
+public enum MongoJoinEngine {
+    /**
+     * 服务端 $lookup, 一次聚合完成, 占用主节点CPU和聚合内存
+     */
+    LOOKUP,
+    /**
+     * 应用端分批关联: 按主键倒序分批读取主表, 每批用一次 $in 查询子表, 在内存中放入 &#64;MongoChild 字段
+     */
+    BATCHED
+}
@@ -0,0 +1,23 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "nem.mongodb.join")
+public class MongoJoinProperties {
+    /**
+     * 没有指定执行方式时使用的方式
+     */
+    private MongoJoinEngine engine = MongoJoinEngine.LOOKUP;
+
+    /**
+     * BATCHED 每批读取的主表文档数, 也是每次 $in 查询的主键数
+     */
+    private Integer batchSize = 500;
+
+    /**
+     * BATCHED 同时查询子表的批数, 读取下一批主表的同时查询上一批的子表; 1为顺序执行
+     */
+    private Integer parallelism = 2;
+}
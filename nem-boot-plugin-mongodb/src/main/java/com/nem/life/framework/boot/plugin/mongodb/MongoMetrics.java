@@ -0,0 +1,54 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import java.util.function.Supplier;
+
+/**
+ * mongo埋点, 不依赖micrometer, 没有micrometer时使用 {@link #NOOP}
+ * <p>
+ * MongoTemplates 和 MongoPageHelper 的每个方法通过它执行, 分页查询分别记录count和find
+ */
+public interface MongoMetrics {
+    MongoMetrics NOOP = new MongoMetrics() {
+        @Override
+        public <T> T record(String method, Class<?> entityClass, Supplier<T> action) {
+            return action.get();
+        }
+
+        @Override
+        public void documents(String method, Class<?> entityClass, long count) {
+        }
+    };
+
+    /**
+     * 记录耗时和异常, 结果是集合或分页结果时同时记录文档数
+     *
+     * @param method      方法名, 例如 selectList、pageQuery.count
+     * @param entityClass 实体类
+     * @param action      执行的操作
+     * @return 操作的结果
+     */
+    <T> T record(String method, Class<?> entityClass, Supplier<T> action);
+
+    /**
+     * 记录返回的文档数, 用于游标等无法从返回值得到数量的操作
+     *
+     * @param method      方法名
+     * @param entityClass 实体类
+     * @param count       文档数
+     */
+    void documents(String method, Class<?> entityClass, long count);
+
+    /**
+     * 记录没有返回值的操作
+     *
+     * @param method      方法名
+     * @param entityClass 实体类
+     * @param action      执行的操作
+     */
+    default void run(String method, Class<?> entityClass, Runnable action) {
+        record(method, entityClass, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
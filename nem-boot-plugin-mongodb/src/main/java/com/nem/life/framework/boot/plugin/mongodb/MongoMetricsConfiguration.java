@@ -0,0 +1,24 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * classpath中有micrometer时注册mongo指标, nem.mongodb.metrics.enabled=false 关闭;
+ * 没有MeterRegistry bean时注册到 Metrics.globalRegistry
+ */
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnProperty(prefix = "nem.mongodb.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Configuration
+public class MongoMetricsConfiguration {
+
+    @Bean
+    public MongoMetrics mongoMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new MicrometerMongoMetrics(meterRegistry.getIfUnique(() -> Metrics.globalRegistry));
+    }
+}
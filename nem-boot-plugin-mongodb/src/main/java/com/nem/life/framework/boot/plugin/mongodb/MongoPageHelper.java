@@ -2,31 +2,67 @@ package com.nem.life.framework.boot.plugin.mongodb;
 
 import com.nem.life.framework.boot.entity.PageParameter;
 import com.nem.life.framework.boot.entity.PageResult;
+import com.nem.life.framework.boot.entity.StreamingPageResult;
+import com.nem.life.framework.boot.nplusone.NPlusOneConfiguration;
+import com.nem.life.framework.boot.requestcache.RequestCacheConfiguration;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
 
 import java.util.List;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @ConditionalOnProperty(prefix = "spring.data.mongodb", value = "uri")
 @AutoConfigureAfter(MongoTemplate.class)
 @Configuration
 @RequiredArgsConstructor
+@Import({MongoMetricsConfiguration.class, MongoWarmUpConfiguration.class, NPlusOneConfiguration.class,
+        RequestCacheConfiguration.class})
 public class MongoPageHelper {
     public static final Integer FIRST_PAGE_NUMBER = 1;
     private static final String ID = "_id";
+    private static final int STREAM_BATCH_SIZE = 500;
 
     private final MongoTemplate mongoTemplate;
 
+    private MongoMetrics mongoMetrics = MongoMetrics.NOOP;
+
+    /**
+     * 注册了 MongoMetricsConfiguration 时注入, 否则不记录指标
+     *
+     * @param mongoMetrics mongo埋点
+     */
+    @Autowired(required = false)
+    public void setMongoMetrics(MongoMetrics mongoMetrics) {
+        this.mongoMetrics = mongoMetrics;
+    }
+
+    private boolean codecEnabled = true;
+    private volatile MongoCodecReader codecReader;
+
+    /**
+     * 标注了 &#64;MongoEntity 的实体是否使用生成的编解码器查询, nem.mongodb.codec.enabled=false 关闭
+     *
+     * @param codecEnabled 是否使用
+     */
+    @Value("${nem.mongodb.codec.enabled:true}")
+    public void setCodecEnabled(boolean codecEnabled) {
+        this.codecEnabled = codecEnabled;
+    }
+
     /**
      * 分页查询
      *
@@ -42,7 +78,7 @@ public class MongoPageHelper {
     public <T, R> PageResult<R> pageQuery(Query query, Class<T> entityClass,
                                           PageParameter<R> pageParameter, Function<T, R> mapper, String lastId) {
         //分页逻辑
-        int total = (int) mongoTemplate.count(query, entityClass);
+        int total = mongoMetrics.record("pageQuery.count", entityClass, () -> mongoTemplate.count(query, entityClass)).intValue();
         final Integer pages = (int) Math.ceil(total / (double) pageParameter.getPageSize());
         if (pageParameter.getPage() <= 0 || pageParameter.getPage() > pages) {
             pageParameter.setPage(FIRST_PAGE_NUMBER);
@@ -58,13 +94,14 @@ public class MongoPageHelper {
             query.skip(skip).limit(pageParameter.getPageSize());
         }
 
-        final List<T> entityList = mongoTemplate
-                .find(query.addCriteria(criteria)
-                                //  .with(new Sort(Collections.singletonList(new Sort.Order(Sort.Direction.ASC, ID)))),
-                                .with(Sort.by(
-                                        Sort.Order.asc(ID)
-                                )),
-                        entityClass);
+        query.addCriteria(criteria)
+                //  .with(new Sort(Collections.singletonList(new Sort.Order(Sort.Direction.ASC, ID)))),
+                .with(Sort.by(
+                        Sort.Order.asc(ID)
+                ));
+        final List<T> entityList = mongoMetrics.record("pageQuery.find", entityClass,
+                () -> codecEnabled && MongoCodecReader.supports(query, entityClass)
+                        ? codecReader().find(query, entityClass) : mongoTemplate.find(query, entityClass));
         final PageResult<R> pageResult = new PageResult<>();
         pageResult.setTotal(total);
         pageResult.setPageNumber(pages);
@@ -91,4 +128,54 @@ public class MongoPageHelper {
         return pageQuery(query, entityClass, pageParameter, mapper, null);
     }
 
+    /**
+     * 流式分页查询, 写响应时才统计总数并通过游标逐条读取, 用于导出等大页查询
+     *
+     * @param query         分页条件
+     * @param entityClass   查询实体类
+     * @param pageParameter 查询分页参数, searchCount为false时不统计总数
+     * @param mapper        转换参数
+     * @param <T>           请求参数
+     * @param <R>           响应参数
+     * @return 流式分页结果
+     */
+    public <T, R> StreamingPageResult<R> streamQuery(Query query, Class<T> entityClass,
+                                                     PageParameter<R> pageParameter, Function<T, R> mapper) {
+        Query countQuery = Query.of(query);
+        Supplier<Integer> total = Boolean.FALSE.equals(pageParameter.getSearchCount()) ? null
+                : () -> mongoMetrics.record("streamQuery.count", entityClass, () -> mongoTemplate.count(countQuery, entityClass)).intValue();
+        if (pageParameter.getPage() <= 0) {
+            pageParameter.setPage(FIRST_PAGE_NUMBER);
+        }
+        int skip = pageParameter.getPageSize() * (pageParameter.getPage() - 1);
+        query.skip(skip).limit(pageParameter.getPageSize())
+                .with(Sort.by(Sort.Order.asc(ID)))
+                .cursorBatchSize(STREAM_BATCH_SIZE);
+        return StreamingPageResult.of(pageParameter, total, consumer -> {
+            long count = mongoMetrics.record("streamQuery.find", entityClass, () -> {
+                long read = 0;
+                try (CloseableIterator<T> iterator = mongoTemplate.stream(query, entityClass)) {
+                    while (iterator.hasNext()) {
+                        consumer.accept(mapper.apply(iterator.next()));
+                        read++;
+                    }
+                }
+                return read;
+            });
+            mongoMetrics.documents("streamQuery.find", entityClass, count);
+        });
+    }
+
+    void warmUp(Class<?> entityClass) {
+        codecReader().warmUp(entityClass);
+    }
+
+    private MongoCodecReader codecReader() {
+        MongoCodecReader reader = codecReader;
+        if (reader == null) {
+            reader = new MongoCodecReader(mongoTemplate);
+            codecReader = reader;
+        }
+        return reader;
+    }
 }
@@ -3,7 +3,12 @@ package com.nem.life.framework.boot.plugin.mongodb;
 import com.mongodb.MongoException;
 import com.nem.life.framework.boot.entity.PageParameter;
 import com.nem.life.framework.boot.entity.PageResult;
+import com.nem.life.framework.boot.nplusone.NPlusOneDetector;
+import com.nem.life.framework.boot.requestcache.RequestCache;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -15,16 +20,23 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
 import org.springframework.data.mongodb.core.aggregation.LookupOperation;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.validation.constraints.NotNull;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
@@ -34,25 +46,106 @@ import static org.springframework.data.mongodb.core.query.Criteria.where;
 @AutoConfigureAfter(MongoTemplate.class)
 @Configuration
 @RequiredArgsConstructor
-@EnableConfigurationProperties
+@EnableConfigurationProperties(MongoJoinProperties.class)
+@Slf4j
 public class MongoTemplates {
+    private static final String REQUEST_CACHE_SOURCE = "mongo:";
+
     private final MongoPageHelper mongoPageHelper;
     private final MongoTemplate mongoTemplate;
 
+    private MongoMetrics mongoMetrics = MongoMetrics.NOOP;
+
+    /**
+     * 注册了 MongoMetricsConfiguration 时注入, 否则不记录指标
+     *
+     * @param mongoMetrics mongo埋点
+     */
+    @Autowired(required = false)
+    public void setMongoMetrics(MongoMetrics mongoMetrics) {
+        this.mongoMetrics = mongoMetrics;
+    }
+
+    private NPlusOneDetector nPlusOneDetector;
+
+    /**
+     * 注册了 NPlusOneConfiguration 时注入, 统计请求内同样形状的查询次数
+     *
+     * @param nPlusOneDetector N+1 查询检测
+     */
+    @Autowired(required = false)
+    public void setNPlusOneDetector(NPlusOneDetector nPlusOneDetector) {
+        this.nPlusOneDetector = nPlusOneDetector;
+    }
+
+    private RequestCache requestCache;
+
+    /**
+     * 开启 nem.request-cache 时注入, 请求内同样的 selectOne 只查询一次, 本类的写入使同一实体的缓存失效;
+     * 直接通过 MongoTemplate 的写入不会失效
+     *
+     * @param requestCache 请求内读取去重
+     */
+    @Autowired(required = false)
+    public void setRequestCache(RequestCache requestCache) {
+        this.requestCache = requestCache;
+    }
+
+    private MongoJoinProperties mongoJoinProperties = new MongoJoinProperties();
+    private volatile MongoJoin mongoJoin;
+
+    /**
+     * 联表查询的默认执行方式和分批参数, nem.mongodb.join
+     *
+     * @param mongoJoinProperties 联表查询配置
+     */
+    @Autowired(required = false)
+    public void setMongoJoinProperties(MongoJoinProperties mongoJoinProperties) {
+        this.mongoJoinProperties = mongoJoinProperties;
+    }
+
+    private boolean codecEnabled = true;
+    private volatile MongoCodecReader codecReader;
+
+    /**
+     * 标注了 &#64;MongoEntity 的实体是否使用生成的编解码器查询, nem.mongodb.codec.enabled=false 关闭
+     *
+     * @param codecEnabled 是否使用
+     */
+    @Value("${nem.mongodb.codec.enabled:true}")
+    public void setCodecEnabled(boolean codecEnabled) {
+        this.codecEnabled = codecEnabled;
+    }
+
     /**
      * 批量插入数据
      *
      * @param classList 数据list
      */
     public <T> void insertList(List<T> classList) {
-        mongoTemplate.insertAll(classList);
+        Set<Class<?>> classes = new HashSet<>();
+        if (requestCache != null) {
+            for (T t : classList) classes.add(t.getClass());
+        }
+        classes.forEach(this::invalidate);
+        try {
+            mongoMetrics.record("insertList", classList.isEmpty() ? null : classList.get(0).getClass(),
+                    () -> mongoTemplate.insertAll(classList));
+        } finally {
+            classes.forEach(this::invalidate);
+        }
     }
 
     /**
      * 查询一条数据
      */
     public <T> void insertOne(T t) {
-        mongoTemplate.insert(t);
+        invalidate(t.getClass());
+        try {
+            mongoMetrics.run("insertOne", t.getClass(), () -> mongoTemplate.insert(t));
+        } finally {
+            invalidate(t.getClass());
+        }
     }
 
     /**
@@ -63,13 +156,18 @@ public class MongoTemplates {
      * @param clazz  要更新的实体类
      */
     public void updateListByIdIn(Update update, List<String> idList, Class<?> clazz) {
+        invalidate(clazz);
         BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
                 getObjectName(clazz));
         for (String e : idList) {
             Query query = new Query(Criteria.where("_id").is(e));
             ops.updateOne(query, update);
         }
-        ops.execute();
+        try {
+            mongoMetrics.run("updateListByIdIn", clazz, ops::execute);
+        } finally {
+            invalidate(clazz);
+        }
     }
 
 
@@ -81,10 +179,15 @@ public class MongoTemplates {
      * @param clazz  要更新的实体类
      */
     public void update(Update update, Query query, Class<?> clazz) {
+        invalidate(clazz);
         BulkOperations ops = mongoTemplate
                 .bulkOps(BulkOperations.BulkMode.UNORDERED, getObjectName(clazz))
                 .updateOne(query, update);
-        ops.execute();
+        try {
+            mongoMetrics.run("update", clazz, ops::execute);
+        } finally {
+            invalidate(clazz);
+        }
     }
 
     /**
@@ -94,7 +197,16 @@ public class MongoTemplates {
      * @param clazz 要查询的实体类
      */
     public <T> T selectOne(Query query, Class<T> clazz) {
-        return mongoTemplate.findOne(query, clazz);
+        RequestCache cache = requestCache;
+        if (cache != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cache.get(REQUEST_CACHE_SOURCE + clazz.getName(),
+                    query + ", Skip: " + query.getSkip() + ", Limit: " + query.getLimit(), () -> {
+                        track("selectOne", clazz, query);
+                        return mongoMetrics.record("selectOne", clazz, () -> findOne(query, clazz));
+                    });
+        }
+        track("selectOne", clazz, query);
+        return mongoMetrics.record("selectOne", clazz, () -> findOne(query, clazz));
     }
 
     /**
@@ -104,21 +216,37 @@ public class MongoTemplates {
      * @param clazz 要查询的实体类
      */
     public <T> List<T> selectList(Query query, Class<T> clazz) {
-        return mongoTemplate.find(query, clazz);
+        track("selectList", clazz, query);
+        return mongoMetrics.record("selectList", clazz, () -> find(query, clazz));
     }
 
     /***
-     * 根据id集合查询
+     * 根据id集合查询, 一次 $in 查询, 结果按idList的顺序, 不存在的id对应null
      * @param idList id集合
      * @param clazz 要查询的实体类
      */
     public <T> List<T> SelectByIdIn(List<String> idList, Class<T> clazz) {
-        List<Object> resultList = new ArrayList<>();
-        for (String e : idList) {
-            Query query = new Query(Criteria.where("_id").is(e));
-            resultList.add(mongoTemplate.findOne(query, clazz));
-        }
-        return (List<T>) resultList;
+        if (nPlusOneDetector != null) nPlusOneDetector.record("mongo", () -> "SelectByIdIn " + clazz.getSimpleName());
+        return mongoMetrics.record("SelectByIdIn", clazz, () -> {
+            MongoPersistentEntity<?> entity = mongoTemplate.getConverter().getMappingContext().getPersistentEntity(clazz);
+            List<Object> resultList = new ArrayList<>(idList.size());
+            if (entity == null || !entity.hasIdProperty()) {
+                for (String e : idList) {
+                    Query query = new Query(Criteria.where("_id").is(e));
+                    resultList.add(findOne(query, clazz));
+                }
+                return (List<T>) resultList;
+            }
+            if (idList.isEmpty()) return (List<T>) resultList;
+            List<T> found = find(new Query(Criteria.where("_id").in(new LinkedHashSet<>(idList))), clazz);
+            Map<String, T> foundById = new HashMap<>(found.size() * 2);
+            for (T t : found) {
+                Object id = entity.getIdentifierAccessor(t).getIdentifier();
+                if (id != null) foundById.put(id.toString(), t);
+            }
+            for (String e : idList) resultList.add(foundById.get(e));
+            return (List<T>) resultList;
+        });
     }
 
     /**
@@ -148,6 +276,9 @@ public class MongoTemplates {
                                     AggregationOperation slaveMatch,
                                     Class<R> resultClass
     ) {
+        if (nPlusOneDetector != null) {
+            nPlusOneDetector.record("mongo", () -> "select " + mainTable.getSimpleName() + "/" + slaveTable.getSimpleName());
+        }
         //一对多关系中存放子表
         String foreignFieldName = mongoChildName(mainTable);
 
@@ -198,30 +329,154 @@ public class MongoTemplates {
         try {
             object = Class.forName(resultClass.getName()).newInstance();
         } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
-            System.err.println("如果返回类型有误，则使用主表做返回类型");
+            log.warn("如果返回类型有误，则使用主表做返回类型");
             object = mainTable;
         }
 
 
-        System.err.println("-------------------------------");
-        System.err.println(new Date().toString());
-        System.err.println("-------------------------------");
-        System.err.println("主表名称:" + mainTableName);
-        System.err.println("子表名称:" + slaveTableName);
-        System.err.println("-------------------------------");
-        System.err.println("主表关联id:" + mainTableId);
-        System.err.println("子表关联id:" + slaveTableId);
-        System.err.println("-------------------------------");
-        System.err.println("子表列名:" + foreignFieldName);
-        System.err.println("返回类:" + object.getClass());
-        System.err.println("-------------------------------");
-
+        if (log.isDebugEnabled()) {
+            log.debug("主表名称:" + mainTableName + ", 子表名称:" + slaveTableName
+                    + ", 主表关联id:" + mainTableId + ", 子表关联id:" + slaveTableId
+                    + ", 子表列名:" + foreignFieldName + ", 返回类:" + object.getClass());
+        }
 
-        List<?> mappedResults = mongoTemplate.aggregate(newAggregation(operations), mainTableName, object.getClass()).getMappedResults();
+        Class<?> outputType = object.getClass();
+        List<?> mappedResults = mongoMetrics.record("select", mainTable,
+                () -> mongoTemplate.aggregate(newAggregation(operations), mainTableName, outputType).getMappedResults());
         return (List<R>) mappedResults;
     }
 
 
+    /**
+     * 按条件联表查询, 使用 nem.mongodb.join.engine 配置的执行方式
+     *
+     * @param mainTable     主表
+     * @param slaveTable    从表
+     * @param mainCriteria  主表条件, 主表的字段
+     * @param slaveCriteria 从表条件, 从表的字段, 至少一个从表文档满足条件
+     * @param resultClass   返回结果, 为null时返回主表
+     */
+    public <M, S, R> List<R> selectJoin(@NotNull Class<M> mainTable, @NotNull Class<S> slaveTable,
+                                        Criteria mainCriteria, Criteria slaveCriteria, Class<R> resultClass) {
+        return selectJoin(mainTable, slaveTable, mainCriteria, slaveCriteria, resultClass, mongoJoinProperties.getEngine());
+    }
+
+    /**
+     * 按条件联表查询, 每次调用指定执行方式, 两种方式结果相同; 结果按主表主键倒序, 没有从表数据的主表数据不返回
+     *
+     * @param mainTable     主表
+     * @param slaveTable    从表
+     * @param mainCriteria  主表条件, 主表的字段
+     * @param slaveCriteria 从表条件, 从表的字段, 至少一个从表文档满足条件
+     * @param resultClass   返回结果, 为null时返回主表
+     * @param engine        LOOKUP 服务端 $lookup; BATCHED 分批读取主表, 每批一次 $in 查询从表, 大结果集不受聚合内存限制
+     */
+    @SuppressWarnings("unchecked")
+    public <M, S, R> List<R> selectJoin(@NotNull Class<M> mainTable, @NotNull Class<S> slaveTable,
+                                        Criteria mainCriteria, Criteria slaveCriteria, Class<R> resultClass,
+                                        @NotNull MongoJoinEngine engine) {
+        if (nPlusOneDetector != null) {
+            nPlusOneDetector.record("mongo", () -> "selectJoin " + mainTable.getSimpleName() + "/" + slaveTable.getSimpleName());
+        }
+        Class<R> outputType = resultClass == null ? (Class<R>) mainTable : resultClass;
+        String method = engine == MongoJoinEngine.BATCHED ? "selectJoin.batched" : "selectJoin";
+        return mongoMetrics.record(method, mainTable,
+                () -> mongoJoin().select(mainTable, slaveTable, mainCriteria, slaveCriteria, outputType, engine));
+    }
+
+    private MongoJoin mongoJoin() {
+        MongoJoin join = mongoJoin;
+        if (join == null) {
+            join = new MongoJoin(mongoTemplate, mongoJoinProperties);
+            mongoJoin = join;
+        }
+        return join;
+    }
+
+    private <T> List<T> find(Query query, Class<T> clazz) {
+        return codecEnabled && MongoCodecReader.supports(query, clazz)
+                ? codecReader().find(query, clazz) : mongoTemplate.find(query, clazz);
+    }
+
+    private <T> T findOne(Query query, Class<T> clazz) {
+        return codecEnabled && MongoCodecReader.supports(query, clazz)
+                ? codecReader().findOne(query, clazz) : mongoTemplate.findOne(query, clazz);
+    }
+
+    /**
+     * 写入前后都失效请求内该实体的 selectOne 缓存, 写入失败也失效; 事务中不缓存, 回滚的数据不会留在缓存里
+     */
+    private void invalidate(Class<?> clazz) {
+        RequestCache cache = requestCache;
+        if (cache != null) cache.invalidateAll(REQUEST_CACHE_SOURCE + clazz.getName());
+    }
+
+    /**
+     * 查询形状: 方法、实体和查询条件, 条件中的值替换为?, 只在请求被抽中时计算
+     */
+    private void track(String method, Class<?> clazz, Query query) {
+        if (nPlusOneDetector == null) return;
+        nPlusOneDetector.record("mongo", () -> method + " " + clazz.getSimpleName() + " "
+                + shape(query.getQueryObject(), new StringBuilder()));
+    }
+
+    private static StringBuilder shape(Object value, StringBuilder shape) {
+        if (value instanceof Map) {
+            shape.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) shape.append(", ");
+                first = false;
+                shape.append(entry.getKey()).append(": ");
+                shape(entry.getValue(), shape);
+            }
+            return shape.append('}');
+        }
+        if (value instanceof List && !((List<?>) value).isEmpty() && ((List<?>) value).get(0) instanceof Map) {
+            shape.append('[');
+            for (int i = 0; i < ((List<?>) value).size(); i++) {
+                if (i > 0) shape.append(", ");
+                shape(((List<?>) value).get(i), shape);
+            }
+            return shape.append(']');
+        }
+        return shape.append('?');
+    }
+
+    private MongoCodecReader codecReader() {
+        MongoCodecReader reader = codecReader;
+        if (reader == null) {
+            reader = new MongoCodecReader(mongoTemplate);
+            codecReader = reader;
+        }
+        return reader;
+    }
+
+    /**
+     * 预热: 解析实体映射、元数据和反射字段, 有生成的编解码器时一并创建, 首次查询不再做这些
+     *
+     * @param entityClass 实体类
+     */
+    void warmUp(Class<?> entityClass) {
+        mongoTemplate.getConverter().getMappingContext().getPersistentEntity(entityClass);
+        MongoEntities.metadata(entityClass);
+        ENTITY_FIELDS.get(entityClass);
+        if (codecEnabled && MongoEntities.hasCodec(entityClass)) {
+            codecReader().warmUp(entityClass);
+            mongoPageHelper.warmUp(entityClass);
+        }
+    }
+
+    /**
+     * 没有生成元数据的实体, 反射结果按类缓存
+     */
+    private static final ClassValue<EntityFields> ENTITY_FIELDS = new ClassValue<EntityFields>() {
+        @Override
+        protected EntityFields computeValue(Class<?> type) {
+            return new EntityFields(type);
+        }
+    };
+
     /**
      * @Description 获取对象名称[驼峰命名]
      * @Param 实体类.class
@@ -229,16 +484,10 @@ public class MongoTemplates {
      * @Author 南有乔木
      * @Date 2019/07/16 下午 08:39
      */
-    private static String getObjectName(Class<?> clazz) {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        //com.wx.saas.rtb.data.pojo.bo.CollectorDto -> CollectorDto
-        String className = clazz.getName().split("\\.")[clazz.getName().split("\\.").length - 1];
-
-        //CollectorDto -> collectorDto
-        stringBuilder.append(String.valueOf(className.charAt(0)).toLowerCase());
-        stringBuilder.append(className.substring(1));
-        return stringBuilder.toString();
+    static String getObjectName(Class<?> clazz) {
+        MongoEntityMetadata<?> metadata = MongoEntities.metadata(clazz);
+        if (metadata != null) return metadata.getObjectName();
+        return ENTITY_FIELDS.get(clazz).objectName;
     }
 
     /**
@@ -249,16 +498,11 @@ public class MongoTemplates {
      * @Date 2019/08/01 上午 10:45
      */
     public static <T> String mongoChildName(Class<? super T> clazz) {
-        Field[] declaredFields = clazz.getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (field.getType().getName().equals("java.util.List") || field.getType().getName().equals("java.util.Set")) {
-                MongoChild mongoChild = field.getAnnotation(MongoChild.class);
-                if (mongoChild != null) {
-                    return field.getName();
-                }
-            }
-        }
-        throw new MongoException("多表关联中没有取到子类集合名字,请加上 @MongoChild");
+        MongoEntityMetadata<?> metadata = MongoEntities.metadata(clazz);
+        if (metadata != null && metadata.getChildName() != null) return metadata.getChildName();
+        String childName = ENTITY_FIELDS.get(clazz).childName;
+        if (childName == null) throw new MongoException("多表关联中没有取到子类集合名字,请加上 @MongoChild");
+        return childName;
     }
 
     /**
@@ -268,18 +512,12 @@ public class MongoTemplates {
      * @Author 南有乔木
      * @Date 2019/08/01 上午 10:44
      */
-    private static <T> String getMongoIdName(Class<? super T> clazz) {
-        List<Field> fieldList = new ArrayList<>(Arrays.asList(clazz.getDeclaredFields()));
-        while (clazz != null && !clazz.getName().toLowerCase().equals("java.lang.object")) {
-            fieldList.addAll(Arrays.asList(clazz.getDeclaredFields()));
-            clazz = clazz.getSuperclass();
-        }
-        for (Field e : fieldList) {
-            if (e.getAnnotation(Id.class) != null) {
-                return e.getName();
-            }
-        }
-        throw new MongoException("不能不设置关联ID");
+    static <T> String getMongoIdName(Class<? super T> clazz) {
+        MongoEntityMetadata<?> metadata = MongoEntities.metadata(clazz);
+        if (metadata != null && metadata.getIdName() != null) return metadata.getIdName();
+        List<String> idNames = ENTITY_FIELDS.get(clazz).idNames;
+        if (idNames.isEmpty()) throw new MongoException("不能不设置关联ID");
+        return idNames.get(0);
     }
 
     /**
@@ -290,17 +528,9 @@ public class MongoTemplates {
      * @Date 2019/08/01 上午 10:44
      */
     private static <T> List<String> getMongoIdNameList(Class<? super T> clazz) {
-        List<String> nameList = new ArrayList<>();
-        List<Field> fieldList = new ArrayList<>(Arrays.asList(clazz.getDeclaredFields()));
-        while (clazz != null && !clazz.getName().toLowerCase().equals("java.lang.object")) {
-            fieldList.addAll(Arrays.asList(clazz.getDeclaredFields()));
-            clazz = clazz.getSuperclass();
-        }
-        for (Field e : fieldList) {
-            if (e.getAnnotation(Id.class) != null) {
-                nameList.add(e.getName());
-            }
-        }
+        MongoEntityMetadata<?> metadata = MongoEntities.metadata(clazz);
+        if (metadata != null && !metadata.getIdNames().isEmpty()) return new ArrayList<>(metadata.getIdNames());
+        List<String> nameList = new ArrayList<>(ENTITY_FIELDS.get(clazz).idNames);
         if (nameList.size() == 0) throw new MongoException("不能不设置查询主键");
         return nameList;
     }
@@ -313,17 +543,52 @@ public class MongoTemplates {
      * @Date 2019/08/01 上午 10:43
      */
     private static <T> String getMongoOrderName(Class<? super T> clazz) {
-        List<Field> fieldList = new ArrayList<>(Arrays.asList(clazz.getDeclaredFields()));
-        while (clazz != null && !clazz.getName().toLowerCase().equals("java.lang.object")) {
-            fieldList.addAll(Arrays.asList(clazz.getDeclaredFields()));
-            clazz = clazz.getSuperclass();
-        }
-        for (Field e : fieldList) {
-            if (e.getAnnotation(MongoOrder.class) != null) {
-                return e.getName();
+        MongoEntityMetadata<?> metadata = MongoEntities.metadata(clazz);
+        if (metadata != null) return metadata.getOrderName();
+        return ENTITY_FIELDS.get(clazz).orderName;
+    }
+
+    /**
+     * 反射得到的对象名、子表集合、主键和排序字段, 与原来每次反射的结果一致
+     */
+    private static final class EntityFields {
+        private final String objectName;
+        private final String childName;
+        private final List<String> idNames;
+        private final String orderName;
+
+        EntityFields(Class<?> clazz) {
+            //com.wx.saas.rtb.data.pojo.bo.CollectorDto -> CollectorDto
+            String className = clazz.getName().split("\\.")[clazz.getName().split("\\.").length - 1];
+            //CollectorDto -> collectorDto
+            objectName = String.valueOf(className.charAt(0)).toLowerCase() + className.substring(1);
+
+            String child = null;
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.getType().getName().equals("java.util.List") || field.getType().getName().equals("java.util.Set")) {
+                    if (field.getAnnotation(MongoChild.class) != null) {
+                        child = field.getName();
+                        break;
+                    }
+                }
+            }
+            childName = child;
+
+            List<Field> fieldList = new ArrayList<>(Arrays.asList(clazz.getDeclaredFields()));
+            Class<?> type = clazz;
+            while (type != null && !type.getName().toLowerCase().equals("java.lang.object")) {
+                fieldList.addAll(Arrays.asList(type.getDeclaredFields()));
+                type = type.getSuperclass();
+            }
+            List<String> ids = new ArrayList<>();
+            String order = null;
+            for (Field e : fieldList) {
+                if (e.getAnnotation(Id.class) != null) ids.add(e.getName());
+                if (order == null && e.getAnnotation(MongoOrder.class) != null) order = e.getName();
             }
+            idNames = Collections.unmodifiableList(ids);
+            orderName = order;
         }
-        return null;
     }
 
 }
@@ -0,0 +1,105 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import com.nem.life.framework.boot.warmup.WarmUpConfiguration;
+import com.nem.life.framework.boot.warmup.WarmUpTask;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * mongodb启动预热: 填充连接池、解析实体元数据和编解码器、执行配置的查询
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "nem.warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(MongoWarmUpProperties.class)
+@Configuration
+@Import({WarmUpConfiguration.class})
+public class MongoWarmUpConfiguration {
+
+    @Bean
+    public WarmUpTask mongoConnectionWarmUp(MongoTemplate mongoTemplate, MongoWarmUpProperties mongoWarmUpProperties) {
+        return WarmUpTask.of("mongodb.connections", () -> openConnections(mongoTemplate, mongoWarmUpProperties.getConnections()));
+    }
+
+    @Bean
+    public WarmUpTask mongoMetadataWarmUp(MongoTemplate mongoTemplate, MongoTemplates mongoTemplates,
+                                          MongoWarmUpProperties mongoWarmUpProperties) {
+        return WarmUpTask.of("mongodb.metadata", () -> {
+            Set<Class<?>> entityClasses = new LinkedHashSet<>();
+            for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+                entityClasses.add(entity.getType());
+            }
+            entityClasses.addAll(scan(mongoWarmUpProperties.getEntityPackages()));
+            for (Class<?> entityClass : entityClasses) mongoTemplates.warmUp(entityClass);
+            log.info("warm-up mongodb metadata entities=" + entityClasses.size());
+        });
+    }
+
+    @Bean
+    public WarmUpTask mongoQueryWarmUp(MongoTemplate mongoTemplate, MongoWarmUpProperties mongoWarmUpProperties) {
+        return WarmUpTask.of("mongodb.queries", () -> {
+            for (MongoWarmUpProperties.WarmUpQuery query : mongoWarmUpProperties.getQueries()) {
+                mongoTemplate.getCollection(query.getCollection())
+                        .find(Document.parse(query.getFilter()))
+                        .limit(query.getLimit())
+                        .into(new ArrayList<>());
+            }
+        });
+    }
+
+    /**
+     * 同时发起多个PING, 每个请求占用一个连接, 连接池因此建立对应数量的连接
+     */
+    private static void openConnections(MongoTemplate mongoTemplate, int connections) throws Exception {
+        int count = Math.max(1, connections);
+        ExecutorService executor = Executors.newFixedThreadPool(count, new CustomizableThreadFactory("warm-up-mongodb-"));
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return mongoTemplate.executeCommand("{ping: 1}");
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) future.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Set<Class<?>> scan(List<String> packages) throws ClassNotFoundException {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        if (packages.isEmpty()) return classes;
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(org.springframework.data.mongodb.core.mapping.Document.class));
+        scanner.addIncludeFilter(new AnnotationTypeFilter(MongoEntity.class));
+        for (String basePackage : packages) {
+            for (BeanDefinition definition : scanner.findCandidateComponents(basePackage)) {
+                classes.add(ClassUtils.forName(definition.getBeanClassName(), MongoWarmUpConfiguration.class.getClassLoader()));
+            }
+        }
+        return classes;
+    }
+}
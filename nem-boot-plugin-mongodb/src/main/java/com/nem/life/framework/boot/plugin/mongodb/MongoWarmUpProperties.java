@@ -0,0 +1,44 @@
+package com.nem.life.framework.boot.plugin.mongodb;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "nem.warm-up.mongodb")
+public class MongoWarmUpProperties {
+    /**
+     * 启动时并发PING的次数, 连接池按需建立连接, 并发数即预先建立的连接数
+     */
+    private Integer connections = 2;
+
+    /**
+     * 扫描 &#64;Document / &#64;MongoEntity 实体的包, 与已注册到 MappingContext 的实体一起预热
+     */
+    private List<String> entityPackages = new ArrayList<>();
+
+    /**
+     * 启动时执行的查询, 预热服务端的索引和数据页
+     */
+    private List<WarmUpQuery> queries = new ArrayList<>();
+
+    @Data
+    public static class WarmUpQuery {
+        /**
+         * 集合名
+         */
+        private String collection;
+
+        /**
+         * 查询条件, json
+         */
+        private String filter = "{}";
+
+        /**
+         * 返回条数
+         */
+        private Integer limit = 1;
+    }
+}
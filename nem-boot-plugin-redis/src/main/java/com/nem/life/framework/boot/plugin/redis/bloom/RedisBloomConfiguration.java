@@ -0,0 +1,23 @@
+package com.nem.life.framework.boot.plugin.redis.bloom;
+
+import com.nem.life.framework.boot.plugin.redis.configuration.RedisConfiguration;
+import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+@ConditionalOnClass({LettuceConnectionFactory.class})
+@EnableConfigurationProperties(RedisBloomProperties.class)
+@Configuration
+@Import({RedisConfiguration.class})
+public class RedisBloomConfiguration {
+
+    @Bean
+    public RedisBloomFilters redisBloomFilters(RedisTemplates<Object, Object> redisTemplates,
+                                               RedisBloomProperties redisBloomProperties) {
+        return new RedisBloomFilters(redisTemplates, redisBloomProperties);
+    }
+}
@@ -0,0 +1,371 @@
+package com.nem.life.framework.boot.plugin.redis.bloom;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 基于redis bitmap的布隆过滤器, 用于拦截不存在的id, 防止缓存穿透
+ * <p>
+ * 每个元素用两个64位murmur哈希组合出k个位置, 写入时流水线SETBIT, 查询时一次lua调用逐位GETBIT, 遇到0立即返回;
+ * 位数和哈希函数个数保存在 key:meta 中, 第一个创建的节点写入, 之后的节点按redis中的值计算位置, 配置不同时打印告警。
+ * 开启本地镜像后, 镜像中已置位的位置不再查redis, 全部置位时不访问redis, 否则只查询镜像中未置位的位置;
+ * 位图由后台定时从redis整体拉取, 镜像未置位可能是其他节点刚写入, 仍以redis为准
+ */
+@Slf4j
+public class RedisBloomFilter {
+    /**
+     * redis单个bitmap最大 2^32 位
+     */
+    private static final long MAX_BITS = 1L << 32;
+    private static final int CHUNK_SIZE = 1000;
+    private static final String FIELD_NUM_BITS = "numBits";
+    private static final String FIELD_NUM_HASH_FUNCTIONS = "numHashFunctions";
+    /**
+     * 已有sizing时不覆盖, 返回redis中的sizing
+     */
+    private static final RedisScript<List> SIZING_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HSETNX', KEYS[1], '" + FIELD_NUM_BITS + "', ARGV[1]) == 1 then "
+                    + "redis.call('HSET', KEYS[1], '" + FIELD_NUM_HASH_FUNCTIONS + "', ARGV[2]) end "
+                    + "return redis.call('HMGET', KEYS[1], '" + FIELD_NUM_BITS + "', '" + FIELD_NUM_HASH_FUNCTIONS + "')",
+            List.class);
+    private static final RedisScript<Long> CONTAINS_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV do if redis.call('GETBIT', KEYS[1], ARGV[i]) == 0 then return 0 end end return 1",
+            Long.class);
+
+    private final String name;
+    private final String key;
+    private final byte[] rawKey;
+    private final RedisTemplate<?, ?> redisTemplate;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final boolean localMirror;
+    /**
+     * 镜像的替换和置位都在锁内, 查询只读引用
+     */
+    private final Object mirrorLock = new Object();
+    private volatile Sizing sizing;
+    private volatile byte[] mirror;
+    /**
+     * delete 时递增, 刷新期间被删除时不合并旧镜像
+     */
+    private long mirrorEpoch;
+
+    RedisBloomFilter(String name, String key, RedisTemplate<?, ?> redisTemplate,
+                     long expectedInsertions, double fpp, boolean localMirror) {
+        this.name = name;
+        this.key = key;
+        this.rawKey = key.getBytes(StandardCharsets.UTF_8);
+        this.redisTemplate = redisTemplate;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.localMirror = localMirror;
+        long numBits = Math.min(MAX_BITS, optimalNumOfBits(expectedInsertions, fpp));
+        this.sizing = new Sizing(numBits, optimalNumOfHashFunctions(expectedInsertions, numBits));
+        loadSizing();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNumBits() {
+        return sizing.numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return sizing.numHashFunctions;
+    }
+
+    /**
+     * 添加一个元素
+     *
+     * @param value 元素, 一般是id
+     */
+    public void put(String value) {
+        putAll(Collections.singletonList(value));
+    }
+
+    /**
+     * 批量添加, 每1000个元素一次流水线
+     *
+     * @param values 元素集合
+     */
+    public void putAll(Collection<String> values) {
+        putAll(values.iterator());
+    }
+
+    /**
+     * 从迭代器批量添加, 用于从mongo stream或mybatis游标预热
+     *
+     * @param values 元素迭代器
+     * @return 添加的数量
+     */
+    public long putAll(Iterator<String> values) {
+        long count = 0;
+        List<long[]> chunk = new ArrayList<>(CHUNK_SIZE);
+        while (values.hasNext()) {
+            chunk.add(offsets(values.next()));
+            count++;
+            if (chunk.size() >= CHUNK_SIZE) {
+                setBits(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) setBits(chunk);
+        return count;
+    }
+
+    /**
+     * 元素是否可能存在; 返回false时一定不存在
+     *
+     * @param value 元素
+     * @return 是否可能存在
+     */
+    @SuppressWarnings("unchecked")
+    public boolean mightContain(String value) {
+        long[] offsets = offsets(value);
+        byte[] bits = this.mirror;
+        List<String> unknown = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            if (bits == null || !isSet(bits, offset)) unknown.add(String.valueOf(offset));
+        }
+        if (unknown.isEmpty()) return true;
+        Long result = ((RedisTemplate<Object, Object>) redisTemplate).execute(CONTAINS_SCRIPT, StringRedisSerializer.UTF_8,
+                null, Collections.singletonList(key), unknown.toArray());
+        // 事务中只是入队, 按可能存在处理
+        return result == null || result != 0L;
+    }
+
+    /**
+     * 根据已置位数量估算的元素个数
+     *
+     * @return 元素个数
+     */
+    public long approximateElementCount() {
+        Long bitCount = redisTemplate.execute((RedisCallback<Long>) connection -> connection.bitCount(rawKey));
+        if (bitCount == null || bitCount == 0) return 0L;
+        Sizing current = sizing;
+        double fraction = Math.min(bitCount, current.numBits - 1) / (double) current.numBits;
+        return Math.round(-Math.log1p(-fraction) * current.numBits / current.numHashFunctions);
+    }
+
+    /**
+     * 按当前元素个数估算的误判率
+     *
+     * @return 误判率
+     */
+    public double expectedFpp() {
+        Long bitCount = redisTemplate.execute((RedisCallback<Long>) connection -> connection.bitCount(rawKey));
+        if (bitCount == null) return 0D;
+        Sizing current = sizing;
+        return Math.pow(bitCount / (double) current.numBits, current.numHashFunctions);
+    }
+
+    /**
+     * 创建时设定的误判率
+     *
+     * @return 误判率
+     */
+    public double configuredFpp() {
+        return fpp;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * 删除整个过滤器
+     */
+    public void delete() {
+        // 位图和sizing不在同一个slot, 集群中分两次删除
+        byte[] rawMetaKey = metaKey().getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(rawKey));
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.del(rawMetaKey));
+        if (localMirror) {
+            synchronized (mirrorLock) {
+                mirrorEpoch++;
+                mirror = null;
+            }
+        }
+        loadSizing();
+    }
+
+    /**
+     * 从redis整体拉取位图刷新本地镜像, 拉取期间本节点置位的位合并进新镜像
+     */
+    void refreshMirror() {
+        if (!localMirror) return;
+        try {
+            long epoch;
+            synchronized (mirrorLock) {
+                epoch = mirrorEpoch;
+            }
+            byte[] bits = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(rawKey));
+            byte[] fresh = bits == null ? new byte[0] : bits;
+            synchronized (mirrorLock) {
+                if (epoch != mirrorEpoch) return;
+                byte[] current = mirror;
+                if (current != null) {
+                    for (int i = 0, length = Math.min(current.length, fresh.length); i < length; i++) fresh[i] |= current[i];
+                }
+                mirror = fresh;
+            }
+        } catch (Exception e) {
+            log.warn("refresh bloom filter mirror failed:" + name, e);
+        }
+    }
+
+    /**
+     * 以redis中的sizing为准, 没有时写入本节点的; redis不可用时使用本节点的配置
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void loadSizing() {
+        Sizing configured = sizing;
+        List<?> stored;
+        try {
+            stored = ((RedisTemplate<Object, Object>) redisTemplate).execute(SIZING_SCRIPT, StringRedisSerializer.UTF_8,
+                    (RedisSerializer) StringRedisSerializer.UTF_8, Collections.singletonList(metaKey()),
+                    String.valueOf(configured.numBits), String.valueOf(configured.numHashFunctions));
+        } catch (Exception e) {
+            log.warn("load bloom filter sizing failed, use configured sizing:" + name, e);
+            return;
+        }
+        if (stored == null || stored.size() < 2 || stored.get(0) == null || stored.get(1) == null) return;
+        Sizing actual = new Sizing(Long.parseLong(String.valueOf(stored.get(0))), Integer.parseInt(String.valueOf(stored.get(1))));
+        if (actual.numBits != configured.numBits || actual.numHashFunctions != configured.numHashFunctions) {
+            log.warn("bloom filter " + name + " already exists with numBits=" + actual.numBits + " numHashFunctions="
+                    + actual.numHashFunctions + ", configured numBits=" + configured.numBits + " numHashFunctions="
+                    + configured.numHashFunctions + " ignored; delete() to resize");
+        }
+        sizing = actual;
+    }
+
+    private String metaKey() {
+        return key + ":meta";
+    }
+
+    private void setBits(List<long[]> chunk) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long[] offsets : chunk) {
+                for (long offset : offsets) {
+                    connection.setBit(rawKey, offset, true);
+                }
+            }
+            return null;
+        });
+        if (this.mirror == null) return;
+        synchronized (mirrorLock) {
+            byte[] bits = this.mirror;
+            if (bits == null) return;
+            // 本地镜像同步置位, 超出当前镜像长度的位等待下次刷新
+            for (long[] offsets : chunk) {
+                for (long offset : offsets) {
+                    int index = (int) (offset >>> 3);
+                    if (index < bits.length) bits[index] |= (byte) (0x80 >>> (offset & 7));
+                }
+            }
+        }
+    }
+
+    private long[] offsets(String value) {
+        Sizing current = sizing;
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        long hash1 = murmur64(data, 0x9747b28cL);
+        long hash2 = murmur64(data, hash1);
+        long[] offsets = new long[current.numHashFunctions];
+        long combined = hash1;
+        for (int i = 0; i < current.numHashFunctions; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % current.numBits;
+            combined += hash2;
+        }
+        return offsets;
+    }
+
+    /**
+     * redis位图第0位是第一个字节的最高位
+     */
+    private static boolean isSet(byte[] bits, long offset) {
+        int index = (int) (offset >>> 3);
+        return index < bits.length && (bits[index] & (0x80 >>> (offset & 7))) != 0;
+    }
+
+    private static final class Sizing {
+        private final long numBits;
+        private final int numHashFunctions;
+
+        private Sizing(long numBits, int numHashFunctions) {
+            this.numBits = numBits;
+            this.numHashFunctions = numHashFunctions;
+        }
+    }
+
+    static long optimalNumOfBits(long n, double p) {
+        return (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+    }
+
+    static int optimalNumOfHashFunctions(long n, long m) {
+        return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    /**
+     * MurmurHash64A
+     */
+    private static long murmur64(byte[] data, long seed) {
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        long h = seed ^ (data.length * m);
+        int blocks = data.length / 8;
+        for (int i = 0; i < blocks; i++) {
+            int j = i * 8;
+            long k = (data[j] & 0xffL)
+                    | (data[j + 1] & 0xffL) << 8
+                    | (data[j + 2] & 0xffL) << 16
+                    | (data[j + 3] & 0xffL) << 24
+                    | (data[j + 4] & 0xffL) << 32
+                    | (data[j + 5] & 0xffL) << 40
+                    | (data[j + 6] & 0xffL) << 48
+                    | (data[j + 7] & 0xffL) << 56;
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+        int tail = blocks * 8;
+        switch (data.length - tail) {
+            case 7:
+                h ^= (data[tail + 6] & 0xffL) << 48;
+            case 6:
+                h ^= (data[tail + 5] & 0xffL) << 40;
+            case 5:
+                h ^= (data[tail + 4] & 0xffL) << 32;
+            case 4:
+                h ^= (data[tail + 3] & 0xffL) << 24;
+            case 3:
+                h ^= (data[tail + 2] & 0xffL) << 16;
+            case 2:
+                h ^= (data[tail + 1] & 0xffL) << 8;
+            case 1:
+                h ^= data[tail] & 0xffL;
+                h *= m;
+            default:
+        }
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        return h;
+    }
+}
@@ -0,0 +1,84 @@
+package com.nem.life.framework.boot.plugin.redis.bloom;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 布隆过滤器注册中心, 同名过滤器只创建一次, 负责后台刷新本地镜像
+ * <pre>
+ * RedisBloomFilter filter = redisBloomFilters.create("user", 10_000_000, 0.01, true);
+ * filter.putAll(mongoTemplate.stream(query, User.class).map(User::getId)...);
+ * if (!filter.mightContain(id)) return null;
+ * </pre>
+ */
+public class RedisBloomFilters implements DisposableBean {
+    private final RedisTemplate<?, ?> redisTemplate;
+    private final RedisBloomProperties redisBloomProperties;
+    private final Map<String, RedisBloomFilter> filters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public RedisBloomFilters(RedisTemplate<?, ?> redisTemplate, RedisBloomProperties redisBloomProperties) {
+        this.redisTemplate = redisTemplate;
+        this.redisBloomProperties = redisBloomProperties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-bloom-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * 创建或获取过滤器, 不使用本地镜像
+     *
+     * @param name               过滤器名称
+     * @param expectedInsertions 预计元素个数
+     * @param fpp                期望误判率
+     * @return 过滤器
+     */
+    public RedisBloomFilter create(String name, long expectedInsertions, double fpp) {
+        return create(name, expectedInsertions, fpp, false);
+    }
+
+    /**
+     * 创建或获取过滤器
+     *
+     * @param name               过滤器名称
+     * @param expectedInsertions 预计元素个数
+     * @param fpp                期望误判率
+     * @param localMirror        是否在本地保存位图镜像, 查询不访问redis
+     * @return 过滤器
+     */
+    public RedisBloomFilter create(String name, long expectedInsertions, double fpp, boolean localMirror) {
+        if (expectedInsertions <= 0) throw new IllegalArgumentException("expectedInsertions必须大于0");
+        if (fpp <= 0 || fpp >= 1) throw new IllegalArgumentException("fpp必须在0和1之间");
+        return filters.computeIfAbsent(name, n -> {
+            RedisBloomFilter filter = new RedisBloomFilter(n, redisBloomProperties.getKeyPrefix() + n,
+                    redisTemplate, expectedInsertions, fpp, localMirror);
+            if (localMirror) {
+                long interval = redisBloomProperties.getRefreshInterval().toMillis();
+                scheduler.scheduleWithFixedDelay(filter::refreshMirror, 0, interval, TimeUnit.MILLISECONDS);
+            }
+            return filter;
+        });
+    }
+
+    /**
+     * 获取已创建的过滤器
+     *
+     * @param name 过滤器名称
+     * @return 过滤器, 未创建返回null
+     */
+    public RedisBloomFilter get(String name) {
+        return filters.get(name);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,20 @@
+package com.nem.life.framework.boot.plugin.redis.bloom;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.bloom")
+public class RedisBloomProperties {
+    /**
+     * redis key前缀
+     */
+    private String keyPrefix = "bloom:";
+
+    /**
+     * 本地镜像刷新间隔
+     */
+    private Duration refreshInterval = Duration.ofSeconds(60);
+}
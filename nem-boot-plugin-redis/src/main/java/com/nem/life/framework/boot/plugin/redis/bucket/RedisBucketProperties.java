@@ -0,0 +1,19 @@
+package com.nem.life.framework.boot.plugin.redis.bucket;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.bucket")
+public class RedisBucketProperties {
+    /**
+     * key前缀 -&gt; hash桶数, 以这些前缀开头的key由 RedisTemplates 存入桶中;
+     * 桶数按 预计key数 / 100 设置, 每个桶的字段数不超过 hash-max-listpack-entries(7.0以前为 hash-max-ziplist-entries, 默认128);
+     * 过期时间以桶为单位只延长不缩短, 不带过期时间的写入使整个桶不再过期, 桶内其他字段的过期时间也一起失效,
+     * 所以同一前缀下的写入应统一带或不带过期时间; getExpire 返回所在桶的剩余时间, 字段不存在时为-2
+     */
+    private Map<String, Integer> prefixes = new LinkedHashMap<>();
+}
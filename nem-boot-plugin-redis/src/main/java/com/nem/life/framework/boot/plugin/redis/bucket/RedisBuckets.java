@@ -0,0 +1,454 @@
+package com.nem.life.framework.boot.plugin.redis.bucket;
+
+import com.nem.life.framework.boot.plugin.redis.util.RedisClusterUtil;
+import io.lettuce.core.RedisNoScriptException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分桶存储: 逻辑key按前缀匹配后, 去掉前缀的部分作为字段, 按哈希放入 前缀~b桶号 的hash中,
+ * 小hash由redis以listpack(ziplist)紧凑编码保存, 省去每个key的元数据开销
+ * <p>
+ * 过期时间以桶为单位: 写入带过期时间时桶的过期时间只会延长到最晚的一个, 写入不带过期时间时整个桶不再过期,
+ * 桶内其他字段也一起不再过期; 所以字段可能比要求的过期时间存活更久, 不能依赖过期删除实现业务逻辑,
+ * 同一前缀下的写入应统一带或不带过期时间
+ * <p>
+ * 批量命令通过模板的连接执行, 经过指标和热点key统计; 事务中逐条进入MULTI队列, 否则一次流水线
+ */
+public class RedisBuckets {
+    public static final String BUCKET_SEPARATOR = "~b";
+    /**
+     * 每次写入的字段数上限, lua的unpack参数个数有限
+     */
+    private static final int MAX_FIELDS = 1000;
+    /**
+     * ARGV[1] 过期毫秒数, 小于等于0为不过期; 其余为字段和值
+     */
+    private static final String SET_LUA = "local existed = redis.call('EXISTS', KEYS[1]) "
+            + "local ttl = redis.call('PTTL', KEYS[1]) "
+            + "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) "
+            + "local expire = tonumber(ARGV[1]) "
+            + "if expire <= 0 then "
+            + "if ttl >= 0 then redis.call('PERSIST', KEYS[1]) end "
+            + "elseif existed == 0 or (ttl >= 0 and ttl < expire) then "
+            + "redis.call('PEXPIRE', KEYS[1], expire) end "
+            + "return 1";
+    private static final RedisScript<Long> SET_SCRIPT = new DefaultRedisScript<>(SET_LUA, Long.class);
+    /**
+     * 只延长有过期时间的桶, 不过期的桶保持不过期
+     */
+    private static final RedisScript<Long> EXPIRE_SCRIPT = new DefaultRedisScript<>(
+            "local ttl = redis.call('PTTL', KEYS[1]) "
+                    + "if ttl >= 0 and ttl < tonumber(ARGV[1]) then redis.call('PEXPIRE', KEYS[1], ARGV[1]) end "
+                    + "return ttl == -2 and 0 or 1", Long.class);
+    /**
+     * 字段不存在时返回-2, 否则返回桶的剩余秒数
+     */
+    private static final RedisScript<Long> TTL_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then return -2 end "
+                    + "return redis.call('TTL', KEYS[1])", Long.class);
+
+    private final List<Map.Entry<String, Integer>> prefixes;
+
+    public RedisBuckets(Map<String, Integer> prefixes) {
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(prefixes.entrySet());
+        // 最长的前缀优先匹配
+        sorted.sort((a, b) -> b.getKey().length() - a.getKey().length());
+        this.prefixes = sorted;
+    }
+
+    /**
+     * @param key 逻辑key
+     * @return 不是字符串或没有匹配的前缀时为null
+     */
+    public Bucket route(Object key) {
+        if (!(key instanceof String) || prefixes.isEmpty()) return null;
+        String name = (String) key;
+        for (Map.Entry<String, Integer> prefix : prefixes) {
+            if (!name.startsWith(prefix.getKey())) continue;
+            String field = name.substring(prefix.getKey().length());
+            int index = Math.floorMod(mix(field.hashCode()), Math.max(1, prefix.getValue()));
+            return new Bucket(prefix.getKey() + BUCKET_SEPARATOR + index, field);
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return prefixes.isEmpty();
+    }
+
+    /**
+     * @param key redis中的key
+     * @return 是 前缀~b桶号 形式的桶key时返回前缀, 否则为null
+     */
+    public String bucketPrefix(Object key) {
+        if (!(key instanceof String)) return null;
+        String name = (String) key;
+        for (Map.Entry<String, Integer> prefix : prefixes) {
+            String start = prefix.getKey() + BUCKET_SEPARATOR;
+            if (name.length() > start.length() && name.startsWith(start) && isDigits(name, start.length())) {
+                return prefix.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 逻辑key可能匹配 pattern 的前缀对应的桶key规则, 用于SCAN桶
+     *
+     * @param pattern 逻辑key的SCAN规则
+     * @return 桶key规则
+     */
+    public List<String> bucketPatterns(String pattern) {
+        String literal = literalPrefix(pattern);
+        List<String> patterns = new ArrayList<>();
+        for (Map.Entry<String, Integer> prefix : prefixes) {
+            String name = prefix.getKey();
+            if (name.startsWith(literal) || literal.startsWith(name)) patterns.add(escape(name) + BUCKET_SEPARATOR + "*");
+        }
+        return patterns;
+    }
+
+    /**
+     * 桶内匹配 pattern 的逻辑key; 桶按设计是小hash, 直接HKEYS
+     *
+     * @param connection 连接
+     * @param bucketKey  桶key
+     * @param pattern    逻辑key的SCAN规则
+     * @return 逻辑key
+     */
+    public List<String> keys(RedisConnection connection, String bucketKey, String pattern) {
+        String prefix = bucketPrefix(bucketKey);
+        List<String> keys = new ArrayList<>();
+        if (prefix == null) return keys;
+        Set<byte[]> fields = connection.hKeys(bucketKey.getBytes(StandardCharsets.UTF_8));
+        if (fields == null) return keys;
+        for (byte[] field : fields) {
+            String key = prefix + new String(field, StandardCharsets.UTF_8);
+            if (matches(pattern, key)) keys.add(key);
+        }
+        return keys;
+    }
+
+    /**
+     * 与redis的KEYS/SCAN相同的glob匹配: * ? [abc] [^a] [a-z] 和 \ 转义
+     */
+    public static boolean matches(String pattern, String key) {
+        return matches(pattern, 0, key, 0);
+    }
+
+    /**
+     * 单个写入, 通过 RedisTemplate 执行, 计入命令指标
+     */
+    public <V> void set(RedisTemplate<?, V> template, Bucket bucket, V value, long expireMillis) {
+        @SuppressWarnings("unchecked")
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        execute(template, SET_SCRIPT, bucket, String.valueOf(expireMillis).getBytes(StandardCharsets.UTF_8),
+                bucket.rawField(), valueSerializer.serialize(value));
+    }
+
+    public <V> V get(RedisTemplate<?, V> template, Bucket bucket) {
+        @SuppressWarnings("unchecked")
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        byte[] value = template.execute((RedisCallback<byte[]>) connection -> connection.hGet(bucket.rawKey(), bucket.rawField()));
+        return value == null ? null : valueSerializer.deserialize(value);
+    }
+
+    public long delete(RedisTemplate<?, ?> template, Bucket bucket) {
+        Long deleted = template.execute((RedisCallback<Long>) connection -> connection.hDel(bucket.rawKey(), bucket.rawField()));
+        return deleted == null ? 0L : deleted;
+    }
+
+    /**
+     * 桶的过期时间按同样的规则延长, 不会缩短其他字段的存活时间
+     */
+    public void expire(RedisTemplate<?, ?> template, Bucket bucket, long expireMillis) {
+        execute(template, EXPIRE_SCRIPT, bucket, String.valueOf(expireMillis).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 所在桶的剩余秒数, 不过期为-1, 字段不存在为-2
+     */
+    @SuppressWarnings("unchecked")
+    public Long ttl(RedisTemplate<?, ?> template, Bucket bucket) {
+        return ((RedisTemplate<Object, ?>) template).execute(TTL_SCRIPT, RedisSerializer.byteArray(),
+                (RedisSerializer<Long>) null, Collections.singletonList(bucket.rawKey()), bucket.rawField());
+    }
+
+    /**
+     * 按桶分组, 每个桶一次HMGET; 不存在的key不放入结果, MULTI中读取没有结果, 返回空
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> multiGet(RedisTemplate<K, V> template, Map<K, Bucket> buckets) {
+        Map<K, V> result = new LinkedHashMap<>(buckets.size());
+        if (buckets.isEmpty()) return result;
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        List<List<K>> groups = new ArrayList<>(group(buckets).values());
+        if (RedisClusterUtil.inTransaction()) {
+            template.execute((RedisCallback<Void>) connection -> {
+                for (List<K> keys : groups) {
+                    List<byte[]> values = connection.hMGet(buckets.get(keys.get(0)).rawKey(), rawFields(buckets, keys));
+                    if (values == null) continue;
+                    for (int i = 0; i < keys.size(); i++) {
+                        if (values.get(i) != null) result.put(keys.get(i), valueSerializer.deserialize(values.get(i)));
+                    }
+                }
+                return null;
+            });
+            return result;
+        }
+        List<Object> values = template.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<K> keys : groups) connection.hMGet(buckets.get(keys.get(0)).rawKey(), rawFields(buckets, keys));
+            return null;
+        }, valueSerializer);
+        for (int g = 0; g < groups.size(); g++) {
+            List<K> keys = groups.get(g);
+            List<?> groupValues = (List<?>) values.get(g);
+            for (int i = 0; i < keys.size(); i++) {
+                if (groupValues.get(i) != null) result.put(keys.get(i), (V) groupValues.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按桶分组, 每个桶一次lua写入; 脚本未加载时整批改用EVAL重试, HSET可以重复执行
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> void multiSet(RedisTemplate<K, V> template, Map<K, Bucket> buckets, Map<K, V> values, long expireMillis) {
+        if (buckets.isEmpty()) return;
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        byte[] expire = String.valueOf(expireMillis).getBytes(StandardCharsets.UTF_8);
+        List<byte[][]> calls = new ArrayList<>();
+        for (List<K> keys : group(buckets).values()) {
+            byte[] rawKey = buckets.get(keys.get(0)).rawKey();
+            for (int from = 0; from < keys.size(); from += MAX_FIELDS) {
+                List<K> chunk = keys.subList(from, Math.min(keys.size(), from + MAX_FIELDS));
+                byte[][] keysAndArgs = new byte[chunk.size() * 2 + 2][];
+                keysAndArgs[0] = rawKey;
+                keysAndArgs[1] = expire;
+                for (int i = 0; i < chunk.size(); i++) {
+                    keysAndArgs[2 + i * 2] = buckets.get(chunk.get(i)).rawField();
+                    keysAndArgs[3 + i * 2] = valueSerializer.serialize(values.get(chunk.get(i)));
+                }
+                calls.add(keysAndArgs);
+            }
+        }
+        if (RedisClusterUtil.inTransaction()) {
+            template.execute((RedisCallback<Void>) connection -> {
+                for (byte[][] keysAndArgs : calls) eval(connection, keysAndArgs);
+                return null;
+            });
+            return;
+        }
+        try {
+            template.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[][] keysAndArgs : calls) {
+                    connection.evalSha(SET_SCRIPT.getSha1(), ReturnType.INTEGER, 1, keysAndArgs);
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            if (!noScript(e)) throw e;
+            // 脚本没有加载到该节点, EVAL 同时加载
+            template.executePipelined((RedisCallback<Object>) connection -> {
+                for (byte[][] keysAndArgs : calls) eval(connection, keysAndArgs);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 按桶分组, 每个桶一次HDEL
+     *
+     * @return 删除的数量, MULTI中为0
+     */
+    public <K> long multiDelete(RedisTemplate<K, ?> template, Map<K, Bucket> buckets) {
+        if (buckets.isEmpty()) return 0L;
+        List<List<K>> groups = new ArrayList<>(group(buckets).values());
+        if (RedisClusterUtil.inTransaction()) {
+            Long deleted = template.execute((RedisCallback<Long>) connection -> {
+                long total = 0;
+                for (List<K> keys : groups) {
+                    Long count = connection.hDel(buckets.get(keys.get(0)).rawKey(), rawFields(buckets, keys));
+                    if (count != null) total += count;
+                }
+                return total;
+            });
+            return deleted == null ? 0L : deleted;
+        }
+        List<Object> results = template.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<K> keys : groups) connection.hDel(buckets.get(keys.get(0)).rawKey(), rawFields(buckets, keys));
+            return null;
+        });
+        long total = 0;
+        for (Object deleted : results) {
+            if (deleted instanceof Long) total += (Long) deleted;
+        }
+        return total;
+    }
+
+    /**
+     * key和参数都是原始字节, 不经过模板的key序列化
+     */
+    @SuppressWarnings("unchecked")
+    private static void execute(RedisTemplate<?, ?> template, RedisScript<Long> script, Bucket bucket, Object... args) {
+        ((RedisTemplate<Object, ?>) template).execute(script, RedisSerializer.byteArray(), null,
+                Collections.singletonList(bucket.rawKey()), args);
+    }
+
+    /**
+     * 桶key -&gt; 逻辑key
+     */
+    private static <K> Map<String, List<K>> group(Map<K, Bucket> buckets) {
+        Map<String, List<K>> groups = new LinkedHashMap<>();
+        buckets.forEach((key, bucket) -> groups.computeIfAbsent(bucket.getKey(), k -> new ArrayList<>()).add(key));
+        return groups;
+    }
+
+    private static boolean matches(String pattern, int p, String key, int k) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+            if (c == '*') {
+                while (p < pattern.length() && pattern.charAt(p) == '*') p++;
+                if (p == pattern.length()) return true;
+                for (int i = k; i <= key.length(); i++) {
+                    if (matches(pattern, p, key, i)) return true;
+                }
+                return false;
+            }
+            if (k >= key.length()) return false;
+            if (c == '?') {
+                p++;
+            } else if (c == '[') {
+                int end = p + 1;
+                boolean not = end < pattern.length() && pattern.charAt(end) == '^';
+                if (not) end++;
+                boolean match = false;
+                char ch = key.charAt(k);
+                while (end < pattern.length() && pattern.charAt(end) != ']') {
+                    char from = pattern.charAt(end);
+                    if (from == '\\' && end + 1 < pattern.length()) from = pattern.charAt(++end);
+                    if (end + 2 < pattern.length() && pattern.charAt(end + 1) == '-' && pattern.charAt(end + 2) != ']') {
+                        char to = pattern.charAt(end + 2);
+                        if (ch >= Math.min(from, to) && ch <= Math.max(from, to)) match = true;
+                        end += 3;
+                    } else {
+                        if (ch == from) match = true;
+                        end++;
+                    }
+                }
+                if (match == not) return false;
+                p = end + 1;
+            } else {
+                if (c == '\\' && p + 1 < pattern.length()) c = pattern.charAt(++p);
+                if (c != key.charAt(k)) return false;
+                p++;
+            }
+            k++;
+        }
+        return k == key.length();
+    }
+
+    /**
+     * 第一个通配符之前的部分
+     */
+    private static String literalPrefix(String pattern) {
+        StringBuilder literal = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?' || c == '[') break;
+            if (c == '\\' && i + 1 < pattern.length()) c = pattern.charAt(++i);
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    private static String escape(String literal) {
+        StringBuilder escaped = new StringBuilder(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == ']' || c == '\\') escaped.append('\\');
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static boolean isDigits(String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * String.hashCode 相近的key只有低位不同, 混合后再取模, 各桶字段数更平均
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static void eval(RedisConnection connection, byte[][] keysAndArgs) {
+        connection.eval(SET_LUA.getBytes(StandardCharsets.UTF_8), ReturnType.INTEGER, 1, keysAndArgs);
+    }
+
+    private static <K> byte[][] rawFields(Map<K, Bucket> buckets, List<K> keys) {
+        byte[][] fields = new byte[keys.size()][];
+        for (int i = 0; i < fields.length; i++) fields[i] = buckets.get(keys.get(i)).rawField();
+        return fields;
+    }
+
+    private static boolean noScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RedisNoScriptException) return true;
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 逻辑key所在的桶和字段
+     */
+    public static final class Bucket {
+        private final String key;
+        private final String field;
+
+        Bucket(String key, String field) {
+            this.key = key;
+            this.field = field;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        byte[] rawKey() {
+            return key.getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] rawField() {
+            return field.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nem.life.framework.boot.plugin.redis.cache;
+
+import lombok.Data;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个缓存的命中统计
+ */
+public class CacheStatistics {
+    final LongAdder localHits = new LongAdder();
+    final LongAdder redisHits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder loads = new LongAdder();
+    final LongAdder loadFailures = new LongAdder();
+    final LongAdder loadNanos = new LongAdder();
+    final LongAdder puts = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    /**
+     * 当前统计快照
+     *
+     * @param name      缓存名
+     * @param localSize 本地缓存条数
+     * @return 快照
+     */
+    public Snapshot snapshot(String name, int localSize) {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setName(name);
+        snapshot.setLocalSize(localSize);
+        snapshot.setLocalHits(localHits.sum());
+        snapshot.setRedisHits(redisHits.sum());
+        snapshot.setMisses(misses.sum());
+        snapshot.setLoads(loads.sum());
+        snapshot.setLoadFailures(loadFailures.sum());
+        snapshot.setTotalLoadTimeMillis(loadNanos.sum() / 1_000_000);
+        snapshot.setPuts(puts.sum());
+        snapshot.setEvictions(evictions.sum());
+        long requests = snapshot.getLocalHits() + snapshot.getRedisHits() + snapshot.getMisses();
+        snapshot.setHitRate(requests == 0 ? 0D : (snapshot.getLocalHits() + snapshot.getRedisHits()) / (double) requests);
+        return snapshot;
+    }
+
+    @Data
+    public static class Snapshot {
+        private String name;
+        private Integer localSize;
+        private Long localHits;
+        private Long redisHits;
+        private Long misses;
+        private Long loads;
+        private Long loadFailures;
+        private Long totalLoadTimeMillis;
+        private Long puts;
+        private Long evictions;
+        private Double hitRate;
+    }
+}
@@ -0,0 +1,63 @@
+package com.nem.life.framework.boot.plugin.redis.cache;
+
+import lombok.AllArgsConstructor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 有界本地缓存, LRU淘汰并带过期时间
+ */
+class LocalCache {
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> map;
+
+    LocalCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > LocalCache.this.maxSize;
+            }
+        };
+    }
+
+    boolean enabled() {
+        return maxSize > 0;
+    }
+
+    synchronized Object get(String key) {
+        Entry entry = map.get(key);
+        if (entry == null) return null;
+        if (entry.expireAt < System.currentTimeMillis()) {
+            map.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    synchronized void put(String key, Object value) {
+        if (!enabled()) return;
+        map.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    synchronized void remove(String key) {
+        map.remove(key);
+    }
+
+    synchronized void clear() {
+        map.clear();
+    }
+
+    synchronized int size() {
+        return map.size();
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final Object value;
+        private final long expireAt;
+    }
+}
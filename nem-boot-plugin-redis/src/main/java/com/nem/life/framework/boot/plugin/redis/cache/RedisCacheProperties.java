@@ -0,0 +1,69 @@
+package com.nem.life.framework.boot.plugin.redis.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.cache")
+public class RedisCacheProperties {
+    /**
+     * 是否注册两级缓存 CacheManager, 已有其他 CacheManager 时也不注册
+     */
+    private Boolean enabled = true;
+
+    /**
+     * redis中缓存key的前缀, 完整key为 前缀 + 缓存名 + :: + key
+     */
+    private String keyPrefix = "cache:";
+
+    /**
+     * 默认redis过期时间
+     */
+    private Duration ttl = Duration.ofMinutes(30);
+
+    /**
+     * 默认本地缓存过期时间, 用于兜底广播丢失时的脏数据窗口
+     */
+    private Duration localTtl = Duration.ofSeconds(60);
+
+    /**
+     * 默认本地缓存最大条数, 小于等于0不使用本地缓存
+     */
+    private Integer maxSize = 10000;
+
+    /**
+     * 是否缓存空值, 防止缓存穿透
+     */
+    private Boolean cacheNullValues = true;
+
+    /**
+     * 空值在redis中的过期时间
+     */
+    private Duration nullTtl = Duration.ofSeconds(60);
+
+    /**
+     * 过期时间随机增加的比例, 防止同时过期造成缓存雪崩
+     */
+    private Double ttlJitter = 0.1;
+
+    /**
+     * 本地缓存失效广播频道
+     */
+    private String channel = "nem:cache:invalidate";
+
+    /**
+     * 按缓存名单独配置
+     */
+    private Map<String, Spec> caches = new LinkedHashMap<>();
+
+    @Data
+    public static class Spec {
+        private Duration ttl;
+        private Duration localTtl;
+        private Integer maxSize;
+    }
+}
@@ -0,0 +1,235 @@
+package com.nem.life.framework.boot.plugin.redis.cache;
+
+import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两级缓存: 本地有界缓存 + redis
+ * <p>
+ * 读: 本地 -> redis -> 加载; 写和删除先改redis再改本地, 然后广播让其他节点丢弃本地副本
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+    /**
+     * redis中空值的占位
+     */
+    static final String NULL_MARKER = "\u0000nem:null";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final String name;
+    private final String redisPrefix;
+    private final RedisTemplates<Object, Object> redisTemplates;
+    private final LocalCache localCache;
+    private final long ttlMillis;
+    private final long nullTtlMillis;
+    private final double ttlJitter;
+    private final TwoLevelCacheManager cacheManager;
+    private final CacheStatistics statistics = new CacheStatistics();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    TwoLevelCache(String name, RedisTemplates<Object, Object> redisTemplates, LocalCache localCache,
+                  RedisCacheProperties properties, long ttlMillis, TwoLevelCacheManager cacheManager) {
+        super(properties.getCacheNullValues());
+        this.name = name;
+        this.redisPrefix = properties.getKeyPrefix() + name + "::";
+        this.redisTemplates = redisTemplates;
+        this.localCache = localCache;
+        this.ttlMillis = ttlMillis;
+        this.nullTtlMillis = properties.getNullTtl().toMillis();
+        this.ttlJitter = properties.getTtlJitter() == null ? 0D : properties.getTtlJitter();
+        this.cacheManager = cacheManager;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisTemplates;
+    }
+
+    public CacheStatistics.Snapshot getStatistics() {
+        return statistics.snapshot(name, localCache.size());
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = String.valueOf(key);
+        Object value = localCache.get(localKey);
+        if (value != null) {
+            statistics.localHits.increment();
+            return value;
+        }
+        value = redisTemplates.get(redisKey(localKey));
+        if (value == null) {
+            statistics.misses.increment();
+            return null;
+        }
+        if (NULL_MARKER.equals(value)) {
+            value = NullValue.INSTANCE;
+        }
+        statistics.redisHits.increment();
+        localCache.put(localKey, value);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) return (T) wrapper.get();
+        synchronized (locks[(String.valueOf(key).hashCode() & 0x7fffffff) % LOCK_STRIPES]) {
+            wrapper = get(key);
+            if (wrapper != null) return (T) wrapper.get();
+            long start = System.nanoTime();
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                statistics.loadFailures.increment();
+                throw new ValueRetrievalException(key, valueLoader, e);
+            } finally {
+                statistics.loads.increment();
+                statistics.loadNanos.add(System.nanoTime() - start);
+            }
+            put(key, value);
+            return value;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        String localKey = String.valueOf(key);
+        writeRedis(localKey, storeValue);
+        localCache.put(localKey, storeValue);
+        statistics.puts.increment();
+        cacheManager.publishEvict(name, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        String localKey = String.valueOf(key);
+        Boolean absent = redisTemplates.opsForValue().setIfAbsent(redisKey(localKey), redisValue(storeValue),
+                expireMillis(storeValue), TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(absent)) {
+            localCache.put(localKey, storeValue);
+            statistics.puts.increment();
+            cacheManager.publishEvict(name, localKey);
+            return null;
+        }
+        return get(key);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = String.valueOf(key);
+        redisTemplates.delete(redisKey(localKey));
+        localCache.remove(localKey);
+        statistics.evictions.increment();
+        cacheManager.publishEvict(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        ScanOptions options = ScanOptions.scanOptions().match(redisPrefix + "*").count(1000).build();
+        redisTemplates.execute((RedisCallback<Void>) connection -> {
+            List<byte[]> keys = new ArrayList<>();
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                while (cursor.hasNext()) {
+                    keys.add(cursor.next());
+                    if (keys.size() >= 1000) {
+                        connection.del(keys.toArray(new byte[0][]));
+                        keys.clear();
+                    }
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("清空缓存失败:" + name, e);
+            }
+            if (!keys.isEmpty()) connection.del(keys.toArray(new byte[0][]));
+            return null;
+        });
+        localCache.clear();
+        cacheManager.publishEvict(name, null);
+    }
+
+    /**
+     * 启动预热本地缓存, 分批pipeline读取redis, redis中没有的key跳过, 不广播
+     *
+     * @param keys      缓存key
+     * @param batchSize 每批条数
+     * @return 放入本地缓存的条数
+     */
+    @SuppressWarnings("unchecked")
+    public int preload(Collection<?> keys, int batchSize) {
+        if (!localCache.enabled() || keys.isEmpty()) return 0;
+        RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) redisTemplates.getKeySerializer();
+        List<String> localKeys = new ArrayList<>(keys.size());
+        for (Object key : keys) localKeys.add(String.valueOf(key));
+        int chunkSize = Math.max(1, batchSize);
+        int loaded = 0;
+        for (int from = 0; from < localKeys.size(); from += chunkSize) {
+            List<String> batch = localKeys.subList(from, Math.min(localKeys.size(), from + chunkSize));
+            List<Object> values = redisTemplates.executePipelined((RedisCallback<Object>) connection -> {
+                for (String localKey : batch) connection.get(keySerializer.serialize(redisKey(localKey)));
+                return null;
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                Object value = values.get(i);
+                if (value == null) continue;
+                localCache.put(batch.get(i), NULL_MARKER.equals(value) ? NullValue.INSTANCE : value);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * 收到其他节点广播后丢弃本地副本
+     *
+     * @param key 为空时清空整个本地缓存
+     */
+    void evictLocal(String key) {
+        if (key == null) {
+            localCache.clear();
+        } else {
+            localCache.remove(key);
+        }
+    }
+
+    private void writeRedis(String localKey, Object storeValue) {
+        redisTemplates.set(redisKey(localKey), redisValue(storeValue), expireMillis(storeValue), TimeUnit.MILLISECONDS);
+    }
+
+    private Object redisValue(Object storeValue) {
+        return storeValue == NullValue.INSTANCE ? NULL_MARKER : storeValue;
+    }
+
+    private long expireMillis(Object storeValue) {
+        long base = storeValue == NullValue.INSTANCE ? nullTtlMillis : ttlMillis;
+        if (ttlJitter <= 0) return base;
+        return base + (long) (base * ttlJitter * ThreadLocalRandom.current().nextDouble());
+    }
+
+    private String redisKey(String localKey) {
+        return redisPrefix + localKey;
+    }
+}
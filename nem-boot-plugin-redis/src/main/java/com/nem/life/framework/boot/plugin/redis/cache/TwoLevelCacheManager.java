@@ -0,0 +1,130 @@
+package com.nem.life.framework.boot.plugin.redis.cache;
+
+import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
+import com.nem.life.framework.boot.util.JsonUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 两级缓存管理器, 缓存按名字按需创建
+ * <p>
+ * 写入和删除时通过 redis pub/sub 广播, 其他节点收到后丢弃本地副本;
+ * redisTemplates 需要关闭事务支持, spring事务内的读写直接执行, 不随事务回滚
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener, InitializingBean, DisposableBean {
+    private static final String FIELD_NODE = "node";
+    private static final String FIELD_CACHE = "cache";
+    private static final String FIELD_KEY = "key";
+
+    private final RedisTemplates<Object, Object> redisTemplates;
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final RedisCacheProperties properties;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> cacheMap = new ConcurrentHashMap<>();
+    private RedisMessageListenerContainer listenerContainer;
+
+    public TwoLevelCacheManager(RedisTemplates<Object, Object> redisTemplates,
+                                RedisConnectionFactory redisConnectionFactory,
+                                RedisCacheProperties properties) {
+        this.redisTemplates = redisTemplates;
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.properties = properties;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return cacheMap.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(cacheMap.keySet());
+    }
+
+    /**
+     * 所有缓存的命中统计
+     *
+     * @return 缓存名 -> 统计
+     */
+    public Map<String, CacheStatistics.Snapshot> getStatistics() {
+        Map<String, CacheStatistics.Snapshot> statistics = new LinkedHashMap<>();
+        cacheMap.forEach((name, cache) -> statistics.put(name, cache.getStatistics()));
+        return statistics;
+    }
+
+    private TwoLevelCache createCache(String name) {
+        RedisCacheProperties.Spec spec = properties.getCaches().getOrDefault(name, new RedisCacheProperties.Spec());
+        Duration ttl = spec.getTtl() == null ? properties.getTtl() : spec.getTtl();
+        Duration localTtl = spec.getLocalTtl() == null ? properties.getLocalTtl() : spec.getLocalTtl();
+        int maxSize = spec.getMaxSize() == null ? properties.getMaxSize() : spec.getMaxSize();
+        LocalCache localCache = new LocalCache(maxSize, Math.min(localTtl.toMillis(), ttl.toMillis()));
+        return new TwoLevelCache(name, redisTemplates, localCache, properties, ttl.toMillis(), this);
+    }
+
+    /**
+     * 广播本地缓存失效
+     *
+     * @param cacheName 缓存名
+     * @param key       为空时表示清空
+     */
+    void publishEvict(String cacheName, String key) {
+        Map<String, String> message = new HashMap<>();
+        message.put(FIELD_NODE, nodeId);
+        message.put(FIELD_CACHE, cacheName);
+        message.put(FIELD_KEY, key);
+        byte[] channel = StringRedisSerializer.UTF_8.serialize(properties.getChannel());
+        byte[] body = StringRedisSerializer.UTF_8.serialize(JsonUtil.objectToJson(message));
+        try {
+            redisTemplates.execute((RedisCallback<Long>) connection -> connection.publish(channel, body));
+        } catch (Exception e) {
+            log.warn("publish cache invalidation failed:" + cacheName, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Map<String, String> body = JsonUtil.jsonToMap(StringRedisSerializer.UTF_8.deserialize(message.getBody()));
+        if (body == null || nodeId.equals(body.get(FIELD_NODE))) return;
+        TwoLevelCache cache = cacheMap.get(body.get(FIELD_CACHE));
+        if (cache != null) {
+            cache.evictLocal(body.get(FIELD_KEY));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.addMessageListener(this, new ChannelTopic(properties.getChannel()));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+}
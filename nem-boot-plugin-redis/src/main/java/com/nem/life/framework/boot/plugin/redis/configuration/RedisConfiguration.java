@@ -3,13 +3,32 @@ package com.nem.life.framework.boot.plugin.redis.configuration;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nem.life.framework.boot.plugin.redis.bucket.RedisBucketProperties;
+import com.nem.life.framework.boot.plugin.redis.bucket.RedisBuckets;
+import com.nem.life.framework.boot.plugin.redis.cache.RedisCacheProperties;
+import com.nem.life.framework.boot.plugin.redis.cache.TwoLevelCacheManager;
+import com.nem.life.framework.boot.plugin.redis.hotkey.HotKeyConfiguration;
+import com.nem.life.framework.boot.plugin.redis.hotkey.HotKeyDetector;
+import com.nem.life.framework.boot.plugin.redis.metrics.RedisMetrics;
+import com.nem.life.framework.boot.plugin.redis.metrics.RedisMetricsConfiguration;
+import com.nem.life.framework.boot.plugin.redis.util.RedisAsyncTemplates;
 import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
 import com.nem.life.framework.boot.plugin.redis.util.StringRedisTemplates;
+import com.nem.life.framework.boot.plugin.redis.warmup.RedisWarmUpConfiguration;
+import com.nem.life.framework.boot.requestcache.RequestCache;
+import com.nem.life.framework.boot.requestcache.RequestCacheConfiguration;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CachingConfigurerSupport;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
@@ -19,15 +38,32 @@ import javax.annotation.Resource;
 
 @RequiredArgsConstructor
 @ConditionalOnClass({LettuceConnectionFactory.class})
+@EnableConfigurationProperties({RedisCacheProperties.class, RedisBucketProperties.class})
 @Configuration
+@Import({RedisMetricsConfiguration.class, HotKeyConfiguration.class, RedisWarmUpConfiguration.class,
+        RequestCacheConfiguration.class})
 public class RedisConfiguration extends CachingConfigurerSupport {
     @Resource
     private LettuceConnectionFactory lettuceConnectionFactory;
+    @Resource
+    private RedisCacheProperties redisCacheProperties;
+    @Resource
+    private RedisBucketProperties redisBucketProperties;
+    @Autowired
+    private ObjectProvider<RedisMetrics> redisMetrics;
+    @Autowired
+    private ObjectProvider<HotKeyDetector> hotKeyDetector;
+    @Autowired
+    private ObjectProvider<RequestCache> requestCache;
 
     @ConditionalOnClass(LettuceConnectionFactory.class)
     @Bean
     public RedisTemplates<Object, Object> redisTemplates() {
         RedisTemplates<Object, Object> redisTemplate = new RedisTemplates<>();
+        redisTemplate.setRedisMetrics(redisMetrics.getIfAvailable());
+        redisTemplate.setHotKeyDetector(hotKeyDetector.getIfAvailable());
+        redisTemplate.setRedisBuckets(new RedisBuckets(redisBucketProperties.getPrefixes()));
+        redisTemplate.setRequestCache(requestCache.getIfAvailable());
         initRedisTemplate(redisTemplate, lettuceConnectionFactory);
         return redisTemplate;
     }
@@ -36,10 +72,37 @@ public class RedisConfiguration extends CachingConfigurerSupport {
     @Bean
     public StringRedisTemplates strRedisTemplates() {
         StringRedisTemplates redisTemplate = new StringRedisTemplates();
+        redisTemplate.setRedisMetrics(redisMetrics.getIfAvailable());
+        redisTemplate.setHotKeyDetector(hotKeyDetector.getIfAvailable());
         initRedisTemplate(redisTemplate, lettuceConnectionFactory);
         return redisTemplate;
     }
 
+    @ConditionalOnClass(LettuceConnectionFactory.class)
+    @Bean
+    public RedisAsyncTemplates<Object, Object> redisAsyncTemplates(RedisTemplates<Object, Object> redisTemplates) {
+        return new RedisAsyncTemplates<>(redisTemplates, lettuceConnectionFactory);
+    }
+
+    /**
+     * 两级缓存: 本地有界缓存 + redis, 配置见 nem.redis.cache; 已有 CacheManager 或 nem.redis.cache.enabled=false 时不注册。
+     * 使用单独的template且不开启事务支持, 否则在spring事务内读缓存会进入MULTI返回null。
+     * 不覆盖 {@link CachingConfigurerSupport#cacheManager()}, 由spring按类型取唯一的 CacheManager bean,
+     * 这样不注册本bean时也不会调用到带条件的bean方法
+     *
+     * @return cacheManager
+     */
+    @ConditionalOnClass(LettuceConnectionFactory.class)
+    @ConditionalOnProperty(prefix = "nem.redis.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+    @ConditionalOnMissingBean(CacheManager.class)
+    @Bean("cacheManager")
+    public CacheManager twoLevelCacheManager() {
+        RedisTemplates<Object, Object> cacheRedisTemplates = new RedisTemplates<>();
+        cacheRedisTemplates.setRedisMetrics(redisMetrics.getIfAvailable());
+        initRedisTemplate(cacheRedisTemplates, lettuceConnectionFactory, false);
+        return new TwoLevelCacheManager(cacheRedisTemplates, lettuceConnectionFactory, redisCacheProperties);
+    }
+
     @Bean
     public RedisTemplate<String, Object> redisTemplate() {
         RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
@@ -47,15 +110,30 @@ public class RedisConfiguration extends CachingConfigurerSupport {
         return redisTemplate;
     }
 
-    private void initRedisTemplate(RedisTemplate redisTemplate, LettuceConnectionFactory lettuceConnectionFactory) {
-
-        // 使用Jackson2JsonRedisSerialize 替换默认序列化
+    /**
+     * value和hash value使用的序列化, 带类型信息的json
+     *
+     * @return 序列化
+     */
+    public static Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer() {
         Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer = new Jackson2JsonRedisSerializer<Object>(
                 Object.class);
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
         objectMapper.enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
         jackson2JsonRedisSerializer.setObjectMapper(objectMapper);
+        return jackson2JsonRedisSerializer;
+    }
+
+    private void initRedisTemplate(RedisTemplate redisTemplate, LettuceConnectionFactory lettuceConnectionFactory) {
+        initRedisTemplate(redisTemplate, lettuceConnectionFactory, true);
+    }
+
+    private void initRedisTemplate(RedisTemplate redisTemplate, LettuceConnectionFactory lettuceConnectionFactory,
+                                   boolean transactionSupport) {
+
+        // 使用Jackson2JsonRedisSerialize 替换默认序列化
+        Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer = jackson2JsonRedisSerializer();
         // 设置value的序列化规则和 key的序列化规则
         redisTemplate.setKeySerializer(new StringRedisSerializer());
         redisTemplate.setValueSerializer(jackson2JsonRedisSerializer);
@@ -63,7 +141,7 @@ public class RedisConfiguration extends CachingConfigurerSupport {
         redisTemplate.setHashKeySerializer(new StringRedisSerializer());
         redisTemplate.setHashValueSerializer(jackson2JsonRedisSerializer);
         // 缓存支持回滚(事务管理)
-        redisTemplate.setEnableTransactionSupport(true);
+        redisTemplate.setEnableTransactionSupport(transactionSupport);
         redisTemplate.setConnectionFactory(lettuceConnectionFactory);
         redisTemplate.afterPropertiesSet();
     }
@@ -0,0 +1,25 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import lombok.Data;
+
+/**
+ * 热点候选key, 访问次数为滑动窗口内按采样比例放大后的估算值
+ */
+@Data
+public class HotKey {
+    private String key;
+    private Long reads;
+    private Long writes;
+    /**
+     * 每秒访问次数, 读+写
+     */
+    private Double rate;
+    /**
+     * 是否达到热点阈值
+     */
+    private Boolean hot;
+    /**
+     * 是否缓存在本地
+     */
+    private Boolean pinned;
+}
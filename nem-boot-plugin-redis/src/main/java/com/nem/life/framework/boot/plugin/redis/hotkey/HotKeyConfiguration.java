@@ -0,0 +1,45 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 热点key探测, nem.redis.hot-key.enabled=true 开启;
+ * classpath中有micrometer时注册指标, 有actuator时注册 redishotkeys 端点
+ */
+@ConditionalOnProperty(prefix = "nem.redis.hot-key", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(HotKeyProperties.class)
+@Configuration
+public class HotKeyConfiguration {
+
+    @Bean
+    public HotKeyDetector hotKeyDetector(HotKeyProperties hotKeyProperties) {
+        return new HotKeyDetector(hotKeyProperties);
+    }
+
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @Configuration
+    static class HotKeyMetricsConfiguration {
+
+        @Bean
+        public HotKeyMeters hotKeyMeters(HotKeyDetector hotKeyDetector, ObjectProvider<MeterRegistry> meterRegistry) {
+            return new HotKeyMeters(hotKeyDetector, meterRegistry.getIfUnique(() -> Metrics.globalRegistry));
+        }
+    }
+
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    @Configuration
+    static class HotKeyEndpointConfiguration {
+
+        @Bean
+        public HotKeyEndpoint hotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+            return new HotKeyEndpoint(hotKeyDetector);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 连接代理, 第一个参数是 byte[] / byte[][] / Map&lt;byte[], byte[]&gt; 的命令视为访问key,
+ * READ_COMMANDS 以外都按写命令统计, 本地缓存时写命令清除参数中所有key的缓存;
+ * 事务和pipeline中的写命令只是入队, 除了入队时清除, EXEC/closePipeline 真正执行后再清除一次,
+ * 避免其他线程在执行前又缓存了旧值
+ */
+final class HotKeyConnection implements InvocationHandler {
+    private static final Set<String> READ_COMMANDS = new HashSet<>(Arrays.asList(
+            "exists", "type", "ttl", "pTtl", "dump", "get", "mGet", "getRange", "getBit", "bitCount", "bitPos", "strLen",
+            "hGet", "hMGet", "hExists", "hLen", "hKeys", "hVals", "hGetAll", "hScan", "hStrLen",
+            "lRange", "lIndex", "lLen", "sMembers", "sIsMember", "sCard", "sRandMember", "sScan", "sInter", "sUnion", "sDiff",
+            "zRange", "zRangeWithScores", "zRangeByScore", "zRangeByScoreWithScores", "zRevRange", "zRevRangeWithScores",
+            "zRevRangeByScore", "zRevRangeByScoreWithScores", "zRangeByLex", "zRevRangeByLex", "zCount", "zCard", "zScore",
+            "zRank", "zRevRank", "zScan", "pfCount", "geoDist", "geoHash", "geoPos", "geoRadius", "geoRadiusByMember",
+            "xLen", "xRange", "xRevRange", "xPending"));
+    /**
+     * 第一个参数是 byte[] 但不是key的命令
+     */
+    private static final Set<String> NON_KEY_COMMANDS = new HashSet<>(Arrays.asList(
+            "eval", "evalSha", "scriptLoad", "publish", "echo", "ping", "keys", "setClientName"));
+    private static final Set<String> CLEAR_COMMANDS = new HashSet<>(Arrays.asList("flushDb", "flushAll"));
+    private static final Set<String> FLUSH_COMMANDS = new HashSet<>(Arrays.asList("exec", "closePipeline"));
+    private static final Set<String> DISCARD_COMMANDS = new HashSet<>(Arrays.asList("discard", "close"));
+
+    private final HotKeyDetector detector;
+    private final RedisConnection target;
+    /**
+     * 事务或pipeline中入队的写命令访问的key, 连接同一时间只在一个线程使用
+     */
+    private final List<byte[]> queuedWrites = new ArrayList<>();
+
+    HotKeyConnection(HotKeyDetector detector, RedisConnection target) {
+        this.detector = detector;
+        this.target = target;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String command = method.getName();
+        if (args == null || args.length == 0) {
+            if (CLEAR_COMMANDS.contains(command)) detector.invalidateAll();
+            if (FLUSH_COMMANDS.contains(command) && !queuedWrites.isEmpty()) return flush(method);
+            if (DISCARD_COMMANDS.contains(command)) queuedWrites.clear();
+            return invokeTarget(method, args);
+        }
+        Object first = args[0];
+        if (NON_KEY_COMMANDS.contains(command)
+                || !(first instanceof byte[] || first instanceof byte[][] || first instanceof Map)) {
+            return invokeTarget(method, args);
+        }
+        boolean write = !READ_COMMANDS.contains(command);
+        forEachKey(first, key -> detector.record(key, write));
+        if (!detector.isLocalCache()) return invokeTarget(method, args);
+        if (write) {
+            try {
+                return invokeTarget(method, args);
+            } finally {
+                for (Object arg : args) forEachKey(arg, detector::invalidate);
+                if (target.isQueueing() || target.isPipelined()) {
+                    for (Object arg : args) forEachKey(arg, queuedWrites::add);
+                }
+            }
+        }
+        return cachedRead(command, method, args);
+    }
+
+    /**
+     * 执行入队的命令后清除其中写过的key
+     */
+    private Object flush(Method method) throws Throwable {
+        try {
+            return invokeTarget(method, null);
+        } finally {
+            for (byte[] key : queuedWrites) detector.invalidate(key);
+            queuedWrites.clear();
+        }
+    }
+
+    /**
+     * 只缓存 GET key 和 HGET key field, pipeline和事务中命令只是入队, 不走缓存
+     */
+    private Object cachedRead(String command, Method method, Object[] args) throws Throwable {
+        if (!(args[0] instanceof byte[])) return invokeTarget(method, args);
+        byte[] field;
+        if ("get".equals(command) && args.length == 1) {
+            field = null;
+        } else if ("hGet".equals(command) && args.length == 2 && args[1] instanceof byte[]) {
+            field = (byte[]) args[1];
+        } else {
+            return invokeTarget(method, args);
+        }
+        if (target.isPipelined() || target.isQueueing()) return invokeTarget(method, args);
+        byte[] key = (byte[]) args[0];
+        byte[] cached = detector.cached(key, field);
+        if (cached != null) return cached;
+        long version = detector.version(key);
+        Object result = invokeTarget(method, args);
+        if (version >= 0 && result instanceof byte[]) detector.cache(key, field, (byte[]) result, version);
+        return result;
+    }
+
+    private static void forEachKey(Object arg, Consumer<byte[]> action) {
+        if (arg instanceof byte[]) {
+            action.accept((byte[]) arg);
+        } else if (arg instanceof byte[][]) {
+            for (byte[] key : (byte[][]) arg) action.accept(key);
+        } else if (arg instanceof Map) {
+            for (Object key : ((Map<?, ?>) arg).keySet()) {
+                if (key instanceof byte[]) action.accept((byte[]) key);
+            }
+        }
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
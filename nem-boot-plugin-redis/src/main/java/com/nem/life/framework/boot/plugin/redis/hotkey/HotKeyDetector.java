@@ -0,0 +1,360 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.util.ByteArrayWrapper;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热点key探测
+ * <p>
+ * 按采样比例记录命令访问的key, 读写分别计入滑动窗口内每一格的count-min sketch, 估算次数进入前列的key作为候选;
+ * 窗口每滚动一格重新估算所有候选, 每秒访问次数达到阈值的key记为热点并打印告警日志。
+ * 访问频率不到阈值1/10的key不作为候选, 只占用sketch的计数器, 不转换字符串也不加锁。
+ * <p>
+ * 开启本地缓存时, 热点key的 GET/HGET 结果在本地缓存 localCacheTtl, 本节点的写命令立即清除,
+ * 其他节点写入后本节点最多读到 localCacheTtl 之前的值; 本地命中同样计入访问次数, 热度下降后自动取消缓存
+ */
+@Slf4j
+public class HotKeyDetector {
+    private static final int MAX_PINNED_VALUES = 256;
+    private static final Object NO_FIELD = new Object();
+
+    private final double sampleRate;
+    private final long sliceMillis;
+    private final int width;
+    private final int mask;
+    private final int depth;
+    private final Slice[] slices;
+    private final int topK;
+    private final int capacity;
+    private final double threshold;
+    private final long minimum;
+    private final boolean localCache;
+    private final long localCacheTtlMillis;
+    private final ConcurrentMap<ByteArrayWrapper, Candidate> candidates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ByteArrayWrapper, PinnedKey> pinned = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Class<?>[]> interfaces = new ConcurrentHashMap<>();
+    private final LongAdder detected = new LongAdder();
+    private final LongAdder localHits = new LongAdder();
+    private volatile long rotated = -1;
+    private volatile long admission;
+    private volatile List<HotKey> hotKeys = Collections.emptyList();
+
+    public HotKeyDetector(HotKeyProperties properties) {
+        this.sampleRate = Math.min(1D, Math.max(0D, properties.getSampleRate()));
+        int sliceCount = Math.max(2, properties.getSlices());
+        this.sliceMillis = Math.max(1, properties.getWindow().toMillis() / sliceCount);
+        this.width = Integer.highestOneBit(Math.max(16, properties.getSketchWidth()) - 1) << 1;
+        this.mask = width - 1;
+        this.depth = Math.max(1, properties.getSketchDepth());
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) slices[i] = new Slice(depth * width);
+        this.topK = Math.max(1, properties.getTopK());
+        this.capacity = topK * 4;
+        this.threshold = properties.getThreshold();
+        // 阈值1/10对应的窗口内采样次数
+        this.minimum = (long) (threshold / 10 * sliceCount * sliceMillis / 1000 * sampleRate);
+        this.admission = minimum;
+        this.localCache = Boolean.TRUE.equals(properties.getLocalCache());
+        this.localCacheTtlMillis = properties.getLocalCacheTtl().toMillis();
+    }
+
+    /**
+     * 包装连接, 记录每个命令访问的key, 开启本地缓存时拦截热点key的读写
+     *
+     * @param connection 原连接
+     * @return 包装后的连接
+     */
+    public RedisConnection instrument(RedisConnection connection) {
+        if (connection == null) return null;
+        Class<?>[] proxyInterfaces = interfaces.computeIfAbsent(connection.getClass(),
+                type -> ClassUtils.getAllInterfacesForClass(type, type.getClassLoader()));
+        return (RedisConnection) Proxy.newProxyInstance(connection.getClass().getClassLoader(), proxyInterfaces,
+                new HotKeyConnection(this, connection));
+    }
+
+    /**
+     * 记录一次访问, 按采样比例丢弃
+     *
+     * @param key   redis key
+     * @param write 是否写命令
+     */
+    public void record(byte[] key, boolean write) {
+        if (key == null) return;
+        if (sampleRate < 1D && ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+        long current = System.currentTimeMillis() / sliceMillis;
+        if (current > rotated) rotate(current);
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        Slice slice = slices[(int) (current % slices.length)];
+        AtomicIntegerArray counters = write ? slice.writes : slice.reads;
+        int count = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            count = Math.min(count, counters.incrementAndGet(i * width + ((h1 + i * h2) & mask)));
+        }
+        // 当前格的计数按格数放大仍不够成为候选时, 不估算整个窗口
+        if ((long) count * slices.length <= admission) return;
+        long reads = estimate(h1, h2, false);
+        long writes = estimate(h1, h2, true);
+        if (reads + writes <= admission) return;
+        offer(key, h1, h2, reads, writes);
+    }
+
+    /**
+     * 当前访问最多的前K个key, 按每秒访问次数从高到低
+     *
+     * @return 热点候选
+     */
+    public List<HotKey> getHotKeys() {
+        rotate(System.currentTimeMillis() / sliceMillis);
+        return hotKeys;
+    }
+
+    /**
+     * 累计发现的热点次数, 同一个key冷却后再次变热重新计数
+     *
+     * @return 次数
+     */
+    public long getDetected() {
+        return detected.sum();
+    }
+
+    /**
+     * 累计本地缓存命中次数
+     *
+     * @return 次数
+     */
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    boolean isLocalCache() {
+        return localCache;
+    }
+
+    /**
+     * 本地缓存的值
+     *
+     * @param key   redis key
+     * @param field hash field, GET时为null
+     * @return 没有缓存或已过期时为null
+     */
+    byte[] cached(byte[] key, byte[] field) {
+        if (pinned.isEmpty()) return null;
+        PinnedKey pinnedKey = pinned.get(new ByteArrayWrapper(key));
+        if (pinnedKey == null) return null;
+        CachedValue cached = pinnedKey.values.get(field == null ? NO_FIELD : new ByteArrayWrapper(field));
+        if (cached == null || cached.expireAt < System.currentTimeMillis()) return null;
+        localHits.increment();
+        return cached.value.clone();
+    }
+
+    /**
+     * 读之前取版本号, 读完写入本地缓存时版本号不变才写入, 避免读的过程中本节点写入后又缓存了旧值
+     *
+     * @param key redis key
+     * @return 不是热点时为-1
+     */
+    long version(byte[] key) {
+        if (pinned.isEmpty()) return -1;
+        PinnedKey pinnedKey = pinned.get(new ByteArrayWrapper(key));
+        return pinnedKey == null ? -1 : pinnedKey.version.get();
+    }
+
+    void cache(byte[] key, byte[] field, byte[] value, long version) {
+        PinnedKey pinnedKey = pinned.get(new ByteArrayWrapper(key));
+        if (pinnedKey == null || pinnedKey.version.get() != version) return;
+        if (pinnedKey.values.size() >= MAX_PINNED_VALUES) pinnedKey.values.clear();
+        pinnedKey.values.put(field == null ? NO_FIELD : new ByteArrayWrapper(field.clone()),
+                new CachedValue(value.clone(), System.currentTimeMillis() + localCacheTtlMillis));
+    }
+
+    void invalidate(byte[] key) {
+        if (pinned.isEmpty()) return;
+        PinnedKey pinnedKey = pinned.get(new ByteArrayWrapper(key));
+        if (pinnedKey == null) return;
+        pinnedKey.version.incrementAndGet();
+        pinnedKey.values.clear();
+    }
+
+    void invalidateAll() {
+        for (PinnedKey pinnedKey : pinned.values()) {
+            pinnedKey.version.incrementAndGet();
+            pinnedKey.values.clear();
+        }
+    }
+
+    private long estimate(int h1, int h2, boolean write) {
+        long total = 0;
+        for (Slice slice : slices) {
+            AtomicIntegerArray counters = write ? slice.writes : slice.reads;
+            int min = Integer.MAX_VALUE;
+            for (int i = 0; i < depth; i++) min = Math.min(min, counters.get(i * width + ((h1 + i * h2) & mask)));
+            total += min;
+        }
+        return total;
+    }
+
+    private void offer(byte[] key, int h1, int h2, long reads, long writes) {
+        // 已经是候选的key由窗口滚动时统一重新估算, 不在这里写共享字段
+        if (candidates.containsKey(new ByteArrayWrapper(key))) return;
+        byte[] copy = key.clone();
+        Candidate candidate = new Candidate(copy, h1, h2);
+        candidate.reads = reads;
+        candidate.writes = writes;
+        if (candidates.putIfAbsent(candidate.wrapper, candidate) == null && candidates.size() > capacity * 2) prune();
+    }
+
+    private synchronized void prune() {
+        if (candidates.size() <= capacity * 2) return;
+        trim(ranked());
+    }
+
+    /**
+     * 滚动到当前格, 清空过期的格子并重新估算候选
+     */
+    private synchronized void rotate(long current) {
+        if (current <= rotated) return;
+        for (long epoch = Math.max(rotated + 1, current - slices.length + 1); epoch <= current; epoch++) {
+            slices[(int) (epoch % slices.length)].reset();
+        }
+        rotated = current;
+        for (Candidate candidate : candidates.values()) {
+            candidate.reads = estimate(candidate.h1, candidate.h2, false);
+            candidate.writes = estimate(candidate.h1, candidate.h2, true);
+        }
+        List<Candidate> ranked = ranked();
+        trim(ranked);
+        refresh(ranked);
+    }
+
+    private List<Candidate> ranked() {
+        List<Candidate> ranked = new ArrayList<>(candidates.values());
+        // 记录线程会并发更新估算值, 排序前先固定下来
+        for (Candidate candidate : ranked) candidate.ranking = candidate.reads + candidate.writes;
+        ranked.sort(Comparator.comparingLong((Candidate candidate) -> candidate.ranking).reversed());
+        return ranked;
+    }
+
+    private void trim(List<Candidate> ranked) {
+        for (int i = ranked.size() - 1; i >= 0 && (i >= capacity || ranked.get(i).ranking == 0); i--) {
+            Candidate candidate = ranked.remove(i);
+            candidates.remove(candidate.wrapper, candidate);
+        }
+        admission = ranked.size() < capacity ? minimum : Math.max(minimum, ranked.get(ranked.size() - 1).ranking);
+    }
+
+    private void refresh(List<Candidate> ranked) {
+        // 当前格刚清空, 估算值覆盖前 slices-1 格
+        double seconds = (slices.length - 1) * sliceMillis / 1000D;
+        double scale = sampleRate == 0 ? 0 : 1 / sampleRate;
+        List<HotKey> top = new ArrayList<>(Math.min(topK, ranked.size()));
+        Set<ByteArrayWrapper> hot = new HashSet<>();
+        for (int i = 0; i < ranked.size(); i++) {
+            Candidate candidate = ranked.get(i);
+            double rate = candidate.ranking * scale / seconds;
+            boolean isHot = i < topK && rate >= threshold;
+            if (isHot && !candidate.hot) {
+                detected.increment();
+                log.warn("redis hot key " + candidate.name + ": " + (long) rate + " ops/s, reads="
+                        + (long) (candidate.reads * scale) + " writes=" + (long) (candidate.writes * scale)
+                        + " in last " + (slices.length - 1) * sliceMillis + "ms");
+            }
+            candidate.hot = isHot;
+            if (isHot) hot.add(candidate.wrapper);
+            if (i >= topK) continue;
+            HotKey hotKey = new HotKey();
+            hotKey.setKey(candidate.name);
+            hotKey.setReads((long) (candidate.reads * scale));
+            hotKey.setWrites((long) (candidate.writes * scale));
+            hotKey.setRate(rate);
+            hotKey.setHot(isHot);
+            hotKey.setPinned(isHot && localCache);
+            top.add(hotKey);
+        }
+        if (localCache) {
+            pinned.keySet().retainAll(hot);
+            for (ByteArrayWrapper wrapper : hot) pinned.computeIfAbsent(wrapper, key -> new PinnedKey());
+        }
+        hotKeys = Collections.unmodifiableList(top);
+    }
+
+    /**
+     * FNV-1a, 高低32位作为两个独立的哈希, 第i行使用 h1 + i * h2
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash ^ (hash >>> 29);
+    }
+
+    private static final class Slice {
+        private final AtomicIntegerArray reads;
+        private final AtomicIntegerArray writes;
+
+        private Slice(int size) {
+            this.reads = new AtomicIntegerArray(size);
+            this.writes = new AtomicIntegerArray(size);
+        }
+
+        private void reset() {
+            for (int i = 0; i < reads.length(); i++) {
+                reads.lazySet(i, 0);
+                writes.lazySet(i, 0);
+            }
+        }
+    }
+
+    private static final class Candidate {
+        private final ByteArrayWrapper wrapper;
+        private final String name;
+        private final int h1;
+        private final int h2;
+        private volatile long reads;
+        private volatile long writes;
+        private long ranking;
+        private boolean hot;
+
+        private Candidate(byte[] key, int h1, int h2) {
+            this.wrapper = new ByteArrayWrapper(key);
+            this.name = new String(key, StandardCharsets.UTF_8);
+            this.h1 = h1;
+            this.h2 = h2;
+        }
+    }
+
+    private static final class PinnedKey {
+        private final AtomicLong version = new AtomicLong();
+        private final ConcurrentMap<Object, CachedValue> values = new ConcurrentHashMap<>();
+    }
+
+    private static final class CachedValue {
+        private final byte[] value;
+        private final long expireAt;
+
+        private CachedValue(byte[] value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
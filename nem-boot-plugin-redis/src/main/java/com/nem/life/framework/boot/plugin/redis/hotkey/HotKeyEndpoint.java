@@ -0,0 +1,23 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+
+/**
+ * 当前访问最多的前K个redis key, 需要 management.endpoints.web.exposure.include 包含 redishotkeys
+ */
+@Endpoint(id = "redishotkeys")
+public class HotKeyEndpoint {
+    private final HotKeyDetector hotKeyDetector;
+
+    public HotKeyEndpoint(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    @ReadOperation
+    public List<HotKey> hotKeys() {
+        return hotKeyDetector.getHotKeys();
+    }
+}
@@ -0,0 +1,33 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.List;
+
+/**
+ * 热点key指标, key不作为tag, 避免指标数量随key增长; 具体的key见告警日志或 redishotkeys 端点
+ * <ul>
+ * <li>nem.redis.hotkey.hot 当前热点key个数</li>
+ * <li>nem.redis.hotkey.top.rate 访问最多的key的每秒访问次数</li>
+ * <li>nem.redis.hotkey.detected 累计发现热点次数</li>
+ * <li>nem.redis.hotkey.local.hits 本地缓存命中次数</li>
+ * </ul>
+ */
+public class HotKeyMeters {
+
+    public HotKeyMeters(HotKeyDetector detector, MeterRegistry registry) {
+        Gauge.builder("nem.redis.hotkey.hot", detector,
+                hotKeyDetector -> hotKeyDetector.getHotKeys().stream().filter(HotKey::getHot).count())
+                .description("当前redis热点key个数").register(registry);
+        Gauge.builder("nem.redis.hotkey.top.rate", detector, hotKeyDetector -> {
+            List<HotKey> hotKeys = hotKeyDetector.getHotKeys();
+            return hotKeys.isEmpty() ? 0D : hotKeys.get(0).getRate();
+        }).description("访问最多的redis key每秒访问次数").register(registry);
+        FunctionCounter.builder("nem.redis.hotkey.detected", detector, HotKeyDetector::getDetected)
+                .description("累计发现redis热点key次数").register(registry);
+        FunctionCounter.builder("nem.redis.hotkey.local.hits", detector, HotKeyDetector::getLocalHits)
+                .description("redis热点key本地缓存命中次数").register(registry);
+    }
+}
@@ -0,0 +1,60 @@
+package com.nem.life.framework.boot.plugin.redis.hotkey;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.hot-key")
+public class HotKeyProperties {
+    /**
+     * 是否开启热点key探测, 开启后 RedisTemplates 和 StringRedisTemplates 的每个连接多一层代理
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 采样比例, 0到1, 1为记录每个命令; 估算的访问次数已按比例放大
+     */
+    private Double sampleRate = 0.1;
+
+    /**
+     * 滑动窗口长度
+     */
+    private Duration window = Duration.ofSeconds(10);
+
+    /**
+     * 窗口分格数, 每过 window / slices 滚动一格, 最少2格
+     */
+    private Integer slices = 5;
+
+    /**
+     * count-min sketch 每行的计数器个数, 取不小于该值的2的幂
+     */
+    private Integer sketchWidth = 4096;
+
+    /**
+     * count-min sketch 行数, 越多误差越小
+     */
+    private Integer sketchDepth = 4;
+
+    /**
+     * 保留访问最多的前K个key, 每秒访问次数不到 threshold 1/10 的key不统计
+     */
+    private Integer topK = 20;
+
+    /**
+     * 每秒访问次数(读+写)达到该值的key记为热点, 打印告警日志
+     */
+    private Integer threshold = 1000;
+
+    /**
+     * 热点key的 GET/HGET 结果是否缓存在本地
+     */
+    private Boolean localCache = false;
+
+    /**
+     * 本地缓存时间, 也是其他节点写入后本节点最多读到旧值的时间
+     */
+    private Duration localCacheTtl = Duration.ofMillis(500);
+}
@@ -0,0 +1,33 @@
+package com.nem.life.framework.boot.plugin.redis.listener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * 过期事件分发, nem.redis.expiry.mode 选择 BROADCAST / CLAIM / HASH; classpath中有micrometer时注册指标
+ */
+@EnableConfigurationProperties(ExpiryProperties.class)
+@Configuration
+public class ExpiryConfiguration {
+
+    @Bean
+    public ExpiryDistributor expiryDistributor(ExpiryProperties expiryProperties, RedisConnectionFactory redisConnectionFactory) {
+        return new ExpiryDistributor(expiryProperties, redisConnectionFactory);
+    }
+
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @Configuration
+    static class ExpiryMetricsConfiguration {
+
+        @Bean
+        public ExpiryMeters expiryMeters(ExpiryDistributor expiryDistributor, ObjectProvider<MeterRegistry> meterRegistry) {
+            return new ExpiryMeters(expiryDistributor, meterRegistry.getIfUnique(() -> Metrics.globalRegistry));
+        }
+    }
+}
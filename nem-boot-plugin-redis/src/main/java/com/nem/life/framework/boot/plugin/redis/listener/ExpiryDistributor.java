@@ -0,0 +1,332 @@
+package com.nem.life.framework.boot.plugin.redis.listener;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 过期事件在多个节点间只处理一次
+ * <p>
+ * 每个节点定时把自己写入存活节点zset并读取所有存活节点, 心跳时间使用redis的TIME, 不受各节点时钟偏差影响;
+ * HASH 模式下按一致性哈希只让负责该key的节点立即处理, 节点加入或下线后下一次心跳即重新分配;
+ * 处理前用 SET NX 抢占, 抢占失败的记为重复。CLAIM 模式下没有立即处理的节点都在 takeoverDelay 后再抢占一次;
+ * HASH 模式下只有环上负责节点之后的下一个节点等待接管, 其他节点不访问redis, 每个事件的redis访问不随节点数增加。
+ * 负责的节点已下线或处理失败释放了抢占时由等待接管的节点处理, 所以事件至少被尝试处理一次, 成功的事件在 claimTtl 内只处理一次。
+ * 正常停止时从存活节点中移除自己, 其他节点下一次心跳接管
+ */
+@Slf4j
+public class ExpiryDistributor implements SmartLifecycle {
+    /**
+     * 用redis的时间写入心跳并清理超时节点, 返回存活节点; 3.2到4.x需要先开启命令复制才能在TIME之后写入
+     */
+    private static final RedisScript<List> HEARTBEAT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.replicate_commands then redis.replicate_commands() end "
+                    + "local time = redis.call('TIME') "
+                    + "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000) "
+                    + "redis.call('ZADD', KEYS[1], now, ARGV[1]) "
+                    + "redis.call('ZREMRANGEBYSCORE', KEYS[1], 0, now - tonumber(ARGV[2])) "
+                    + "redis.call('PEXPIRE', KEYS[1], ARGV[2]) "
+                    + "return redis.call('ZRANGE', KEYS[1], 0, -1)", List.class);
+    /**
+     * 只删除自己持有的抢占
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0", Long.class);
+
+    private final ExpiryProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder takeovers = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rebalances = new LongAdder();
+    private final AtomicInteger pendingTakeovers = new AtomicInteger();
+    private volatile Set<String> members = Collections.emptySet();
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+    private ScheduledExecutorService scheduler;
+    private volatile ScheduledExecutorService takeoverScheduler;
+    private volatile boolean running;
+
+    public ExpiryDistributor(ExpiryProperties properties, RedisConnectionFactory redisConnectionFactory) {
+        this(properties, new StringRedisTemplate(redisConnectionFactory));
+    }
+
+    ExpiryDistributor(ExpiryProperties properties, StringRedisTemplate redisTemplate) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.nodeId = StringUtils.hasText(properties.getNodeId()) ? properties.getNodeId()
+                : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    /**
+     * 包装过期事件监听, BROADCAST 模式原样返回
+     *
+     * @param messageListener 监听
+     * @return 只处理本节点抢占到的事件的监听
+     */
+    public MessageListener wrap(MessageListener messageListener) {
+        if (properties.getMode() == ExpiryProperties.Mode.BROADCAST) return messageListener;
+        return (message, pattern) -> {
+            String claim = properties.getClaimPrefix() + new String(message.getChannel(), StandardCharsets.UTF_8) + ":"
+                    + new String(message.getBody(), StandardCharsets.UTF_8);
+            boolean hash = properties.getMode() == ExpiryProperties.Mode.HASH;
+            if (hash) {
+                Role role = role(message.getBody());
+                if (role != Role.OWNER) {
+                    skipped.increment();
+                    if (role == Role.SUCCESSOR) deferTakeover(claim, messageListener, message, pattern);
+                    return;
+                }
+            }
+            if (!claim(claim)) {
+                duplicates.increment();
+                // HASH 模式下持有抢占的节点失败会释放, 由环上的下一个节点接管
+                if (!hash) deferTakeover(claim, messageListener, message, pattern);
+                return;
+            }
+            handled.increment();
+            handle(claim, messageListener, message, pattern);
+        };
+    }
+
+    private boolean claim(String claim) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(claim, nodeId, properties.getClaimTtl()));
+    }
+
+    /**
+     * 成功后保留抢占到过期, 重试后仍失败则释放, 其他节点的接管可以再次抢占
+     */
+    private void handle(String claim, MessageListener messageListener, Message message, byte[] pattern) {
+        int attempts = Math.max(0, properties.getRetries()) + 1;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                messageListener.onMessage(message, pattern);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt < attempts) {
+                    log.warn("redis expiry handle failed, retry " + attempt + ", claim:" + claim, e);
+                    continue;
+                }
+                failures.increment();
+                try {
+                    redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(claim), nodeId);
+                } catch (Exception releaseError) {
+                    log.warn("redis expiry release failed, claim:" + claim, releaseError);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 延迟后再抢占一次, 负责的节点已处理成功时抢占key仍在, 不会重复处理
+     */
+    private void deferTakeover(String claim, MessageListener messageListener, Message message, byte[] pattern) {
+        ScheduledExecutorService executor = takeoverScheduler;
+        if (executor == null) return;
+        if (pendingTakeovers.incrementAndGet() > properties.getMaxPendingTakeovers()) {
+            pendingTakeovers.decrementAndGet();
+            return;
+        }
+        executor.schedule(() -> {
+            pendingTakeovers.decrementAndGet();
+            try {
+                if (!claim(claim)) return;
+                takeovers.increment();
+                handled.increment();
+                log.info("redis expiry taken over, node:" + nodeId + " claim:" + claim);
+                handle(claim, messageListener, message, pattern);
+            } catch (Exception e) {
+                log.warn("redis expiry takeover failed, claim:" + claim, e);
+            }
+        }, properties.getTakeoverDelay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 还没有取到存活节点时都认为负责, 由抢占去重; 环上负责节点之后第一个不同的节点是接管节点
+     */
+    Role role(byte[] key) {
+        NavigableMap<Long, String> current = ring;
+        if (current.isEmpty()) return Role.OWNER;
+        Map.Entry<Long, String> owner = current.ceilingEntry(hash(key));
+        if (owner == null) owner = current.firstEntry();
+        if (nodeId.equals(owner.getValue())) return Role.OWNER;
+        String successor = successor(current, owner);
+        return nodeId.equals(successor) ? Role.SUCCESSOR : Role.NONE;
+    }
+
+    private static String successor(NavigableMap<Long, String> ring, Map.Entry<Long, String> owner) {
+        for (String member : ring.tailMap(owner.getKey(), false).values()) {
+            if (!member.equals(owner.getValue())) return member;
+        }
+        for (String member : ring.headMap(owner.getKey(), false).values()) {
+            if (!member.equals(owner.getValue())) return member;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void heartbeat() {
+        try {
+            List<String> live = (List<String>) redisTemplate.execute(HEARTBEAT_SCRIPT,
+                    Collections.singletonList(properties.getMembersKey()), nodeId,
+                    String.valueOf(properties.getNodeTtl().toMillis()));
+            if (live != null && !new LinkedHashSet<>(live).equals(members)) rebuild(new LinkedHashSet<>(live));
+        } catch (Exception e) {
+            log.warn("redis expiry heartbeat failed, node:" + nodeId, e);
+        }
+    }
+
+    private void rebuild(Set<String> live) {
+        NavigableMap<Long, String> next = new TreeMap<>();
+        for (String member : live) {
+            for (int i = 0; i < properties.getVirtualNodes(); i++) {
+                next.put(hash((member + "#" + i).getBytes(StandardCharsets.UTF_8)), member);
+            }
+        }
+        ring = next;
+        members = live;
+        rebalances.increment();
+        log.info("redis expiry owners changed, node:" + nodeId + " members:" + live);
+    }
+
+    /**
+     * FNV-1a 后再做一次混合, 虚拟节点在环上分布更均匀
+     */
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    enum Role {
+        /**
+         * 负责该key, 立即抢占并处理
+         */
+        OWNER,
+        /**
+         * 环上的下一个节点, 延迟接管
+         */
+        SUCCESSOR,
+        /**
+         * 不处理
+         */
+        NONE
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (properties.getMode() == ExpiryProperties.Mode.BROADCAST) return;
+        CustomizableThreadFactory takeoverThreadFactory = new CustomizableThreadFactory("redis-expiry-takeover-");
+        takeoverThreadFactory.setDaemon(true);
+        takeoverScheduler = Executors.newSingleThreadScheduledExecutor(takeoverThreadFactory);
+        if (properties.getMode() != ExpiryProperties.Mode.HASH) return;
+        heartbeat();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("redis-expiry-heartbeat-"));
+        long period = properties.getHeartbeat().toMillis();
+        scheduler.scheduleWithFixedDelay(this::heartbeat, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ScheduledExecutorService executor = takeoverScheduler;
+        takeoverScheduler = null;
+        if (executor != null) executor.shutdownNow();
+        pendingTakeovers.set(0);
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+        try {
+            redisTemplate.opsForZSet().remove(properties.getMembersKey(), nodeId);
+        } catch (Exception e) {
+            log.warn("redis expiry leave failed, node:" + nodeId, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public Set<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return 本节点处理的事件数
+     */
+    public long getHandled() {
+        return handled.sum();
+    }
+
+    /**
+     * @return HASH 模式下不归本节点负责而跳过的事件数
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * @return 抢占失败即已由其他节点处理的事件数
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * @return 负责的节点没有处理而由本节点接管的事件数
+     */
+    public long getTakeovers() {
+        return takeovers.sum();
+    }
+
+    /**
+     * @return 重试后仍处理失败的事件数
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return 存活节点变化次数
+     */
+    public long getRebalances() {
+        return rebalances.sum();
+    }
+}
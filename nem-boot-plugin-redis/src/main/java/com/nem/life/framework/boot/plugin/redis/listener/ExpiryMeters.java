@@ -0,0 +1,37 @@
+package com.nem.life.framework.boot.plugin.redis.listener;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 过期事件分发指标
+ * <ul>
+ * <li>nem.redis.expiry.handled 本节点处理的事件数</li>
+ * <li>nem.redis.expiry.skipped 不归本节点负责的事件数</li>
+ * <li>nem.redis.expiry.duplicates 抢占失败的事件数</li>
+ * <li>nem.redis.expiry.takeovers 负责节点没有处理而由本节点接管的事件数</li>
+ * <li>nem.redis.expiry.failures 重试后仍处理失败的事件数</li>
+ * <li>nem.redis.expiry.rebalances 存活节点变化次数</li>
+ * <li>nem.redis.expiry.members 当前存活节点数</li>
+ * </ul>
+ */
+public class ExpiryMeters {
+
+    public ExpiryMeters(ExpiryDistributor distributor, MeterRegistry registry) {
+        FunctionCounter.builder("nem.redis.expiry.handled", distributor, ExpiryDistributor::getHandled)
+                .description("本节点处理的redis过期事件数").register(registry);
+        FunctionCounter.builder("nem.redis.expiry.skipped", distributor, ExpiryDistributor::getSkipped)
+                .description("不归本节点负责的redis过期事件数").register(registry);
+        FunctionCounter.builder("nem.redis.expiry.duplicates", distributor, ExpiryDistributor::getDuplicates)
+                .description("已由其他节点处理的redis过期事件数").register(registry);
+        FunctionCounter.builder("nem.redis.expiry.takeovers", distributor, ExpiryDistributor::getTakeovers)
+                .description("由本节点接管的redis过期事件数").register(registry);
+        FunctionCounter.builder("nem.redis.expiry.failures", distributor, ExpiryDistributor::getFailures)
+                .description("处理失败的redis过期事件数").register(registry);
+        FunctionCounter.builder("nem.redis.expiry.rebalances", distributor, ExpiryDistributor::getRebalances)
+                .description("redis过期事件存活节点变化次数").register(registry);
+        Gauge.builder("nem.redis.expiry.members", distributor, expiryDistributor -> expiryDistributor.getMembers().size())
+                .description("redis过期事件存活节点数").register(registry);
+    }
+}
@@ -0,0 +1,76 @@
+package com.nem.life.framework.boot.plugin.redis.listener;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.expiry")
+public class ExpiryProperties {
+    /**
+     * 过期事件分发方式
+     * <ul>
+     * <li>BROADCAST 每个节点都处理, 与原来相同</li>
+     * <li>CLAIM 每个节点都用 SET NX 抢占, 抢到的节点处理</li>
+     * <li>HASH 按存活节点做一致性哈希, 只有负责该key的节点立即抢占并处理; 节点变化的间隙两个节点可能同时认为自己负责, 由抢占保证只处理一次</li>
+     * </ul>
+     * CLAIM 模式下没有立即处理的节点、HASH 模式下环上负责节点的下一个节点在 takeoverDelay 后再抢占一次,
+     * 负责的节点下线、各节点存活视图不一致或处理失败释放了抢占时由这些节点接管; 处理成功后抢占key保留到 claimTtl, 期间不会重复处理
+     */
+    private Mode mode = Mode.BROADCAST;
+
+    /**
+     * 节点id, 默认 pid@主机名
+     */
+    private String nodeId;
+
+    /**
+     * 存活节点集合的key, zset, score为最后一次心跳时间
+     */
+    private String membersKey = "nem:expiry:members";
+
+    /**
+     * 心跳间隔, 每次心跳同时刷新存活节点
+     */
+    private Duration heartbeat = Duration.ofSeconds(5);
+
+    /**
+     * 超过该时间没有心跳的节点视为下线, 异常退出的节点负责的事件在这段时间内没有节点处理
+     */
+    private Duration nodeTtl = Duration.ofSeconds(15);
+
+    /**
+     * 一致性哈希每个节点的虚拟节点数
+     */
+    private Integer virtualNodes = 160;
+
+    /**
+     * 抢占key前缀, 后面是频道和过期的key
+     */
+    private String claimPrefix = "nem:expiry:claim:";
+
+    /**
+     * 抢占key的过期时间, 需要大于 takeoverDelay 加上处理耗时, 否则处理中的事件可能被其他节点接管
+     */
+    private Duration claimTtl = Duration.ofSeconds(60);
+
+    /**
+     * 没有立即处理的节点再次抢占的延迟, 应大于心跳间隔
+     */
+    private Duration takeoverDelay = Duration.ofSeconds(10);
+
+    /**
+     * 每个节点等待再次抢占的事件数上限, 超过后新的事件不再等待接管
+     */
+    private Integer maxPendingTakeovers = 10000;
+
+    /**
+     * 处理失败时本节点的重试次数, 仍失败则释放抢占, 由其他节点接管
+     */
+    private Integer retries = 2;
+
+    public enum Mode {
+        BROADCAST, CLAIM, HASH
+    }
+}
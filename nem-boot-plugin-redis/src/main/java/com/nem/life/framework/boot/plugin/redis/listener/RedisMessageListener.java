@@ -1,14 +1,18 @@
 package com.nem.life.framework.boot.plugin.redis.listener;
 
 import com.nem.life.framework.boot.plugin.redis.configuration.RedisConfiguration;
+import com.nem.life.framework.boot.plugin.redis.metrics.RedisMetrics;
 import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.listener.ChannelTopic;
@@ -21,11 +25,15 @@ import java.util.List;
 @RequiredArgsConstructor
 @Slf4j
 @Configuration
-@Import({RedisConfiguration.class})
-public class RedisMessageListener {
+@Import({RedisConfiguration.class, ExpiryConfiguration.class})
+public class RedisMessageListener implements SmartInitializingSingleton {
     public static List<RedisMonitor> redisMonitorList = new ArrayList<>();
 
     private final RedisProperties redisProperties;
+    private final ObjectProvider<ExpiryDistributor> expiryDistributor;
+    private RedisMessageListenerContainer container;
+    private RedisMetrics metrics;
+    private boolean registered;
 
 
     /**
@@ -36,8 +44,7 @@ public class RedisMessageListener {
      */
     public boolean addDefaultRedisMonitor(MessageListener messageListener) {
         int database = redisProperties.getDatabase();
-        com.nem.life.framework.boot.plugin.redis.listener.RedisMessageListener.redisMonitorList
-                .add(new  com.nem.life.framework.boot.plugin.redis.listener.RedisMessageListener.RedisMonitor(messageListener, "__keyevent@" + database + "__:expired"));
+        addRedisMonitor(new RedisMonitor(messageListener, "__keyevent@" + database + "__:expired"));
         return true;
     }
 
@@ -51,9 +58,7 @@ public class RedisMessageListener {
     public boolean addDefaultRedisMonitor(MessageListener messageListener, int dbIndex) {
         if (dbIndex > 16) return false;
         if (dbIndex < 0) return false;
-        com.nem.life.framework.boot.plugin.redis.listener.RedisMessageListener
-                .redisMonitorList.add(new com.nem.life.framework.boot.plugin.redis.listener
-                .RedisMessageListener.RedisMonitor(messageListener, "__keyevent@" + dbIndex + "__:expired"));
+        addRedisMonitor(new RedisMonitor(messageListener, "__keyevent@" + dbIndex + "__:expired"));
         return true;
     }
 
@@ -64,10 +69,7 @@ public class RedisMessageListener {
      * @return
      */
     public boolean addAllDatabaseRedisMonitor(MessageListener messageListener) {
-        com.nem.life.framework.boot.plugin.redis.listener
-                .RedisMessageListener.redisMonitorList
-                .add(new com.nem.life.framework.boot.plugin.redis.listener
-                        .RedisMessageListener.RedisMonitor(messageListener, "__keyevent@*__:expired"));
+        addRedisMonitor(new RedisMonitor(messageListener, "__keyevent@*__:expired"));
         return true;
     }
 
@@ -79,17 +81,52 @@ public class RedisMessageListener {
         private String patten;
     }
 
-    @SneakyThrows
     @Bean
-    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       ObjectProvider<RedisMetrics> redisMetrics) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(redisConnectionFactory);
-        Thread.sleep(5000);
-        for (RedisMonitor redisMonitor : redisMonitorList) {
-            log.info("Add a redisMonitor By:" + redisMonitor.getPatten());
-            container.addMessageListener(redisMonitor.getMessageListener(), new ChannelTopic(redisMonitor.getPatten()));
+        RedisMetrics metrics = redisMetrics.getIfAvailable();
+        if (metrics != null) {
+            // 与容器默认的分发线程池相同, 包装后记录等待时间和积压数
+            container.setTaskExecutor(metrics.instrument(new SimpleAsyncTaskExecutor("redisMessageListenerContainer-")));
         }
-
+        this.container = container;
+        this.metrics = metrics;
         return container;
     }
+
+    /**
+     * 所有单例创建完成后再注册已添加的监听, 其他bean初始化时添加的监听都能注册上, 不需要在创建容器时等待
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        synchronized (redisMonitorList) {
+            for (RedisMonitor redisMonitor : redisMonitorList) {
+                register(redisMonitor);
+            }
+            registered = true;
+        }
+    }
+
+    /**
+     * 容器已注册过监听后添加的直接注册到容器
+     */
+    private void addRedisMonitor(RedisMonitor redisMonitor) {
+        synchronized (redisMonitorList) {
+            redisMonitorList.add(redisMonitor);
+            if (registered) register(redisMonitor);
+        }
+    }
+
+    private void register(RedisMonitor redisMonitor) {
+        if (container == null) return;
+        log.info("Add a redisMonitor By:" + redisMonitor.getPatten());
+        MessageListener messageListener = metrics == null ? redisMonitor.getMessageListener()
+                : metrics.instrument(redisMonitor.getMessageListener(), redisMonitor.getPatten());
+        ExpiryDistributor distributor = expiryDistributor.getIfAvailable();
+        // 分发在最外层, 不归本节点处理的事件不计入监听指标
+        if (distributor != null) messageListener = distributor.wrap(messageListener);
+        container.addMessageListener(messageListener, new ChannelTopic(redisMonitor.getPatten()));
+    }
 }
@@ -0,0 +1,212 @@
+package com.nem.life.framework.boot.plugin.redis.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * micrometer实现
+ * <p>
+ * 指标:
+ * <ul>
+ * <li>nem.redis.commands 命令耗时, tag: command</li>
+ * <li>nem.redis.errors 命令异常次数, tag: command, exception</li>
+ * <li>nem.redis.payload 命令字节数, tag: command, direction(request/response)</li>
+ * <li>nem.redis.listener.lag 消息从收到到开始处理的等待时间</li>
+ * <li>nem.redis.listener.pending 已收到未开始处理的消息数</li>
+ * <li>nem.redis.listener.process 监听器处理耗时, tag: pattern</li>
+ * <li>nem.redis.listener.errors 监听器异常次数, tag: pattern, exception</li>
+ * </ul>
+ * 默认不开启百分位直方图, 需要时配置 management.metrics.distribution.percentiles-histogram.nem.redis.commands=true。
+ * pipeline和事务中的命令只是入队, 不单独记录, 由 closePipeline/exec 记录整体耗时
+ */
+public class MicrometerRedisMetrics implements RedisMetrics {
+    private static final Set<String> IGNORED_METHODS = new HashSet<>(Arrays.asList("close", "isClosed",
+            "getNativeConnection", "isQueueing", "isPipelined", "openPipeline", "getSentinelConnection",
+            "equals", "hashCode", "toString"));
+    private static final Set<String> FLUSH_METHODS = new HashSet<>(Arrays.asList("closePipeline", "exec"));
+    private static final CommandMeters IGNORED = new CommandMeters(null, null, null, null, false);
+
+    private final MeterRegistry registry;
+    private final RedisMetricsProperties properties;
+    private final ConcurrentMap<Method, CommandMeters> commandMeters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, Class<?>[]> interfaces = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Timer lag;
+
+    public MicrometerRedisMetrics(MeterRegistry registry, RedisMetricsProperties properties) {
+        this.registry = registry;
+        this.properties = properties;
+        if (Boolean.TRUE.equals(properties.getListener())) {
+            this.lag = Timer.builder("nem.redis.listener.lag")
+                    .description("redis消息从收到到开始处理的等待时间").register(registry);
+            registry.gauge("nem.redis.listener.pending", pending);
+        } else {
+            this.lag = null;
+        }
+    }
+
+    @Override
+    public RedisConnection instrument(RedisConnection connection) {
+        if (!Boolean.TRUE.equals(properties.getCommands()) || connection == null) return connection;
+        Class<?>[] proxyInterfaces = interfaces.computeIfAbsent(connection.getClass(),
+                type -> ClassUtils.getAllInterfacesForClass(type, type.getClassLoader()));
+        return (RedisConnection) Proxy.newProxyInstance(connection.getClass().getClassLoader(), proxyInterfaces,
+                new InstrumentedConnection(connection));
+    }
+
+    @Override
+    public MessageListener instrument(MessageListener messageListener, String pattern) {
+        if (lag == null) return messageListener;
+        Timer process = Timer.builder("nem.redis.listener.process").tag("pattern", pattern)
+                .description("redis监听器处理耗时").register(registry);
+        return (message, channel) -> {
+            long start = System.nanoTime();
+            try {
+                messageListener.onMessage(message, channel);
+            } catch (RuntimeException | Error e) {
+                registry.counter("nem.redis.listener.errors", "pattern", pattern,
+                        "exception", e.getClass().getSimpleName()).increment();
+                throw e;
+            } finally {
+                process.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    @Override
+    public Executor instrument(Executor executor) {
+        if (lag == null) return executor;
+        return command -> {
+            long received = System.nanoTime();
+            pending.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    pending.decrementAndGet();
+                    lag.record(System.nanoTime() - received, TimeUnit.NANOSECONDS);
+                    command.run();
+                });
+            } catch (RuntimeException e) {
+                pending.decrementAndGet();
+                throw e;
+            }
+        };
+    }
+
+    private CommandMeters commandMeters(Method method) {
+        CommandMeters meters = commandMeters.get(method);
+        if (meters != null) return meters;
+        return commandMeters.computeIfAbsent(method, key -> {
+            String command = key.getName();
+            if (IGNORED_METHODS.contains(command) || command.endsWith("Commands")) return IGNORED;
+            Timer timer = Timer.builder("nem.redis.commands").tag("command", command)
+                    .description("redis命令耗时").register(registry);
+            DistributionSummary request = DistributionSummary.builder("nem.redis.payload")
+                    .tags("command", command, "direction", "request").baseUnit("bytes").register(registry);
+            DistributionSummary response = DistributionSummary.builder("nem.redis.payload")
+                    .tags("command", command, "direction", "response").baseUnit("bytes").register(registry);
+            return new CommandMeters(command, timer, request, response, FLUSH_METHODS.contains(command));
+        });
+    }
+
+    /**
+     * 参数和结果中byte[]、字符串的总长度, 只展开一层数组、集合和map
+     */
+    private static long payloadSize(Object value, boolean nested) {
+        if (value == null) return 0;
+        if (value instanceof byte[]) return ((byte[]) value).length;
+        if (value instanceof CharSequence) return ((CharSequence) value).length();
+        if (nested) return 0;
+        long size = 0;
+        if (value instanceof Object[]) {
+            for (Object element : (Object[]) value) size += payloadSize(element, true);
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) size += payloadSize(element, true);
+        } else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += payloadSize(entry.getKey(), true) + payloadSize(entry.getValue(), true);
+            }
+        }
+        return size;
+    }
+
+    private static final class CommandMeters {
+        private final String command;
+        private final Timer timer;
+        private final DistributionSummary request;
+        private final DistributionSummary response;
+        private final boolean flush;
+
+        private CommandMeters(String command, Timer timer, DistributionSummary request, DistributionSummary response,
+                              boolean flush) {
+            this.command = command;
+            this.timer = timer;
+            this.request = request;
+            this.response = response;
+            this.flush = flush;
+        }
+    }
+
+    private final class InstrumentedConnection implements InvocationHandler {
+        private final RedisConnection target;
+
+        private InstrumentedConnection(RedisConnection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            CommandMeters meters = commandMeters(method);
+            if (meters == IGNORED || (!meters.flush && (target.isPipelined() || target.isQueueing()))) {
+                return invokeTarget(method, args);
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeTarget(method, args);
+            } catch (Throwable e) {
+                meters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                registry.counter("nem.redis.errors", "command", meters.command,
+                        "exception", e.getClass().getSimpleName()).increment();
+                throw e;
+            }
+            meters.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (Boolean.TRUE.equals(properties.getPayloadSize())) {
+                long requestSize = 0;
+                if (args != null) {
+                    for (Object arg : args) requestSize += payloadSize(arg, false);
+                }
+                if (requestSize > 0) meters.request.record(requestSize);
+                long responseSize = payloadSize(result, false);
+                if (responseSize > 0) meters.response.record(responseSize);
+            }
+            return result;
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
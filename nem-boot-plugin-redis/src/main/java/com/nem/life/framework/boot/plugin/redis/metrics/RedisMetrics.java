@@ -0,0 +1,39 @@
+package com.nem.life.framework.boot.plugin.redis.metrics;
+
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.concurrent.Executor;
+
+/**
+ * redis埋点, 不依赖micrometer, 没有micrometer时不注册实现
+ * <p>
+ * RedisTemplates 和 StringRedisTemplates 每次执行命令前包装连接, RedisMessageListener 包装监听器和分发线程池
+ */
+public interface RedisMetrics {
+
+    /**
+     * 包装连接, 记录每个命令的耗时、异常和数据大小
+     *
+     * @param connection 原连接
+     * @return 包装后的连接
+     */
+    RedisConnection instrument(RedisConnection connection);
+
+    /**
+     * 包装监听器, 记录处理耗时和异常
+     *
+     * @param messageListener 原监听器
+     * @param pattern         订阅的频道
+     * @return 包装后的监听器
+     */
+    MessageListener instrument(MessageListener messageListener, String pattern);
+
+    /**
+     * 包装消息分发线程池, 记录消息从收到到开始处理的等待时间和积压数
+     *
+     * @param executor 原线程池
+     * @return 包装后的线程池
+     */
+    Executor instrument(Executor executor);
+}
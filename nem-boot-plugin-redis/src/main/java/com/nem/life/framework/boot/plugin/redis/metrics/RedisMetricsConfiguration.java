@@ -0,0 +1,27 @@
+package com.nem.life.framework.boot.plugin.redis.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * classpath中有micrometer时注册redis指标, nem.redis.metrics.enabled=false 关闭;
+ * 没有MeterRegistry bean时注册到 Metrics.globalRegistry
+ */
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@ConditionalOnProperty(prefix = "nem.redis.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(RedisMetricsProperties.class)
+@Configuration
+public class RedisMetricsConfiguration {
+
+    @Bean
+    public RedisMetrics redisMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                     RedisMetricsProperties redisMetricsProperties) {
+        return new MicrometerRedisMetrics(meterRegistry.getIfUnique(() -> Metrics.globalRegistry), redisMetricsProperties);
+    }
+}
@@ -0,0 +1,28 @@
+package com.nem.life.framework.boot.plugin.redis.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.metrics")
+public class RedisMetricsProperties {
+    /**
+     * 总开关, 关闭后不注册任何redis指标
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 命令耗时和异常次数, RedisTemplates 和 StringRedisTemplates
+     */
+    private Boolean commands = true;
+
+    /**
+     * 命令请求和响应的字节数分布, 需要遍历参数和结果, 关闭可以减少开销
+     */
+    private Boolean payloadSize = true;
+
+    /**
+     * 过期监听的等待时间、积压数和处理耗时
+     */
+    private Boolean listener = true;
+}
@@ -0,0 +1,117 @@
+package com.nem.life.framework.boot.plugin.redis.mybatis;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * mybatis查询结果的紧凑序列化
+ * <p>
+ * 带类型信息的json, 不写null字段, 超过阈值时deflate压缩; 第一个字节标记是否压缩。
+ * 所有值都带类型, Map/Object 结果中的 Long、BigDecimal 等不会还原成 Integer、Double
+ */
+public class CompactCacheSerializer {
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATED = 1;
+
+    private final ObjectMapper objectMapper;
+    private final int compressThreshold;
+
+    public CompactCacheSerializer(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        this.objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        objectMapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // 缓存只由本类写入, 与原先 NON_FINAL 一样不限制类型; 标量无法带属性, 由jackson改用数组包装
+        objectMapper.activateDefaultTyping(LaissezFaireSubTypeValidator.instance,
+                ObjectMapper.DefaultTyping.EVERYTHING, JsonTypeInfo.As.PROPERTY);
+        // classpath上有jsr310等模块时注册, 保证LocalDateTime等类型能还原
+        objectMapper.findAndRegisterModules();
+    }
+
+    public byte[] serialize(Object value) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(new Holder(value));
+        } catch (IOException e) {
+            throw new SerializationException("序列化mybatis缓存失败", e);
+        }
+        if (json.length < compressThreshold) {
+            byte[] result = new byte[json.length + 1];
+            result[0] = PLAIN;
+            System.arraycopy(json, 0, result, 1, json.length);
+            return result;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(json);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 16);
+            out.write(DEFLATED);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public Object deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) return null;
+        byte[] json = bytes[0] == DEFLATED ? inflate(bytes) : Arrays.copyOfRange(bytes, 1, bytes.length);
+        try {
+            return objectMapper.readValue(json, Holder.class).value;
+        } catch (IOException e) {
+            throw new SerializationException("反序列化mybatis缓存失败", e);
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, 1, bytes.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && inflater.needsInput()) break;
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new SerializationException("解压mybatis缓存失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * 外层包装, 保证顶层的List也带上类型信息
+     */
+    private static final class Holder {
+        private Object value;
+
+        private Holder() {
+        }
+
+        private Holder(Object value) {
+            this.value = value;
+        }
+    }
+}
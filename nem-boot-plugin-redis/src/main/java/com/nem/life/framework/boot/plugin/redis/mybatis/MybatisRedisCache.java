@@ -0,0 +1,174 @@
+package com.nem.life.framework.boot.plugin.redis.mybatis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.Cache;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于redis的mybatis二级缓存, 所有节点共享
+ * <p>
+ * 在mapper上开启:
+ * <pre>
+ * &#64;CacheNamespace(implementation = MybatisRedisCache.class)
+ * public interface DictMapper extends BaseMapper&lt;Dict&gt; {}
+ * </pre>
+ * key = 前缀{namespace}:md5(CacheKey), 值 = 写入时的代数:数据; mapper有写入时mybatis调用 {@link #clear()},
+ * 这里只递增代数, 旧代数的值读取时视为不存在, 到期自动删除, 不需要扫描。
+ * 代数和数据key使用同一个hash tag并都作为KEYS传入lua, 集群模式下读写都是一次lua调用。
+ * 缓存时间优先级: nem.redis.mybatis-cache.namespaces &gt; &#64;Property(name = "ttlSeconds") &gt; 默认值
+ */
+@Slf4j
+public class MybatisRedisCache implements Cache {
+    private static final RedisScript<byte[]> GET_SCRIPT = new DefaultRedisScript<>(
+            "local g = (redis.call('GET', KEYS[1]) or '0') .. ':' "
+                    + "local v = redis.call('GET', KEYS[2]) "
+                    + "if v and string.sub(v, 1, #g) == g then return string.sub(v, #g + 1) end "
+                    + "return false", byte[].class);
+    private static final RedisScript<Long> PUT_SCRIPT = new DefaultRedisScript<>(
+            "local g = redis.call('GET', KEYS[1]) or '0' "
+                    + "redis.call('SET', KEYS[2], g .. ':' .. ARGV[1], 'PX', ARGV[2]) "
+                    + "return 1", Long.class);
+
+    private static volatile MybatisRedisCacheSupport support;
+
+    private final String id;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private Long ttlSeconds;
+    private volatile boolean warned;
+
+    public MybatisRedisCache(String id) {
+        this.id = id;
+    }
+
+    static void setSupport(MybatisRedisCacheSupport cacheSupport) {
+        support = cacheSupport;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 由 &#64;CacheNamespace(properties = &#64;Property(name = "ttlSeconds", value = "600")) 注入
+     *
+     * @param ttlSeconds 缓存秒数
+     */
+    public void setTtlSeconds(Long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        MybatisRedisCacheSupport cacheSupport = support();
+        if (cacheSupport == null) return;
+        try {
+            byte[] bytes = cacheSupport.getSerializer().serialize(value);
+            cacheSupport.getRedisTemplate().execute(PUT_SCRIPT, RedisSerializer.byteArray(), null,
+                    Arrays.asList(generationKey(cacheSupport), dataKey(cacheSupport, key)), bytes,
+                    String.valueOf(ttlMillis(cacheSupport)).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("put mybatis cache failed:" + id, e);
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        MybatisRedisCacheSupport cacheSupport = support();
+        if (cacheSupport == null) return null;
+        try {
+            byte[] bytes = cacheSupport.getRedisTemplate().execute(GET_SCRIPT, RedisSerializer.byteArray(),
+                    RedisSerializer.byteArray(), Arrays.asList(generationKey(cacheSupport), dataKey(cacheSupport, key)));
+            if (bytes == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return cacheSupport.getSerializer().deserialize(bytes);
+        } catch (Exception e) {
+            log.warn("get mybatis cache failed:" + id, e);
+            return null;
+        }
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        MybatisRedisCacheSupport cacheSupport = support();
+        if (cacheSupport == null) return null;
+        try {
+            cacheSupport.getRedisTemplate().delete(dataKey(cacheSupport, key));
+        } catch (Exception e) {
+            log.warn("remove mybatis cache failed:" + id, e);
+        }
+        return null;
+    }
+
+    /**
+     * 递增代数, 使本namespace的所有缓存失效
+     */
+    @Override
+    public void clear() {
+        MybatisRedisCacheSupport cacheSupport = support();
+        if (cacheSupport == null) return;
+        try {
+            cacheSupport.getRedisTemplate().opsForValue().increment(generationKey(cacheSupport));
+        } catch (Exception e) {
+            log.warn("clear mybatis cache failed:" + id, e);
+        }
+    }
+
+    /**
+     * 旧代数的key无法统计, 不支持
+     *
+     * @return 0
+     */
+    @Override
+    public int getSize() {
+        return 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private MybatisRedisCacheSupport support() {
+        MybatisRedisCacheSupport cacheSupport = support;
+        if (cacheSupport == null && !warned) {
+            warned = true;
+            log.warn("MybatisRedisCacheConfiguration not loaded, mybatis cache disabled:" + id);
+        }
+        return cacheSupport;
+    }
+
+    private long ttlMillis(MybatisRedisCacheSupport cacheSupport) {
+        Duration ttl = cacheSupport.getProperties().getNamespaces().get(id);
+        if (ttl != null) return ttl.toMillis();
+        if (ttlSeconds != null) return ttlSeconds * 1000L;
+        return cacheSupport.getProperties().getTtl().toMillis();
+    }
+
+    private String generationKey(MybatisRedisCacheSupport cacheSupport) {
+        return cacheSupport.getProperties().getKeyPrefix() + "{" + id + "}:generation";
+    }
+
+    /**
+     * CacheKey.toString 包含语句id、分页、sql和所有参数
+     */
+    private String dataKey(MybatisRedisCacheSupport cacheSupport, Object key) {
+        return cacheSupport.getProperties().getKeyPrefix() + "{" + id + "}:"
+                + DigestUtils.md5DigestAsHex(String.valueOf(key).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,20 @@
+package com.nem.life.framework.boot.plugin.redis.mybatis;
+
+import org.apache.ibatis.cache.Cache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+@ConditionalOnClass({LettuceConnectionFactory.class, Cache.class})
+@EnableConfigurationProperties(MybatisRedisCacheProperties.class)
+@Configuration
+public class MybatisRedisCacheConfiguration {
+
+    @Bean
+    public MybatisRedisCacheSupport mybatisRedisCacheSupport(LettuceConnectionFactory lettuceConnectionFactory,
+                                                             MybatisRedisCacheProperties mybatisRedisCacheProperties) {
+        return new MybatisRedisCacheSupport(lettuceConnectionFactory, mybatisRedisCacheProperties);
+    }
+}
@@ -0,0 +1,32 @@
+package com.nem.life.framework.boot.plugin.redis.mybatis;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.mybatis-cache")
+public class MybatisRedisCacheProperties {
+    /**
+     * redis key前缀
+     */
+    private String keyPrefix = "mybatis:";
+
+    /**
+     * 默认缓存时间
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * 按mapper namespace配置的缓存时间, 优先于默认值
+     */
+    private Map<String, Duration> namespaces = new LinkedHashMap<>();
+
+    /**
+     * 序列化后超过该字节数时压缩
+     */
+    private Integer compressThreshold = 1024;
+}
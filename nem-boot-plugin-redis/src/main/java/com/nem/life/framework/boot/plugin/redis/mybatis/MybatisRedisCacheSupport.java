@@ -0,0 +1,37 @@
+package com.nem.life.framework.boot.plugin.redis.mybatis;
+
+import lombok.Getter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+/**
+ * mybatis按类名实例化缓存, 无法注入bean, 由该对象把redis连接和配置交给 {@link MybatisRedisCache}
+ * <p>
+ * 使用单独的template且不开启事务支持, 否则在spring事务内读缓存会进入MULTI返回null;
+ * 事务内的写入由mybatis的TransactionalCache在提交后才写入缓存
+ */
+@Getter
+public class MybatisRedisCacheSupport implements DisposableBean {
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final MybatisRedisCacheProperties properties;
+    private final CompactCacheSerializer serializer;
+
+    public MybatisRedisCacheSupport(RedisConnectionFactory redisConnectionFactory, MybatisRedisCacheProperties properties) {
+        this.properties = properties;
+        this.serializer = new CompactCacheSerializer(properties.getCompressThreshold());
+        this.redisTemplate = new RedisTemplate<>();
+        redisTemplate.setKeySerializer(StringRedisSerializer.UTF_8);
+        redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+        redisTemplate.setConnectionFactory(redisConnectionFactory);
+        redisTemplate.afterPropertiesSet();
+        MybatisRedisCache.setSupport(this);
+    }
+
+    @Override
+    public void destroy() {
+        MybatisRedisCache.setSupport(null);
+    }
+}
@@ -0,0 +1,23 @@
+package com.nem.life.framework.boot.plugin.redis.page;
+
+import com.nem.life.framework.boot.plugin.redis.configuration.RedisConfiguration;
+import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+@ConditionalOnClass({LettuceConnectionFactory.class})
+@EnableConfigurationProperties(PageCacheProperties.class)
+@Configuration
+@Import({RedisConfiguration.class})
+public class PageCacheConfiguration {
+
+    @Bean
+    public PageResultCache pageResultCache(RedisTemplates<Object, Object> redisTemplates,
+                                           PageCacheProperties pageCacheProperties) {
+        return new PageResultCache(redisTemplates, pageCacheProperties);
+    }
+}
@@ -0,0 +1,30 @@
+package com.nem.life.framework.boot.plugin.redis.page;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.page-cache")
+public class PageCacheProperties {
+    /**
+     * 关闭后直接查询数据库
+     */
+    private Boolean enabled = true;
+
+    /**
+     * redis key前缀
+     */
+    private String keyPrefix = "page:";
+
+    /**
+     * 分页结果缓存时间
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+
+    /**
+     * 超过该页大小的结果不缓存, 例如 PageParameter.fullPage()
+     */
+    private Integer maxPageSize = 1000;
+}
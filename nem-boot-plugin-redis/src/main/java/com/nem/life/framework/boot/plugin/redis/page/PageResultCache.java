@@ -0,0 +1,108 @@
+package com.nem.life.framework.boot.plugin.redis.page;
+
+import com.nem.life.framework.boot.entity.PageParameter;
+import com.nem.life.framework.boot.entity.PageResult;
+import com.nem.life.framework.boot.plugin.redis.util.RedisTemplates;
+import com.nem.life.framework.boot.util.JsonUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 分页结果缓存, mongo和mybatis-plus分页都可以使用
+ * <p>
+ * key = 前缀 + 实体全类名 + 版本号 + md5(查询条件 + 分页参数)。
+ * 实体写入后调用 {@link #bumpVersion(Class)} 递增版本号, 旧版本的分页自然无法命中, 等待过期即可, 不需要扫描删除
+ * <pre>
+ * pageResultCache.get(Order.class, query, pageParameter,
+ *         () -> mongoPageHelper.pageQuery(query, Order.class, pageParameter, mapper));
+ * </pre>
+ */
+@RequiredArgsConstructor
+public class PageResultCache {
+    private static final boolean MYBATIS_PLUS_PRESENT = ClassUtils.isPresent(
+            "com.baomidou.mybatisplus.core.conditions.AbstractWrapper", PageResultCache.class.getClassLoader());
+
+    private final RedisTemplates<Object, Object> redisTemplates;
+    private final PageCacheProperties pageCacheProperties;
+
+    /**
+     * 读取缓存的分页, 未命中时执行查询并缓存
+     *
+     * @param entityClass   实体类, 用于版本号
+     * @param query         查询条件, 支持 String、Map、mybatis-plus Wrapper、mongo Query(toString)
+     * @param pageParameter 分页参数
+     * @param loader        实际的分页查询
+     * @param <R>           记录类型
+     * @return 分页结果
+     */
+    @SuppressWarnings("unchecked")
+    public <R> PageResult<R> get(Class<?> entityClass, Object query, PageParameter<?> pageParameter,
+                                 Supplier<PageResult<R>> loader) {
+        if (!Boolean.TRUE.equals(pageCacheProperties.getEnabled())
+                || pageParameter.getPageSize() > pageCacheProperties.getMaxPageSize()) {
+            return loader.get();
+        }
+        String key = pageKey(entityClass, query, pageParameter);
+        Object cached = redisTemplates.get(key);
+        if (cached instanceof PageResult) {
+            return (PageResult<R>) cached;
+        }
+        PageResult<R> pageResult = loader.get();
+        if (pageResult != null) {
+            redisTemplates.set(key, pageResult, pageCacheProperties.getTtl().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return pageResult;
+    }
+
+    /**
+     * 实体有写入时递增版本号, 使该实体所有缓存分页失效
+     *
+     * @param entityClass 实体类
+     * @return 新版本号
+     */
+    public Long bumpVersion(Class<?> entityClass) {
+        return redisTemplates.opsForValue().increment(versionKey(entityClass));
+    }
+
+    /**
+     * 执行写操作后递增版本号
+     *
+     * @param entityClass 实体类
+     * @param write       写操作
+     */
+    public void evictAfter(Class<?> entityClass, Runnable write) {
+        write.run();
+        bumpVersion(entityClass);
+    }
+
+    private String pageKey(Class<?> entityClass, Object query, PageParameter<?> pageParameter) {
+        Object version = redisTemplates.get(versionKey(entityClass));
+        String raw = normalize(query) + "|" + pageParameter.getPage() + "|" + pageParameter.getPageSize()
+                + "|" + pageParameter.getLastId();
+        return pageCacheProperties.getKeyPrefix() + entityClass.getName() + ":"
+                + (version == null ? 0 : version) + ":"
+                + DigestUtils.md5DigestAsHex(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String versionKey(Class<?> entityClass) {
+        return pageCacheProperties.getKeyPrefix() + "version:" + entityClass.getName();
+    }
+
+    /**
+     * 查询条件规范化, Map按key排序, 保证同样的条件得到同样的key
+     */
+    private static String normalize(Object query) {
+        if (query == null) return "";
+        if (query instanceof CharSequence) return query.toString();
+        if (query instanceof Map) return JsonUtil.objectToJson(new TreeMap<>((Map<?, ?>) query));
+        if (MYBATIS_PLUS_PRESENT && WrapperQueries.isWrapper(query)) return WrapperQueries.normalize(query);
+        return query.toString();
+    }
+}
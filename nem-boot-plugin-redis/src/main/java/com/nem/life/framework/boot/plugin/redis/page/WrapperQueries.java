@@ -0,0 +1,27 @@
+package com.nem.life.framework.boot.plugin.redis.page;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.nem.life.framework.boot.util.JsonUtil;
+
+import java.util.TreeMap;
+
+/**
+ * mybatis-plus Wrapper 的规范化, 单独成类, 没有mybatis-plus时不加载
+ */
+final class WrapperQueries {
+    private WrapperQueries() {
+    }
+
+    static boolean isWrapper(Object query) {
+        return query instanceof AbstractWrapper;
+    }
+
+    /**
+     * select + 条件sql + 按名称排序的参数
+     */
+    static String normalize(Object query) {
+        AbstractWrapper<?, ?, ?> wrapper = (AbstractWrapper<?, ?, ?>) query;
+        return wrapper.getSqlSelect() + "|" + wrapper.getCustomSqlSegment() + "|"
+                + JsonUtil.objectToJson(new TreeMap<>(wrapper.getParamNameValuePairs()));
+    }
+}
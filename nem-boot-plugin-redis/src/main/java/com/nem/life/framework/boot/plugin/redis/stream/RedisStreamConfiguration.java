@@ -0,0 +1,27 @@
+package com.nem.life.framework.boot.plugin.redis.stream;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import javax.annotation.Resource;
+
+@ConditionalOnClass({LettuceConnectionFactory.class})
+@EnableConfigurationProperties(RedisStreamProperties.class)
+@Configuration
+public class RedisStreamConfiguration {
+    @Resource
+    private LettuceConnectionFactory lettuceConnectionFactory;
+
+    @Bean
+    public RedisStreamTemplates redisStreamTemplates(RedisStreamProperties redisStreamProperties) {
+        return new RedisStreamTemplates(lettuceConnectionFactory, redisStreamProperties);
+    }
+
+    @Bean
+    public RedisStreamContainer redisStreamContainer(RedisStreamProperties redisStreamProperties) {
+        return new RedisStreamContainer(lettuceConnectionFactory, redisStreamProperties);
+    }
+}
@@ -0,0 +1,311 @@
+package com.nem.life.framework.boot.plugin.redis.stream;
+
+import io.lettuce.core.Limit;
+import io.lettuce.core.Range;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XGroupCreateArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.models.stream.PendingMessage;
+import io.lettuce.core.models.stream.PendingParser;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis Stream 消费组容器
+ * <p>
+ * 每个订阅启动若干消费者线程, 每个线程持有自己的连接循环执行 XREADGROUP,
+ * 处理完一批后用一次 XACK 确认成功的消息; 处理失败的消息留在pending中。
+ * 消费者每隔 claimInterval 分页检查整个pending列表: 自己处理失败且空闲超过 retryDelay 的消息、
+ * 其他消费者空闲超过 claimIdleTime 的消息(通常属于已宕机的节点) XCLAIM 过来重新处理, 从而保证至少一次消费;
+ * 投递达到 maxDeliveries 次的消息打印错误日志后确认放弃。
+ * 消费者名带进程号, 重启后不会复用, 没有pending且空闲超过 deadConsumerIdleTime 的消费者用 XGROUP DELCONSUMER 删除;
+ * 正常停止时没有pending的消费者直接删除自己
+ */
+@Slf4j
+public class RedisStreamContainer implements SmartLifecycle {
+    private static final StringRedisSerializer SERIALIZER = StringRedisSerializer.UTF_8;
+    private static final String BUSY_GROUP = "BUSYGROUP";
+
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final RedisStreamProperties redisStreamProperties;
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private volatile ExecutorService executor;
+    private volatile boolean running;
+
+    public RedisStreamContainer(RedisConnectionFactory redisConnectionFactory, RedisStreamProperties redisStreamProperties) {
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.redisStreamProperties = redisStreamProperties;
+    }
+
+    /**
+     * 订阅stream, 使用默认消费者线程数
+     *
+     * @param stream  stream key
+     * @param group   消费组
+     * @param handler 消息处理器
+     */
+    public void subscribe(String stream, String group, RedisStreamHandler handler) {
+        subscribe(stream, group, redisStreamProperties.getConcurrency(), handler);
+    }
+
+    /**
+     * 订阅stream, 消费组不存在时自动创建
+     *
+     * @param stream      stream key
+     * @param group       消费组
+     * @param concurrency 本节点的消费者线程数
+     * @param handler     消息处理器
+     */
+    public synchronized void subscribe(String stream, String group, int concurrency, RedisStreamHandler handler) {
+        Subscription subscription = new Subscription(stream, group, Math.max(1, concurrency), handler);
+        subscriptions.add(subscription);
+        if (running) launch(subscription);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("redis-stream-"));
+        running = true;
+        subscriptions.forEach(this::launch);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        ExecutorService stopping = executor;
+        if (stopping == null) return;
+        executor = null;
+        stopping.shutdown();
+        try {
+            stopping.awaitTermination(redisStreamProperties.getBlockTime().toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void launch(Subscription subscription) {
+        createGroup(subscription);
+        ExecutorService current = executor;
+        for (int i = 0; i < subscription.getConcurrency(); i++) {
+            String consumerName = instanceId + "-" + i;
+            log.info("Add a redisStreamConsumer By:" + subscription.getStream() + "/" + subscription.getGroup() + "/" + consumerName);
+            current.execute(() -> consume(subscription, consumerName));
+        }
+    }
+
+    private void createGroup(Subscription subscription) {
+        RedisConnection connection = redisConnectionFactory.getConnection();
+        try {
+            RedisStreamTemplates.nativeCommands(connection)
+                    .xgroupCreate(XReadArgs.StreamOffset.from(SERIALIZER.serialize(subscription.getStream()), "0"),
+                            SERIALIZER.serialize(subscription.getGroup()), XGroupCreateArgs.Builder.mkstream())
+                    .get();
+        } catch (ExecutionException e) {
+            if (e.getCause() == null || e.getCause().getMessage() == null || !e.getCause().getMessage().startsWith(BUSY_GROUP)) {
+                throw new IllegalStateException("创建消费组失败:" + subscription.getGroup(), e.getCause());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void consume(Subscription subscription, String consumerName) {
+        byte[] key = SERIALIZER.serialize(subscription.getStream());
+        Consumer consumer = Consumer.from(subscription.getGroup(), consumerName);
+        StreamReadOptions options = StreamReadOptions.empty()
+                .count(redisStreamProperties.getBatchSize())
+                .block(redisStreamProperties.getBlockTime());
+        StreamOffset<byte[]> offset = StreamOffset.create(key, ReadOffset.lastConsumed());
+        long claimInterval = redisStreamProperties.getClaimInterval().toMillis();
+        long nextClaim = System.currentTimeMillis() + claimInterval;
+
+        RedisConnection connection = redisConnectionFactory.getConnection();
+        try {
+            while (running) {
+                try {
+                    if (System.currentTimeMillis() >= nextClaim) {
+                        nextClaim = System.currentTimeMillis() + claimInterval;
+                        claimStale(connection, subscription, key, consumerName);
+                        removeDeadConsumers(connection, subscription, key, consumerName);
+                    }
+                    List<ByteRecord> records = connection.streamCommands().xReadGroup(consumer, options, offset);
+                    if (records == null || records.isEmpty()) continue;
+                    List<MapRecord<String, String, String>> batch = new ArrayList<>(records.size());
+                    for (ByteRecord record : records) {
+                        batch.add(record.deserialize(SERIALIZER));
+                    }
+                    dispatch(connection, subscription, key, batch);
+                } catch (Exception e) {
+                    if (!running) break;
+                    log.error("redisStream consume error:" + subscription.getStream() + "/" + consumerName, e);
+                    Thread.sleep(1000);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            removeSelf(connection, subscription, key, consumerName);
+            connection.close();
+        }
+    }
+
+    /**
+     * 分页遍历整个pending列表, 重试自己处理失败的消息, 认领其他消费者空闲过久的消息
+     */
+    private void claimStale(RedisConnection connection, Subscription subscription, byte[] key, String consumerName) throws Exception {
+        long claimIdle = redisStreamProperties.getClaimIdleTime().toMillis();
+        long retryIdle = redisStreamProperties.getRetryDelay().toMillis();
+        int maxDeliveries = redisStreamProperties.getMaxDeliveries();
+        int pageSize = redisStreamProperties.getBatchSize();
+        byte[] group = SERIALIZER.serialize(subscription.getGroup());
+        RedisClusterAsyncCommands<byte[], byte[]> commands = RedisStreamTemplates.nativeCommands(connection);
+        Range<String> range = Range.unbounded();
+        while (running) {
+            List<PendingMessage> pending = PendingParser.parseRange(commands.xpending(key, group, range, Limit.from(pageSize)).get());
+            if (pending.isEmpty()) return;
+            List<String> stale = new ArrayList<>();
+            List<RecordId> exhausted = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                boolean own = consumerName.equals(message.getConsumer());
+                if (message.getMsSinceLastDelivery() < (own ? retryIdle : claimIdle)) continue;
+                if (maxDeliveries > 0 && message.getRedeliveryCount() >= maxDeliveries) {
+                    exhausted.add(RecordId.of(message.getId()));
+                } else {
+                    stale.add(message.getId());
+                }
+            }
+            if (!exhausted.isEmpty()) {
+                log.error("redisStream gave up " + exhausted.size() + " message(s) after " + maxDeliveries + " deliveries:"
+                        + subscription.getStream() + "/" + subscription.getGroup() + " " + exhausted);
+                connection.streamCommands().xAck(key, subscription.getGroup(), exhausted.toArray(new RecordId[0]));
+            }
+            if (!stale.isEmpty()) claim(connection, commands, subscription, key, group, consumerName, Math.min(claimIdle, retryIdle), stale);
+            if (pending.size() < pageSize) return;
+            range = Range.create(nextId(pending.get(pending.size() - 1).getId()), "+");
+        }
+    }
+
+    private void claim(RedisConnection connection, RedisClusterAsyncCommands<byte[], byte[]> commands, Subscription subscription,
+                       byte[] key, byte[] group, String consumerName, long minIdle, List<String> stale) throws Exception {
+        List<StreamMessage<byte[], byte[]>> claimed = commands.xclaim(key,
+                io.lettuce.core.Consumer.from(group, SERIALIZER.serialize(consumerName)),
+                minIdle, stale.toArray(new String[0])).get();
+        List<MapRecord<String, String, String>> batch = new ArrayList<>(claimed.size());
+        for (StreamMessage<byte[], byte[]> message : claimed) {
+            Map<String, String> body = new LinkedHashMap<>();
+            message.getBody().forEach((k, v) -> body.put(SERIALIZER.deserialize(k), SERIALIZER.deserialize(v)));
+            batch.add(StreamRecords.newRecord().in(subscription.getStream()).withId(message.getId()).ofMap(body));
+        }
+        log.info("redisStream claimed " + batch.size() + " stale message(s) for " + consumerName);
+        dispatch(connection, subscription, key, batch);
+    }
+
+    /**
+     * 删除没有pending且空闲过久的消费者, 通常是已经重启或下线的节点
+     */
+    private void removeDeadConsumers(RedisConnection connection, Subscription subscription, byte[] key, String consumerName) throws Exception {
+        long deadIdle = redisStreamProperties.getDeadConsumerIdleTime().toMillis();
+        byte[] group = SERIALIZER.serialize(subscription.getGroup());
+        RedisClusterAsyncCommands<byte[], byte[]> commands = RedisStreamTemplates.nativeCommands(connection);
+        for (Object info : commands.xinfoConsumers(key, group).get()) {
+            Map<String, Object> consumer = new LinkedHashMap<>();
+            List<?> fields = (List<?>) info;
+            for (int i = 0; i + 1 < fields.size(); i += 2) {
+                consumer.put(SERIALIZER.deserialize((byte[]) fields.get(i)), fields.get(i + 1));
+            }
+            String name = SERIALIZER.deserialize((byte[]) consumer.get("name"));
+            Number pending = (Number) consumer.get("pending");
+            Number idle = (Number) consumer.get("idle");
+            if (consumerName.equals(name) || pending == null || pending.longValue() > 0 || idle == null || idle.longValue() < deadIdle) {
+                continue;
+            }
+            commands.xgroupDelconsumer(key, io.lettuce.core.Consumer.from(group, SERIALIZER.serialize(name))).get();
+            log.info("redisStream removed dead consumer " + subscription.getStream() + "/" + subscription.getGroup() + "/" + name);
+        }
+    }
+
+    /**
+     * 停止时没有pending的消费者删除自己, 有pending时保留, 由其他消费者认领后再清理
+     */
+    private void removeSelf(RedisConnection connection, Subscription subscription, byte[] key, String consumerName) {
+        try {
+            byte[] group = SERIALIZER.serialize(subscription.getGroup());
+            io.lettuce.core.Consumer<byte[]> consumer = io.lettuce.core.Consumer.from(group, SERIALIZER.serialize(consumerName));
+            RedisClusterAsyncCommands<byte[], byte[]> commands = RedisStreamTemplates.nativeCommands(connection);
+            if (commands.xpending(key, consumer, Range.unbounded(), Limit.from(1)).get().isEmpty()) {
+                commands.xgroupDelconsumer(key, consumer).get();
+            }
+        } catch (Exception e) {
+            log.warn("redisStream remove consumer failed:" + subscription.getStream() + "/" + consumerName, e);
+        }
+    }
+
+    /**
+     * pending分页的下一个起点, 消息id为 毫秒-序号
+     */
+    private static String nextId(String id) {
+        int separator = id.indexOf('-');
+        return id.substring(0, separator + 1) + (Long.parseLong(id.substring(separator + 1)) + 1);
+    }
+
+    private void dispatch(RedisConnection connection, Subscription subscription, byte[] key,
+                          List<MapRecord<String, String, String>> batch) {
+        List<RecordId> acknowledged = new ArrayList<>(batch.size());
+        for (MapRecord<String, String, String> record : batch) {
+            try {
+                subscription.getHandler().handle(record);
+                acknowledged.add(record.getId());
+            } catch (Exception e) {
+                log.error("redisStream handle error:" + subscription.getStream() + "/" + record.getId(), e);
+            }
+        }
+        if (!acknowledged.isEmpty()) {
+            connection.streamCommands().xAck(key, subscription.getGroup(), acknowledged.toArray(new RecordId[0]));
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    public static class Subscription {
+        private String stream;
+        private String group;
+        private int concurrency;
+        private RedisStreamHandler handler;
+    }
+}
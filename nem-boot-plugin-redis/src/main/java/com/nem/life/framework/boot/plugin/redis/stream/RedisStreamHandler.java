@@ -0,0 +1,18 @@
+package com.nem.life.framework.boot.plugin.redis.stream;
+
+import org.springframework.data.redis.connection.stream.MapRecord;
+
+/**
+ * stream消息处理器, 抛出异常的消息不会ACK, 留在pending中等待重新认领
+ */
+@FunctionalInterface
+public interface RedisStreamHandler {
+
+    /**
+     * 处理一条消息
+     *
+     * @param record stream消息
+     * @throws Exception 处理失败
+     */
+    void handle(MapRecord<String, String, String> record) throws Exception;
+}
@@ -0,0 +1,60 @@
+package com.nem.life.framework.boot.plugin.redis.stream;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "nem.redis.stream")
+public class RedisStreamProperties {
+    /**
+     * 每次XREADGROUP读取的最大条数
+     */
+    private Integer batchSize = 100;
+
+    /**
+     * XREADGROUP阻塞等待时间
+     */
+    private Duration blockTime = Duration.ofSeconds(2);
+
+    /**
+     * 每个订阅默认的消费者线程数
+     */
+    private Integer concurrency = 1;
+
+    /**
+     * 批量XADD时每批发送的条数
+     */
+    private Integer producerBatchSize = 500;
+
+    /**
+     * stream的近似最大长度, XADD时自动裁剪, 小于等于0不裁剪
+     */
+    private Long maxLength = 100000L;
+
+    /**
+     * pending消息空闲超过该时间则认为消费者已失效, 由其他消费者认领
+     */
+    private Duration claimIdleTime = Duration.ofMinutes(5);
+
+    /**
+     * 检查失效消费者pending消息的间隔, 同时重试本消费者处理失败的消息、清理失效的消费者
+     */
+    private Duration claimInterval = Duration.ofSeconds(30);
+
+    /**
+     * 本消费者处理失败的消息空闲超过该时间后重试
+     */
+    private Duration retryDelay = Duration.ofSeconds(10);
+
+    /**
+     * 消息投递达到该次数仍未确认时打印错误日志并XACK放弃, 小于等于0一直重试
+     */
+    private Integer maxDeliveries = 16;
+
+    /**
+     * 没有pending消息且空闲超过该时间的消费者视为已下线, 用 XGROUP DELCONSUMER 删除; 需要远大于 blockTime
+     */
+    private Duration deadConsumerIdleTime = Duration.ofMinutes(30);
+}
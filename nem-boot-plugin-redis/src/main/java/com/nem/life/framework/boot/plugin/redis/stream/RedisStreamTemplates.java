@@ -0,0 +1,139 @@
+package com.nem.life.framework.boot.plugin.redis.stream;
+
+import com.nem.life.framework.boot.util.JsonUtil;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Redis Stream 生产者
+ * <p>
+ * 批量写入时一批XADD连续发出后统一等待结果, 在同一连接上以流水线方式执行;
+ * 配置了maxLength时每条XADD都带上 MAXLEN ~ 近似裁剪
+ */
+@RequiredArgsConstructor
+public class RedisStreamTemplates {
+    /**
+     * 写入对象消息时使用的字段名
+     */
+    public static final String PAYLOAD_FIELD = "payload";
+
+    private static final StringRedisSerializer SERIALIZER = StringRedisSerializer.UTF_8;
+
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final RedisStreamProperties redisStreamProperties;
+
+    /**
+     * 写入一条消息
+     *
+     * @param stream stream key
+     * @param body   消息内容
+     * @return 消息id
+     */
+    public String add(String stream, Map<String, String> body) {
+        return addAll(stream, Collections.singletonList(body)).get(0);
+    }
+
+    /**
+     * 以json形式写入一个对象, 存放在 payload 字段
+     *
+     * @param stream stream key
+     * @param value  消息对象
+     * @return 消息id
+     */
+    public String addObject(String stream, Object value) {
+        return add(stream, Collections.singletonMap(PAYLOAD_FIELD, Objects.requireNonNull(JsonUtil.objectToJson(value))));
+    }
+
+    /**
+     * 流水线批量写入消息
+     *
+     * @param stream stream key
+     * @param bodies 消息内容集合
+     * @return 按顺序返回的消息id
+     */
+    @SneakyThrows
+    public List<String> addAll(String stream, List<Map<String, String>> bodies) {
+        List<String> ids = new ArrayList<>(bodies.size());
+        if (bodies.isEmpty()) return ids;
+        byte[] key = SERIALIZER.serialize(stream);
+        int batchSize = Math.max(1, redisStreamProperties.getProducerBatchSize());
+        RedisConnection connection = redisConnectionFactory.getConnection();
+        try {
+            RedisClusterAsyncCommands<byte[], byte[]> commands = nativeCommands(connection);
+            for (int from = 0; from < bodies.size(); from += batchSize) {
+                List<RedisFuture<String>> futures = new ArrayList<>(batchSize);
+                for (Map<String, String> body : bodies.subList(from, Math.min(from + batchSize, bodies.size()))) {
+                    futures.add(commands.xadd(key, xAddArgs(), encode(body)));
+                }
+                for (RedisFuture<String> future : futures) {
+                    ids.add(future.get());
+                }
+            }
+        } finally {
+            connection.close();
+        }
+        return ids;
+    }
+
+    /**
+     * 以json形式批量写入对象
+     *
+     * @param stream stream key
+     * @param values 消息对象集合
+     * @return 按顺序返回的消息id
+     */
+    public List<String> addAllObject(String stream, List<?> values) {
+        List<Map<String, String>> bodies = new ArrayList<>(values.size());
+        for (Object value : values) {
+            bodies.add(Collections.singletonMap(PAYLOAD_FIELD, Objects.requireNonNull(JsonUtil.objectToJson(value))));
+        }
+        return addAll(stream, bodies);
+    }
+
+    /**
+     * 手动裁剪stream
+     *
+     * @param stream    stream key
+     * @param maxLength 保留的最大长度
+     * @return 删除的条数
+     */
+    @SneakyThrows
+    public Long trim(String stream, long maxLength) {
+        RedisConnection connection = redisConnectionFactory.getConnection();
+        try {
+            return nativeCommands(connection).xtrim(SERIALIZER.serialize(stream), true, maxLength).get();
+        } finally {
+            connection.close();
+        }
+    }
+
+    private XAddArgs xAddArgs() {
+        Long maxLength = redisStreamProperties.getMaxLength();
+        if (maxLength == null || maxLength <= 0) return new XAddArgs();
+        return XAddArgs.Builder.maxlen(maxLength).approximateTrimming();
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisClusterAsyncCommands<byte[], byte[]> nativeCommands(RedisConnection connection) {
+        return (RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+    }
+
+    static Map<byte[], byte[]> encode(Map<String, String> body) {
+        Map<byte[], byte[]> raw = new LinkedHashMap<>(body.size());
+        body.forEach((k, v) -> raw.put(SERIALIZER.serialize(k), SERIALIZER.serialize(v)));
+        return raw;
+    }
+}
@@ -0,0 +1,110 @@
+package com.nem.life.framework.boot.plugin.redis.util;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.cluster.RedisClusterClient;
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.resource.ClientResources;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisSentinelConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按照 LettuceConnectionFactory 的配置创建独立的 Lettuce 客户端
+ * <p>
+ * spring的连接工厂只暴露共享连接, 需要关闭自动flush等独占连接能力时使用这里创建的客户端,
+ * 事件循环沿用连接工厂的 ClientResources
+ */
+public final class LettuceClients {
+
+    private LettuceClients() {
+    }
+
+    /**
+     * 创建客户端, 支持单机、哨兵、集群
+     *
+     * @param factory 连接工厂
+     * @return RedisClient 或 RedisClusterClient
+     */
+    public static AbstractRedisClient createClient(LettuceConnectionFactory factory) {
+        ClientResources resources = factory.getClientResources();
+        if (factory.isClusterAware()) {
+            List<RedisURI> uris = new ArrayList<>();
+            for (RedisNode node : factory.getClusterConfiguration().getClusterNodes()) {
+                uris.add(redisUri(factory, node.getHost(), node.getPort()));
+            }
+            return resources == null ? RedisClusterClient.create(uris) : RedisClusterClient.create(resources, uris);
+        }
+        RedisURI uri;
+        if (factory.isRedisSentinelAware()) {
+            RedisSentinelConfiguration sentinel = factory.getSentinelConfiguration();
+            RedisURI.Builder builder = null;
+            for (RedisNode node : sentinel.getSentinels()) {
+                if (builder == null) {
+                    builder = RedisURI.Builder.sentinel(node.getHost(), node.getPort(), sentinel.getMaster().getName());
+                } else {
+                    builder.withSentinel(node.getHost(), node.getPort());
+                }
+            }
+            uri = applyCommon(factory, builder).build();
+        } else {
+            uri = applyCommon(factory, RedisURI.Builder.redis(factory.getHostName(), factory.getPort())).build();
+        }
+        return resources == null ? RedisClient.create(uri) : RedisClient.create(resources, uri);
+    }
+
+    /**
+     * 打开一条 byte[] 编解码的连接
+     *
+     * @param client 客户端
+     * @return 连接
+     */
+    public static StatefulConnection<byte[], byte[]> connect(AbstractRedisClient client) {
+        if (client instanceof RedisClusterClient) {
+            return ((RedisClusterClient) client).connect(ByteArrayCodec.INSTANCE);
+        }
+        return ((RedisClient) client).connect(ByteArrayCodec.INSTANCE);
+    }
+
+    /**
+     * 获取连接的异步命令, 单机和集群共用 RedisClusterAsyncCommands 接口
+     *
+     * @param connection 连接
+     * @return 异步命令
+     */
+    public static RedisClusterAsyncCommands<byte[], byte[]> async(StatefulConnection<byte[], byte[]> connection) {
+        if (connection instanceof StatefulRedisClusterConnection) {
+            return ((StatefulRedisClusterConnection<byte[], byte[]>) connection).async();
+        }
+        return ((StatefulRedisConnection<byte[], byte[]>) connection).async();
+    }
+
+    private static RedisURI redisUri(LettuceConnectionFactory factory, String host, int port) {
+        return applyCommon(factory, RedisURI.Builder.redis(host, port)).build();
+    }
+
+    private static RedisURI.Builder applyCommon(LettuceConnectionFactory factory, RedisURI.Builder builder) {
+        builder.withTimeout(Duration.ofMillis(factory.getTimeout()))
+                .withSsl(factory.isUseSsl())
+                .withVerifyPeer(factory.isVerifyPeer())
+                .withStartTls(factory.isStartTls());
+        if (!factory.isClusterAware()) {
+            builder.withDatabase(factory.getDatabase());
+        }
+        RedisPassword password = RedisPassword.of(factory.getPassword());
+        if (password.isPresent()) {
+            builder.withPassword(password.get());
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,306 @@
+package com.nem.life.framework.boot.plugin.redis.util;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * RedisTemplates 的异步版本, 基于 Lettuce 异步命令, 返回 CompletableFuture
+ * <p>
+ * 序列化方式与传入的 RedisTemplate 保持一致, 同一个key可以混用同步和异步读写。
+ * 多个请求同时发出时在连接上重叠执行, 不再一个一个等待往返;
+ * 突发的大量命令可以通过 {@link #batch(Function)} 关闭自动flush后一次性写出
+ *
+ * @param <K> key
+ * @param <V> value
+ */
+public class RedisAsyncTemplates<K, V> implements DisposableBean {
+    private final RedisTemplate<K, V> redisTemplate;
+    private final AbstractRedisClient client;
+    private final StatefulConnection<byte[], byte[]> connection;
+    private final RedisClusterAsyncCommands<byte[], byte[]> commands;
+    private final Queue<StatefulConnection<byte[], byte[]>> batchConnections;
+
+    public RedisAsyncTemplates(RedisTemplate<K, V> redisTemplate, LettuceConnectionFactory lettuceConnectionFactory) {
+        this.redisTemplate = redisTemplate;
+        this.client = LettuceClients.createClient(lettuceConnectionFactory);
+        this.connection = LettuceClients.connect(client);
+        this.commands = LettuceClients.async(connection);
+        this.batchConnections = new ConcurrentLinkedQueue<>();
+    }
+
+    private RedisAsyncTemplates(RedisAsyncTemplates<K, V> parent, StatefulConnection<byte[], byte[]> connection) {
+        this.redisTemplate = parent.redisTemplate;
+        this.client = parent.client;
+        this.connection = connection;
+        this.commands = LettuceClients.async(connection);
+        this.batchConnections = parent.batchConnections;
+    }
+
+    /**
+     * 放入永不过期的数据
+     *
+     * @param key   redis key
+     * @param value 放入的数据
+     */
+    public CompletableFuture<Void> set(K key, V value) {
+        return commands.set(rawKey(key), rawValue(value)).thenApply(r -> (Void) null).toCompletableFuture();
+    }
+
+    /***
+     * 放入指定过期时间的数据
+     * @param key redis key
+     * @param value 放入的数据
+     * @param expired 过期时间
+     * @param timeUnit 时间单位
+     */
+    public CompletableFuture<Void> set(K key, V value, Long expired, TimeUnit timeUnit) {
+        return commands.psetex(rawKey(key), timeUnit.toMillis(expired), rawValue(value))
+                .thenApply(r -> (Void) null).toCompletableFuture();
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param key redis key
+     * @return 删除的数量
+     */
+    public CompletableFuture<Long> del(K key) {
+        return commands.del(rawKey(key)).toCompletableFuture();
+    }
+
+    /**
+     * 根据key获得value
+     *
+     * @param key redis key
+     * @return value
+     */
+    public CompletableFuture<V> get(K key) {
+        return commands.get(rawKey(key)).thenApply(this::deserializeValue).toCompletableFuture();
+    }
+
+    /**
+     * 批量获取, 结果按传入顺序返回, 不存在的key不放入结果
+     *
+     * @param keys key集合
+     * @return key和value
+     */
+    public CompletableFuture<Map<K, V>> multiGet(Collection<K> keys) {
+        List<K> keyList = new ArrayList<>(keys);
+        if (keyList.isEmpty()) return CompletableFuture.completedFuture(new LinkedHashMap<>());
+        byte[][] rawKeys = new byte[keyList.size()][];
+        for (int i = 0; i < rawKeys.length; i++) {
+            rawKeys[i] = rawKey(keyList.get(i));
+        }
+        return commands.mget(rawKeys).thenApply(values -> {
+            Map<K, V> result = new LinkedHashMap<>(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                KeyValue<byte[], byte[]> value = values.get(i);
+                if (value.hasValue()) {
+                    result.put(keyList.get(i), deserializeValue(value.getValue()));
+                }
+            }
+            return result;
+        }).toCompletableFuture();
+    }
+
+    /**
+     * 批量放入
+     *
+     * @param map key和value
+     */
+    public CompletableFuture<Void> multiSet(Map<K, V> map) {
+        Map<byte[], byte[]> raw = new LinkedHashMap<>(map.size());
+        map.forEach((k, v) -> raw.put(rawKey(k), rawValue(v)));
+        return commands.mset(raw).thenApply(r -> (Void) null).toCompletableFuture();
+    }
+
+    /**
+     * 设置key的过期时间-秒
+     *
+     * @param key  key
+     * @param time 过期时间
+     */
+    public CompletableFuture<Boolean> setExpire(K key, Long time) {
+        return setExpire(key, time, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 设置key的过期时间
+     *
+     * @param key      key
+     * @param time     过期时间
+     * @param timeUnit 时间单位
+     */
+    public CompletableFuture<Boolean> setExpire(K key, Long time, TimeUnit timeUnit) {
+        return commands.pexpire(rawKey(key), timeUnit.toMillis(time)).toCompletableFuture();
+    }
+
+    /**
+     * 获取key 的过期时间-秒
+     *
+     * @param key key
+     * @return 过期时间
+     */
+    public CompletableFuture<Long> getExpire(K key) {
+        return commands.ttl(rawKey(key)).thenApply(expire -> expire == null ? 0L : expire).toCompletableFuture();
+    }
+
+    /**
+     * 获取redis里的hashMap
+     *
+     * @param key redis key
+     * @param <T> map key
+     * @param <E> map value
+     * @return hashMap
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E> CompletableFuture<Map<T, E>> hashMapGet(K key) {
+        return commands.hgetall(rawKey(key)).thenApply(entries -> {
+            Map<T, E> result = new LinkedHashMap<>(entries.size());
+            entries.forEach((field, value) -> result.put(
+                    (T) deserialize(redisTemplate.getHashKeySerializer(), field),
+                    (E) deserialize(redisTemplate.getHashValueSerializer(), value)));
+            return result;
+        }).toCompletableFuture();
+    }
+
+    /**
+     * 获取某个hashMap的某一行
+     *
+     * @param key  redis key
+     * @param item map key
+     * @param <T>  返回类型
+     * @return map value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> hashMapGetItem(K key, String item) {
+        return commands.hget(rawKey(key), rawHashKey(item))
+                .thenApply(value -> (T) deserialize(redisTemplate.getHashValueSerializer(), value))
+                .toCompletableFuture();
+    }
+
+    /**
+     * 整个map放进redis
+     *
+     * @param key redis key
+     * @param map map
+     */
+    public CompletableFuture<Void> hashMapSet(K key, Map<String, Object> map) {
+        Map<byte[], byte[]> raw = new LinkedHashMap<>(map.size());
+        map.forEach((field, value) -> raw.put(rawHashKey(field), rawHashValue(value)));
+        return commands.hmset(rawKey(key), raw).thenApply(r -> (Void) null).toCompletableFuture();
+    }
+
+    /**
+     * 往某个hashMap put值。如果不存在这个map则创建
+     *
+     * @param key   redis key
+     * @param item  要放入的key
+     * @param value 要放入的value
+     * @return 是否新增了item
+     */
+    public CompletableFuture<Boolean> hashMapSetItem(K key, String item, Object value) {
+        return commands.hset(rawKey(key), rawHashKey(item), rawHashValue(value)).toCompletableFuture();
+    }
+
+    /**
+     * 删除多个item
+     *
+     * @param key  redis key
+     * @param item map key
+     * @return 删除的数量
+     */
+    public CompletableFuture<Long> hashMapDeleteItem(K key, String... item) {
+        byte[][] fields = new byte[item.length][];
+        for (int i = 0; i < item.length; i++) {
+            fields[i] = rawHashKey(item[i]);
+        }
+        return commands.hdel(rawKey(key), fields).toCompletableFuture();
+    }
+
+    /**
+     * 手动批量执行: 在独占连接上关闭自动flush, 回调中发出的命令先缓存在客户端,
+     * 回调结束后一次写出。回调里可以调用 {@link #flush()} 分段写出
+     *
+     * @param commands 批量命令, 参数是绑定到批量连接上的异步模板
+     * @param <T>      回调返回值, 一般是future的组合
+     * @return 回调返回值
+     */
+    public <T> T batch(Function<RedisAsyncTemplates<K, V>, T> commands) {
+        StatefulConnection<byte[], byte[]> batchConnection = batchConnections.poll();
+        if (batchConnection == null || !batchConnection.isOpen()) {
+            batchConnection = LettuceClients.connect(client);
+        }
+        batchConnection.setAutoFlushCommands(false);
+        try {
+            return commands.apply(new RedisAsyncTemplates<>(this, batchConnection));
+        } finally {
+            batchConnection.flushCommands();
+            batchConnection.setAutoFlushCommands(true);
+            batchConnections.offer(batchConnection);
+        }
+    }
+
+    /**
+     * 把已缓存的命令写出, 只在 {@link #batch(Function)} 中有意义
+     */
+    public void flush() {
+        connection.flushCommands();
+    }
+
+    @Override
+    public void destroy() {
+        StatefulConnection<byte[], byte[]> batchConnection;
+        while ((batchConnection = batchConnections.poll()) != null) {
+            batchConnection.close();
+        }
+        connection.close();
+        client.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(K key) {
+        return ((RedisSerializer<K>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawValue(V value) {
+        return ((RedisSerializer<V>) redisTemplate.getValueSerializer()).serialize(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawHashKey(String field) {
+        return ((RedisSerializer<String>) redisTemplate.getHashKeySerializer()).serialize(field);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawHashValue(Object value) {
+        return ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V deserializeValue(byte[] value) {
+        return (V) deserialize(redisTemplate.getValueSerializer(), value);
+    }
+
+    private static Object deserialize(RedisSerializer<?> serializer, byte[] value) {
+        return value == null ? null : serializer.deserialize(value);
+    }
+}
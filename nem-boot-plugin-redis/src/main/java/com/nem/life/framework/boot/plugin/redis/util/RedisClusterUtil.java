@@ -0,0 +1,289 @@
+package com.nem.life.framework.boot.plugin.redis.util;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * redis集群相关的多key操作
+ * <p>
+ * 多key命令先按hash slot分组, 每组一条MGET/MSET/DEL, 全部在一次流水线中发出,
+ * 不同节点并发执行; 单机模式下不分组。事务中逐条执行, 开启事务支持的模板命令进入MULTI队列, EXEC时执行。
+ * key遍历在集群模式下对每个master并行SCAN
+ */
+public final class RedisClusterUtil {
+    private static final ExecutorService SCAN_EXECUTOR;
+
+    static {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-cluster-scan-");
+        threadFactory.setDaemon(true);
+        SCAN_EXECUTOR = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    private RedisClusterUtil() {
+    }
+
+    /**
+     * 生成带hash tag的key, 同一个tag的key落在同一个slot, 可以一起做多key操作
+     *
+     * @param tag 分组标识, 例如用户id
+     * @param key 业务key
+     * @return {tag}:key
+     */
+    public static String hashTag(String tag, String key) {
+        return "{" + tag + "}:" + key;
+    }
+
+    /**
+     * 计算key所在的slot
+     *
+     * @param key key
+     * @return slot
+     */
+    public static int slot(String key) {
+        return SlotHash.getSlot(key);
+    }
+
+    /**
+     * 是否集群模式
+     *
+     * @param factory 连接工厂
+     * @return 是否集群
+     */
+    public static boolean isCluster(RedisConnectionFactory factory) {
+        return factory instanceof LettuceConnectionFactory && ((LettuceConnectionFactory) factory).isClusterAware();
+    }
+
+    /**
+     * 当前有读写事务时, 开启事务支持的模板的连接处于MULTI中, 命令只入队, 结果在EXEC后才有;
+     * 此时不能使用流水线或原生异步命令, 否则等待结果的线程会一直阻塞
+     *
+     * @return 是否可能在redis事务中
+     */
+    public static boolean inTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    /**
+     * 按规则遍历key, 集群模式下并行SCAN所有master
+     *
+     * @param template redisTemplate
+     * @param pattern  key规则
+     * @param count    每次SCAN的建议条数
+     * @return key set
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> Set<K> scanKeys(RedisTemplate<K, ?> template, K pattern, long count) {
+        RedisConnectionFactory factory = template.getRequiredConnectionFactory();
+        RedisSerializer<K> keySerializer = (RedisSerializer<K>) template.getKeySerializer();
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(new String(keySerializer.serialize(pattern), StandardCharsets.UTF_8)).count(count).build();
+        List<byte[]> rawKeys = new ArrayList<>();
+        if (isCluster(factory)) {
+            List<CompletableFuture<List<byte[]>>> futures = new ArrayList<>();
+            RedisClusterConnection connection = factory.getClusterConnection();
+            try {
+                for (RedisClusterNode node : connection.clusterGetNodes()) {
+                    if (!node.isMaster()) continue;
+                    futures.add(CompletableFuture.supplyAsync(() -> scanNode(factory, node, options), SCAN_EXECUTOR));
+                }
+            } finally {
+                connection.close();
+            }
+            futures.forEach(future -> rawKeys.addAll(future.join()));
+        } else {
+            template.execute((RedisCallback<Void>) connection -> {
+                try (Cursor<byte[]> cursor = connection.scan(options)) {
+                    cursor.forEachRemaining(rawKeys::add);
+                } catch (Exception e) {
+                    throw new RedisSystemException("SCAN失败", e);
+                }
+                return null;
+            });
+        }
+        Set<K> keys = new LinkedHashSet<>(rawKeys.size());
+        for (byte[] rawKey : rawKeys) {
+            keys.add(keySerializer.deserialize(rawKey));
+        }
+        return keys;
+    }
+
+    /**
+     * 按slot分组批量获取, 不存在的key不放入结果; MULTI中读取没有结果, 返回空
+     *
+     * @param template redisTemplate
+     * @param keys     key集合
+     * @return key和value
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> Map<K, V> multiGet(RedisTemplate<K, V> template, Collection<K> keys) {
+        List<K> keyList = new ArrayList<>(keys);
+        Map<K, V> result = new LinkedHashMap<>(keyList.size());
+        if (keyList.isEmpty()) return result;
+        RedisSerializer<K> keySerializer = (RedisSerializer<K>) template.getKeySerializer();
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        boolean cluster = isCluster(template.getRequiredConnectionFactory());
+        Map<Integer, List<Integer>> groups = group(keyList, keySerializer, cluster);
+        if (inTransaction()) {
+            template.execute((RedisCallback<Void>) connection -> {
+                for (List<Integer> indexes : groups.values()) {
+                    List<byte[]> values = connection.mGet(rawKeys(keyList, indexes, keySerializer));
+                    // MULTI中只入队, 没有结果
+                    if (values == null) continue;
+                    for (int i = 0; i < indexes.size(); i++) {
+                        byte[] value = values.get(i);
+                        if (value != null) result.put(keyList.get(indexes.get(i)), valueSerializer.deserialize(value));
+                    }
+                }
+                return null;
+            });
+            return result;
+        }
+        List<List<Integer>> groupList = new ArrayList<>(groups.values());
+        List<Object> values = template.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<Integer> indexes : groupList) connection.mGet(rawKeys(keyList, indexes, keySerializer));
+            return null;
+        }, valueSerializer);
+        for (int g = 0; g < groupList.size(); g++) {
+            List<Integer> indexes = groupList.get(g);
+            List<?> groupValues = (List<?>) values.get(g);
+            for (int i = 0; i < indexes.size(); i++) {
+                Object value = groupValues.get(i);
+                if (value != null) result.put(keyList.get(indexes.get(i)), (V) value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按slot分组批量放入
+     *
+     * @param template redisTemplate
+     * @param map      key和value
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> void multiSet(RedisTemplate<K, V> template, Map<K, V> map) {
+        if (map.isEmpty()) return;
+        List<K> keyList = new ArrayList<>(map.keySet());
+        RedisSerializer<K> keySerializer = (RedisSerializer<K>) template.getKeySerializer();
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) template.getValueSerializer();
+        boolean cluster = isCluster(template.getRequiredConnectionFactory());
+        Map<Integer, List<Integer>> groups = group(keyList, keySerializer, cluster);
+        RedisCallback<Object> callback = connection -> {
+            for (List<Integer> indexes : groups.values()) {
+                Map<byte[], byte[]> raw = new LinkedHashMap<>(indexes.size());
+                for (Integer index : indexes) {
+                    K key = keyList.get(index);
+                    raw.put(keySerializer.serialize(key), valueSerializer.serialize(map.get(key)));
+                }
+                connection.mSet(raw);
+            }
+            return null;
+        };
+        if (inTransaction()) {
+            template.execute(callback);
+        } else {
+            template.executePipelined(callback);
+        }
+    }
+
+    /**
+     * 按slot分组批量删除
+     *
+     * @param template redisTemplate
+     * @param keys     key集合
+     * @return 删除的数量, MULTI中为0
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> long delete(RedisTemplate<K, ?> template, Collection<K> keys) {
+        List<K> keyList = new ArrayList<>(keys);
+        if (keyList.isEmpty()) return 0L;
+        RedisSerializer<K> keySerializer = (RedisSerializer<K>) template.getKeySerializer();
+        boolean cluster = isCluster(template.getRequiredConnectionFactory());
+        Map<Integer, List<Integer>> groups = group(keyList, keySerializer, cluster);
+        if (inTransaction()) {
+            Long deleted = template.execute((RedisCallback<Long>) connection -> {
+                long total = 0;
+                for (List<Integer> indexes : groups.values()) {
+                    Long count = connection.del(rawKeys(keyList, indexes, keySerializer));
+                    if (count != null) total += count;
+                }
+                return total;
+            });
+            return deleted == null ? 0L : deleted;
+        }
+        List<Object> results = template.executePipelined((RedisCallback<Object>) connection -> {
+            for (List<Integer> indexes : groups.values()) {
+                connection.del(rawKeys(keyList, indexes, keySerializer));
+            }
+            return null;
+        });
+        long total = 0;
+        for (Object deleted : results) {
+            if (deleted instanceof Long) total += (Long) deleted;
+        }
+        return total;
+    }
+
+    private static List<byte[]> scanNode(RedisConnectionFactory factory, RedisClusterNode node, ScanOptions options) {
+        List<byte[]> keys = new ArrayList<>();
+        RedisClusterConnection connection = factory.getClusterConnection();
+        try (Cursor<byte[]> cursor = connection.scan(node, options)) {
+            cursor.forEachRemaining(keys::add);
+        } catch (Exception e) {
+            throw new RedisSystemException("SCAN节点失败:" + node, e);
+        } finally {
+            connection.close();
+        }
+        return keys;
+    }
+
+    /**
+     * slot -> key下标; 非集群只有一组
+     */
+    private static <K> Map<Integer, List<Integer>> group(List<K> keyList, RedisSerializer<K> keySerializer, boolean cluster) {
+        Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+        if (!cluster) {
+            List<Integer> all = new ArrayList<>(keyList.size());
+            for (int i = 0; i < keyList.size(); i++) all.add(i);
+            return Collections.singletonMap(0, all);
+        }
+        for (int i = 0; i < keyList.size(); i++) {
+            int slot = SlotHash.getSlot(keySerializer.serialize(keyList.get(i)));
+            groups.computeIfAbsent(slot, s -> new ArrayList<>()).add(i);
+        }
+        return groups;
+    }
+
+    private static <K> byte[][] rawKeys(List<K> keyList, List<Integer> indexes, RedisSerializer<K> keySerializer) {
+        byte[][] raw = new byte[indexes.size()][];
+        for (int i = 0; i < indexes.size(); i++) {
+            raw[i] = keySerializer.serialize(keyList.get(indexes.get(i)));
+        }
+        return raw;
+    }
+}
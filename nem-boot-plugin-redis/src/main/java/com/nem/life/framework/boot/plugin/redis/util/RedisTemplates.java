@@ -1,17 +1,96 @@
 package com.nem.life.framework.boot.plugin.redis.util;
 
+import com.nem.life.framework.boot.plugin.redis.bucket.RedisBuckets;
+import com.nem.life.framework.boot.plugin.redis.hotkey.HotKeyDetector;
+import com.nem.life.framework.boot.plugin.redis.metrics.RedisMetrics;
+import com.nem.life.framework.boot.requestcache.RequestCache;
 import com.nem.life.framework.boot.util.JsonUtil;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
+    /**
+     * 大hash分批读写删除时默认的每批条数
+     */
+    public static final int HASH_CHUNK_SIZE = 1000;
+    private static final String REQUEST_CACHE_SOURCE = "redis";
+
+    private RedisMetrics redisMetrics;
+    private HotKeyDetector hotKeyDetector;
+    private RedisBuckets redisBuckets;
+    private RequestCache requestCache;
+
+    /**
+     * 设置后每个命令记录耗时和数据大小, 为null时不记录
+     *
+     * @param redisMetrics redis埋点
+     */
+    public void setRedisMetrics(RedisMetrics redisMetrics) {
+        this.redisMetrics = redisMetrics;
+    }
+
+    /**
+     * 设置后按采样记录每个命令访问的key, 统计热点key, 为null时不统计
+     *
+     * @param hotKeyDetector 热点key探测
+     */
+    public void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    /**
+     * 设置后匹配前缀的key存入hash桶, get/set/del/multiGet/multiSet/multiDel/setExpire/getExpire/keySet/getMapByKey 透明处理,
+     * 过期时间以桶为单位, 见 {@link RedisBuckets}; 其他方法仍按普通key处理
+     *
+     * @param redisBuckets 分桶规则, 为null时不分桶
+     */
+    public void setRedisBuckets(RedisBuckets redisBuckets) {
+        this.redisBuckets = redisBuckets == null || redisBuckets.isEmpty() ? null : redisBuckets;
+    }
+
+    /**
+     * 设置后请求内同样key的 get 只访问一次redis, 本类的 set/del/multiSet/multiDel 使对应key失效;
+     * 其他客户端和本类其他方法的写入不会失效
+     *
+     * @param requestCache 请求内读取去重, 为null时不去重
+     */
+    public void setRequestCache(RequestCache requestCache) {
+        this.requestCache = requestCache;
+    }
+
+    /**
+     * 热点key探测在最外层, 本地缓存命中的读不计入redis命令耗时
+     */
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        RedisConnection processed = super.preProcessConnection(connection, existingConnection);
+        RedisMetrics metrics = redisMetrics;
+        if (metrics != null) processed = metrics.instrument(processed);
+        HotKeyDetector detector = hotKeyDetector;
+        return detector == null ? processed : detector.instrument(processed);
+    }
 
     /**
      * 放入永不过期的数据
@@ -21,7 +100,17 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public void set(K key, V value) {
-        this.opsForValue().set(key, value);
+        invalidate(key);
+        try {
+            RedisBuckets.Bucket bucket = bucket(key);
+            if (bucket != null) {
+                redisBuckets.set(this, bucket, value, 0L);
+                return;
+            }
+            this.opsForValue().set(key, value);
+        } finally {
+            invalidate(key);
+        }
     }
 
     /***
@@ -33,7 +122,17 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public void set(K key, V value, Long expired, TimeUnit timeUnit) {
-        this.opsForValue().set(key, value, expired, timeUnit);
+        invalidate(key);
+        try {
+            RedisBuckets.Bucket bucket = bucket(key);
+            if (bucket != null) {
+                redisBuckets.set(this, bucket, value, Math.max(1L, timeUnit.toMillis(expired)));
+                return;
+            }
+            this.opsForValue().set(key, value, expired, timeUnit);
+        } finally {
+            invalidate(key);
+        }
     }
 
     /**
@@ -43,29 +142,70 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public void del(K key) {
-        this.delete(key);
+        invalidate(key);
+        try {
+            RedisBuckets.Bucket bucket = bucket(key);
+            if (bucket != null) {
+                redisBuckets.delete(this, bucket);
+                return;
+            }
+            this.delete(key);
+        } finally {
+            invalidate(key);
+        }
     }
 
     /**
-     * 根据key获得String value
+     * 根据key获得String value; 事务中命令排队, 读到的是null, 不使用请求内缓存
      *
      * @param key redis key
      * @return string value
      */
     @Transactional(rollbackFor = Exception.class)
     public V get(K key) {
+        RequestCache cache = requestCache;
+        if (cache != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return cache.get(REQUEST_CACHE_SOURCE, key, () -> load(key));
+        }
+        return load(key);
+    }
+
+    private V load(K key) {
+        RedisBuckets.Bucket bucket = bucket(key);
+        if (bucket != null) return redisBuckets.get(this, bucket);
         return this.opsForValue().get(key);
     }
 
     /**
-     * 根据规则获取key
+     * 根据规则获取key, 使用SCAN遍历, 集群模式下并行遍历所有master;
+     * 分桶时不返回桶key, 而是SCAN可能匹配的桶并返回桶内匹配规则的逻辑key
      *
      * @param keys 规则
      * @return key set
      */
     @Transactional(rollbackFor = Exception.class)
+    @SuppressWarnings("unchecked")
     public Set<K> keySet(K keys) {
-        return this.keys(keys);
+        Set<K> found = RedisClusterUtil.scanKeys(this, keys, HASH_CHUNK_SIZE);
+        RedisBuckets buckets = redisBuckets;
+        if (buckets == null || !(keys instanceof String)) return found;
+        String pattern = (String) keys;
+        Set<K> result = new LinkedHashSet<>(found.size());
+        for (K key : found) {
+            if (buckets.bucketPrefix(key) == null) result.add(key);
+        }
+        // 不用模板的连接, 事务中HKEYS只入队没有结果
+        RedisConnection connection = getRequiredConnectionFactory().getConnection();
+        try {
+            for (String bucketPattern : buckets.bucketPatterns(pattern)) {
+                for (K bucketKey : RedisClusterUtil.scanKeys(this, (K) bucketPattern, HASH_CHUNK_SIZE)) {
+                    for (String key : buckets.keys(connection, (String) bucketKey, pattern)) result.add((K) key);
+                }
+            }
+        } finally {
+            connection.close();
+        }
+        return result;
     }
 
     /**
@@ -76,10 +216,7 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public List<V> getListByKey(K keys) {
-        return Objects.requireNonNull(this.keys(keys))
-                .stream()
-                .map(this::get)
-                .collect(Collectors.toList());
+        return new ArrayList<>(getMapByKey(keys).values());
     }
 
     /**
@@ -90,12 +227,84 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public Map<K, V> getMapByKey(K keys) {
-        return Objects.requireNonNull(this.keys(keys))
-                .stream()
-                .collect(Collectors.toMap(
-                        e -> e,
-                        this::get,
-                        (a, b) -> b));
+        return multiGet(keySet(keys));
+    }
+
+    /**
+     * 批量获取, 集群模式下按slot分组并发执行, 不存在的key不放入结果
+     *
+     * @param keys key集合
+     * @return key和value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<K, V> multiGet(Collection<K> keys) {
+        if (redisBuckets == null) return RedisClusterUtil.multiGet(this, keys);
+        List<K> plain = new ArrayList<>();
+        Map<K, RedisBuckets.Bucket> buckets = new LinkedHashMap<>();
+        partition(keys, plain, buckets);
+        Map<K, V> found = RedisClusterUtil.multiGet(this, plain);
+        found.putAll(redisBuckets.multiGet(this, buckets));
+        Map<K, V> result = new LinkedHashMap<>(found.size());
+        for (K key : keys) {
+            V value = found.get(key);
+            if (value != null) result.put(key, value);
+        }
+        return result;
+    }
+
+    /**
+     * 批量放入永不过期的数据, 集群模式下按slot分组并发执行
+     *
+     * @param map key和value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void multiSet(Map<K, V> map) {
+        invalidateAll(map.keySet());
+        try {
+            doMultiSet(map);
+        } finally {
+            invalidateAll(map.keySet());
+        }
+    }
+
+    private void doMultiSet(Map<K, V> map) {
+        if (redisBuckets == null) {
+            RedisClusterUtil.multiSet(this, map);
+            return;
+        }
+        List<K> plain = new ArrayList<>();
+        Map<K, RedisBuckets.Bucket> buckets = new LinkedHashMap<>();
+        partition(map.keySet(), plain, buckets);
+        if (!plain.isEmpty()) {
+            Map<K, V> plainMap = new LinkedHashMap<>(plain.size());
+            for (K key : plain) plainMap.put(key, map.get(key));
+            RedisClusterUtil.multiSet(this, plainMap);
+        }
+        redisBuckets.multiSet(this, buckets, map, 0L);
+    }
+
+    /**
+     * 批量删除, 集群模式下按slot分组并发执行
+     *
+     * @param keys key集合
+     * @return 删除的数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long multiDel(Collection<K> keys) {
+        invalidateAll(keys);
+        try {
+            return doMultiDel(keys);
+        } finally {
+            invalidateAll(keys);
+        }
+    }
+
+    private long doMultiDel(Collection<K> keys) {
+        if (redisBuckets == null) return RedisClusterUtil.delete(this, keys);
+        List<K> plain = new ArrayList<>();
+        Map<K, RedisBuckets.Bucket> buckets = new LinkedHashMap<>();
+        partition(keys, plain, buckets);
+        return RedisClusterUtil.delete(this, plain) + redisBuckets.multiDelete(this, buckets);
     }
 
     /**
@@ -118,6 +327,11 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public void setExpire(K key, Long time, TimeUnit timeUnit) {
+        RedisBuckets.Bucket bucket = bucket(key);
+        if (bucket != null) {
+            redisBuckets.expire(this, bucket, Math.max(1L, timeUnit.toMillis(time)));
+            return;
+        }
         this.expire(key, time, timeUnit);
     }
 
@@ -129,13 +343,14 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
      */
     @Transactional(rollbackFor = Exception.class)
     public Long getExpire(K key) {
-        Long expire = this.getExpire(key, TimeUnit.SECONDS);
+        RedisBuckets.Bucket bucket = bucket(key);
+        Long expire = bucket != null ? redisBuckets.ttl(this, bucket) : this.getExpire(key, TimeUnit.SECONDS);
         if (expire == null) return 0L;
         return expire;
     }
 
     /**
-     * 获取redis里的hashMap
+     * 获取redis里的hashMap, 使用HGETALL, 大hash请使用 hashMapScan
      *
      * @param key redis key
      * @param <T> map key
@@ -265,4 +480,570 @@ public class RedisTemplates<K, V> extends RedisTemplate<K, V> {
     public boolean hashMapHasKey(K key, String item) {
         return this.opsForHash().hasKey(key, item);
     }
+
+    /**
+     * 增量遍历hashMap, 使用HSCAN代替HGETALL, 大hash不会阻塞redis
+     *
+     * @param key      redis key
+     * @param count    每次HSCAN的建议条数
+     * @param consumer 每一行的处理
+     * @param <T>      map key
+     * @param <E>      map value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T, E> void hashMapScan(K key, long count, BiConsumer<T, E> consumer) {
+        try (Cursor<Map.Entry<Object, Object>> cursor = this.opsForHash()
+                .scan(key, ScanOptions.scanOptions().count(count).build())) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                consumer.accept((T) entry.getKey(), (E) entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭HSCAN游标失败", e);
+        }
+    }
+
+    /**
+     * 增量遍历hashMap, 默认每次HSCAN 1000条
+     *
+     * @param key      redis key
+     * @param consumer 每一行的处理
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T, E> void hashMapScan(K key, BiConsumer<T, E> consumer) {
+        hashMapScan(key, HASH_CHUNK_SIZE, consumer);
+    }
+
+    /**
+     * 使用HMGET一次获取多行并转换成指定类型, 不存在的行不放入结果
+     *
+     * @param key    redis key
+     * @param items  map key集合
+     * @param tClass 返回类型
+     * @param <T>    返回类型
+     * @return map key和value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T> Map<String, T> hashMapMultiGet(K key, Collection<String> items, Class<T> tClass) {
+        List<Object> fields = new ArrayList<>(items);
+        List<Object> values = this.opsForHash().multiGet(key, fields);
+        Map<String, T> result = new LinkedHashMap<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            Object o = values.get(i);
+            if (o == null) continue;
+            if (tClass.isInstance(o)) {
+                result.put((String) fields.get(i), tClass.cast(o));
+            } else if (o instanceof String) {
+                result.put((String) fields.get(i), JsonUtil.jsonToPojo((String) o, tClass));
+            } else {
+                result.put((String) fields.get(i), JsonUtil.mapToPojo(o, tClass));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 分批把map放进redis, 每批一次HSET, 避免单条命令过大
+     *
+     * @param key       redis key
+     * @param map       map
+     * @param chunkSize 每批条数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void hashMapSetChunked(K key, Map<String, Object> map, int chunkSize) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() >= chunkSize) {
+                this.opsForHash().putAll(key, chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) this.opsForHash().putAll(key, chunk);
+    }
+
+    /**
+     * 分批删除多个item, 每批一次HDEL
+     *
+     * @param key       redis key
+     * @param items     map key集合
+     * @param chunkSize 每批条数
+     * @return 删除的数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long hashMapDeleteItemChunked(K key, Collection<String> items, int chunkSize) {
+        long deleted = 0;
+        List<Object> chunk = new ArrayList<>(chunkSize);
+        for (String item : items) {
+            chunk.add(item);
+            if (chunk.size() >= chunkSize) {
+                deleted += this.opsForHash().delete(key, chunk.toArray());
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) deleted += this.opsForHash().delete(key, chunk.toArray());
+        return deleted;
+    }
+
+    /**
+     * 边HSCAN边分批HDEL清空大hashMap, 不会像DEL一样长时间阻塞
+     *
+     * @param key redis key
+     * @return 删除的数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long hashMapClearChunked(K key) {
+        List<Object> chunk = new ArrayList<>(HASH_CHUNK_SIZE);
+        long[] deleted = {0};
+        hashMapScan(key, HASH_CHUNK_SIZE, (Object item, Object value) -> {
+            chunk.add(item);
+            if (chunk.size() >= HASH_CHUNK_SIZE) {
+                deleted[0] += this.opsForHash().delete(key, chunk.toArray());
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) deleted[0] += this.opsForHash().delete(key, chunk.toArray());
+        return deleted[0];
+    }
+
+    /**
+     * HyperLogLog添加元素, 元素按UTF-8写入, 不经过value序列化, 与其他客户端的PFADD互通;
+     * 每个key固定约12KB, 基数误差约0.81%; 不经过分桶
+     *
+     * @param key    redis key
+     * @param values 元素, 一般是id
+     * @return 基数估计值是否变化
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean hyperLogLogAdd(K key, Collection<String> values) {
+        if (values.isEmpty()) return false;
+        byte[] rawKey = serializeKey(key);
+        Long changed = this.execute((RedisCallback<Long>) connection -> connection.pfAdd(rawKey, rawValues(values)));
+        return changed != null && changed > 0;
+    }
+
+    /**
+     * 批量HyperLogLog添加, 所有key一次流水线
+     *
+     * @param values key和元素
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void hyperLogLogAddBatch(Map<K, ? extends Collection<String>> values) {
+        if (values.isEmpty()) return;
+        this.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<K, ? extends Collection<String>> entry : values.entrySet()) {
+                if (!entry.getValue().isEmpty()) connection.pfAdd(serializeKey(entry.getKey()), rawValues(entry.getValue()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 多个HyperLogLog并集的基数, 集群模式下所有key须在同一slot
+     *
+     * @param keys key集合
+     * @return 基数估计值
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long hyperLogLogCount(Collection<K> keys) {
+        if (keys.isEmpty()) return 0L;
+        byte[][] rawKeys = serializeKeys(keys);
+        Long count = this.execute((RedisCallback<Long>) connection -> connection.pfCount(rawKeys));
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 分别获取每个HyperLogLog的基数, 一次流水线
+     *
+     * @param keys key集合
+     * @return key和基数估计值
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<K, Long> hyperLogLogCountBatch(Collection<K> keys) {
+        List<K> keyList = new ArrayList<>(keys);
+        List<Object> counts = this.executePipelined((RedisCallback<Object>) connection -> {
+            for (K key : keyList) connection.pfCount(serializeKey(key));
+            return null;
+        });
+        return zip(keyList, counts);
+    }
+
+    /**
+     * 合并多个HyperLogLog到目标key, 集群模式下所有key须在同一slot
+     *
+     * @param destination 目标key
+     * @param sources     来源key
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void hyperLogLogMerge(K destination, Collection<K> sources) {
+        if (sources.isEmpty()) return;
+        byte[] rawDestination = serializeKey(destination);
+        byte[][] rawSources = serializeKeys(sources);
+        this.execute((RedisCallback<Object>) connection -> {
+            connection.pfMerge(rawDestination, rawSources);
+            return null;
+        });
+    }
+
+    /**
+     * 设置bitmap的一位, offset一般是连续的整数id, 最大 2^32-1; 稀疏的大id会按最大offset分配内存; 不经过分桶
+     *
+     * @param key    redis key
+     * @param offset 位置
+     * @param value  是否置位
+     * @return 原来的值
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean bitSet(K key, long offset, boolean value) {
+        byte[] rawKey = serializeKey(key);
+        return Boolean.TRUE.equals(this.execute((RedisCallback<Boolean>) connection -> connection.setBit(rawKey, offset, value)));
+    }
+
+    /**
+     * 获取bitmap的一位
+     *
+     * @param key    redis key
+     * @param offset 位置
+     * @return 是否置位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean bitGet(K key, long offset) {
+        byte[] rawKey = serializeKey(key);
+        return Boolean.TRUE.equals(this.execute((RedisCallback<Boolean>) connection -> connection.getBit(rawKey, offset)));
+    }
+
+    /**
+     * 批量设置bitmap, 每1000位一次流水线
+     *
+     * @param key     redis key
+     * @param offsets 位置集合
+     * @param value   是否置位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void bitSetBatch(K key, Collection<Long> offsets, boolean value) {
+        byte[] rawKey = serializeKey(key);
+        List<Long> chunk = new ArrayList<>(HASH_CHUNK_SIZE);
+        for (Long offset : offsets) {
+            chunk.add(offset);
+            if (chunk.size() >= HASH_CHUNK_SIZE) {
+                setBits(rawKey, chunk, value);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) setBits(rawKey, chunk, value);
+    }
+
+    /**
+     * 批量获取bitmap, 一次流水线
+     *
+     * @param key     redis key
+     * @param offsets 位置集合
+     * @return 位置和是否置位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<Long, Boolean> bitGetBatch(K key, Collection<Long> offsets) {
+        byte[] rawKey = serializeKey(key);
+        List<Long> offsetList = new ArrayList<>(offsets);
+        List<Object> bits = this.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long offset : offsetList) connection.getBit(rawKey, offset);
+            return null;
+        });
+        Map<Long, Boolean> result = new LinkedHashMap<>(offsetList.size() * 2);
+        for (int i = 0; i < offsetList.size(); i++) {
+            result.put(offsetList.get(i), Boolean.TRUE.equals(bits.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * bitmap置位的数量
+     *
+     * @param key redis key
+     * @return 置位数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long bitCount(K key) {
+        byte[] rawKey = serializeKey(key);
+        Long count = this.execute((RedisCallback<Long>) connection -> connection.bitCount(rawKey));
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * bitmap在 [fromOffset, toOffset] 内置位的数量, 按位计算而不是BITCOUNT的按字节;
+     * 中间整字节BITCOUNT, 首尾字节GETRANGE后本地计算, 一次流水线
+     *
+     * @param key        redis key
+     * @param fromOffset 开始位置, 包含
+     * @param toOffset   结束位置, 包含
+     * @return 置位数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long bitCount(K key, long fromOffset, long toOffset) {
+        if (fromOffset < 0 || toOffset < fromOffset) throw new IllegalArgumentException("offset范围错误");
+        byte[] rawKey = serializeKey(key);
+        long fromByte = fromOffset >>> 3;
+        long toByte = toOffset >>> 3;
+        List<Object> results = this.executePipelined((RedisCallback<Object>) connection -> {
+            connection.getRange(rawKey, fromByte, fromByte);
+            connection.getRange(rawKey, toByte, toByte);
+            if (toByte - fromByte > 1) connection.bitCount(rawKey, fromByte + 1, toByte - 1);
+            return null;
+        }, RedisSerializer.byteArray());
+        int headMask = 0xFF >>> (fromOffset & 7);
+        int tailMask = (0xFF << (7 - (toOffset & 7))) & 0xFF;
+        if (fromByte == toByte) return Integer.bitCount(firstByte(results.get(0)) & headMask & tailMask);
+        long count = Integer.bitCount(firstByte(results.get(0)) & headMask) + Integer.bitCount(firstByte(results.get(1)) & tailMask);
+        if (results.size() > 2 && results.get(2) != null) count += (Long) results.get(2);
+        return count;
+    }
+
+    /**
+     * 分别获取每个bitmap置位的数量, 一次流水线
+     *
+     * @param keys key集合
+     * @return key和置位数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<K, Long> bitCountBatch(Collection<K> keys) {
+        List<K> keyList = new ArrayList<>(keys);
+        List<Object> counts = this.executePipelined((RedisCallback<Object>) connection -> {
+            for (K key : keyList) connection.bitCount(serializeKey(key));
+            return null;
+        });
+        return zip(keyList, counts);
+    }
+
+    /**
+     * 多个bitmap做位运算, 结果写入目标key, 集群模式下所有key须在同一slot;
+     * AND 为全部置位, OR 为任一置位
+     *
+     * @param operation   AND/OR/XOR/NOT, NOT 只能有一个来源
+     * @param destination 目标key
+     * @param keys        来源key
+     * @return 目标key的字节数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long bitOp(RedisStringCommands.BitOperation operation, K destination, Collection<K> keys) {
+        if (keys.isEmpty()) return 0L;
+        byte[] rawDestination = serializeKey(destination);
+        byte[][] rawKeys = serializeKeys(keys);
+        Long length = this.execute((RedisCallback<Long>) connection -> connection.bitOp(operation, rawDestination, rawKeys));
+        return length == null ? 0L : length;
+    }
+
+    /**
+     * 向 time 所在的时间窗口添加HyperLogLog元素, PFADD和过期时间一次流水线
+     * <pre>
+     * redisTemplates.hyperLogLogAdd("uv", RedisTimeWindow.HOUR, LocalDateTime.now(), userIds, 8, TimeUnit.DAYS);
+     * </pre>
+     *
+     * @param name     统计名称
+     * @param window   时间窗口
+     * @param time     时间
+     * @param values   元素
+     * @param expire   过期时间, 小于等于0时不过期
+     * @param timeUnit 时间单位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void hyperLogLogAdd(String name, RedisTimeWindow window, LocalDateTime time, Collection<String> values,
+                               long expire, TimeUnit timeUnit) {
+        if (values.isEmpty()) return;
+        byte[] rawKey = serializeKey(window.key(name, time));
+        this.executePipelined((RedisCallback<Object>) connection -> {
+            connection.pfAdd(rawKey, rawValues(values));
+            if (expire > 0) connection.pExpire(rawKey, timeUnit.toMillis(expire));
+            return null;
+        });
+    }
+
+    /**
+     * [from, to] 内所有窗口并集的基数, 如按小时写入后统计任意时间段的UV
+     *
+     * @param name   统计名称
+     * @param window 写入时的时间窗口
+     * @param from   开始时间
+     * @param to     结束时间
+     * @return 基数估计值
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long hyperLogLogCount(String name, RedisTimeWindow window, LocalDateTime from, LocalDateTime to) {
+        byte[][] rawKeys = serializeKeys(window.keys(name, from, to));
+        Long count = this.execute((RedisCallback<Long>) connection -> connection.pfCount(rawKeys));
+        return count == null ? 0L : count;
+    }
+
+    /**
+     * 把细粒度窗口合并成粗粒度窗口, 如24个小时合并成天, 7天合并成周; 可重复执行
+     *
+     * @param name     统计名称
+     * @param source   写入时的时间窗口
+     * @param target   汇总的时间窗口
+     * @param time     汇总窗口内的任意时间
+     * @param expire   汇总key的过期时间, 小于等于0时不过期
+     * @param timeUnit 时间单位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void hyperLogLogRollup(String name, RedisTimeWindow source, RedisTimeWindow target, LocalDateTime time,
+                                  long expire, TimeUnit timeUnit) {
+        byte[][] rawSources = serializeKeys(source.keysWithin(name, target, time));
+        byte[] rawTarget = serializeKey(target.key(name, time));
+        this.executePipelined((RedisCallback<Object>) connection -> {
+            connection.pfMerge(rawTarget, rawSources);
+            if (expire > 0) connection.pExpire(rawTarget, timeUnit.toMillis(expire));
+            return null;
+        });
+    }
+
+    /**
+     * 在 time 所在的时间窗口批量置位, 如日活标记; SETBIT和过期时间每1000位一次流水线
+     *
+     * @param name     统计名称
+     * @param window   时间窗口
+     * @param time     时间
+     * @param offsets  位置集合, 一般是整数id
+     * @param expire   过期时间, 小于等于0时不过期
+     * @param timeUnit 时间单位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void bitSet(String name, RedisTimeWindow window, LocalDateTime time, Collection<Long> offsets,
+                       long expire, TimeUnit timeUnit) {
+        if (offsets.isEmpty()) return;
+        byte[] rawKey = serializeKey(window.key(name, time));
+        List<Long> chunk = new ArrayList<>(HASH_CHUNK_SIZE);
+        for (Long offset : offsets) {
+            chunk.add(offset);
+            if (chunk.size() >= HASH_CHUNK_SIZE) {
+                setBits(rawKey, chunk, true);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) setBits(rawKey, chunk, true);
+        if (expire > 0) {
+            this.execute((RedisCallback<Boolean>) connection -> connection.pExpire(rawKey, timeUnit.toMillis(expire)));
+        }
+    }
+
+    /**
+     * [from, to] 内所有窗口位运算后置位的数量, OR 为期间任一窗口活跃, AND 为每个窗口都活跃;
+     * 多个窗口时BITOP写入临时key, 计数后删除, 一次流水线
+     *
+     * @param name      统计名称
+     * @param window    写入时的时间窗口
+     * @param from      开始时间
+     * @param to        结束时间
+     * @param operation AND/OR
+     * @return 置位数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long bitCount(String name, RedisTimeWindow window, LocalDateTime from, LocalDateTime to,
+                         RedisStringCommands.BitOperation operation) {
+        byte[][] rawKeys = serializeKeys(window.keys(name, from, to));
+        if (rawKeys.length == 1) {
+            Long count = this.execute((RedisCallback<Long>) connection -> connection.bitCount(rawKeys[0]));
+            return count == null ? 0L : count;
+        }
+        byte[] rawTemp = serializeKey("{" + name + "}:tmp:" + UUID.randomUUID());
+        List<Object> results = this.executePipelined((RedisCallback<Object>) connection -> {
+            connection.bitOp(operation, rawTemp, rawKeys);
+            connection.bitCount(rawTemp);
+            connection.del(rawTemp);
+            return null;
+        });
+        Object count = results.get(1);
+        return count == null ? 0L : (Long) count;
+    }
+
+    /**
+     * 把细粒度窗口的bitmap位运算后写入粗粒度窗口, 如7个日活合并成周活(OR); 可重复执行
+     *
+     * @param name      统计名称
+     * @param source    写入时的时间窗口
+     * @param target    汇总的时间窗口
+     * @param time      汇总窗口内的任意时间
+     * @param operation AND/OR
+     * @param expire    汇总key的过期时间, 小于等于0时不过期
+     * @param timeUnit  时间单位
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void bitRollup(String name, RedisTimeWindow source, RedisTimeWindow target, LocalDateTime time,
+                          RedisStringCommands.BitOperation operation, long expire, TimeUnit timeUnit) {
+        byte[][] rawSources = serializeKeys(source.keysWithin(name, target, time));
+        byte[] rawTarget = serializeKey(target.key(name, time));
+        this.executePipelined((RedisCallback<Object>) connection -> {
+            connection.bitOp(operation, rawTarget, rawSources);
+            if (expire > 0) connection.pExpire(rawTarget, timeUnit.toMillis(expire));
+            return null;
+        });
+    }
+
+    private void setBits(byte[] rawKey, List<Long> offsets, boolean value) {
+        this.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long offset : offsets) connection.setBit(rawKey, offset, value);
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] serializeKey(Object key) {
+        RedisSerializer<Object> keySerializer = (RedisSerializer<Object>) getKeySerializer();
+        return keySerializer == null ? (byte[]) key : keySerializer.serialize(key);
+    }
+
+    private byte[][] serializeKeys(Collection<?> keys) {
+        byte[][] rawKeys = new byte[keys.size()][];
+        int i = 0;
+        for (Object key : keys) rawKeys[i++] = serializeKey(key);
+        return rawKeys;
+    }
+
+    private static byte[][] rawValues(Collection<String> values) {
+        byte[][] rawValues = new byte[values.size()][];
+        int i = 0;
+        for (String value : values) rawValues[i++] = value.getBytes(StandardCharsets.UTF_8);
+        return rawValues;
+    }
+
+    private static int firstByte(Object range) {
+        byte[] bytes = (byte[]) range;
+        return bytes == null || bytes.length == 0 ? 0 : bytes[0] & 0xFF;
+    }
+
+    private static <T> Map<T, Long> zip(List<T> keys, List<Object> counts) {
+        Map<T, Long> result = new LinkedHashMap<>(keys.size() * 2);
+        for (int i = 0; i < keys.size(); i++) {
+            Object count = counts.get(i);
+            result.put(keys.get(i), count == null ? 0L : (Long) count);
+        }
+        return result;
+    }
+
+    /**
+     * 写入前后都失效请求内缓存, 写入期间并发读取放入的旧值在写入后清除
+     */
+    private void invalidate(K key) {
+        RequestCache cache = requestCache;
+        if (cache != null) cache.invalidate(REQUEST_CACHE_SOURCE, key);
+    }
+
+    private void invalidateAll(Collection<K> keys) {
+        RequestCache cache = requestCache;
+        if (cache == null) return;
+        for (K key : keys) cache.invalidate(REQUEST_CACHE_SOURCE, key);
+    }
+
+    private RedisBuckets.Bucket bucket(K key) {
+        RedisBuckets buckets = redisBuckets;
+        return buckets == null ? null : buckets.route(key);
+    }
+
+    private void partition(Collection<K> keys, List<K> plain, Map<K, RedisBuckets.Bucket> buckets) {
+        for (K key : keys) {
+            RedisBuckets.Bucket bucket = redisBuckets.route(key);
+            if (bucket == null) {
+                plain.add(key);
+            } else {
+                buckets.put(key, bucket);
+            }
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package com.nem.life.framework.boot.plugin.redis.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 计数统计的时间窗口, 生成 {name}:后缀 形式的key; name 作为hash tag, 同一统计的所有窗口在集群中落在同一slot,
+ * 可以直接 PFCOUNT/PFMERGE/BITOP 多个窗口
+ * <pre>
+ * HOUR  {uv}:2026101914
+ * DAY   {uv}:20261019
+ * WEEK  {uv}:2026W43    ISO周, 周一开始
+ * </pre>
+ * 粒度由细到粗排列, 汇总时只能由细粒度合并成粗粒度
+ */
+public enum RedisTimeWindow {
+    HOUR {
+        @Override
+        public LocalDateTime start(LocalDateTime time) {
+            return time.truncatedTo(ChronoUnit.HOURS);
+        }
+
+        @Override
+        public LocalDateTime next(LocalDateTime start) {
+            return start.plusHours(1);
+        }
+
+        @Override
+        public String suffix(LocalDateTime time) {
+            return DAY.suffix(time) + twoDigits(time.getHour());
+        }
+    },
+    DAY {
+        @Override
+        public LocalDateTime start(LocalDateTime time) {
+            return time.truncatedTo(ChronoUnit.DAYS);
+        }
+
+        @Override
+        public LocalDateTime next(LocalDateTime start) {
+            return start.plusDays(1);
+        }
+
+        @Override
+        public String suffix(LocalDateTime time) {
+            return time.getYear() + twoDigits(time.getMonthValue()) + twoDigits(time.getDayOfMonth());
+        }
+    },
+    WEEK {
+        @Override
+        public LocalDateTime start(LocalDateTime time) {
+            return time.truncatedTo(ChronoUnit.DAYS).with(DayOfWeek.MONDAY);
+        }
+
+        @Override
+        public LocalDateTime next(LocalDateTime start) {
+            return start.plusWeeks(1);
+        }
+
+        @Override
+        public String suffix(LocalDateTime time) {
+            return time.get(IsoFields.WEEK_BASED_YEAR) + "W" + twoDigits(time.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+        }
+    };
+
+    /**
+     * @param time 时间
+     * @return time 所在窗口的开始时间
+     */
+    public abstract LocalDateTime start(LocalDateTime time);
+
+    /**
+     * @param start 窗口开始时间
+     * @return 下一个窗口的开始时间
+     */
+    public abstract LocalDateTime next(LocalDateTime start);
+
+    /**
+     * @param time 时间
+     * @return time 所在窗口的key后缀
+     */
+    public abstract String suffix(LocalDateTime time);
+
+    /**
+     * @param name 统计名称
+     * @param time 时间
+     * @return time 所在窗口的key
+     */
+    public String key(String name, LocalDateTime time) {
+        return "{" + name + "}:" + suffix(time);
+    }
+
+    /**
+     * 覆盖 [from, to] 的所有窗口key, 包含 from 和 to 所在的窗口
+     *
+     * @param name 统计名称
+     * @param from 开始时间
+     * @param to   结束时间
+     * @return key列表, 按时间顺序
+     */
+    public List<String> keys(String name, LocalDateTime from, LocalDateTime to) {
+        if (to.isBefore(from)) throw new IllegalArgumentException("to不能早于from");
+        List<String> keys = new ArrayList<>();
+        for (LocalDateTime time = start(from); !time.isAfter(to); time = next(time)) {
+            keys.add(key(name, time));
+        }
+        return keys;
+    }
+
+    /**
+     * target 窗口内所有本粒度窗口的key, 用于汇总
+     *
+     * @param name   统计名称
+     * @param target 汇总后的粗粒度窗口
+     * @param time   汇总窗口内的任意时间
+     * @return key列表, 按时间顺序
+     */
+    public List<String> keysWithin(String name, RedisTimeWindow target, LocalDateTime time) {
+        if (target.compareTo(this) <= 0) throw new IllegalArgumentException(target + "的粒度必须比" + this + "粗");
+        LocalDateTime start = target.start(time);
+        return keys(name, start, target.next(start).minusNanos(1));
+    }
+
+    private static String twoDigits(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+}
@@ -1,17 +1,63 @@
 package com.nem.life.framework.boot.plugin.redis.util;
 
+import com.nem.life.framework.boot.plugin.redis.hotkey.HotKeyDetector;
+import com.nem.life.framework.boot.plugin.redis.metrics.RedisMetrics;
 import com.nem.life.framework.boot.util.JsonUtil;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 public class StringRedisTemplates extends RedisTemplate<String, String> {
+    /**
+     * 大hash分批读写删除时默认的每批条数
+     */
+    public static final int HASH_CHUNK_SIZE = 1000;
+
+    private RedisMetrics redisMetrics;
+    private HotKeyDetector hotKeyDetector;
+
+    /**
+     * 设置后每个命令记录耗时和数据大小, 为null时不记录
+     *
+     * @param redisMetrics redis埋点
+     */
+    public void setRedisMetrics(RedisMetrics redisMetrics) {
+        this.redisMetrics = redisMetrics;
+    }
+
+    /**
+     * 设置后按采样记录每个命令访问的key, 统计热点key, 为null时不统计
+     *
+     * @param hotKeyDetector 热点key探测
+     */
+    public void setHotKeyDetector(HotKeyDetector hotKeyDetector) {
+        this.hotKeyDetector = hotKeyDetector;
+    }
+
+    /**
+     * 热点key探测在最外层, 本地缓存命中的读不计入redis命令耗时
+     */
+    @Override
+    protected RedisConnection preProcessConnection(RedisConnection connection, boolean existingConnection) {
+        RedisConnection processed = super.preProcessConnection(connection, existingConnection);
+        RedisMetrics metrics = redisMetrics;
+        if (metrics != null) processed = metrics.instrument(processed);
+        HotKeyDetector detector = hotKeyDetector;
+        return detector == null ? processed : detector.instrument(processed);
+    }
 
     /**
      * 放入永不过期的数据
@@ -58,14 +104,14 @@ public class StringRedisTemplates extends RedisTemplate<String, String> {
     }
 
     /**
-     * 根据规则获取key
+     * 根据规则获取key, 使用SCAN遍历, 集群模式下并行遍历所有master
      *
      * @param keys 规则
      * @return key set
      */
     @Transactional(rollbackFor = Exception.class)
     public Set<String> keySet(String keys) {
-        return this.keys(keys);
+        return RedisClusterUtil.scanKeys(this, keys, HASH_CHUNK_SIZE);
     }
 
     /**
@@ -76,10 +122,7 @@ public class StringRedisTemplates extends RedisTemplate<String, String> {
      */
     @Transactional(rollbackFor = Exception.class)
     public List<String> getListByKey(String keys) {
-        return Objects.requireNonNull(this.keys(keys))
-                .stream()
-                .map(this::get)
-                .collect(Collectors.toList());
+        return new ArrayList<>(getMapByKey(keys).values());
     }
 
     /**
@@ -90,12 +133,39 @@ public class StringRedisTemplates extends RedisTemplate<String, String> {
      */
     @Transactional(rollbackFor = Exception.class)
     public Map<String, String> getMapByKey(String keys) {
-        return Objects.requireNonNull(this.keys(keys))
-                .stream()
-                .collect(Collectors.toMap(
-                        e -> e,
-                        this::get,
-                        (a, b) -> b));
+        return multiGet(keySet(keys));
+    }
+
+    /**
+     * 批量获取, 集群模式下按slot分组并发执行, 不存在的key不放入结果
+     *
+     * @param keys key集合
+     * @return key和value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, String> multiGet(Collection<String> keys) {
+        return RedisClusterUtil.multiGet(this, keys);
+    }
+
+    /**
+     * 批量放入永不过期的数据, 集群模式下按slot分组并发执行
+     *
+     * @param map key和value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void multiSet(Map<String, String> map) {
+        RedisClusterUtil.multiSet(this, map);
+    }
+
+    /**
+     * 批量删除, 集群模式下按slot分组并发执行
+     *
+     * @param keys key集合
+     * @return 删除的数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long multiDel(Collection<String> keys) {
+        return RedisClusterUtil.delete(this, keys);
     }
 
     /**
@@ -135,7 +205,7 @@ public class StringRedisTemplates extends RedisTemplate<String, String> {
     }
 
     /**
-     * 获取redis里的hashMap
+     * 获取redis里的hashMap, 使用HGETALL, 大hash请使用 hashMapScan
      *
      * @param key redis key
      * @param <T> map key
@@ -265,4 +335,129 @@ public class StringRedisTemplates extends RedisTemplate<String, String> {
     public boolean hashMapHasKey(String key, String item) {
         return this.opsForHash().hasKey(key, item);
     }
+
+    /**
+     * 增量遍历hashMap, 使用HSCAN代替HGETALL, 大hash不会阻塞redis
+     *
+     * @param key      redis key
+     * @param count    每次HSCAN的建议条数
+     * @param consumer 每一行的处理
+     * @param <T>      map key
+     * @param <E>      map value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T, E> void hashMapScan(String key, long count, BiConsumer<T, E> consumer) {
+        try (Cursor<Map.Entry<Object, Object>> cursor = this.opsForHash()
+                .scan(key, ScanOptions.scanOptions().count(count).build())) {
+            while (cursor.hasNext()) {
+                Map.Entry<Object, Object> entry = cursor.next();
+                consumer.accept((T) entry.getKey(), (E) entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("关闭HSCAN游标失败", e);
+        }
+    }
+
+    /**
+     * 增量遍历hashMap, 默认每次HSCAN 1000条
+     *
+     * @param key      redis key
+     * @param consumer 每一行的处理
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T, E> void hashMapScan(String key, BiConsumer<T, E> consumer) {
+        hashMapScan(key, HASH_CHUNK_SIZE, consumer);
+    }
+
+    /**
+     * 使用HMGET一次获取多行并转换成指定类型, 不存在的行不放入结果
+     *
+     * @param key    redis key
+     * @param items  map key集合
+     * @param tClass 返回类型
+     * @param <T>    返回类型
+     * @return map key和value
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public <T> Map<String, T> hashMapMultiGet(String key, Collection<String> items, Class<T> tClass) {
+        List<Object> fields = new ArrayList<>(items);
+        List<Object> values = this.opsForHash().multiGet(key, fields);
+        Map<String, T> result = new LinkedHashMap<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            Object o = values.get(i);
+            if (o == null) continue;
+            if (tClass.isInstance(o)) {
+                result.put((String) fields.get(i), tClass.cast(o));
+            } else if (o instanceof String) {
+                result.put((String) fields.get(i), JsonUtil.jsonToPojo((String) o, tClass));
+            } else {
+                result.put((String) fields.get(i), JsonUtil.mapToPojo(o, tClass));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 分批把map放进redis, 每批一次HSET, 避免单条命令过大
+     *
+     * @param key       redis key
+     * @param map       map
+     * @param chunkSize 每批条数
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void hashMapSetChunked(String key, Map<String, Object> map, int chunkSize) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() >= chunkSize) {
+                this.opsForHash().putAll(key, chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) this.opsForHash().putAll(key, chunk);
+    }
+
+    /**
+     * 分批删除多个item, 每批一次HDEL
+     *
+     * @param key       redis key
+     * @param items     map key集合
+     * @param chunkSize 每批条数
+     * @return 删除的数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long hashMapDeleteItemChunked(String key, Collection<String> items, int chunkSize) {
+        long deleted = 0;
+        List<Object> chunk = new ArrayList<>(chunkSize);
+        for (String item : items) {
+            chunk.add(item);
+            if (chunk.size() >= chunkSize) {
+                deleted += this.opsForHash().delete(key, chunk.toArray());
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) deleted += this.opsForHash().delete(key, chunk.toArray());
+        return deleted;
+    }
+
+    /**
+     * 边HSCAN边分批HDEL清空大hashMap, 不会像DEL一样长时间阻塞
+     *
+     * @param key redis key
+     * @return 删除的数量
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long hashMapClearChunked(String key) {
+        List<Object> chunk = new ArrayList<>(HASH_CHUNK_SIZE);
+        long[] deleted = {0};
+        hashMapScan(key, HASH_CHUNK_SIZE, (Object item, Object value) -> {
+            chunk.add(item);
+            if (chunk.size() >= HASH_CHUNK_SIZE) {
+                deleted[0] += this.opsForHash().delete(key, chunk.toArray());
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) deleted[0] += this.opsForHash().delete(key, chunk.toArray());
+        return deleted[0];
+    }
 }
@@ -0,0 +1,76 @@
+package com.nem.life.framework.boot.plugin.redis.warmup;
+
+import com.nem.life.framework.boot.plugin.redis.cache.TwoLevelCache;
+import com.nem.life.framework.boot.warmup.WarmUpConfiguration;
+import com.nem.life.framework.boot.warmup.WarmUpTask;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * redis启动预热: 建立连接、预热两级缓存的本地缓存
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "nem.warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableConfigurationProperties(RedisWarmUpProperties.class)
+@Configuration
+@Import({WarmUpConfiguration.class})
+public class RedisWarmUpConfiguration {
+
+    @Bean
+    public WarmUpTask redisConnectionWarmUp(RedisConnectionFactory redisConnectionFactory,
+                                            RedisWarmUpProperties redisWarmUpProperties) {
+        return WarmUpTask.of("redis.connections", () -> openConnections(redisConnectionFactory, redisWarmUpProperties));
+    }
+
+    @Bean
+    public WarmUpTask redisCacheWarmUp(ObjectProvider<CacheManager> cacheManager,
+                                       RedisWarmUpProperties redisWarmUpProperties) {
+        return WarmUpTask.of("redis.caches", () -> {
+            if (redisWarmUpProperties.getCaches().isEmpty()) return;
+            CacheManager manager = cacheManager.getIfUnique();
+            if (manager == null) return;
+            for (Map.Entry<String, List<String>> entry : redisWarmUpProperties.getCaches().entrySet()) {
+                Cache cache = manager.getCache(entry.getKey());
+                if (!(cache instanceof TwoLevelCache)) continue;
+                int loaded = ((TwoLevelCache) cache).preload(entry.getValue(), redisWarmUpProperties.getBatchSize());
+                log.info("warm-up cache " + entry.getKey() + " loaded " + loaded + "/" + entry.getValue().size());
+            }
+        });
+    }
+
+    /**
+     * 同时持有多个连接, 每个连接在共享连接和独占连接上各PING一次;
+     * lettuce默认所有连接共享一个原生连接, pipeline和事务使用独占连接, 配置连接池时独占连接从池中借出
+     */
+    private static void openConnections(RedisConnectionFactory redisConnectionFactory,
+                                        RedisWarmUpProperties redisWarmUpProperties) {
+        List<RedisConnection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.max(1, redisWarmUpProperties.getConnections()); i++) {
+                RedisConnection connection = redisConnectionFactory.getConnection();
+                connections.add(connection);
+                connection.ping();
+                if (connection instanceof RedisClusterConnection) continue;
+                connection.openPipeline();
+                connection.ping();
+                connection.closePipeline();
+            }
+        } finally {
+            for (RedisConnection connection : connections) connection.close();
+        }
+    }
+}
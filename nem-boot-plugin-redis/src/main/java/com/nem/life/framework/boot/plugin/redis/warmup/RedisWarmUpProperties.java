@@ -0,0 +1,27 @@
+package com.nem.life.framework.boot.plugin.redis.warmup;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "nem.warm-up.redis")
+public class RedisWarmUpProperties {
+    /**
+     * 启动时同时打开并PING的连接数, 配置了lettuce连接池时可以按 min-idle 填满连接池
+     */
+    private Integer connections = 1;
+
+    /**
+     * 预热两级缓存的本地缓存, 缓存名 -> key列表, 从redis读取已有的值
+     */
+    private Map<String, List<String>> caches = new LinkedHashMap<>();
+
+    /**
+     * 预热缓存时每批pipeline的key数
+     */
+    private Integer batchSize = 500;
+}
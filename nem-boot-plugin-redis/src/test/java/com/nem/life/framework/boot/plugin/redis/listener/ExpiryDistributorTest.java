@@ -0,0 +1,130 @@
+package com.nem.life.framework.boot.plugin.redis.listener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ExpiryDistributorTest {
+    private static final List<String> MEMBERS = Arrays.asList("node-a", "node-b", "node-c");
+
+    private final List<ExpiryDistributor> distributors = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        distributors.forEach(ExpiryDistributor::stop);
+    }
+
+    @Test
+    void onlyOwnerAndSuccessorTouchRedis() {
+        List<StringRedisTemplate> templates = new ArrayList<>();
+        List<ValueOperations<String, String>> values = new ArrayList<>();
+        AtomicInteger handled = new AtomicInteger();
+        MessageListener listener = (message, pattern) -> handled.incrementAndGet();
+        List<MessageListener> wrapped = new ArrayList<>();
+        for (String member : MEMBERS) {
+            StringRedisTemplate template = template();
+            templates.add(template);
+            values.add(template.opsForValue());
+            ExpiryDistributor distributor = new ExpiryDistributor(properties(member), template);
+            distributor.start();
+            distributors.add(distributor);
+            wrapped.add(distributor.wrap(listener));
+        }
+
+        byte[] key = "order:42".getBytes(StandardCharsets.UTF_8);
+        int owner = -1;
+        int successor = -1;
+        for (int i = 0; i < distributors.size(); i++) {
+            ExpiryDistributor.Role role = distributors.get(i).role(key);
+            if (role == ExpiryDistributor.Role.OWNER) owner = i;
+            if (role == ExpiryDistributor.Role.SUCCESSOR) successor = i;
+        }
+        assertThat(owner).isNotEqualTo(-1);
+        assertThat(successor).isNotEqualTo(-1).isNotEqualTo(owner);
+        int other = 3 - owner - successor;
+
+        when(values.get(owner).setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        clearInvocations(templates.toArray());
+        Message message = new DefaultMessage("__keyevent@0__:expired".getBytes(StandardCharsets.UTF_8), key);
+        for (MessageListener messageListener : wrapped) {
+            messageListener.onMessage(message, null);
+        }
+
+        assertThat(handled.get()).isEqualTo(1);
+        verify(values.get(owner)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+        // 负责节点已抢占, 下一个节点延迟后抢占失败, 不重复处理
+        verify(values.get(successor), timeout(2000)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+        assertThat(handled.get()).isEqualTo(1);
+        verifyNoInteractions(templates.get(other), values.get(other));
+        assertThat(distributors.get(other).getSkipped()).isEqualTo(1);
+        assertThat(distributors.get(other).getTakeovers()).isZero();
+    }
+
+    @Test
+    void successorTakesOverWhenOwnerDidNotHandle() throws InterruptedException {
+        StringRedisTemplate template = template();
+        ExpiryDistributor distributor = new ExpiryDistributor(properties("node-a"), template);
+        distributor.start();
+        distributors.add(distributor);
+        byte[] key = keyWithRole(distributor, ExpiryDistributor.Role.SUCCESSOR);
+        when(template.opsForValue().setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        CountDownLatch handled = new CountDownLatch(1);
+
+        distributor.wrap((message, pattern) -> handled.countDown())
+                .onMessage(new DefaultMessage("__keyevent@0__:expired".getBytes(StandardCharsets.UTF_8), key), null);
+
+        assertThat(handled.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(distributor.getTakeovers()).isEqualTo(1);
+    }
+
+    private static byte[] keyWithRole(ExpiryDistributor distributor, ExpiryDistributor.Role role) {
+        for (int i = 0; ; i++) {
+            byte[] key = ("order:" + i).getBytes(StandardCharsets.UTF_8);
+            if (distributor.role(key) == role) return key;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate template() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        when(template.execute(any(RedisScript.class), anyList(), any(), any())).thenReturn(MEMBERS);
+        when(template.opsForValue()).thenReturn(mock(ValueOperations.class));
+        when(template.opsForZSet()).thenReturn(mock(ZSetOperations.class));
+        return template;
+    }
+
+    private static ExpiryProperties properties(String nodeId) {
+        ExpiryProperties properties = new ExpiryProperties();
+        properties.setMode(ExpiryProperties.Mode.HASH);
+        properties.setNodeId(nodeId);
+        properties.setHeartbeat(Duration.ofHours(1));
+        properties.setTakeoverDelay(Duration.ofMillis(50));
+        return properties;
+    }
+}
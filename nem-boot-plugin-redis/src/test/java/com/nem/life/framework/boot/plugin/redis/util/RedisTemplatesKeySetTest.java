@@ -0,0 +1,128 @@
+package com.nem.life.framework.boot.plugin.redis.util;
+
+import com.nem.life.framework.boot.plugin.redis.bucket.RedisBuckets;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RedisTemplatesKeySetTest {
+
+    @Test
+    void bucketKeysAreReturnedAsLogicalKeys() {
+        Map<String, List<String>> keyspace = new LinkedHashMap<>();
+        keyspace.put("user:~b0", Arrays.asList("1", "12", "2"));
+        keyspace.put("user:~b1", Arrays.asList("13", "3"));
+        keyspace.put("order:7", null);
+        keyspace.put("user:settings", null);
+        RedisTemplates<Object, Object> redisTemplates = redisTemplates(keyspace);
+
+        assertThat(redisTemplates.keySet("user:*"))
+                .containsExactlyInAnyOrder("user:settings", "user:1", "user:12", "user:2", "user:13", "user:3");
+        assertThat(redisTemplates.keySet("user:1*")).containsExactlyInAnyOrder("user:1", "user:12", "user:13");
+        assertThat(redisTemplates.keySet("order:*")).containsExactly("order:7");
+        assertThat(redisTemplates.keySet("*")).doesNotContain("user:~b0", "user:~b1").contains("user:3", "order:7");
+    }
+
+    @Test
+    void globMatchesRedisSemantics() {
+        assertThat(RedisBuckets.matches("user:1*", "user:12")).isTrue();
+        assertThat(RedisBuckets.matches("user:?", "user:12")).isFalse();
+        assertThat(RedisBuckets.matches("user:[0-2]", "user:1")).isTrue();
+        assertThat(RedisBuckets.matches("user:[^0-2]", "user:1")).isFalse();
+        assertThat(RedisBuckets.matches("a\\*b", "a*b")).isTrue();
+        assertThat(RedisBuckets.matches("a\\*b", "axb")).isFalse();
+    }
+
+    @Test
+    void bucketPrefixOnlyForBucketKeys() {
+        RedisBuckets buckets = new RedisBuckets(Collections.singletonMap("user:", 2));
+
+        assertThat(buckets.bucketPrefix("user:~b1")).isEqualTo("user:");
+        assertThat(buckets.bucketPrefix("user:~bx")).isNull();
+        assertThat(buckets.bucketPrefix("user:1")).isNull();
+        assertThat(buckets.bucketPatterns("order:*")).isEmpty();
+        assertThat(buckets.bucketPatterns("us*")).containsExactly("user:~b*");
+    }
+
+    /**
+     * 单机连接, SCAN按规则过滤 keyspace 的key, HKEYS返回桶字段
+     */
+    private static RedisTemplates<Object, Object> redisTemplates(Map<String, List<String>> keyspace) {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.scan(any(ScanOptions.class))).thenAnswer(invocation -> {
+            String pattern = ((ScanOptions) invocation.getArgument(0)).getPattern();
+            List<byte[]> keys = keyspace.keySet().stream().filter(key -> RedisBuckets.matches(pattern, key))
+                    .map(key -> key.getBytes(StandardCharsets.UTF_8)).collect(Collectors.toList());
+            return cursor(keys.iterator());
+        });
+        when(connection.hKeys(any(byte[].class))).thenAnswer(invocation -> {
+            List<String> fields = keyspace.get(new String((byte[]) invocation.getArgument(0), StandardCharsets.UTF_8));
+            return fields.stream().map(field -> field.getBytes(StandardCharsets.UTF_8))
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+        });
+        RedisConnectionFactory connectionFactory = mock(RedisConnectionFactory.class);
+        when(connectionFactory.getConnection()).thenReturn(connection);
+        RedisTemplates<Object, Object> redisTemplates = new RedisTemplates<>();
+        redisTemplates.setKeySerializer(new StringRedisSerializer());
+        redisTemplates.setConnectionFactory(connectionFactory);
+        redisTemplates.afterPropertiesSet();
+        redisTemplates.setRedisBuckets(new RedisBuckets(Collections.singletonMap("user:", 2)));
+        return redisTemplates;
+    }
+
+    private static Cursor<byte[]> cursor(Iterator<byte[]> keys) {
+        return new Cursor<byte[]>() {
+            @Override
+            public long getCursorId() {
+                return 0;
+            }
+
+            @Override
+            public boolean isClosed() {
+                return false;
+            }
+
+            @Override
+            public Cursor<byte[]> open() {
+                return this;
+            }
+
+            @Override
+            public long getPosition() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public byte[] next() {
+                return keys.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,441 @@
+package com.nem.life.framework.boot.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 一个 &#64;MongoEntity 实体的编译期模型
+ * <p>
+ * 元数据与 MongoTemplates 中反射解析的规则相同; 持久化字段与 MappingMongoConverter 的规则相同:
+ * 跳过static、transient和 &#64;Transient 字段, &#64;Field 指定字段名, &#64;Id 或名为id的字段存为 _id。
+ * 有不支持的字段类型、final字段、无法访问的字段或没有无参构造时只生成元数据, 原因记录在 codecUnsupportedReason
+ */
+final class MongoEntityModel {
+    static final String MONGO_ENTITY = "com.nem.life.framework.boot.plugin.mongodb.MongoEntity";
+    private static final String MONGO_CHILD = "com.nem.life.framework.boot.plugin.mongodb.MongoChild";
+    private static final String MONGO_ORDER = "com.nem.life.framework.boot.plugin.mongodb.MongoOrder";
+    private static final String ID = "org.springframework.data.annotation.Id";
+    private static final String TRANSIENT = "org.springframework.data.annotation.Transient";
+    private static final String FIELD = "org.springframework.data.mongodb.core.mapping.Field";
+    private static final String DB_REF = "org.springframework.data.mongodb.core.mapping.DBRef";
+    private static final String SUPPORT = "MongoCodecSupport";
+
+    private static final Set<String> LOMBOK_GETTER = new HashSet<>(Arrays.asList("lombok.Data", "lombok.Getter", "lombok.Value"));
+    private static final Set<String> LOMBOK_SETTER = new HashSet<>(Arrays.asList("lombok.Data", "lombok.Setter"));
+    private static final Map<String, String> SCALARS = new HashMap<>();
+
+    static {
+        SCALARS.put("java.lang.String", "String");
+        SCALARS.put("java.lang.Integer", "Integer");
+        SCALARS.put("java.lang.Short", "Short");
+        SCALARS.put("java.lang.Byte", "Byte");
+        SCALARS.put("java.lang.Long", "Long");
+        SCALARS.put("java.lang.Double", "Double");
+        SCALARS.put("java.lang.Float", "Float");
+        SCALARS.put("java.lang.Boolean", "Boolean");
+        SCALARS.put("java.util.Date", "Date");
+        SCALARS.put("java.time.Instant", "Instant");
+        SCALARS.put("java.time.LocalDateTime", "LocalDateTime");
+        SCALARS.put("java.time.LocalDate", "LocalDate");
+        SCALARS.put("java.math.BigDecimal", "BigDecimal");
+        SCALARS.put("java.math.BigInteger", "BigInteger");
+        SCALARS.put("org.bson.types.ObjectId", "ObjectId");
+    }
+
+    private final Types types;
+    private final Elements elements;
+    private final TypeElement type;
+
+    final String packageName;
+    final String entityName;
+    final String generatedPrefix;
+    final String objectName;
+    final List<String> idNames = new ArrayList<>();
+    String orderName;
+    String childName;
+    final List<Property> properties = new ArrayList<>();
+    /**
+     * 嵌套实体的类型, 生成的编解码器按下标缓存它们的编解码器
+     */
+    final List<String> entityCodecs = new ArrayList<>();
+    String codecUnsupportedReason;
+
+    MongoEntityModel(ProcessingEnvironment env, TypeElement type) {
+        this.types = env.getTypeUtils();
+        this.elements = env.getElementUtils();
+        this.type = type;
+        PackageElement packageElement = elements.getPackageOf(type);
+        this.packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        this.entityName = type.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(type).toString();
+        String className = binaryName.substring(binaryName.lastIndexOf('.') + 1);
+        this.generatedPrefix = className.replace('$', '_');
+        this.objectName = String.valueOf(className.charAt(0)).toLowerCase() + className.substring(1);
+        resolveMetadata();
+        resolveProperties();
+    }
+
+    String getIdName() {
+        return idNames.isEmpty() ? null : idNames.get(0);
+    }
+
+    TypeElement getType() {
+        return type;
+    }
+
+    /**
+     * 与 MongoTemplates.getMongoIdName / getMongoOrderName / mongoChildName 相同:
+     * id和排序字段包括父类, 子表字段只看本类声明的List或Set
+     */
+    private void resolveMetadata() {
+        for (TypeElement current : hierarchy()) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                String name = field.getSimpleName().toString();
+                if (hasAnnotation(field, ID) && !idNames.contains(name)) idNames.add(name);
+                if (orderName == null && hasAnnotation(field, MONGO_ORDER)) orderName = name;
+            }
+        }
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            String fieldType = types.erasure(field.asType()).toString();
+            if (childName == null && hasAnnotation(field, MONGO_CHILD)
+                    && ("java.util.List".equals(fieldType) || "java.util.Set".equals(fieldType))) {
+                childName = field.getSimpleName().toString();
+            }
+        }
+    }
+
+    private void resolveProperties() {
+        String reason = checkInstantiable();
+        if (reason != null) {
+            codecUnsupportedReason = reason;
+            return;
+        }
+        List<VariableElement> fields = new ArrayList<>();
+        int explicitIds = 0;
+        for (TypeElement current : hierarchy()) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)
+                        || hasAnnotation(field, TRANSIENT)) continue;
+                fields.add(field);
+                if (hasAnnotation(field, ID)) explicitIds++;
+            }
+        }
+        if (explicitIds > 1) {
+            codecUnsupportedReason = "more than one @Id field";
+            return;
+        }
+        Set<String> mongoNames = new HashSet<>();
+        for (VariableElement field : fields) {
+            String name = field.getSimpleName().toString();
+            boolean id = explicitIds == 1 ? hasAnnotation(field, ID) : ("id".equals(name) || "_id".equals(name));
+            Property property = property(field, id);
+            if (property == null) return;
+            if (!mongoNames.add(property.mongoName)) {
+                codecUnsupportedReason = "duplicate field name " + property.mongoName;
+                return;
+            }
+            if (id) {
+                properties.add(0, property);
+            } else {
+                properties.add(property);
+            }
+        }
+    }
+
+    private Property property(VariableElement field, boolean id) {
+        String name = field.getSimpleName().toString();
+        if (hasAnnotation(field, DB_REF)) {
+            codecUnsupportedReason = "@DBRef field " + name;
+            return null;
+        }
+        if (field.getModifiers().contains(Modifier.FINAL)) {
+            codecUnsupportedReason = "final field " + name;
+            return null;
+        }
+        AnnotationMirror fieldAnnotation = annotation(field, FIELD);
+        String mongoName = name;
+        if (fieldAnnotation != null) {
+            String targetType = annotationValue(fieldAnnotation, "targetType");
+            if (targetType != null && !"IMPLICIT".equals(targetType)) {
+                codecUnsupportedReason = "@Field(targetType) on " + name;
+                return null;
+            }
+            String value = annotationValue(fieldAnnotation, "value");
+            if (value == null || value.isEmpty()) value = annotationValue(fieldAnnotation, "name");
+            if (value != null && !value.isEmpty()) mongoName = value;
+        }
+        if (id) mongoName = "_id";
+        ValueCodec codec = id && "java.lang.String".equals(types.erasure(field.asType()).toString())
+                ? new ValueCodec(SUPPORT + ".readId(%s)", SUPPORT + "::writeId")
+                : valueCodec(field.asType(), 1);
+        if (codec == null) {
+            codecUnsupportedReason = "unsupported type " + field.asType() + " of field " + name;
+            return null;
+        }
+        TypeElement declaring = (TypeElement) field.getEnclosingElement();
+        String getter = accessibleField(field) ? "%s." + name : getter(declaring, field);
+        String setter = accessibleField(field) ? "%s." + name + " = %s" : setter(declaring, field);
+        if (getter == null || setter == null) {
+            codecUnsupportedReason = "no accessible getter/setter for field " + name;
+            return null;
+        }
+        return new Property(name, mongoName, codec, getter, setter);
+    }
+
+    /**
+     * 字段类型对应的读写代码, 不支持时为null
+     *
+     * @param typeMirror 字段类型
+     * @param depth      嵌套层数, 用于lambda参数名
+     */
+    private ValueCodec valueCodec(TypeMirror typeMirror, int depth) {
+        TypeMirror boxed = typeMirror.getKind().isPrimitive()
+                ? types.boxedClass(types.getPrimitiveType(typeMirror.getKind())).asType() : typeMirror;
+        if (boxed.getKind() == TypeKind.ARRAY) {
+            TypeMirror component = ((ArrayType) boxed).getComponentType();
+            if (component.getKind() == TypeKind.BYTE) {
+                return new ValueCodec(SUPPORT + ".readBinary(%s)", SUPPORT + "::writeBinary");
+            }
+            return null;
+        }
+        if (boxed.getKind() != TypeKind.DECLARED) return null;
+        DeclaredType declared = (DeclaredType) boxed;
+        TypeElement element = (TypeElement) declared.asElement();
+        String qualifiedName = element.getQualifiedName().toString();
+        String scalar = SCALARS.get(qualifiedName);
+        if (scalar != null) {
+            return new ValueCodec(SUPPORT + ".read" + scalar + "(%s)", SUPPORT + "::write" + scalar);
+        }
+        if (element.getKind() == ElementKind.ENUM) {
+            return new ValueCodec(SUPPORT + ".readEnum(%s, " + qualifiedName + ".class)", SUPPORT + "::writeEnum");
+        }
+        if ("java.util.List".equals(qualifiedName) || "java.util.Collection".equals(qualifiedName)
+                || "java.util.Set".equals(qualifiedName)) {
+            if (declared.getTypeArguments().size() != 1) return null;
+            ValueCodec elementCodec = valueCodec(declared.getTypeArguments().get(0), depth + 1);
+            if (elementCodec == null || declared.getTypeArguments().get(0).getKind().isPrimitive()) return null;
+            String reader = "r" + depth;
+            String writer = "w" + depth;
+            String values = "c" + depth;
+            String read = "java.util.Set".equals(qualifiedName) ? "readSet" : "readList";
+            return new ValueCodec(SUPPORT + "." + read + "(%s, " + reader + " -> " + elementCodec.read(reader) + ")",
+                    "(" + writer + ", " + values + ") -> " + SUPPORT + ".writeCollection(" + writer + ", " + values
+                            + ", " + elementCodec.writer + ")");
+        }
+        if (hasAnnotation(element, MONGO_ENTITY) && element.getTypeParameters().isEmpty()) {
+            if (!entityCodecs.contains(qualifiedName)) entityCodecs.add(qualifiedName);
+            String codec = "codec" + entityCodecs.indexOf(qualifiedName) + "()";
+            String writer = "w" + depth;
+            String value = "e" + depth;
+            return new ValueCodec(SUPPORT + ".readEntity(%s, decoderContext, " + codec + ")",
+                    "(" + writer + ", " + value + ") -> " + SUPPORT + ".writeEntity(" + writer
+                            + ", encoderContext, " + codec + ", " + value + ")");
+        }
+        return null;
+    }
+
+    private String checkInstantiable() {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) return "abstract class";
+        if (!type.getTypeParameters().isEmpty()) return "generic class";
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL && type.getNestingKind() != NestingKind.MEMBER) {
+            return "local class";
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            return "inner class is not static";
+        }
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) return "private class";
+        }
+        if (hasAnnotation(type, "lombok.Value")) return "immutable lombok @Value class";
+        if (hasAnnotation(type, "lombok.NoArgsConstructor")) return null;
+        boolean explicit = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (elements.getOrigin(constructor) == Elements.Origin.MANDATED) continue;
+            explicit = true;
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return null;
+            }
+        }
+        if (explicit || hasAnnotation(type, "lombok.AllArgsConstructor") || hasAnnotation(type, "lombok.Builder")) {
+            return "no accessible no-args constructor";
+        }
+        return null;
+    }
+
+    /**
+     * 生成类与实体在同一个包, 同包的非private字段可以直接访问
+     */
+    private boolean accessibleField(VariableElement field) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) return false;
+        return modifiers.contains(Modifier.PUBLIC)
+                || elements.getPackageOf(field).getQualifiedName().toString().equals(packageName);
+    }
+
+    private String getter(TypeElement declaring, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        boolean primitiveBoolean = field.asType().getKind() == TypeKind.BOOLEAN;
+        List<String> candidates = new ArrayList<>();
+        if (primitiveBoolean) {
+            candidates.add(name.startsWith("is") && name.length() > 2 && Character.isUpperCase(name.charAt(2))
+                    ? name : "is" + capitalize(name));
+        }
+        candidates.add("get" + capitalize(name));
+        for (String candidate : candidates) {
+            if (hasMethod(candidate, 0)) return "%s." + candidate + "()";
+        }
+        if (hasAnnotation(field, LOMBOK_GETTER) || hasAnnotation(declaring, LOMBOK_GETTER)) {
+            return "%s." + candidates.get(0) + "()";
+        }
+        return null;
+    }
+
+    private String setter(TypeElement declaring, VariableElement field) {
+        String name = field.getSimpleName().toString();
+        boolean primitiveBoolean = field.asType().getKind() == TypeKind.BOOLEAN;
+        String property = primitiveBoolean && name.startsWith("is") && name.length() > 2
+                && Character.isUpperCase(name.charAt(2)) ? name.substring(2) : name;
+        String candidate = "set" + capitalize(property);
+        if (hasMethod(candidate, 1)) return "%s." + candidate + "(%s)";
+        if (hasAnnotation(field, LOMBOK_SETTER) || hasAnnotation(declaring, LOMBOK_SETTER)) {
+            return "%s." + candidate + "(%s)";
+        }
+        return null;
+    }
+
+    private boolean hasMethod(String name, int parameters) {
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (!method.getSimpleName().contentEquals(name) || method.getParameters().size() != parameters) continue;
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) continue;
+            if (modifiers.contains(Modifier.PUBLIC)
+                    || elements.getPackageOf(method).getQualifiedName().toString().equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 本类和父类, 到Object为止
+     */
+    private List<TypeElement> hierarchy() {
+        List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement current = type;
+        while (current != null && !"java.lang.Object".equals(current.getQualifiedName().toString())) {
+            hierarchy.add(current);
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return hierarchy;
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        return annotation(element, annotationName) != null;
+    }
+
+    private static boolean hasAnnotation(Element element, Set<String> annotationNames) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationNames.contains(annotationName(mirror))) return true;
+        }
+        return false;
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (annotationName.equals(annotationName(mirror))) return mirror;
+        }
+        return null;
+    }
+
+    private static String annotationName(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    private static String annotationValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                Object value = entry.getValue().getValue();
+                return value instanceof VariableElement ? ((VariableElement) value).getSimpleName().toString()
+                        : String.valueOf(value);
+            }
+        }
+        return null;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * 持久化字段
+     */
+    static final class Property {
+        final String name;
+        final String mongoName;
+        final ValueCodec codec;
+        /**
+         * 读取字段值的表达式, %s为实体变量
+         */
+        final String getter;
+        /**
+         * 设置字段值的语句, 第一个%s为实体变量, 第二个为值
+         */
+        final String setter;
+
+        private Property(String name, String mongoName, ValueCodec codec, String getter, String setter) {
+            this.name = name;
+            this.mongoName = mongoName;
+            this.codec = codec;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * 一种类型的读写代码
+     */
+    static final class ValueCodec {
+        /**
+         * 读取表达式, %s为BsonReader变量
+         */
+        private final String read;
+        /**
+         * BiConsumer&lt;BsonWriter, 值&gt; 表达式
+         */
+        final String writer;
+
+        private ValueCodec(String read, String writer) {
+            this.read = read;
+            this.writer = writer;
+        }
+
+        String read(String reader) {
+            return String.format(read, reader);
+        }
+    }
+}
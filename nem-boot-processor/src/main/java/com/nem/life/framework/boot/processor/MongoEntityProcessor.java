@@ -0,0 +1,85 @@
+package com.nem.life.framework.boot.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * 为标注了 &#64;MongoEntity 的实体生成元数据 实体名_MongoMeta 和BSON编解码器 实体名_MongoCodec
+ * <p>
+ * 生成类与实体在同一个包, 运行时 MongoEntities 按同样的命名规则加载, 不需要注册。
+ * 无法生成编解码器时只生成元数据, 并输出原因; 使用方以provided引入本模块即可:
+ * <pre>
+ * &lt;dependency&gt;
+ *     &lt;groupId&gt;com.nem.life.framework&lt;/groupId&gt;
+ *     &lt;artifactId&gt;nem-boot-processor&lt;/artifactId&gt;
+ *     &lt;scope&gt;provided&lt;/scope&gt;
+ * &lt;/dependency&gt;
+ * </pre>
+ */
+@SupportedAnnotationTypes(MongoEntityModel.MONGO_ENTITY)
+public class MongoEntityProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "@MongoEntity can only be used on classes", element);
+                    continue;
+                }
+                generate((TypeElement) element);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type) {
+        MongoEntityModel model = new MongoEntityModel(processingEnv, type);
+        MongoSourceWriter writer = new MongoSourceWriter(model, generatedAnnotation());
+        try {
+            write(writer.metadataClassName(), writer.metadataSource(), type);
+            if (model.codecUnsupportedReason == null) {
+                write(writer.codecClassName(), writer.codecSource(), type);
+            } else {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        "mongo codec not generated for " + model.entityName + ": " + model.codecUnsupportedReason, type);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "generate mongo metadata failed: " + e.getMessage(), type);
+        }
+    }
+
+    private void write(String className, String source, TypeElement type) throws IOException {
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(className, type);
+        try (Writer writer = file.openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    /**
+     * jdk9以后是 javax.annotation.processing.Generated, jdk8是 javax.annotation.Generated
+     */
+    private String generatedAnnotation() {
+        for (String name : new String[]{"javax.annotation.processing.Generated", "javax.annotation.Generated"}) {
+            if (processingEnv.getElementUtils().getTypeElement(name) != null) return name;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,179 @@
+package com.nem.life.framework.boot.processor;
+
+import java.util.List;
+
+/**
+ * 生成元数据和编解码器的源码
+ */
+final class MongoSourceWriter {
+    static final String METADATA_SUFFIX = "_MongoMeta";
+    static final String CODEC_SUFFIX = "_MongoCodec";
+    private static final String PROCESSOR = MongoEntityProcessor.class.getName();
+
+    private final MongoEntityModel model;
+    private final String generatedAnnotation;
+
+    /**
+     * @param model               实体模型
+     * @param generatedAnnotation &#64;Generated 注解的全类名, 编译环境没有时为null
+     */
+    MongoSourceWriter(MongoEntityModel model, String generatedAnnotation) {
+        this.model = model;
+        this.generatedAnnotation = generatedAnnotation;
+    }
+
+    String metadataClassName() {
+        return qualified(model.generatedPrefix + METADATA_SUFFIX);
+    }
+
+    String codecClassName() {
+        return qualified(model.generatedPrefix + CODEC_SUFFIX);
+    }
+
+    String metadataSource() {
+        String entity = model.entityName;
+        boolean codec = model.codecUnsupportedReason == null;
+        StringBuilder source = header();
+        source.append("import com.nem.life.framework.boot.plugin.mongodb.MongoEntityMetadata;\n")
+                .append("import org.bson.codecs.Codec;\n")
+                .append("import org.bson.codecs.configuration.CodecRegistry;\n\n")
+                .append("import java.util.Arrays;\n")
+                .append("import java.util.Collections;\n")
+                .append("import java.util.List;\n\n")
+                .append("/**\n * ").append(entity).append(" 的mongo元数据, 由 nem-boot-processor 生成\n");
+        if (!codec) source.append(" * <p>\n * 未生成编解码器: ").append(model.codecUnsupportedReason).append('\n');
+        source.append(" */\n");
+        generated(source);
+        source.append("public final class ").append(model.generatedPrefix).append(METADATA_SUFFIX)
+                .append(" implements MongoEntityMetadata<").append(entity).append("> {\n")
+                .append("    private static final List<String> ID_NAMES = Collections.unmodifiableList(Arrays.asList(")
+                .append(joinLiterals(model.idNames)).append("));\n\n");
+        method(source, "Class<" + entity + "> getEntityClass()", entity + ".class");
+        method(source, "String getObjectName()", literal(model.objectName));
+        method(source, "String getIdName()", literal(model.getIdName()));
+        method(source, "List<String> getIdNames()", "ID_NAMES");
+        method(source, "String getOrderName()", literal(model.orderName));
+        method(source, "String getChildName()", literal(model.childName));
+        method(source, "boolean hasCodec()", String.valueOf(codec));
+        method(source, "Codec<" + entity + "> createCodec(CodecRegistry registry)",
+                codec ? "new " + model.generatedPrefix + CODEC_SUFFIX + "(registry)" : "null");
+        source.setLength(source.length() - 1);
+        return source.append("}\n").toString();
+    }
+
+    String codecSource() {
+        String entity = model.entityName;
+        StringBuilder source = header();
+        source.append("import com.nem.life.framework.boot.plugin.mongodb.MongoCodecSupport;\n")
+                .append("import org.bson.BsonReader;\n")
+                .append("import org.bson.BsonType;\n")
+                .append("import org.bson.BsonWriter;\n")
+                .append("import org.bson.codecs.Codec;\n")
+                .append("import org.bson.codecs.DecoderContext;\n")
+                .append("import org.bson.codecs.EncoderContext;\n")
+                .append("import org.bson.codecs.configuration.CodecRegistry;\n\n")
+                .append("/**\n * ").append(entity).append(" 的BSON编解码器, 由 nem-boot-processor 生成\n */\n");
+        generated(source);
+        source.append("public final class ").append(model.generatedPrefix).append(CODEC_SUFFIX)
+                .append(" implements Codec<").append(entity).append("> {\n")
+                .append("    private final CodecRegistry registry;\n");
+        for (int i = 0; i < model.entityCodecs.size(); i++) {
+            source.append("    private volatile Codec<").append(model.entityCodecs.get(i)).append("> codec").append(i).append(";\n");
+        }
+        source.append('\n')
+                .append("    public ").append(model.generatedPrefix).append(CODEC_SUFFIX).append("(CodecRegistry registry) {\n")
+                .append("        this.registry = registry;\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public void encode(BsonWriter writer, ").append(entity).append(" value, EncoderContext encoderContext) {\n")
+                .append("        writer.writeStartDocument();\n");
+        for (MongoEntityModel.Property property : model.properties) {
+            source.append("        MongoCodecSupport.writeField(writer, ").append(literal(property.mongoName)).append(", ")
+                    .append(String.format(property.getter, "value")).append(", ").append(property.codec.writer).append(");\n");
+        }
+        source.append("        writer.writeEndDocument();\n")
+                .append("    }\n\n");
+
+        source.append("    @Override\n")
+                .append("    public ").append(entity).append(" decode(BsonReader reader, DecoderContext decoderContext) {\n")
+                .append("        ").append(entity).append(" entity = new ").append(entity).append("();\n")
+                .append("        reader.readStartDocument();\n")
+                .append("        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {\n")
+                .append("            String name = reader.readName();\n")
+                .append("            if (reader.getCurrentBsonType() == BsonType.NULL) {\n")
+                .append("                reader.readNull();\n")
+                .append("                continue;\n")
+                .append("            }\n")
+                .append("            switch (name) {\n");
+        for (MongoEntityModel.Property property : model.properties) {
+            source.append("                case ").append(literal(property.mongoName)).append(":\n")
+                    .append("                    ").append(String.format(property.setter, "entity", property.codec.read("reader")))
+                    .append(";\n")
+                    .append("                    break;\n");
+        }
+        source.append("                default:\n")
+                .append("                    reader.skipValue();\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        reader.readEndDocument();\n")
+                .append("        return entity;\n")
+                .append("    }\n\n");
+        method(source, "Class<" + entity + "> getEncoderClass()", entity + ".class");
+        for (int i = 0; i < model.entityCodecs.size(); i++) {
+            String nested = model.entityCodecs.get(i);
+            source.append("    private Codec<").append(nested).append("> codec").append(i).append("() {\n")
+                    .append("        Codec<").append(nested).append("> codec = codec").append(i).append(";\n")
+                    .append("        if (codec == null) {\n")
+                    .append("            codec = registry.get(").append(nested).append(".class);\n")
+                    .append("            codec").append(i).append(" = codec;\n")
+                    .append("        }\n")
+                    .append("        return codec;\n")
+                    .append("    }\n\n");
+        }
+        source.setLength(source.length() - 1);
+        return source.append("}\n").toString();
+    }
+
+    private StringBuilder header() {
+        StringBuilder source = new StringBuilder();
+        if (!model.packageName.isEmpty()) source.append("package ").append(model.packageName).append(";\n\n");
+        return source;
+    }
+
+    private void generated(StringBuilder source) {
+        if (generatedAnnotation != null) {
+            source.append('@').append(generatedAnnotation).append("(\"").append(PROCESSOR).append("\")\n");
+        }
+    }
+
+    private static void method(StringBuilder source, String signature, String returnValue) {
+        source.append("    @Override\n")
+                .append("    public ").append(signature).append(" {\n")
+                .append("        return ").append(returnValue).append(";\n")
+                .append("    }\n\n");
+    }
+
+    private String qualified(String simpleName) {
+        return model.packageName.isEmpty() ? simpleName : model.packageName + "." + simpleName;
+    }
+
+    private static String joinLiterals(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) joined.append(", ");
+            joined.append(literal(value));
+        }
+        return joined.toString();
+    }
+
+    private static String literal(String value) {
+        if (value == null) return "null";
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') literal.append('\\');
+            literal.append(c);
+        }
+        return literal.append('"').toString();
+    }
+}